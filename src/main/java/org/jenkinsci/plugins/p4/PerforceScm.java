@@ -16,6 +16,7 @@ import hudson.matrix.MatrixExecutionStrategy;
 import hudson.matrix.MatrixProject;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.Computer;
 import hudson.model.FreeStyleBuild;
 import hudson.model.Item;
 import hudson.model.Job;
@@ -52,16 +53,18 @@ import org.jenkinsci.plugins.p4.changes.P4GraphRef;
 import org.jenkinsci.plugins.p4.changes.P4LabelRef;
 import org.jenkinsci.plugins.p4.changes.P4PollRef;
 import org.jenkinsci.plugins.p4.changes.P4Ref;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
 import org.jenkinsci.plugins.p4.client.ConnectionHelper;
 import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
 import org.jenkinsci.plugins.p4.credentials.P4CredentialsImpl;
 import org.jenkinsci.plugins.p4.credentials.P4InvalidCredentialException;
 import org.jenkinsci.plugins.p4.filters.Filter;
 import org.jenkinsci.plugins.p4.filters.FilterLatestChangeImpl;
-import org.jenkinsci.plugins.p4.filters.FilterPathImpl;
+import org.jenkinsci.plugins.p4.filters.FilterMatcher;
 import org.jenkinsci.plugins.p4.filters.FilterPerChangeImpl;
 import org.jenkinsci.plugins.p4.matrix.MatrixOptions;
 import org.jenkinsci.plugins.p4.populate.Populate;
+import org.jenkinsci.plugins.p4.populate.ReferenceSyncImpl;
 import org.jenkinsci.plugins.p4.populate.SyncOnlyImpl;
 import org.jenkinsci.plugins.p4.review.P4Review;
 import org.jenkinsci.plugins.p4.review.ReviewProp;
@@ -73,6 +76,8 @@ import org.jenkinsci.plugins.p4.tasks.CheckoutTask;
 import org.jenkinsci.plugins.p4.tasks.PollTask;
 import org.jenkinsci.plugins.p4.tasks.RemoveClientTask;
 import org.jenkinsci.plugins.p4.tasks.WhereTask;
+import org.jenkinsci.plugins.p4.trigger.ChangeFeed;
+import org.jenkinsci.plugins.p4.trigger.PollCounterCache;
 import org.jenkinsci.plugins.p4.workspace.ManualWorkspaceImpl;
 import org.jenkinsci.plugins.p4.workspace.SpecWorkspaceImpl;
 import org.jenkinsci.plugins.p4.workspace.StaticWorkspaceImpl;
@@ -106,6 +111,11 @@ public class PerforceScm extends SCM {
 
 	private static Logger logger = Logger.getLogger(PerforceScm.class.getName());
 
+	public static final int DEFAULT_LIBRARY_CACHE_SIZE = 5;
+
+	// max size of the pipeline library cache on each node (GB), 0 to disable
+	private static final int LIBRARY_CACHE_SIZE = Integer.getInteger(PerforceScm.class.getName() + ".libraryCacheSize", DEFAULT_LIBRARY_CACHE_SIZE);
+
 	private final String credential;
 	private final Workspace workspace;
 	private final List<Filter> filter;
@@ -119,10 +129,13 @@ public class PerforceScm extends SCM {
 	private transient TagAction tagAction = null;
 	private transient P4Ref parentChange;
 	private transient P4Review review;
+	private transient String library;
+	private transient FilterMatcher filterMatcher;
 
 	public static final int DEFAULT_FILE_LIMIT = 50;
 	public static final int DEFAULT_CHANGE_LIMIT = 20;
 	public static final long DEFAULT_HEAD_LIMIT = 1000;
+	public static final int DEFAULT_TRIGGER_MAX_DELAY = 60;
 
 	public String getCredential() {
 		return credential;
@@ -136,6 +149,18 @@ public class PerforceScm extends SCM {
 		return filter;
 	}
 
+	/**
+	 * @return the filters compiled once for this configuration
+	 */
+	public FilterMatcher getFilterMatcher() {
+		FilterMatcher matcher = filterMatcher;
+		if (matcher == null) {
+			matcher = FilterMatcher.compile(filter);
+			filterMatcher = matcher;
+		}
+		return matcher;
+	}
+
 	public Populate getPopulate() {
 		return populate;
 	}
@@ -153,6 +178,20 @@ public class PerforceScm extends SCM {
 		this.review = review;
 	}
 
+	public String getLibrary() {
+		return library;
+	}
+
+	/**
+	 * Mark the checkout as a pipeline library, so it can be copied from the
+	 * node's library cache.
+	 *
+	 * @param library Library depot path
+	 */
+	public void setLibrary(String library) {
+		this.library = library;
+	}
+
 	/**
 	 * Helper function for converting an SCM object into a
 	 * PerforceScm object when appropriate.
@@ -534,17 +573,212 @@ public class PerforceScm extends SCM {
 
 		List<P4PollRef> lastPollPathRefs = TagAction.getLastPollChange(lastRun, listener, syncID);
 
+		// Use the server change feed, if the job is registered, to avoid polling
+		Job<?, ?> job = lastRun.getParent();
+		String client = ws.getFullName();
+		String view = getViewSignature(ws);
+		ChangeFeed feed = getChangeFeed(job, ws, pin, lastRefs);
+		if (feed != null) {
+			List<P4Ref> fed = feed.check(job.getFullName(), client, view, getLastChange(lastRefs), listener);
+			if (fed != null) {
+				return fed;
+			}
+		}
+
+		// Skip polling if nothing has been submitted since the last empty poll
+		P4BaseCredentials p4credential = ConnectionHelper.findCredential(credential, job);
+		boolean counterPolling = isCounterPolling(ws, pin, lastRefs) && p4credential != null;
+		String signature = getPollSignature(client, pin, lastRefs);
+		long since = -1;
+		if (feed != null || counterPolling) {
+			since = getSubmittedHead(p4credential, listener);
+		}
+		if (counterPolling) {
+			String port = p4credential.getFullP4port();
+			if (PollCounterCache.isUnchanged(port, job.getFullName(), signature, since)) {
+				long skipped = PollCounterCache.getSkipCount(port, job.getFullName());
+				listener.getLogger().println("P4: Polling skipped, no changes submitted since: " + since
+						+ " (skipped " + skipped + " polls)");
+				return new ArrayList<>();
+			}
+		}
+
 		// Create task
 		PollTask task = new PollTask(credential, lastRun, listener, filter, lastRefs);
+		task.setFilterMatcher(getFilterMatcher());
 		task.setWorkspace(ws);
 		task.setLimit(pin);
 		task.setPollRefChanges(lastPollPathRefs);
 
 		// Execute remote task
-		List<P4Ref> changes = buildWorkspace.act(task);
+		List<P4Ref> changes;
+		try (CommandLimiter.Permit permit = CommandLimiter.acquire(p4credential, CommandLimiter.Priority.POLL)) {
+			changes = buildWorkspace.act(task);
+		}
+
+		// Remember the counter if the poll found nothing
+		if (counterPolling) {
+			String port = p4credential.getFullP4port();
+			if (changes != null && changes.isEmpty()) {
+				PollCounterCache.update(port, job.getFullName(), signature, since);
+			} else {
+				PollCounterCache.invalidate(port, job.getFullName());
+			}
+		}
+
+		// Register the job with the change feed for the next poll
+		if (feed != null && changes != null) {
+			feed.register(job.getFullName(), client, view, since, changes, listener);
+		}
 		return changes;
 	}
 
+	// Run the checkout once admitted to the server's build queue. The permit is
+	// held for the whole task: it runs on the agent, where the controller cannot
+	// see its commands, and the sync it bounds is most of the task's server load.
+	private static boolean act(FilePath buildWorkspace, CheckoutTask task) throws IOException, InterruptedException {
+		try (CommandLimiter.Permit permit = CommandLimiter.acquire(task.getCredential(), CommandLimiter.Priority.BUILD)) {
+			return buildWorkspace.act(task);
+		} catch (P4InvalidCredentialException e) {
+			throw new AbortException("P4: Unable to checkout: " + e);
+		}
+	}
+
+	// Defaults to 'caches/p4-reference' in the node's root directory
+	private static String getReferenceRoot(ReferenceSyncImpl reference, FilePath buildWorkspace) {
+		String cacheDir = reference.getCacheDir();
+		if (cacheDir != null && !cacheDir.isEmpty()) {
+			return cacheDir;
+		}
+		return getCacheRoot(buildWorkspace, "p4-reference");
+	}
+
+	// 'caches/<name>' in the node's root directory
+	private static String getCacheRoot(FilePath buildWorkspace, String name) {
+		Computer computer = buildWorkspace.toComputer();
+		Node node = (computer == null) ? null : computer.getNode();
+		FilePath root = (node == null) ? null : node.getRootPath();
+		if (root == null) {
+			root = buildWorkspace.getParent();
+		}
+		return (root == null) ? null : root.child("caches").child(name).getRemote();
+	}
+
+	/**
+	 * Counter polling is not used for custom polling paths or graph commits,
+	 * as neither is tracked by submitted changes; nor for label or counter
+	 * pins, which can move without a submit.
+	 */
+	private boolean isCounterPolling(Workspace ws, String pin, List<P4Ref> lastRefs) {
+		DescriptorImpl scm = getDescriptor();
+		if (scm == null || !scm.isCounterPolling()) {
+			return false;
+		}
+		if (pin != null && !pin.isEmpty() && !pin.matches("\\d+")) {
+			return false;
+		}
+		if (ws instanceof ManualWorkspaceImpl manual && manual.getSpec().hasCustomPollingPaths()) {
+			return false;
+		}
+		for (P4Ref ref : lastRefs) {
+			if (ref.isCommit()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Anything that could change the poll result without a new submit
+	private String getPollSignature(String client, String pin, List<P4Ref> lastRefs) {
+		StringBuilder sb = new StringBuilder(getKey());
+		sb.append("\n").append(client);
+		sb.append("\n").append(pin);
+		sb.append("\n").append(lastRefs);
+		if (filter != null && !filter.isEmpty()) {
+			sb.append("\n").append(Jenkins.XSTREAM2.toXML(filter));
+		}
+		return sb.toString();
+	}
+
+	// The view as configured in the job (or its Jenkinsfile); static workspaces
+	// are defined on the server and only expire from the change feed
+	private static String getViewSignature(Workspace ws) {
+		if (ws instanceof ManualWorkspaceImpl manual) {
+			return Jenkins.XSTREAM2.toXML(manual.getSpec());
+		}
+		if (ws instanceof StreamWorkspaceImpl stream) {
+			return stream.getStreamName();
+		}
+		if (ws instanceof TemplateWorkspaceImpl template) {
+			return template.getTemplateName();
+		}
+		if (ws instanceof SpecWorkspaceImpl spec) {
+			return spec.getSpecPath();
+		}
+		return ws.getFullName();
+	}
+
+	// the 'change' counter is only the highest allocated change, which a
+	// pending change can hold and then be submitted without moving it
+	private static long getSubmittedHead(P4BaseCredentials p4credential, TaskListener listener) {
+		if (p4credential == null) {
+			return -1;
+		}
+		try (ConnectionHelper p4 = new ConnectionHelper(p4credential, listener)) {
+			return p4.getSubmittedHead();
+		} catch (Exception e) {
+			logger.warning("P4: Unable to read submitted head: " + e.getMessage());
+			return -1;
+		}
+	}
+
+	/**
+	 * Get the server change feed if enabled and the job can be polled by it;
+	 * filters, pinned changes, custom polling paths and matrix jobs use normal polling.
+	 *
+	 * @param job      Jenkins job
+	 * @param ws       Expanded workspace
+	 * @param pin      Expanded pin
+	 * @param lastRefs Last built changes
+	 * @return the change feed or null
+	 */
+	private ChangeFeed getChangeFeed(Job<?, ?> job, Workspace ws, String pin, List<P4Ref> lastRefs) {
+		DescriptorImpl scm = getDescriptor();
+		if (scm == null || !scm.isChangeFeed()) {
+			return null;
+		}
+		if (filter != null && !filter.isEmpty()) {
+			return null;
+		}
+		if (pin != null && !pin.isEmpty()) {
+			return null;
+		}
+		if (ws instanceof ManualWorkspaceImpl manual && manual.getSpec().hasCustomPollingPaths()) {
+			return null;
+		}
+		if (job instanceof MatrixProject || getLastChange(lastRefs) <= 0) {
+			return null;
+		}
+
+		P4BaseCredentials p4credential = ConnectionHelper.findCredential(credential, job);
+		if (p4credential == null) {
+			return null;
+		}
+		return ChangeFeed.get(p4credential);
+	}
+
+	// Graph commits and labels are not tracked by the change feed
+	private static long getLastChange(List<P4Ref> refs) {
+		long change = 0L;
+		for (P4Ref ref : refs) {
+			if (ref.isLabel() || ref.isCommit()) {
+				return -1L;
+			}
+			change = Math.max(change, ref.getChange());
+		}
+		return change;
+	}
+
 	/**
 	 * The checkout method is expected to check out modified files into the
 	 * project workspace. In Perforce terms a 'p4 sync' on the project's
@@ -613,6 +847,16 @@ public class PerforceScm extends SCM {
 		task.setWorkspace(ws);
 		task.initialise();
 
+		// Locate the reference cache on the build node
+		if (populate instanceof ReferenceSyncImpl reference) {
+			task.setReferenceRoot(getReferenceRoot(reference, buildWorkspace));
+		}
+
+		// Locate the library cache on the build node
+		if (library != null && LIBRARY_CACHE_SIZE > 0) {
+			task.setLibrary(getCacheRoot(buildWorkspace, "p4-library"), library, LIBRARY_CACHE_SIZE);
+		}
+
 		setStreamEnvVariables(run, ws);
 
 		// Override build change if polling per change.
@@ -692,7 +936,7 @@ public class PerforceScm extends SCM {
 			parentChange = new P4LabelRef(getChangeNumber(tag, run));
 			if (isBuildParent(job)) {
 				log.println("Building Parent on Node: " + node);
-				success &= buildWorkspace.act(task);
+				success &= act(buildWorkspace, task);
 			} else {
 				listener.getLogger().println("Skipping Parent build...");
 				success = true;
@@ -707,7 +951,7 @@ public class PerforceScm extends SCM {
 			} else {
 				log.println("Building on Node: " + node);
 			}
-			success &= buildWorkspace.act(task);
+			success &= act(buildWorkspace, task);
 		}
 
 		// Abort if build failed
@@ -874,7 +1118,9 @@ public class PerforceScm extends SCM {
 
 	/**
 	 * Apply path-based filters (FilterPathImpl) to a list of change entries.
-	 * If no path filters are present the original list is returned.
+	 * A change is removed if all of its files are under the filtered paths;
+	 * if no path filters are present, or every change would be removed, the
+	 * original list is returned.
 	 *
 	 * @param entries list of change entries to filter
 	 * @return filtered list of change entries (or original list if no filters)
@@ -884,22 +1130,15 @@ public class PerforceScm extends SCM {
 			return entries;
 		}
 
+		FilterMatcher matcher = getFilterMatcher();
 		List<P4ChangeEntry> remainder = new ArrayList<>();
-
-		for (Filter f : filter) {
-			if (!(f instanceof FilterPathImpl)) {
-				continue;
+		for (P4ChangeEntry c : entries) {
+			List<String> paths = new ArrayList<>();
+			for (P4AffectedFile affectedFile : c.getAffectedFiles()) {
+				paths.add(affectedFile.getPath());
 			}
-			String filterPath = ((FilterPathImpl) f).getPath();
-
-			for (P4ChangeEntry c : entries) {
-				Collection<P4AffectedFile> affectedFiles = c.getAffectedFiles();
-				for (P4AffectedFile affectedFile : affectedFiles) {
-					String p = affectedFile.getPath();
-					if (!p.startsWith(filterPath)) {
-						remainder.add(c);
-					}
-				}
+			if (!matcher.isExcludedByPath(paths)) {
+				remainder.add(c);
 			}
 		}
 
@@ -1075,6 +1314,13 @@ public class PerforceScm extends SCM {
 
 		private boolean recursionInPolling;
 
+		private boolean changeFeed;
+
+		private boolean counterPolling;
+
+		private int triggerWindow;
+		private int triggerMaxDelay = DEFAULT_TRIGGER_MAX_DELAY;
+
 		public boolean isAutoSave() {
 			return autoSave;
 		}
@@ -1139,6 +1385,38 @@ public class PerforceScm extends SCM {
 			this.recursionInPolling = recursionInPolling;
 		}
 
+		public boolean isChangeFeed() {
+			return changeFeed;
+		}
+
+		public void setChangeFeed(boolean changeFeed) {
+			this.changeFeed = changeFeed;
+		}
+
+		public boolean isCounterPolling() {
+			return counterPolling;
+		}
+
+		public void setCounterPolling(boolean counterPolling) {
+			this.counterPolling = counterPolling;
+		}
+
+		public int getTriggerWindow() {
+			return triggerWindow;
+		}
+
+		public void setTriggerWindow(int triggerWindow) {
+			this.triggerWindow = triggerWindow;
+		}
+
+		public int getTriggerMaxDelay() {
+			return triggerMaxDelay;
+		}
+
+		public void setTriggerMaxDelay(int triggerMaxDelay) {
+			this.triggerMaxDelay = triggerMaxDelay;
+		}
+
 		/**
 		 * public no-argument constructor
 		 */
@@ -1232,9 +1510,22 @@ public class PerforceScm extends SCM {
 
 			try {
 				recursionInPolling = json.getBoolean("recursionInPolling");
+				changeFeed = json.getBoolean("changeFeed");
+				counterPolling = json.getBoolean("counterPolling");
 			} catch (JSONException e) {
 				logger.info("Unable to read Polling options in configuration");
 				recursionInPolling = false;
+				changeFeed = false;
+				counterPolling = false;
+			}
+
+			try {
+				triggerWindow = json.getInt("triggerWindow");
+				triggerMaxDelay = json.getInt("triggerMaxDelay");
+			} catch (JSONException e) {
+				logger.info("Unable to read Trigger options in configuration");
+				triggerWindow = 0;
+				triggerMaxDelay = DEFAULT_TRIGGER_MAX_DELAY;
 			}
 
 			save();
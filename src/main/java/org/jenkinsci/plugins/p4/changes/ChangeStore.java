@@ -0,0 +1,679 @@
+package org.jenkinsci.plugins.p4.changes;
+
+import com.perforce.p4java.core.ChangelistStatus;
+import com.perforce.p4java.core.IChangelistSummary;
+import com.perforce.p4java.core.IFix;
+import com.perforce.p4java.core.file.FileAction;
+import com.perforce.p4java.core.file.FileSpecOpStatus;
+import com.perforce.p4java.core.file.IFileSpec;
+import com.perforce.p4java.impl.generic.core.ChangelistSummary;
+import com.perforce.p4java.impl.generic.core.Fix;
+import com.perforce.p4java.impl.generic.core.file.FileSpec;
+import hudson.Util;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Store of submitted changelist metadata, keyed by P4PORT, user and change.
+ * <p>
+ * Protections decide which files a user sees in a change, so each user has
+ * their own entries.
+ * <p>
+ * Submitted changes do not change, so the description, owner, date, client
+ * and files (up to a limit) are fetched once and kept on disk under
+ * <code>caches/p4-changes</code> in the Jenkins root directory, with the most
+ * recently used held in memory. Pending and shelved changes are never stored.
+ * Descriptions edited with 'p4 change -f' are not seen until the entry is
+ * removed. Jobs can be fixed at any time, so fixes are stored with the time
+ * they were read and read again once older than a few minutes.
+ * <p>
+ * On an agent (no Jenkins root) only the in-memory layer is used.
+ * <p>
+ * The number of files read for a change, the number of files held in memory,
+ * the days an unused entry is kept on disk and the seconds fixes are trusted
+ * for can be set with the system properties
+ * <code>org.jenkinsci.plugins.p4.changes.ChangeStore.files</code>,
+ * <code>.heap</code>, <code>.days</code> and <code>.fixesTtl</code>.
+ */
+public class ChangeStore {
+
+	private static Logger logger = Logger.getLogger(ChangeStore.class.getName());
+
+	public static final int DEFAULT_FILES = 1000;
+	public static final int DEFAULT_HEAP = 100000;
+	public static final int DEFAULT_DAYS = 30;
+	public static final int DEFAULT_FIXES_TTL = 300;
+
+	private static final int VERSION = 2;
+
+	private static final int files = Integer.getInteger(ChangeStore.class.getName() + ".files", DEFAULT_FILES);
+	private static final int heap = Integer.getInteger(ChangeStore.class.getName() + ".heap", DEFAULT_HEAP);
+	private static final long days = TimeUnit.DAYS.toMillis(Integer.getInteger(ChangeStore.class.getName() + ".days", DEFAULT_DAYS));
+	private static final long fixesTtl = TimeUnit.SECONDS.toMillis(Integer.getInteger(ChangeStore.class.getName() + ".fixesTtl", DEFAULT_FIXES_TTL));
+
+	// port, user and change -> metadata, least recently used first
+	private static final LinkedHashMap<String, Metadata> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private static long weight = 0;
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong diskHits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	private static long lastPrune = 0;
+
+	private ChangeStore() {
+	}
+
+	/**
+	 * Get the metadata of a change, from the store or else the server.
+	 *
+	 * @param p4     Connection
+	 * @param change Change number
+	 * @param limit  Files needed; fewer are returned only if the change has fewer
+	 * @param fixes  true if the fixes are needed; stored fixes are read again once stale
+	 * @return metadata, or null if the change does not exist
+	 * @throws Exception push up stack
+	 */
+	public static Metadata get(ConnectionHelper p4, long change, int limit, boolean fixes) throws Exception {
+		String port = p4.getPort();
+		String user = p4.getUser();
+		Metadata metadata = lookup(port, user, change, limit);
+		if (metadata != null && (!fixes || metadata.hasFixes())) {
+			return metadata;
+		}
+
+		if (metadata == null) {
+			misses.incrementAndGet();
+			metadata = load(p4, change, Math.max(limit, files));
+			if (metadata == null) {
+				return null;
+			}
+		}
+		if (fixes && !metadata.hasFixes()) {
+			metadata = metadata.withFixes(p4.getJobs((int) change));
+		}
+		if (metadata.submitted) {
+			put(port, user, metadata);
+		}
+		return metadata;
+	}
+
+	/**
+	 * Look up the metadata of a change without asking the server.
+	 *
+	 * @param port   P4PORT
+	 * @param user   Perforce user the change was described by
+	 * @param change Change number
+	 * @param limit  Files needed
+	 * @return metadata, or null if not stored or stored with too few files
+	 */
+	public static Metadata lookup(String port, String user, long change, int limit) {
+		String key = key(port, user, change);
+		Metadata metadata;
+		synchronized (cache) {
+			metadata = cache.get(key);
+		}
+		if (metadata != null) {
+			if (metadata.covers(limit)) {
+				hits.incrementAndGet();
+				return metadata;
+			}
+			return null;
+		}
+
+		metadata = read(port, user, change);
+		if (metadata == null || !metadata.covers(limit)) {
+			return null;
+		}
+		diskHits.incrementAndGet();
+		remember(key, metadata);
+		return metadata;
+	}
+
+	/**
+	 * Store the metadata of a submitted change.
+	 *
+	 * @param port     P4PORT
+	 * @param user     Perforce user the change was described by
+	 * @param metadata Change metadata
+	 */
+	public static void put(String port, String user, Metadata metadata) {
+		if (metadata == null || !metadata.submitted) {
+			return;
+		}
+		remember(key(port, user, metadata.id), metadata);
+		write(port, user, metadata);
+	}
+
+	/**
+	 * Drop all entries held in memory; entries on disk are kept.
+	 */
+	public static void clear() {
+		synchronized (cache) {
+			cache.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * @return store statistics
+	 */
+	public static Stats getStats() {
+		return new Stats();
+	}
+
+	private static Metadata load(ConnectionHelper p4, long change, int limit) throws Exception {
+		if (p4.checkVersion(20141)) {
+			List<Map<String, Object>> results = p4.describeChanges(List.of(change), limit + 1);
+			for (Map<String, Object> map : results) {
+				if (map != null && map.get("change") != null) {
+					return Metadata.fromDescribe(map, limit);
+				}
+			}
+			return null;
+		}
+
+		IChangelistSummary summary = p4.getChangeSummary(change);
+		if (summary == null) {
+			return null;
+		}
+		List<IFileSpec> specs = p4.getChangeFiles(change, limit + 1);
+		return Metadata.from(summary, specs, limit, null);
+	}
+
+	private static void remember(String key, Metadata metadata) {
+		synchronized (cache) {
+			Metadata old = cache.put(key, metadata);
+			if (old != null) {
+				weight -= old.weight();
+			}
+			weight += metadata.weight();
+
+			// evict least recently used until the files held fit
+			Iterator<Metadata> it = cache.values().iterator();
+			while (weight > heap && it.hasNext()) {
+				Metadata eldest = it.next();
+				if (eldest == metadata) {
+					break;
+				}
+				weight -= eldest.weight();
+				it.remove();
+			}
+		}
+	}
+
+	private static String key(String port, String user, long change) {
+		return port + "\n" + user + "\n" + change;
+	}
+
+	private static File getDir() {
+		Jenkins j = Jenkins.getInstanceOrNull();
+		return (j == null) ? null : new File(j.getRootDir(), "caches/p4-changes");
+	}
+
+	// caches/p4-changes/<port and user digest>/<change / 1000>/<change>
+	private static Path getPath(File dir, String port, String user, long change) {
+		return dir.toPath().resolve(Util.getDigestOf(port + "\n" + user)).resolve(String.valueOf(change / 1000)).resolve(String.valueOf(change));
+	}
+
+	private static Metadata read(String port, String user, long change) {
+		File dir = getDir();
+		if (dir == null) {
+			return null;
+		}
+		Path file = getPath(dir, port, user, change);
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(file)))) {
+			Metadata metadata = Metadata.read(in);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return (metadata.id == change) ? metadata : null;
+		} catch (IOException | RuntimeException e) {
+			logger.fine("P4: unable to read stored change " + change + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static void write(String port, String user, Metadata metadata) {
+		File dir = getDir();
+		if (dir == null) {
+			return;
+		}
+		Path file = getPath(dir, port, user, metadata.id);
+		try {
+			Files.createDirectories(file.getParent());
+			Path tmp = Files.createTempFile(file.getParent(), String.valueOf(metadata.id), ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp)))) {
+				metadata.write(out);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.warning("P4: unable to store change " + metadata.id + ": " + e.getMessage());
+			return;
+		}
+		schedulePrune(dir);
+	}
+
+	// Remove entries not used for a while, at most once an hour
+	private static synchronized void schedulePrune(File dir) {
+		long now = System.currentTimeMillis();
+		if (now - lastPrune < TimeUnit.HOURS.toMillis(1)) {
+			return;
+		}
+		lastPrune = now;
+		Timer.get().submit(() -> prune(dir));
+	}
+
+	private static void prune(File dir) {
+		long expired = System.currentTimeMillis() - days;
+		try (Stream<Path> paths = Files.walk(dir.toPath())) {
+			paths.filter(Files::isRegularFile).forEach(path -> {
+				try {
+					if (Files.getLastModifiedTime(path).toMillis() < expired) {
+						Files.delete(path);
+					}
+				} catch (IOException e) {
+					logger.fine("P4: unable to remove stored change: " + path);
+				}
+			});
+		} catch (IOException | RuntimeException e) {
+			logger.warning("P4: unable to prune change store: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Immutable metadata of a change.
+	 */
+	public static final class Metadata {
+		private final long id;
+		private final boolean submitted;
+		private final String user;
+		private final String client;
+		private final String description;
+		private final long date;
+		private final boolean complete;
+		private final List<FileEntry> fileList;
+		private final List<FixEntry> fixes;
+		private final long fixed;
+
+		private Metadata(long id, boolean submitted, String user, String client, String description, long date,
+		                 boolean complete, List<FileEntry> fileList, List<FixEntry> fixes, long fixed) {
+			this.id = id;
+			this.submitted = submitted;
+			this.user = user;
+			this.client = client;
+			this.description = description;
+			this.date = date;
+			this.complete = complete;
+			this.fileList = Collections.unmodifiableList(fileList);
+			this.fixes = (fixes == null) ? null : Collections.unmodifiableList(fixes);
+			this.fixed = fixed;
+		}
+
+		/**
+		 * @param summary Change summary
+		 * @param specs   Up to limit + 1 files of the change
+		 * @param limit   Files requested
+		 * @param fixes   Fixes of the change, or null if not known
+		 * @return metadata
+		 */
+		public static Metadata from(IChangelistSummary summary, List<IFileSpec> specs, int limit, List<IFix> fixes) {
+			List<FileEntry> list = new ArrayList<>();
+			if (specs != null) {
+				for (IFileSpec spec : specs) {
+					if (spec != null && spec.getOpStatus() == FileSpecOpStatus.VALID && spec.getDepotPathString() != null) {
+						FileAction action = spec.getAction();
+						list.add(new FileEntry(spec.getDepotPathString(), spec.getEndRevision(),
+								(action == null) ? FileAction.UNKNOWN.name() : action.name(), spec.getFileType()));
+					}
+				}
+			}
+			boolean complete = specs == null || specs.size() <= limit;
+			Date date = summary.getDate();
+			Metadata metadata = new Metadata(summary.getId(), summary.getStatus() == ChangelistStatus.SUBMITTED,
+					summary.getUsername(), summary.getClientId(), summary.getDescription(),
+					(date == null) ? 0 : date.getTime(), complete, list, null, 0);
+			return (fixes == null) ? metadata : metadata.withFixes(fixes);
+		}
+
+		/**
+		 * @param map   Result of 'p4 describe -s -m limit+1'
+		 * @param limit Files requested
+		 * @return metadata
+		 */
+		public static Metadata fromDescribe(Map<String, Object> map, int limit) {
+			IChangelistSummary summary = new ChangelistSummary(map, true);
+			List<IFileSpec> specs = new ArrayList<>();
+			for (int i = 0; map.get("depotFile" + i) != null; i++) {
+				FileSpec spec = new FileSpec();
+				spec.setDepotPath((String) map.get("depotFile" + i));
+				spec.setEndRevision(parseInt(map.get("rev" + i)));
+				spec.setAction(FileAction.fromString((String) map.get("action" + i)));
+				spec.setFileType((String) map.get("type" + i));
+				specs.add(spec);
+			}
+			return from(summary, specs, limit, null);
+		}
+
+		/**
+		 * @param list Fixes of the change, as read now
+		 * @return a copy of the metadata with the fixes
+		 */
+		public Metadata withFixes(List<IFix> list) {
+			List<FixEntry> entries = new ArrayList<>();
+			if (list != null) {
+				for (IFix fix : list) {
+					Date fixed = fix.getDate();
+					entries.add(new FixEntry(fix.getJobId(), fix.getStatus(), fix.getUserName(),
+							fix.getClientName(), (fixed == null) ? 0 : fixed.getTime(), fix.getAction()));
+				}
+			}
+			return new Metadata(id, submitted, user, client, description, date, complete, fileList, entries,
+					System.currentTimeMillis());
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public boolean isSubmitted() {
+			return submitted;
+		}
+
+		public String getUser() {
+			return user;
+		}
+
+		public String getClient() {
+			return client;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public Date getDate() {
+			return new Date(date);
+		}
+
+		/**
+		 * @return true if all of the change's files are held
+		 */
+		public boolean isComplete() {
+			return complete;
+		}
+
+		/**
+		 * @return change summary
+		 */
+		public IChangelistSummary getSummary() {
+			Map<String, Object> map = new HashMap<>();
+			map.put("change", String.valueOf(id));
+			map.put("user", user);
+			map.put("client", client);
+			map.put("desc", description);
+			map.put("time", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(date)));
+			map.put("status", submitted ? "submitted" : "pending");
+			return new ChangelistSummary(map, true);
+		}
+
+		/**
+		 * @return files of the change, in depot order
+		 */
+		public List<IFileSpec> getFiles() {
+			List<IFileSpec> list = new ArrayList<>();
+			for (FileEntry entry : fileList) {
+				FileSpec spec = new FileSpec();
+				spec.setDepotPath(entry.path);
+				spec.setEndRevision(entry.rev);
+				spec.setAction(FileAction.valueOf(entry.action));
+				spec.setFileType(entry.type);
+				spec.setChangelistId((int) id);
+				list.add(spec);
+			}
+			return list;
+		}
+
+		/**
+		 * @return depot paths of the change's files
+		 */
+		public List<String> getPaths() {
+			List<String> list = new ArrayList<>();
+			for (FileEntry entry : fileList) {
+				list.add(entry.path);
+			}
+			return list;
+		}
+
+		/**
+		 * @return fixes of the change, or an empty list if not known
+		 * @see #hasFixes()
+		 */
+		public List<IFix> getFixes() {
+			List<IFix> list = new ArrayList<>();
+			if (fixes == null) {
+				return list;
+			}
+			for (FixEntry entry : fixes) {
+				IFix fix = new Fix();
+				fix.setJobId(entry.job);
+				fix.setStatus(entry.status);
+				fix.setUserName(entry.user);
+				fix.setClientName(entry.client);
+				fix.setDate(new Date(entry.date));
+				fix.setAction(entry.action);
+				fix.setChangelistId((int) id);
+				list.add(fix);
+			}
+			return list;
+		}
+
+		/**
+		 * @return true if the fixes of the change are held and were read recently
+		 */
+		public boolean hasFixes() {
+			return fixes != null && System.currentTimeMillis() - fixed < fixesTtl;
+		}
+
+		private boolean covers(int limit) {
+			return complete || fileList.size() >= limit;
+		}
+
+		private int weight() {
+			return 1 + fileList.size();
+		}
+
+		private void write(DataOutputStream out) throws IOException {
+			out.writeInt(VERSION);
+			out.writeLong(id);
+			out.writeBoolean(submitted);
+			writeString(out, user);
+			writeString(out, client);
+			writeString(out, description);
+			out.writeLong(date);
+			out.writeBoolean(complete);
+			out.writeInt(fileList.size());
+			for (FileEntry entry : fileList) {
+				writeString(out, entry.path);
+				out.writeInt(entry.rev);
+				writeString(out, entry.action);
+				writeString(out, entry.type);
+			}
+			out.writeInt((fixes == null) ? -1 : fixes.size());
+			if (fixes != null) {
+				out.writeLong(fixed);
+				for (FixEntry entry : fixes) {
+					writeString(out, entry.job);
+					writeString(out, entry.status);
+					writeString(out, entry.user);
+					writeString(out, entry.client);
+					out.writeLong(entry.date);
+					writeString(out, entry.action);
+				}
+			}
+		}
+
+		private static Metadata read(DataInputStream in) throws IOException {
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("unknown version " + version);
+			}
+			long id = in.readLong();
+			boolean submitted = in.readBoolean();
+			String user = readString(in);
+			String client = readString(in);
+			String description = readString(in);
+			long date = in.readLong();
+			boolean complete = in.readBoolean();
+			int count = in.readInt();
+			List<FileEntry> fileList = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				fileList.add(new FileEntry(readString(in), in.readInt(), readString(in), readString(in)));
+			}
+			count = in.readInt();
+			List<FixEntry> fixes = null;
+			long fixed = 0;
+			if (count >= 0) {
+				fixed = in.readLong();
+				fixes = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					fixes.add(new FixEntry(readString(in), readString(in), readString(in), readString(in),
+							in.readLong(), readString(in)));
+				}
+			}
+			return new Metadata(id, submitted, user, client, description, date, complete, fileList, fixes, fixed);
+		}
+
+		private static int parseInt(Object value) {
+			try {
+				return (value == null) ? 0 : Integer.parseInt(value.toString());
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+	}
+
+	// length prefixed UTF-8, -1 for null (writeUTF is limited to 64K)
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static final class FileEntry {
+		private final String path;
+		private final int rev;
+		private final String action;
+		private final String type;
+
+		private FileEntry(String path, int rev, String action, String type) {
+			this.path = path;
+			this.rev = rev;
+			this.action = action;
+			this.type = type;
+		}
+	}
+
+	private static final class FixEntry {
+		private final String job;
+		private final String status;
+		private final String user;
+		private final String client;
+		private final long date;
+		private final String action;
+
+		private FixEntry(String job, String status, String user, String client, long date, String action) {
+			this.job = job;
+			this.status = status;
+			this.user = user;
+			this.client = client;
+			this.date = date;
+			this.action = action;
+		}
+	}
+
+	public static final class Stats {
+		private final int entries;
+		private final long files;
+		private final int heap = ChangeStore.heap;
+		private final long hits = ChangeStore.hits.get();
+		private final long diskHits = ChangeStore.diskHits.get();
+		private final long misses = ChangeStore.misses.get();
+
+		private Stats() {
+			synchronized (cache) {
+				entries = cache.size();
+				files = weight - entries;
+			}
+		}
+
+		public int getEntries() {
+			return entries;
+		}
+
+		public long getFiles() {
+			return files;
+		}
+
+		public int getHeap() {
+			return heap;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getDiskHits() {
+			return diskHits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public double getHitRate() {
+			long total = hits + diskHits + misses;
+			return (total == 0) ? 0 : (double) (hits + diskHits) / total;
+		}
+	}
+}
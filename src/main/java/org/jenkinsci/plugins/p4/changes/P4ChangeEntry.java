@@ -17,6 +17,7 @@ import org.jenkinsci.plugins.p4.client.ConnectionHelper;
 import org.jenkinsci.plugins.p4.email.P4UserProperty;
 import org.kohsuke.stapler.export.Exported;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -57,7 +58,57 @@ public class P4ChangeEntry extends ChangeLogSet.Entry {
 		getFileCountLimit();
 	}
 
+	/**
+	 * Set a submitted change, read from the {@link ChangeStore} when stored.
+	 *
+	 * @param p4     Connection
+	 * @param change Change number
+	 * @throws Exception push up stack
+	 */
+	public void setChange(ConnectionHelper p4, long change) throws Exception {
+		ChangeStore.Metadata metadata = ChangeStore.get(p4, change, fileCountLimit + 1, true);
+		if (metadata == null || !metadata.isSubmitted()) {
+			setChange(p4, p4.getChangeSummary(change));
+			return;
+		}
+
+		// set email property on user
+		String email = p4.getEmail(metadata.getUser());
+
+		setChange(metadata.getSummary(), email, metadata.getFiles(), metadata.getFixes());
+	}
+
 	public void setChange(ConnectionHelper p4, IChangelistSummary changelist) throws Exception {
+		int changeId = changelist.getId();
+
+		// set email property on user
+		String email = p4.getEmail(changelist.getUsername());
+
+		// set list of file revisions and jobs in change
+		List<IFileSpec> files;
+		List<IFix> fixes;
+		if (changelist.getStatus() == ChangelistStatus.PENDING) {
+			files = p4.getShelvedFiles(changeId);
+			fixes = p4.getJobs(changeId);
+		} else {
+			ChangeStore.Metadata metadata = ChangeStore.get(p4, changeId, fileCountLimit + 1, true);
+			files = (metadata == null) ? p4.getChangeFiles(changeId, fileCountLimit + 1) : metadata.getFiles();
+			fixes = (metadata == null) ? p4.getJobs(changeId) : metadata.getFixes();
+		}
+
+		setChange(changelist, email, files, fixes);
+	}
+
+	/**
+	 * Set the change from details already fetched from the server.
+	 *
+	 * @param changelist Change summary
+	 * @param email      Email of the change owner (or empty)
+	 * @param files      Up to the file limit + 1 files in the change (or shelf, if pending)
+	 * @param fixes      Jobs fixed by the change
+	 * @throws IOException push up stack
+	 */
+	public void setChange(IChangelistSummary changelist, String email, List<IFileSpec> files, List<IFix> fixes) throws IOException {
 
 		// set id
 		int changeId = changelist.getId();
@@ -68,7 +119,6 @@ public class P4ChangeEntry extends ChangeLogSet.Entry {
 		author = User.getOrCreateByIdOrFullName(user);
 
 		// set email property on user
-		String email = p4.getEmail(user);
 		if (email != null && !email.isEmpty()) {
 			P4UserProperty p4prop = new P4UserProperty(email);
 			author.addProperty(p4prop);
@@ -93,14 +143,7 @@ public class P4ChangeEntry extends ChangeLogSet.Entry {
 		msg = changelist.getDescription();
 
 		// set list of file revisions in change
-		List<IFileSpec> files;
-		if (changelist.getStatus() == ChangelistStatus.PENDING) {
-			files = p4.getShelvedFiles(changeId);
-			shelved = true;
-		} else {
-			files = p4.getChangeFiles(changeId, fileCountLimit + 1);
-			shelved = false;
-		}
+		shelved = changelist.getStatus() == ChangelistStatus.PENDING;
 		if (files != null && files.size() > fileCountLimit) {
 			fileLimit = true;
 			files = files.subList(0, fileCountLimit);
@@ -115,7 +158,7 @@ public class P4ChangeEntry extends ChangeLogSet.Entry {
 		}
 
 		// set list of jobs in change
-		this.jobs = p4.getJobs(changeId);
+		this.jobs = fixes;
 	}
 
 	public void setLabel(ConnectionHelper p4, String labelId) throws Exception {
@@ -0,0 +1,206 @@
+package org.jenkinsci.plugins.p4.changes;
+
+import com.perforce.p4java.core.IChangelistSummary;
+import com.perforce.p4java.core.IFix;
+import com.perforce.p4java.core.file.IFileSpec;
+import com.perforce.p4java.impl.generic.core.ChangelistSummary;
+import com.perforce.p4java.impl.generic.core.file.FileSpec;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Builds the change log entries for a build without loading the client.
+ * <p>
+ * Changes held in the {@link ChangeStore} are not fetched again; the rest are
+ * stored once described.
+ * <p>
+ * Submitted changes are described in batches (p4 describe -s c1 c2 ...), the
+ * fixes for the whole range are listed with one 'p4 fixes' and the owners'
+ * emails with one 'p4 users', in place of a describe, user and fixes command
+ * per change. Labels, graph commits and any change the batch could not
+ * describe fall back to the per change lookup.
+ * <p>
+ * The batch size can be tuned with the system property
+ * <code>org.jenkinsci.plugins.p4.changes.P4ChangeLogBuilder.batch</code>.
+ */
+public class P4ChangeLogBuilder {
+
+	private static Logger logger = Logger.getLogger(P4ChangeLogBuilder.class.getName());
+
+	public static final int DEFAULT_BATCH = 50;
+
+	private static final int batchSize = Integer.getInteger(P4ChangeLogBuilder.class.getName() + ".batch", DEFAULT_BATCH);
+
+	private final ConnectionHelper p4;
+	private final String clientName;
+
+	/**
+	 * @param p4         Connection (no client is required)
+	 * @param clientName Client used to list the changes; scopes the fixes query (may be null)
+	 */
+	public P4ChangeLogBuilder(ConnectionHelper p4, String clientName) {
+		this.p4 = p4;
+		this.clientName = clientName;
+	}
+
+	/**
+	 * Build the entries for the given references, in the same order.
+	 *
+	 * @param refs Changes, labels or graph commits
+	 * @return list of change log entries
+	 * @throws Exception push up stack
+	 */
+	public List<P4ChangeEntry> build(List<P4Ref> refs) throws Exception {
+		List<Long> ids = new ArrayList<>();
+		for (P4Ref ref : refs) {
+			if (ref instanceof P4ChangeRef) {
+				ids.add(ref.getChange());
+			}
+		}
+
+		// stored changes first, then batched describe and fixes for the rest
+		int fileLimit = new P4ChangeEntry().getMaxLimit();
+		String port = p4.getPort();
+		String user = p4.getUser();
+		Map<Long, IChangelistSummary> summaries = new HashMap<>();
+		Map<Long, List<IFileSpec>> files = new HashMap<>();
+		Map<Long, List<IFix>> fixes = new HashMap<>();
+		Map<Long, ChangeStore.Metadata> unfixed = new HashMap<>();
+		List<Long> missing = new ArrayList<>();
+		for (Long id : ids) {
+			ChangeStore.Metadata metadata = ChangeStore.lookup(port, user, id, fileLimit + 1);
+			if (metadata == null) {
+				missing.add(id);
+				continue;
+			}
+			summaries.put(id, metadata.getSummary());
+			files.put(id, metadata.getFiles());
+			if (metadata.hasFixes()) {
+				fixes.put(id, metadata.getFixes());
+			} else {
+				unfixed.put(id, metadata);
+			}
+		}
+
+		Map<Long, IChangelistSummary> described = new HashMap<>();
+		if (!missing.isEmpty() && p4.checkVersion(20141)) {
+			describe(missing, fileLimit, described, files);
+		}
+		Set<Long> fixIds = new HashSet<>(described.keySet());
+		fixIds.addAll(unfixed.keySet());
+		Map<Long, List<IFix>> found = getFixes(fixIds);
+		for (Map.Entry<Long, IChangelistSummary> e : described.entrySet()) {
+			long id = e.getKey();
+			List<IFix> jobs = found.getOrDefault(id, new ArrayList<>());
+			ChangeStore.put(port, user, ChangeStore.Metadata.from(e.getValue(), files.get(id), fileLimit, jobs));
+			fixes.put(id, jobs);
+		}
+
+		// stored changes whose fixes are stale only need the fixes read again
+		for (Map.Entry<Long, ChangeStore.Metadata> e : unfixed.entrySet()) {
+			List<IFix> jobs = found.getOrDefault(e.getKey(), new ArrayList<>());
+			ChangeStore.put(port, user, e.getValue().withFixes(jobs));
+			fixes.put(e.getKey(), jobs);
+		}
+		summaries.putAll(described);
+
+		// users for all submitted changes in one command
+		Map<String, String> emails = getEmails(summaries.values());
+
+		List<P4ChangeEntry> entries = new ArrayList<>();
+		for (P4Ref ref : refs) {
+			P4ChangeEntry cl = new P4ChangeEntry();
+			if (ref.isCommit() && ref instanceof P4GraphRef graph) {
+				cl.setGraphCommit(p4, graph.getRepo(), graph.getSha());
+			} else if (ref.isLabel()) {
+				cl.setLabel(p4, ref.toString());
+			} else if (summaries.containsKey(ref.getChange())) {
+				long id = ref.getChange();
+				IChangelistSummary summary = summaries.get(id);
+				String email = emails.get(summary.getUsername());
+				List<IFix> jobs = fixes.getOrDefault(id, new ArrayList<>());
+				cl.setChange(summary, email, files.get(id), jobs);
+			} else {
+				cl.setChange(p4, ref.getChange());
+			}
+			entries.add(cl);
+		}
+		return entries;
+	}
+
+	private void describe(List<Long> ids, int fileLimit, Map<Long, IChangelistSummary> summaries,
+	                      Map<Long, List<IFileSpec>> files) throws Exception {
+		for (int i = 0; i < ids.size(); i += batchSize) {
+			List<Long> batch = ids.subList(i, Math.min(i + batchSize, ids.size()));
+			List<Map<String, Object>> results = p4.describeChanges(batch, fileLimit + 1);
+			for (Map<String, Object> map : results) {
+				if (map == null || map.get("change") == null) {
+					continue;
+				}
+				IChangelistSummary summary = new ChangelistSummary(map, true);
+				long id = summary.getId();
+				summaries.put(id, summary);
+				files.put(id, getFiles(map, summary.getId()));
+			}
+		}
+		if (summaries.size() < ids.size()) {
+			logger.fine("P4: described " + summaries.size() + " of " + ids.size() + " changes in batch.");
+		}
+	}
+
+	private List<IFileSpec> getFiles(Map<String, Object> map, int id) {
+		List<IFileSpec> list = new ArrayList<>();
+		for (int i = 0; map.get("depotFile" + i) != null; i++) {
+			FileSpec spec = new FileSpec(map, p4.getConnection(), i);
+			spec.setChangelistId(id);
+			list.add(spec);
+		}
+		return list;
+	}
+
+	private Map<Long, List<IFix>> getFixes(Set<Long> ids) throws Exception {
+		Map<Long, List<IFix>> fixes = new HashMap<>();
+		if (ids.isEmpty()) {
+			return fixes;
+		}
+
+		// without a client to scope the range, list fixes per change
+		if (clientName == null) {
+			for (Long id : ids) {
+				fixes.put(id, p4.getJobs(id.intValue()));
+			}
+			return fixes;
+		}
+
+		long from = ids.stream().min(Long::compare).get();
+		long to = ids.stream().max(Long::compare).get();
+		String path = "//" + clientName + "/...@" + from + "," + to;
+		for (IFix fix : p4.getFixes(path)) {
+			long id = fix.getChangelistId();
+			if (ids.contains(id)) {
+				fixes.computeIfAbsent(id, k -> new ArrayList<>()).add(fix);
+			}
+		}
+		return fixes;
+	}
+
+	private Map<String, String> getEmails(Iterable<IChangelistSummary> summaries) throws Exception {
+		Set<String> users = new HashSet<>();
+		for (IChangelistSummary summary : summaries) {
+			if (summary.getUsername() != null) {
+				users.add(summary.getUsername());
+			}
+		}
+		if (users.isEmpty()) {
+			return new HashMap<>();
+		}
+		return p4.getEmails(users);
+	}
+}
@@ -1,6 +1,5 @@
 package org.jenkinsci.plugins.p4.changes;
 
-import com.perforce.p4java.core.IChangelistSummary;
 import com.perforce.p4java.core.IFix;
 import com.perforce.p4java.core.file.FileAction;
 import com.perforce.p4java.exception.P4JavaException;
@@ -183,8 +182,7 @@ public class P4ChangeParser extends ChangeLogParser {
 						// Add changelist to entry
 						if (qName.equalsIgnoreCase("changenumber")) {
 							int id = Integer.parseInt(text.toString());
-							IChangelistSummary summary = p4.getChangeSummary(id);
-							entry.setChange(p4, summary);
+							entry.setChange(p4, id);
 						}
 
 						// Add label to entry
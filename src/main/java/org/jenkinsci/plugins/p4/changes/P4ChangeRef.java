@@ -1,6 +1,5 @@
 package org.jenkinsci.plugins.p4.changes;
 
-import com.perforce.p4java.core.IChangelistSummary;
 import com.perforce.p4java.core.file.IFileSpec;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import org.jenkinsci.plugins.p4.client.ClientHelper;
@@ -23,8 +22,7 @@ public class P4ChangeRef implements P4Ref {
 	@Override
 	public P4ChangeEntry getChangeEntry(ClientHelper p4) throws Exception {
 		P4ChangeEntry cl = new P4ChangeEntry();
-		IChangelistSummary summary = p4.getChangeSummary(change);
-		cl.setChange(p4, summary);
+		cl.setChange(p4, change);
 		return cl;
 	}
 
@@ -45,7 +43,12 @@ public class P4ChangeRef implements P4Ref {
 
 	@Override
 	public List<IFileSpec> getFiles(ConnectionHelper p4, int limit) throws Exception {
-		return p4.getChangeFiles(change, limit);
+		ChangeStore.Metadata metadata = ChangeStore.get(p4, change, limit, false);
+		if (metadata == null) {
+			return p4.getChangeFiles(change, limit);
+		}
+		List<IFileSpec> files = metadata.getFiles();
+		return (files.size() > limit) ? files.subList(0, limit) : files;
 	}
 
 	@Override
@@ -1,6 +1,5 @@
 package org.jenkinsci.plugins.p4.changes;
 
-import com.perforce.p4java.core.IChangelistSummary;
 import com.perforce.p4java.core.file.IFileSpec;
 import org.jenkinsci.plugins.p4.client.ClientHelper;
 import org.jenkinsci.plugins.p4.client.ConnectionHelper;
@@ -21,8 +20,7 @@ public class P4PollRef implements P4Ref {
 	@Override
 	public P4ChangeEntry getChangeEntry(ClientHelper p4) throws Exception {
 		P4ChangeEntry cl = new P4ChangeEntry();
-		IChangelistSummary summary = p4.getChangeSummary(change);
-		cl.setChange(p4, summary);
+		cl.setChange(p4, change);
 		return cl;
 	}
 
@@ -1,6 +1,5 @@
 package org.jenkinsci.plugins.p4.changes;
 
-import com.perforce.p4java.core.IChangelistSummary;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import org.jenkinsci.plugins.p4.client.ClientHelper;
 
@@ -49,8 +48,7 @@ public class P4Revision implements Serializable, Comparable {
 		if (isLabel) {
 			cl.setLabel(p4, label);
 		} else {
-			IChangelistSummary summary = p4.getChangeSummary(change);
-			cl.setChange(p4, summary);
+			cl.setChange(p4, change);
 		}
 		return cl;
 	}
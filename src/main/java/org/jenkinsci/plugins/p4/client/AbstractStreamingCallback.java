@@ -1,7 +1,9 @@
 package org.jenkinsci.plugins.p4.client;
 
+import com.perforce.p4java.core.file.IFileSpec;
 import com.perforce.p4java.exception.P4JavaException;
 import com.perforce.p4java.impl.mapbased.server.Server;
+import com.perforce.p4java.impl.mapbased.server.cmd.ResultListBuilder;
 import com.perforce.p4java.server.IServer;
 import com.perforce.p4java.server.callback.ICommandCallback;
 import com.perforce.p4java.server.callback.IStreamingCallback;
@@ -9,6 +11,7 @@ import hudson.model.TaskListener;
 import org.jenkinsci.plugins.p4.console.P4Logging;
 
 import java.util.Map;
+import java.util.regex.Pattern;
 
 public abstract class AbstractStreamingCallback implements IStreamingCallback {
 
@@ -20,6 +23,10 @@ public abstract class AbstractStreamingCallback implements IStreamingCallback {
 	private final Validate validate;
 	private final TaskListener listener;
 
+	// reused for each logged file
+	private final StringBuilder msg = new StringBuilder();
+	private Boolean quiet = null;
+
 	public AbstractStreamingCallback(IServer iserver, TaskListener listener) {
 		this.server = (Server) iserver;
 		this.listener = listener;
@@ -28,6 +35,7 @@ public abstract class AbstractStreamingCallback implements IStreamingCallback {
 
 	@Override
 	public boolean startResults(int key) {
+		quiet = null;
 		return true;
 	}
 
@@ -68,7 +76,12 @@ public abstract class AbstractStreamingCallback implements IStreamingCallback {
 		return validate;
 	}
 
-	protected void log(Map<String, Object> map) {
+	/**
+	 * Log a file result as 'depotFile#rev - clientFile action'.
+	 *
+	 * @param map result map
+	 */
+	protected synchronized void log(Map<String, Object> map) {
 		if (listener == null) {
 			return;
 		}
@@ -78,24 +91,62 @@ public abstract class AbstractStreamingCallback implements IStreamingCallback {
 		}
 
 		// Skip logging if quiet is set in the P4Logging callback handler.
-		if(isQuiet()) {
+		if (isQuiet()) {
 			return;
 		}
 
-		StringBuilder msg = new StringBuilder();
-		String action = (map.get("action") == null) ? "" : (String) map.get("action");
-		String clientFile = (map.get("clientFile") == null) ? "" : (String) map.get("clientFile");
-		String depotFile = (map.get("depotFile") == null) ? "" : (String) map.get("depotFile");
-		String rev = (map.get("rev") == null) ? "" : (String) map.get("rev");
-
-		msg.append(depotFile + "#" + rev);
+		msg.setLength(0);
+		append(map, "depotFile");
+		msg.append('#');
+		append(map, "rev");
 		msg.append(" - ");
-		msg.append(clientFile + " ");
-		msg.append(action);
+		append(map, "clientFile");
+		msg.append(' ');
+		append(map, "action");
 		listener.getLogger().println(msg);
 	}
 
+	private void append(Map<String, Object> map, String key) {
+		Object value = map.get(key);
+		if (value != null) {
+			msg.append(value);
+		}
+	}
+
+	/**
+	 * Validate a result. File results need no further work; only messages
+	 * (results with a 'code0' entry) are converted into a file spec and checked.
+	 *
+	 * @param map    result map
+	 * @param ignore messages to ignore, from {@link Validate#compile(String...)}
+	 * @throws P4JavaException for unknown errors
+	 */
+	protected void check(Map<String, Object> map, Pattern ignore) throws P4JavaException {
+		if (map == null || !map.containsKey("code0")) {
+			return;
+		}
+
+		IFileSpec spec = ResultListBuilder.handleFileReturn(map, getServer());
+		try {
+			getValidate().check(spec, ignore);
+		} catch (Exception e) {
+			setFail();
+			P4JavaException exception = new P4JavaException(e);
+			setException(exception);
+			// re-throw exception as AbortException is only used if !quiet
+			throw exception;
+		}
+	}
+
+	// Looked up once per command, as reading the callback means resetting it.
 	private boolean isQuiet() {
+		if (quiet == null) {
+			quiet = lookupQuiet();
+		}
+		return quiet;
+	}
+
+	private boolean lookupQuiet() {
 		// Have to fetch callback then reset it - need a getter in P4Java
 		ICommandCallback callback = server.registerCallback(null);
 		server.registerCallback(callback);
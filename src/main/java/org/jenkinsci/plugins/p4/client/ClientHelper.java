@@ -34,6 +34,7 @@ import com.perforce.p4java.option.server.OpenedFilesOptions;
 import com.perforce.p4java.server.CmdSpec;
 import com.perforce.p4java.server.IServerInfo;
 import hudson.AbortException;
+import hudson.Util;
 import hudson.model.Item;
 import hudson.model.ItemGroup;
 import hudson.model.TaskListener;
@@ -50,6 +51,7 @@ import org.jenkinsci.plugins.p4.populate.ForceCleanImpl;
 import org.jenkinsci.plugins.p4.populate.GraphHybridImpl;
 import org.jenkinsci.plugins.p4.populate.ParallelSync;
 import org.jenkinsci.plugins.p4.populate.Populate;
+import org.jenkinsci.plugins.p4.populate.ReferenceSyncImpl;
 import org.jenkinsci.plugins.p4.populate.SyncOnlyImpl;
 import org.jenkinsci.plugins.p4.publish.CommitImpl;
 import org.jenkinsci.plugins.p4.publish.Publish;
@@ -81,6 +83,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import static org.jenkinsci.plugins.p4.console.P4ConsoleAnnotator.COMMAND;
 import static org.jenkinsci.plugins.p4.console.P4ConsoleAnnotator.STOP;
@@ -351,6 +354,178 @@ public class ClientHelper extends ConnectionHelper {
 		log("duration: " + timer + "\n");
 	}
 
+	/**
+	 * Sync files to workspace at the specified change, seeding an empty
+	 * workspace from the agent's reference copy of the same view first, so
+	 * only the difference is synced. A full sync into an empty workspace is
+	 * kept as the reference for the view.
+	 *
+	 * @param buildChange   Change to sync from
+	 * @param populate      Reference sync options
+	 * @param referenceRoot Reference cache directory on this node
+	 * @throws Exception push up stack
+	 */
+	public void syncReference(P4Ref buildChange, ReferenceSyncImpl populate, String referenceRoot) throws Exception {
+		if (!(buildChange instanceof P4ChangeRef) || referenceRoot == null || referenceRoot.isEmpty()) {
+			syncFiles(buildChange, populate);
+			return;
+		}
+
+		Path root = Paths.get(getDecodedRoot());
+		ReferenceCache cache = new ReferenceCache(new File(referenceRoot), populate.getMaxSize());
+		String key = getReferenceKey();
+		boolean empty = isEmptyWorkspace(root);
+
+		ReferenceCache.Reference ref = empty ? cache.lookup(key) : null;
+		if (ref != null) {
+			TimeTask timer = new TimeTask();
+			log("P4 Task: seeding workspace from reference at change: " + ref.getChange());
+			try {
+				long bytes = cache.seed(ref, root, populate.isLink());
+				String revisions = iclient.getRoot() + "/...@" + ref.getChange();
+				syncHaveList(revisions, populate);
+				log("... seeded " + bytes + " bytes from reference, not synced from server.");
+				log("duration: " + timer + "\n");
+			} catch (IOException e) {
+				log("P4 Task: unable to seed from reference, syncing in full: " + e.getMessage());
+				silentlyForceDelete(root.toString());
+			}
+		}
+
+		syncFiles(buildChange, populate);
+
+		// keep a copy of a full sync for the next empty workspace
+		if (empty && ref == null) {
+			try {
+				ReferenceCache.Reference stored = cache.store(key, buildChange.getChange(), root);
+				if (stored != null) {
+					log("P4 Task: saved reference at change: " + stored.getChange() + " (" + stored.getSize() + " bytes)");
+				}
+			} catch (IOException e) {
+				log("P4 Task: unable to save reference: " + e.getMessage());
+			}
+		}
+		cache.evict(key);
+	}
+
+	/**
+	 * Sync a pipeline library at a change, copying it from the node's library
+	 * cache when the same library and change were synced before, in place of
+	 * syncing from the server. A library synced in full is kept in the cache.
+	 *
+	 * @param buildChange Change to sync
+	 * @param populate    Populate options
+	 * @param cacheRoot   Library cache directory on this node
+	 * @param library     Library depot path
+	 * @param maxGb       Max size of the library cache (GB)
+	 * @throws Exception push up stack
+	 */
+	public void syncLibrary(P4Ref buildChange, Populate populate, String cacheRoot, String library, int maxGb) throws Exception {
+		if (!(buildChange instanceof P4ChangeRef) || cacheRoot == null || cacheRoot.isEmpty()) {
+			syncFiles(buildChange, populate);
+			return;
+		}
+
+		Path root = Paths.get(getDecodedRoot());
+		boolean empty = true;
+		if (Files.isDirectory(root)) {
+			try (Stream<Path> list = Files.list(root)) {
+				empty = !list.findAny().isPresent();
+			}
+		}
+
+		ReferenceCache cache = new ReferenceCache(new File(cacheRoot), maxGb);
+		String key = getLibraryKey(library, buildChange.getChange());
+		ReferenceCache.Reference ref = empty ? cache.lookup(key) : null;
+		if (ref != null) {
+			TimeTask timer = new TimeTask();
+			log("P4 Task: copying library " + library + " at change: " + ref.getChange());
+			try {
+				long bytes = cache.seed(ref, root, false);
+				String revisions = iclient.getRoot() + "/...@" + ref.getChange();
+				syncHaveList(revisions, populate);
+				log("... copied " + bytes + " bytes from library cache, not synced from server.");
+				log("duration: " + timer + "\n");
+				return;
+			} catch (IOException e) {
+				// e.g. evicted while copying
+				log("P4 Task: unable to copy library, syncing in full: " + e.getMessage());
+				silentlyForceDelete(root.toString());
+			}
+		}
+
+		syncFiles(buildChange, populate);
+
+		if (empty) {
+			try {
+				ReferenceCache.Reference stored = cache.store(key, buildChange.getChange(), root);
+				if (stored != null) {
+					log("P4 Task: saved library at change: " + stored.getChange() + " (" + stored.getSize() + " bytes)");
+				}
+			} catch (IOException e) {
+				log("P4 Task: unable to save library: " + e.getMessage());
+			}
+		}
+		cache.evict(key);
+	}
+
+	// The library key covers the server, library path, change, options and line endings
+	private String getLibraryKey(String library, long change) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append(getConnection().getServerInfo().getServerAddress()).append("\n");
+		sb.append(library).append("@").append(change).append("\n");
+		sb.append(iclient.getOptions()).append("\n");
+		sb.append(iclient.getLineEnd()).append("\n");
+		return Util.getDigestOf(sb.toString());
+	}
+
+	/**
+	 * The reference key covers everything that shapes the files on disk: the
+	 * server, the view (with the client name removed), options and line endings.
+	 */
+	private String getReferenceKey() throws Exception {
+		String name = iclient.getName();
+		StringBuilder sb = new StringBuilder();
+		sb.append(getConnection().getServerInfo().getServerAddress()).append("\n");
+		sb.append(iclient.getOptions()).append("\n");
+		sb.append(iclient.getLineEnd()).append("\n");
+		ClientView view = iclient.getClientView();
+		if (view != null) {
+			for (IClientViewMapping entry : view) {
+				String right = entry.getRight().replace("//" + name + "/", "//");
+				sb.append(entry.getType()).append(" ").append(entry.getLeft()).append(" ").append(right).append("\n");
+			}
+		}
+		return Util.getDigestOf(sb.toString());
+	}
+
+	private boolean isEmptyWorkspace(Path root) throws Exception {
+		if (Files.isDirectory(root)) {
+			try (Stream<Path> list = Files.list(root)) {
+				if (list.findAny().isPresent()) {
+					return false;
+				}
+			}
+		}
+
+		String path = "//" + iclient.getName() + "/...";
+		String[] args = new String[]{"-m", "1", "-Rh", "-T", "depotFile", path};
+		List<Map<String, Object>> results = getConnection().execMapCmdList(CmdSpec.FSTAT, args, null);
+		if (results != null) {
+			for (Map<String, Object> map : results) {
+				if (map != null && map.containsKey("depotFile")) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private String getDecodedRoot() {
+		String encodedRoot = iclient.getRoot().replace("+", "%2B");
+		return URLDecoder.decode(encodedRoot, StandardCharsets.UTF_8);
+	}
+
 	/**
 	 * Preview a sync, no have list update and no files
 	 * <p>
@@ -494,16 +669,34 @@ public class ClientHelper extends ConnectionHelper {
 		// Only use quiet populate option to insure a clean sync
 		boolean quiet = populate.isQuiet();
 		Populate clean = new AutoCleanImpl(false, false, false, false, quiet, null, null);
+
+		// move the workspace aside to delete in the background; only the have list needs clearing
+		String root = getDecodedRoot();
+		Path trash = moveAside(root);
+		if (trash != null) {
+			log("... mv " + root + " " + trash);
+			log("");
+			syncHaveList(revisions, clean);
+			return;
+		}
+
 		syncFiles(revisions, clean);
 
 		// remove all files from workspace
-		String encodedRoot = iclient.getRoot().replace("+", "%2B");
-		String root = URLDecoder.decode(encodedRoot, StandardCharsets.UTF_8);
 		log("... rm -rf " + root);
 		log("");
 		silentlyForceDelete(root);
 	}
 
+	private Path moveAside(String root) {
+		try {
+			return WorkspaceTrash.moveAside(Paths.get(root));
+		} catch (IOException | RuntimeException e) {
+			log("Unable to move workspace aside, deleting in place... " + e.getLocalizedMessage());
+			return null;
+		}
+	}
+
 	private void silentlyForceDelete(String root) throws IOException {
 		try {
 			FileUtils.forceDelete(new File(root));
@@ -517,23 +710,9 @@ public class ClientHelper extends ConnectionHelper {
 
 			log("Unable to delete, trying alternative method... " + alt.getLocalizedMessage());
 
-			List<Path> pathsToDelete = Files.walk(pathToDelete)
-					.sorted(Comparator.reverseOrder())
-					.toList();
-			boolean success = true;
-			for (Path path : pathsToDelete) {
-				try {
-					path.toFile().setWritable(true);
-					Files.deleteIfExists(path);
-				} catch (IOException e) {
-					success = false;
-					log("Unable to delete path: " + path + " error: " + e.getLocalizedMessage());
-					// continue to delete other paths
-				}
-			}
-
+			boolean success = WorkspaceTrash.delete(pathToDelete);
 			if (!success) {
-				throw new IOException("Unable to delete all files (see log for details).");
+				throw new IOException("Unable to delete all files (see system log for details).");
 			}
 		}
 	}
@@ -1271,36 +1450,7 @@ public class ClientHelper extends ConnectionHelper {
 	 * @throws Exception push up stack
 	 */
 	public List<P4Ref> listChanges(List<P4Ref> fromRefs, P4Ref to) throws Exception {
-
-		P4Ref from = getSingleChange(fromRefs);
-
-		// return empty array, if from and to are equal, or Perforce will report
-		// a change
-		if (from.equals(to)) {
-			return new ArrayList<>();
-		}
-
-		// JENKINS-68516: skip changelist calculation if maxChanges=0.
-		if (getMaxChangeLimit() <= 0) {
-			return new ArrayList<>();
-		}
-
-		String ws = "//" + iclient.getName() + "/...@" + from + "," + to;
-		List<P4Ref> list = listChanges(ws);
-		if (!from.isLabel()) {
-			list.remove(from);
-		}
-		return list;
-	}
-
-	private P4Ref getSingleChange(List<P4Ref> refs) {
-		// fetch single change and ignore commits
-		for (P4Ref ref : refs) {
-			if (!ref.isCommit()) {
-				return ref;
-			}
-		}
-		return null;
+		return listClientChanges(iclient.getName(), fromRefs, to);
 	}
 
 	/**
@@ -1320,6 +1470,37 @@ public class ClientHelper extends ConnectionHelper {
 		return list;
 	}
 
+	/**
+	 * Show all changes with files under any of the depot paths, from the
+	 * 'from' change to now. Used to let the server filter polled changes.
+	 *
+	 * @param fromRefs List of from revisions
+	 * @param paths    Depot paths, e.g. <code>//depot/main/...</code>
+	 * @return List of changes, or null if the list may be cut short by the
+	 * change limit or 'from' is not a change
+	 * @throws Exception push up stack
+	 */
+	public List<P4Ref> listPathChanges(List<P4Ref> fromRefs, List<String> paths) throws Exception {
+		P4Ref from = getSingleChange(fromRefs);
+		if (from == null || from.getChange() <= 0) {
+			return null;
+		}
+		if (paths.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		List<String> specs = new ArrayList<>();
+		for (String path : paths) {
+			specs.add(path + "@" + from + ",now");
+		}
+		List<P4Ref> list = listChanges(specs);
+		if (list.size() >= getMaxChangeLimit()) {
+			return null;
+		}
+		list.remove(from);
+		return list;
+	}
+
 	/**
 	 * Show all changes within the scope of the client.
 	 *
@@ -1331,31 +1512,6 @@ public class ClientHelper extends ConnectionHelper {
 		return listChanges(ws);
 	}
 
-	private List<P4Ref> listChanges(String ws) throws Exception {
-		List<P4Ref> list = new ArrayList<>();
-		GetChangelistsOptions opts = new GetChangelistsOptions();
-		opts.setMaxMostRecent(getMaxChangeLimit());
-
-		List<IFileSpec> spec = FileSpecBuilder.makeFileSpecList(ws);
-		List<IChangelistSummary> cngs = getConnection().getChangelists(spec, opts);
-		if (cngs != null) {
-			for (IChangelistSummary c : cngs) {
-				// don't try to add null or -1 changes
-				if (c != null && c.getId() != -1) {
-					P4Ref rev = new P4ChangeRef(c.getId());
-					// don't add change entries already in the list
-					if (!(list.contains(rev))) {
-						list.add(rev);
-					}
-				}
-			}
-		}
-
-		Collections.sort(list);
-		Collections.reverse(list);
-		return list;
-	}
-
 	/**
 	 * Fetches a list of changes needed to update the workspace to head.
 	 *
@@ -0,0 +1,240 @@
+package org.jenkinsci.plugins.p4.client;
+
+import com.perforce.p4java.client.IClientViewMapping;
+import com.perforce.p4java.impl.generic.client.ClientView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maps between client and depot paths using a client view, without asking
+ * the server (as 'p4 where' would).
+ * <p>
+ * Later lines override earlier ones and exclude ('-') lines are honoured.
+ * Views with overlay ('+') or ditto ('&amp;') lines are not supported; nor
+ * are lines whose wildcards do not pair up. A path the mapper cannot decide
+ * returns null, so the caller can ask the server instead.
+ */
+public class ClientViewMapper {
+
+	private static final Pattern LINE = Pattern.compile("^\\s*(\"[^\"]*\"|\\S+)\\s+(\"[^\"]*\"|\\S+)\\s*$");
+	private static final Pattern WILDCARD = Pattern.compile("\\.\\.\\.|\\*|%%[1-9]");
+
+	private final List<Mapping> mappings;
+
+	private ClientViewMapper(List<Mapping> mappings) {
+		this.mappings = mappings;
+	}
+
+	/**
+	 * @param lines Client view lines, e.g. <code>//depot/main/... //client/...</code>
+	 * @return a mapper, or null if the view is not supported
+	 */
+	public static ClientViewMapper parse(List<String> lines) {
+		if (lines == null) {
+			return null;
+		}
+		List<Mapping> mappings = new ArrayList<>();
+		for (String line : lines) {
+			if (line == null || line.trim().isEmpty()) {
+				continue;
+			}
+			Mapping mapping = Mapping.parse(line);
+			if (mapping == null) {
+				return null;
+			}
+			mappings.add(mapping);
+		}
+		return mappings.isEmpty() ? null : new ClientViewMapper(mappings);
+	}
+
+	/**
+	 * @param view Client view of a client spec
+	 * @return a mapper, or null if the view is not supported
+	 */
+	public static ClientViewMapper fromView(ClientView view) {
+		if (view == null) {
+			return null;
+		}
+		List<String> lines = new ArrayList<>();
+		for (IClientViewMapping mapping : view) {
+			lines.add(mapping.toString(" ", true));
+		}
+		return parse(lines);
+	}
+
+	/**
+	 * @param clientPath Client path, e.g. <code>//client/Jenkinsfile</code>
+	 * @return depot path, or null if not mapped
+	 */
+	public String toDepot(String clientPath) {
+		for (int i = mappings.size() - 1; i >= 0; i--) {
+			Mapping mapping = mappings.get(i);
+			String depotPath = mapping.translate(mapping.right, mapping.left, clientPath);
+			if (depotPath == null) {
+				continue;
+			}
+			if (mapping.exclude) {
+				return null;
+			}
+
+			// a later line may exclude the depot file or map it elsewhere
+			for (int j = i + 1; j < mappings.size(); j++) {
+				Mapping later = mappings.get(j);
+				String other = later.translate(later.left, later.right, depotPath);
+				if (other != null && (later.exclude || !other.equals(clientPath))) {
+					return null;
+				}
+			}
+			return depotPath;
+		}
+		return null;
+	}
+
+	/**
+	 * @param depotPath Depot path, e.g. <code>//depot/main/Jenkinsfile</code>
+	 * @return client path, or null if not mapped
+	 */
+	public String toClient(String depotPath) {
+		for (int i = mappings.size() - 1; i >= 0; i--) {
+			Mapping mapping = mappings.get(i);
+			String clientPath = mapping.translate(mapping.left, mapping.right, depotPath);
+			if (clientPath == null) {
+				continue;
+			}
+			if (mapping.exclude) {
+				return null;
+			}
+			// the client file may be taken by a later line
+			return depotPath.equals(toDepot(clientPath)) ? clientPath : null;
+		}
+		return null;
+	}
+
+	private static final class Mapping {
+		private final boolean exclude;
+		private final Side left;
+		private final Side right;
+
+		private Mapping(boolean exclude, Side left, Side right) {
+			this.exclude = exclude;
+			this.left = left;
+			this.right = right;
+		}
+
+		private static Mapping parse(String line) {
+			Matcher matcher = LINE.matcher(line);
+			if (!matcher.matches()) {
+				return null;
+			}
+			String lhs = unquote(matcher.group(1));
+			String rhs = unquote(matcher.group(2));
+
+			boolean exclude = false;
+			if (lhs.startsWith("-")) {
+				exclude = true;
+				lhs = lhs.substring(1);
+			}
+			if (!lhs.startsWith("//") || !rhs.startsWith("//")) {
+				// overlay, ditto or malformed lines
+				return null;
+			}
+
+			Side left = new Side(lhs);
+			Side right = new Side(rhs);
+			if (!left.pairs(right)) {
+				return null;
+			}
+			return new Mapping(exclude, left, right);
+		}
+
+		// match a path on one side and fill in the wildcards of the other
+		private String translate(Side from, Side to, String path) {
+			Matcher matcher = from.pattern.matcher(path);
+			if (!matcher.matches()) {
+				return null;
+			}
+			Map<String, String> values = new HashMap<>();
+			int positional = 0;
+			for (int g = 0; g < from.wildcards.size(); g++) {
+				values.put(from.key(g, positional), matcher.group(g + 1));
+				if (!from.wildcards.get(g).startsWith("%%")) {
+					positional++;
+				}
+			}
+
+			StringBuilder sb = new StringBuilder();
+			positional = 0;
+			for (int t = 0; t < to.literals.size(); t++) {
+				sb.append(to.literals.get(t));
+				if (t < to.wildcards.size()) {
+					sb.append(values.get(to.key(t, positional)));
+					if (!to.wildcards.get(t).startsWith("%%")) {
+						positional++;
+					}
+				}
+			}
+			return sb.toString();
+		}
+
+		private static String unquote(String s) {
+			if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"")) {
+				return s.substring(1, s.length() - 1);
+			}
+			return s;
+		}
+	}
+
+	private static final class Side {
+		private final List<String> literals = new ArrayList<>();
+		private final List<String> wildcards = new ArrayList<>();
+		private final Pattern pattern;
+
+		private Side(String path) {
+			StringBuilder regex = new StringBuilder();
+			Matcher matcher = WILDCARD.matcher(path);
+			int last = 0;
+			while (matcher.find()) {
+				String literal = path.substring(last, matcher.start());
+				literals.add(literal);
+				regex.append(Pattern.quote(literal));
+				String wildcard = matcher.group();
+				wildcards.add(wildcard);
+				regex.append("...".equals(wildcard) ? "(.*)" : "([^/]*)");
+				last = matcher.end();
+			}
+			String tail = path.substring(last);
+			literals.add(tail);
+			regex.append(Pattern.quote(tail));
+			pattern = Pattern.compile(regex.toString());
+		}
+
+		// positional wildcards pair by order and type, %%n by number
+		private String key(int index, int positional) {
+			String wildcard = wildcards.get(index);
+			return wildcard.startsWith("%%") ? wildcard : wildcard + positional;
+		}
+
+		private boolean pairs(Side other) {
+			List<String> mine = keys();
+			List<String> theirs = other.keys();
+			return mine.size() == theirs.size() && mine.containsAll(theirs);
+		}
+
+		private List<String> keys() {
+			List<String> keys = new ArrayList<>();
+			int positional = 0;
+			for (int g = 0; g < wildcards.size(); g++) {
+				keys.add(key(g, positional));
+				if (!wildcards.get(g).startsWith("%%")) {
+					positional++;
+				}
+			}
+			return keys;
+		}
+	}
+}
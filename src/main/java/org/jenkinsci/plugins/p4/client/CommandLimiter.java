@@ -0,0 +1,322 @@
+package org.jenkinsci.plugins.p4.client;
+
+import com.perforce.p4java.server.IOptionsServer;
+import hudson.AbortException;
+import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Controller-wide admission control for work sent to a Perforce server.
+ * <p>
+ * Each P4PORT has a fair queue per priority class (build, poll, scan and UI)
+ * with its own limit on concurrent operations; work started on an agent is
+ * admitted on the controller before the task is sent and holds its permit
+ * until the task returns. Work without a known P4PORT is not queued. A thread
+ * that already holds a permit for a server is not queued again (e.g. a task
+ * run on the built-in node), so nested operations cannot deadlock.
+ * <p>
+ * Limits are set with the system properties
+ * <code>org.jenkinsci.plugins.p4.client.CommandLimiter.build</code>,
+ * <code>.poll</code>, <code>.scan</code> and <code>.ui</code> (0, the default,
+ * is unlimited); <code>.uiTimeout</code> (seconds) bounds the UI wait.
+ */
+public class CommandLimiter {
+
+	private static Logger logger = Logger.getLogger(CommandLimiter.class.getName());
+
+	private static final String PREFIX = CommandLimiter.class.getName();
+
+	public static final long DEFAULT_UI_TIMEOUT = 5;
+
+	private static final long uiTimeout = TimeUnit.SECONDS.toMillis(Long.getLong(PREFIX + ".uiTimeout", DEFAULT_UI_TIMEOUT));
+
+	public enum Priority {
+		BUILD, POLL, SCAN, UI;
+
+		int getLimit() {
+			return Integer.getInteger(PREFIX + "." + name().toLowerCase(Locale.ENGLISH), 0);
+		}
+	}
+
+	private static final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+	// ports (and depth) admitted to the current thread
+	private static final ThreadLocal<Map<String, Integer>> held = ThreadLocal.withInitial(HashMap::new);
+
+	private CommandLimiter() {
+	}
+
+	/**
+	 * Wait for admission to a server.
+	 *
+	 * @param p4port   P4PORT
+	 * @param priority class of work
+	 * @return permit to close when the work is done
+	 * @throws InterruptedException if interrupted while queued
+	 */
+	public static Permit acquire(String p4port, Priority priority) throws InterruptedException {
+		return enter(p4port, priority, -1);
+	}
+
+	/**
+	 * Wait for admission to the server of a credential.
+	 *
+	 * @param credential P4 credential (may be null)
+	 * @param priority   class of work
+	 * @return permit to close when the work is done
+	 * @throws InterruptedException if interrupted while queued
+	 */
+	public static Permit acquire(P4BaseCredentials credential, Priority priority) throws InterruptedException {
+		String p4port = (credential == null) ? null : credential.getFullP4port();
+		return enter(p4port, priority, -1);
+	}
+
+	/**
+	 * Wait for admission to a server for at most the given time.
+	 *
+	 * @param p4port   P4PORT
+	 * @param priority class of work
+	 * @param timeout  max wait in milliseconds
+	 * @return permit to close when the work is done
+	 * @throws InterruptedException if interrupted while queued
+	 * @throws AbortException       if not admitted in time
+	 */
+	public static Permit acquire(String p4port, Priority priority, long timeout)
+			throws InterruptedException, AbortException {
+		Permit permit = enter(p4port, priority, timeout);
+		if (permit == null) {
+			throw new AbortException("P4: too many " + priority + " operations queued for " + p4port);
+		}
+		return permit;
+	}
+
+	/**
+	 * Admission for UI requests (auto-completion, form validation) to the
+	 * server of the given connection; waits at most the UI timeout.
+	 *
+	 * @param iserver connection used by the request (may be null)
+	 * @return permit to close when the request is done
+	 * @throws InterruptedException if interrupted while queued
+	 * @throws AbortException       if not admitted in time
+	 */
+	public static Permit ui(IOptionsServer iserver) throws InterruptedException, AbortException {
+		return acquire(ConnectionFactory.getPort(iserver), Priority.UI, uiTimeout);
+	}
+
+	private static Permit enter(String p4port, Priority priority, long timeout) throws InterruptedException {
+		// no server to protect (e.g. a missing credential); the work fails on connect
+		if (p4port == null) {
+			return new Permit(null, null);
+		}
+
+		Map<String, Integer> ports = held.get();
+		Integer depth = ports.get(p4port);
+		if (depth != null) {
+			ports.put(p4port, depth + 1);
+			return new Permit(p4port, null);
+		}
+
+		Lane lane = lanes.computeIfAbsent(p4port + "\n" + priority, k -> new Lane(p4port, priority));
+		if (!lane.enter(timeout)) {
+			return null;
+		}
+		ports.put(p4port, 1);
+		return new Permit(p4port, lane);
+	}
+
+	/**
+	 * Statistics for all servers and classes, for tuning.
+	 *
+	 * @return list of statistics
+	 */
+	public static List<Stats> getStats() {
+		List<Stats> list = new ArrayList<>();
+		for (Lane lane : lanes.values()) {
+			list.add(new Stats(lane));
+		}
+		return list;
+	}
+
+	/**
+	 * Reset all queues; operations already admitted are unaffected.
+	 */
+	public static void clear() {
+		lanes.clear();
+	}
+
+	private static final class Lane {
+		private final String port;
+		private final Priority priority;
+		private final int limit;
+		private final Semaphore semaphore;
+
+		private final AtomicInteger queued = new AtomicInteger();
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicLong admitted = new AtomicLong();
+		private final AtomicLong rejected = new AtomicLong();
+		private final AtomicLong waitNanos = new AtomicLong();
+		private final AtomicLong maxWaitNanos = new AtomicLong();
+
+		private Lane(String port, Priority priority) {
+			this.port = port;
+			this.priority = priority;
+			this.limit = priority.getLimit();
+			this.semaphore = (limit > 0) ? new Semaphore(limit, true) : null;
+		}
+
+		private boolean enter(long timeout) throws InterruptedException {
+			if (semaphore == null) {
+				active.incrementAndGet();
+				admitted.incrementAndGet();
+				return true;
+			}
+
+			long start = System.nanoTime();
+			queued.incrementAndGet();
+			boolean ok = false;
+			try {
+				if (timeout < 0) {
+					semaphore.acquire();
+					ok = true;
+				} else {
+					ok = semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+				}
+			} finally {
+				queued.decrementAndGet();
+			}
+
+			long wait = System.nanoTime() - start;
+			if (!ok) {
+				rejected.incrementAndGet();
+				return false;
+			}
+			active.incrementAndGet();
+			admitted.incrementAndGet();
+			waitNanos.addAndGet(wait);
+			maxWaitNanos.accumulateAndGet(wait, Math::max);
+			if (wait > TimeUnit.SECONDS.toNanos(1)) {
+				logger.fine("P4: " + priority + " waited " + TimeUnit.NANOSECONDS.toMillis(wait) + "ms for " + port);
+			}
+			return true;
+		}
+
+		private void exit() {
+			active.decrementAndGet();
+			if (semaphore != null) {
+				semaphore.release();
+			}
+		}
+	}
+
+	/**
+	 * Admission to a server; close to release.
+	 */
+	public static final class Permit implements AutoCloseable {
+		private final String port;
+		private final Lane lane;
+		private boolean closed = false;
+
+		private Permit(String port, Lane lane) {
+			this.port = port;
+			this.lane = lane;
+		}
+
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (port == null) {
+				return;
+			}
+
+			Map<String, Integer> ports = held.get();
+			Integer depth = ports.get(port);
+			if (depth != null && depth > 1) {
+				ports.put(port, depth - 1);
+			} else {
+				ports.remove(port);
+			}
+			if (lane != null) {
+				lane.exit();
+			}
+		}
+	}
+
+	public static final class Stats {
+		private final String port;
+		private final String priority;
+		private final int limit;
+		private final int queued;
+		private final int active;
+		private final long admitted;
+		private final long rejected;
+		private final long waitMillis;
+		private final long maxWaitMillis;
+
+		private Stats(Lane lane) {
+			this.port = lane.port;
+			this.priority = lane.priority.name();
+			this.limit = lane.limit;
+			this.queued = lane.queued.get();
+			this.active = lane.active.get();
+			this.admitted = lane.admitted.get();
+			this.rejected = lane.rejected.get();
+			this.waitMillis = TimeUnit.NANOSECONDS.toMillis(lane.waitNanos.get());
+			this.maxWaitMillis = TimeUnit.NANOSECONDS.toMillis(lane.maxWaitNanos.get());
+		}
+
+		public String getPort() {
+			return port;
+		}
+
+		public String getPriority() {
+			return priority;
+		}
+
+		public int getLimit() {
+			return limit;
+		}
+
+		public int getQueued() {
+			return queued;
+		}
+
+		public int getActive() {
+			return active;
+		}
+
+		public long getAdmitted() {
+			return admitted;
+		}
+
+		public long getRejected() {
+			return rejected;
+		}
+
+		public long getWaitMillis() {
+			return waitMillis;
+		}
+
+		public long getMaxWaitMillis() {
+			return maxWaitMillis;
+		}
+
+		public long getAverageWaitMillis() {
+			return (admitted == 0) ? 0 : waitMillis / admitted;
+		}
+	}
+}
@@ -10,7 +10,10 @@ import com.perforce.p4java.server.ServerFactory;
 import hudson.util.FormValidation;
 import org.apache.commons.lang.StringUtils;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Properties;
+import java.util.WeakHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -26,15 +29,28 @@ public class ConnectionFactory {
 
 	private static IOptionsServer currentP4;
 
+	// P4PORT of each open connection, for UI admission
+	private static final Map<IOptionsServer, String> ports = Collections.synchronizedMap(new WeakHashMap<>());
+
 	/**
-	 * Returns existing connection
+	 * Returns existing connection; null once it has been released to the pool.
 	 *
 	 * @return Server connection object
 	 */
-	public static IOptionsServer getConnection() {
+	public static synchronized IOptionsServer getConnection() {
 		return currentP4;
 	}
 
+	/**
+	 * Returns the P4PORT a connection was opened with.
+	 *
+	 * @param iserver Server connection object (may be null)
+	 * @return P4PORT or null if unknown
+	 */
+	public static String getPort(IOptionsServer iserver) {
+		return (iserver == null) ? null : ports.get(iserver);
+	}
+
 	/**
 	 * Creates a server connection; provides a connection to the Perforce
 	 * Server, initially client is undefined.
@@ -59,10 +75,58 @@ public class ConnectionFactory {
 				throw e;
 			}
 		}
-		currentP4 = iserver;
+		ConnectionPool.opened();
+		ports.put(iserver, config.getPort());
+		setCurrent(iserver);
 		return iserver;
 	}
 
+	/**
+	 * Borrows an idle connection from the pool if one is available for the
+	 * given configuration and credential, otherwise opens a new connection.
+	 * Return the connection with {@link #releaseConnection}.
+	 *
+	 * @param config       Connection configuration
+	 * @param credentialId Credential ID
+	 * @return Server connection object
+	 * @throws Exception push up stack
+	 */
+	public static IOptionsServer getConnection(ConnectionConfig config, String credentialId)
+			throws Exception {
+
+		ConnectionPool.Key key = new ConnectionPool.Key(config, credentialId);
+		IOptionsServer iserver = ConnectionPool.borrow(key);
+		if (iserver != null) {
+			setCurrent(iserver);
+				return iserver;
+		}
+		return getConnection(config);
+	}
+
+	/**
+	 * Returns a connection to the pool for reuse.
+	 *
+	 * @param config       Connection configuration
+	 * @param credentialId Credential ID
+	 * @param iserver      Server connection object
+	 */
+	public static void releaseConnection(ConnectionConfig config, String credentialId, IOptionsServer iserver) {
+		// UI requests must not share a connection that is idle or leased again
+		clearCurrent(iserver);
+		ConnectionPool.Key key = new ConnectionPool.Key(config, credentialId);
+		ConnectionPool.release(key, iserver);
+	}
+
+	private static synchronized void setCurrent(IOptionsServer iserver) {
+		currentP4 = iserver;
+	}
+
+	private static synchronized void clearCurrent(IOptionsServer iserver) {
+		if (currentP4 == iserver) {
+			currentP4 = null;
+		}
+	}
+
 	// Add trust for SSL connections
 	private static void addTrust(IOptionsServer iserver, ConnectionConfig config) throws P4JavaException {
 		String serverTrust = iserver.getTrust();
@@ -2,18 +2,23 @@ package org.jenkinsci.plugins.p4.client;
 
 import com.perforce.p4java.admin.IProperty;
 import com.perforce.p4java.client.IClient;
+import com.perforce.p4java.core.IChangelist;
 import com.perforce.p4java.core.IChangelistSummary;
 import com.perforce.p4java.core.IDepot;
 import com.perforce.p4java.core.IFix;
 import com.perforce.p4java.core.ILabel;
 import com.perforce.p4java.core.IRepo;
+import com.perforce.p4java.core.IStream;
 import com.perforce.p4java.core.IStreamSummary;
 import com.perforce.p4java.core.IUser;
+import com.perforce.p4java.core.IUserSummary;
 import com.perforce.p4java.core.file.FileSpecBuilder;
+import com.perforce.p4java.core.file.FileSpecOpStatus;
 import com.perforce.p4java.core.file.IFileSpec;
 import com.perforce.p4java.exception.P4JavaException;
 import com.perforce.p4java.exception.RequestException;
 import com.perforce.p4java.graph.ICommit;
+import com.perforce.p4java.impl.generic.core.ChangelistSummary;
 import com.perforce.p4java.impl.generic.core.Label;
 import com.perforce.p4java.impl.generic.core.file.FileSpec;
 import com.perforce.p4java.option.server.CounterOptions;
@@ -24,6 +29,7 @@ import com.perforce.p4java.option.server.GetDirectoriesOptions;
 import com.perforce.p4java.option.server.GetFixesOptions;
 import com.perforce.p4java.option.server.GetPropertyOptions;
 import com.perforce.p4java.option.server.GetStreamsOptions;
+import com.perforce.p4java.option.server.GetUsersOptions;
 import com.perforce.p4java.option.server.GraphCommitLogOptions;
 import com.perforce.p4java.option.server.ReposOptions;
 import com.perforce.p4java.server.CmdSpec;
@@ -42,6 +48,8 @@ import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -141,6 +149,17 @@ public class ConnectionHelper extends SessionHelper implements AutoCloseable {
 		return streams;
 	}
 
+	/**
+	 * Get a stream spec.
+	 *
+	 * @param stream Stream path //stream/name
+	 * @return the stream spec or null if not found
+	 * @throws Exception push up stack
+	 */
+	public IStream getStream(String stream) throws Exception {
+		return getConnection().getStream(stream);
+	}
+
 	public IChangelistSummary getChangeSummary(long id) throws P4JavaException {
 		List<IFileSpec> spec = FileSpecBuilder.makeFileSpecList("@" + id);
 		GetChangelistsOptions cngOpts = new GetChangelistsOptions();
@@ -153,6 +172,68 @@ public class ConnectionHelper extends SessionHelper implements AutoCloseable {
 		return summary.get(0);
 	}
 
+	/**
+	 * Get the summary of a shelved change without a client (p4 describe -s -S).
+	 *
+	 * @param id Shelved change number
+	 * @return change summary or null if not found
+	 * @throws Exception push up stack
+	 */
+	public IChangelistSummary getShelvedChange(long id) throws Exception {
+		String cmd = CmdSpec.DESCRIBE.name();
+		String[] args = new String[]{"-s", "-S", String.valueOf(id)};
+		List<Map<String, Object>> resultMaps = getConnection().execMapCmdList(cmd, args, null);
+		if (resultMaps == null || resultMaps.isEmpty()) {
+			return null;
+		}
+		Map<String, Object> map = resultMaps.get(0);
+		if (map == null || map.get("change") == null) {
+			return null;
+		}
+		return new ChangelistSummary(map, true);
+	}
+
+	/**
+	 * Get the highest submitted change on the server (p4 changes -m1 -s submitted).
+	 * <p>
+	 * Unlike the 'change' counter, which is the highest allocated number, this
+	 * moves when a pending change holding the counter's number is submitted.
+	 *
+	 * @return change number or 0 if none
+	 * @throws P4JavaException push up stack
+	 */
+	public long getSubmittedHead() throws P4JavaException {
+		GetChangelistsOptions opts = new GetChangelistsOptions();
+		opts.setType(IChangelist.Type.SUBMITTED);
+		opts.setMaxMostRecent(1);
+		List<IChangelistSummary> changes = getConnection().getChangelists(null, opts);
+		if (changes == null || changes.isEmpty() || changes.get(0) == null) {
+			return 0L;
+		}
+		return changes.get(0).getId();
+	}
+
+	/**
+	 * List submitted changes across the whole server within a change range.
+	 *
+	 * @param from  first change (inclusive)
+	 * @param to    last change (inclusive)
+	 * @param limit Max results (-m value)
+	 * @return list of change summaries, most recent first
+	 * @throws P4JavaException push up stack
+	 */
+	public List<IChangelistSummary> getSubmittedChanges(long from, long to, int limit) throws P4JavaException {
+		List<IFileSpec> spec = FileSpecBuilder.makeFileSpecList("//...@" + from + "," + to);
+		GetChangelistsOptions opts = new GetChangelistsOptions();
+		opts.setType(IChangelist.Type.SUBMITTED);
+		opts.setMaxMostRecent(limit);
+		List<IChangelistSummary> summary = getConnection().getChangelists(spec, opts);
+		if (summary == null) {
+			return new ArrayList<>();
+		}
+		return summary;
+	}
+
 	public List<IFix> getJobs(int id) throws P4JavaException {
 		GetFixesOptions opts = new GetFixesOptions();
 		opts.setChangelistId(id);
@@ -160,6 +241,102 @@ public class ConnectionHelper extends SessionHelper implements AutoCloseable {
 		return fixes;
 	}
 
+	/**
+	 * Describe several changes in one command (p4 describe -s -m limit c1 c2 ...).
+	 *
+	 * @param ids   Change numbers
+	 * @param limit Max files per change (-m value)
+	 * @return one result map per change
+	 * @throws Exception push up stack
+	 */
+	public List<Map<String, Object>> describeChanges(List<Long> ids, int limit) throws Exception {
+		List<String> args = new ArrayList<>();
+		args.add("-s");
+		args.add("-m");
+		args.add(String.valueOf(limit));
+		for (Long id : ids) {
+			args.add(String.valueOf(id));
+		}
+		String cmd = CmdSpec.DESCRIBE.name();
+		List<Map<String, Object>> resultMaps = getConnection().execMapCmdList(cmd, args.toArray(new String[0]), null);
+		if (resultMaps == null) {
+			return new ArrayList<>();
+		}
+		return resultMaps;
+	}
+
+	/**
+	 * Get the common directory of a submitted change's files, from the 'path'
+	 * field of 'p4 describe -s -m1'.
+	 *
+	 * @param id Change number
+	 * @return depot directory (e.g. //depot/proj/main), or null if not known
+	 * @throws Exception push up stack
+	 */
+	public String getChangePath(long id) throws Exception {
+		if (!checkVersion(20141)) {
+			return null;
+		}
+		String cmd = CmdSpec.DESCRIBE.name();
+		String[] args = new String[]{"-s", "-m", "1", String.valueOf(id)};
+		List<Map<String, Object>> resultMaps = getConnection().execMapCmdList(cmd, args, null);
+		if (resultMaps == null || resultMaps.isEmpty() || resultMaps.get(0) == null) {
+			return null;
+		}
+		Object path = resultMaps.get(0).get("path");
+		if (!(path instanceof String) || !((String) path).startsWith("//")) {
+			return null;
+		}
+		String dir = (String) path;
+		if (dir.endsWith("/...")) {
+			dir = dir.substring(0, dir.length() - "/...".length());
+		}
+		return dir;
+	}
+
+	/**
+	 * Find all fixes for changes affecting a path (p4 fixes path@from,to).
+	 *
+	 * @param path Depot or client path with revision range
+	 * @return List of fixes
+	 * @throws P4JavaException push up stack
+	 */
+	public List<IFix> getFixes(String path) throws P4JavaException {
+		List<IFileSpec> spec = FileSpecBuilder.makeFileSpecList(path);
+		List<IFix> fixes = getConnection().getFixes(spec, new GetFixesOptions());
+		if (fixes == null) {
+			return new ArrayList<>();
+		}
+		return fixes;
+	}
+
+	/**
+	 * Look up the email address of several users in one command (p4 users u1 u2 ...).
+	 * Unknown users map to an empty string, as with {@link #getEmail(String)}.
+	 *
+	 * @param userNames Perforce user names
+	 * @return map of user name to email
+	 * @throws Exception push up stack
+	 */
+	public Map<String, String> getEmails(Collection<String> userNames) throws Exception {
+		Map<String, String> emails = new HashMap<>();
+		if (userNames.isEmpty()) {
+			return emails;
+		}
+		for (String name : userNames) {
+			emails.put(name, "");
+		}
+		List<IUserSummary> users = getConnection().getUsers(new ArrayList<>(userNames), new GetUsersOptions());
+		if (users != null) {
+			for (IUserSummary user : users) {
+				if (user != null && user.getLoginName() != null && user.getEmail() != null) {
+					emails.put(user.getLoginName(), user.getEmail());
+				}
+			}
+		}
+		return emails;
+	}
+
 	/**
 	 * Test if given name is a counter
 	 *
@@ -442,6 +619,64 @@ public class ConnectionHelper extends SessionHelper implements AutoCloseable {
 		return -1;
 	}
 
+	/**
+	 * Get the latest submitted change for several paths in one command.
+	 *
+	 * @param paths Perforce depot paths //foo/...
+	 * @param from  From revision (change or label)
+	 * @param to    To revision (change or label)
+	 * @return the latest change or 0 if none
+	 * @throws Exception push up stack
+	 */
+	public long getHead(List<String> paths, P4Ref from, P4Ref to) throws Exception {
+		List<String> revisionPaths = new ArrayList<>();
+		for (String path : paths) {
+			revisionPaths.add(buildRevisionLimit(path, from, to));
+		}
+		logger.info("getHead: p4 changes " + revisionPaths);
+		List<IFileSpec> spec = FileSpecBuilder.makeFileSpecList(revisionPaths);
+
+		GetChangelistsOptions opts = new GetChangelistsOptions();
+		opts.setType(IChangelist.Type.SUBMITTED);
+		opts.setMaxMostRecent(1);
+		List<IChangelistSummary> changes = getConnection().getChangelists(spec, opts);
+
+		if (!changes.isEmpty() && changes.get(0) != null) {
+			return changes.get(0).getId();
+		}
+		return 0L;
+	}
+
+	/**
+	 * List the files changed within a revision range.
+	 *
+	 * @param paths Perforce depot paths //foo/...
+	 * @param from  From revision (change or label)
+	 * @param to    To revision (change or label)
+	 * @param limit Maximum number of files
+	 * @return depot paths of the files, or null if more than the limit
+	 * @throws Exception push up stack
+	 */
+	public List<String> getChangedFiles(List<String> paths, P4Ref from, P4Ref to, int limit) throws Exception {
+		List<String> revisionPaths = new ArrayList<>();
+		for (String path : paths) {
+			revisionPaths.add(buildRevisionLimit(path + "...", from, to));
+		}
+		logger.info("getChangedFiles: p4 files " + revisionPaths);
+		List<IFileSpec> specs = FileSpecBuilder.makeFileSpecList(revisionPaths);
+
+		GetDepotFilesOptions opts = new GetDepotFilesOptions("-m" + (limit + 1));
+		List<IFileSpec> files = getConnection().getDepotFiles(specs, opts);
+
+		List<String> list = new ArrayList<>();
+		for (IFileSpec file : files) {
+			if (file.getOpStatus() == FileSpecOpStatus.VALID && file.getDepotPathString() != null) {
+				list.add(file.getDepotPathString());
+			}
+		}
+		return (list.size() > limit) ? null : list;
+	}
+
 	/**
 	 * Build a revision limit spec.
 	 *
@@ -573,6 +808,79 @@ public class ConnectionHelper extends SessionHelper implements AutoCloseable {
 		return list;
 	}
 
+	/**
+	 * Show all changes within the scope of the named client, between the
+	 * 'from' and 'to' change limits. The client must exist on the server, but
+	 * is not loaded or updated.
+	 *
+	 * @param clientName Client workspace name
+	 * @param fromRefs   list of from revisions (change or label)
+	 * @param to         To revision (change or label)
+	 * @return List of changes
+	 * @throws Exception push up stack
+	 */
+	public List<P4Ref> listClientChanges(String clientName, List<P4Ref> fromRefs, P4Ref to) throws Exception {
+
+		P4Ref from = getSingleChange(fromRefs);
+
+		// return empty array, if from and to are equal, or Perforce will report
+		// a change
+		if (from.equals(to)) {
+			return new ArrayList<>();
+		}
+
+		// JENKINS-68516: skip changelist calculation if maxChanges=0.
+		if (getMaxChangeLimit() <= 0) {
+			return new ArrayList<>();
+		}
+
+		String ws = "//" + clientName + "/...@" + from + "," + to;
+		List<P4Ref> list = listChanges(ws);
+		if (!from.isLabel()) {
+			list.remove(from);
+		}
+		return list;
+	}
+
+	protected P4Ref getSingleChange(List<P4Ref> refs) {
+		// fetch single change and ignore commits
+		for (P4Ref ref : refs) {
+			if (!ref.isCommit()) {
+				return ref;
+			}
+		}
+		return null;
+	}
+
+	protected List<P4Ref> listChanges(String ws) throws Exception {
+		return listChanges(Collections.singletonList(ws));
+	}
+
+	protected List<P4Ref> listChanges(List<String> ws) throws Exception {
+		List<P4Ref> list = new ArrayList<>();
+		GetChangelistsOptions opts = new GetChangelistsOptions();
+		opts.setMaxMostRecent(getMaxChangeLimit());
+
+		List<IFileSpec> spec = FileSpecBuilder.makeFileSpecList(ws);
+		List<IChangelistSummary> cngs = getConnection().getChangelists(spec, opts);
+		if (cngs != null) {
+			for (IChangelistSummary c : cngs) {
+				// don't try to add null or -1 changes
+				if (c != null && c.getId() != -1) {
+					P4Ref rev = new P4ChangeRef(c.getId());
+					// don't add change entries already in the list
+					if (!(list.contains(rev))) {
+						list.add(rev);
+					}
+				}
+			}
+		}
+
+		Collections.sort(list);
+		Collections.reverse(list);
+		return list;
+	}
+
 	/**
 	 * List all Graph Repos
 	 *
@@ -618,7 +926,7 @@ public class ConnectionHelper extends SessionHelper implements AutoCloseable {
 
 	@Override
 	public void close() {
-		disconnect();
+		release();
 	}
 
 	/**
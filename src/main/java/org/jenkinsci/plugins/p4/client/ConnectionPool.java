@@ -0,0 +1,293 @@
+package org.jenkinsci.plugins.p4.client;
+
+import com.perforce.p4java.server.CmdSpec;
+import com.perforce.p4java.server.IOptionsServer;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Connection Pool
+ * <p>
+ * Holds idle Perforce Server connections for reuse, keyed by P4PORT, user,
+ * P4HOST and credential. A connection is validated when borrowed, evicted
+ * once idle for too long and the number of idle connections per key is bounded.
+ * <p>
+ * Limits can be tuned with the system properties
+ * <code>org.jenkinsci.plugins.p4.client.ConnectionPool.maxIdle</code> (0 disables pooling),
+ * <code>.idleTimeout</code> and <code>.validateAfter</code> (both in seconds).
+ *
+ * @author pallen
+ */
+public class ConnectionPool {
+
+	private static Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+	public static final int DEFAULT_MAX_IDLE = 8;
+	public static final long DEFAULT_IDLE_TIMEOUT = 300;
+	public static final long DEFAULT_VALIDATE_AFTER = 30;
+
+	private static final String PREFIX = ConnectionPool.class.getName();
+
+	private static final int maxIdle = Integer.getInteger(PREFIX + ".maxIdle", DEFAULT_MAX_IDLE);
+	private static final long idleTimeout = TimeUnit.SECONDS.toMillis(Long.getLong(PREFIX + ".idleTimeout", DEFAULT_IDLE_TIMEOUT));
+	private static final long validateAfter = TimeUnit.SECONDS.toMillis(Long.getLong(PREFIX + ".validateAfter", DEFAULT_VALIDATE_AFTER));
+
+	private static final ConcurrentMap<Key, Deque<Entry>> idle = new ConcurrentHashMap<>();
+
+	private static final AtomicLong created = new AtomicLong();
+	private static final AtomicLong reused = new AtomicLong();
+	private static final AtomicLong evicted = new AtomicLong();
+
+	private ConnectionPool() {
+	}
+
+	public static boolean isEnabled() {
+		return maxIdle > 0;
+	}
+
+	/**
+	 * Borrow an idle connection, or return null if none are available.
+	 *
+	 * @param key Pool key
+	 * @return a validated connection or null
+	 */
+	public static IOptionsServer borrow(Key key) {
+		if (!isEnabled()) {
+			return null;
+		}
+		evictIdle();
+
+		Deque<Entry> entries = idle.get(key);
+		if (entries == null) {
+			return null;
+		}
+
+		Entry entry;
+		while ((entry = entries.pollFirst()) != null) {
+			if (isValid(entry)) {
+				reused.incrementAndGet();
+				logger.finer("P4: reusing pooled connection for " + key);
+				return entry.getServer();
+			}
+			close(entry.getServer());
+		}
+		return null;
+	}
+
+	/**
+	 * Return a leased connection to the pool. Callbacks and the current client
+	 * are unbound and the charset is restored so the next lease starts clean;
+	 * any failure closes the connection.
+	 *
+	 * @param key    Pool key
+	 * @param server Leased connection
+	 */
+	public static void release(Key key, IOptionsServer server) {
+		if (server == null) {
+			return;
+		}
+		if (!isEnabled() || !server.isConnected()) {
+			close(server);
+			return;
+		}
+
+		try {
+			server.registerCallback(null);
+			server.registerProgressCallback(null);
+			server.setCurrentClient(null);
+
+			// a workspace charset must not outlive the lease; login() uses utf8
+			if (server.supportsUnicode()) {
+				server.setCharsetName("utf8");
+			}
+		} catch (Exception e) {
+			logger.fine("P4: unable to reset pooled connection: " + e.getMessage());
+			close(server);
+			return;
+		}
+
+		Deque<Entry> entries = idle.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+		entries.offerFirst(new Entry(server));
+
+		// drop the least recently used connections over the limit
+		while (entries.size() > maxIdle) {
+			Entry last = entries.pollLast();
+			if (last == null) {
+				break;
+			}
+			close(last.getServer());
+		}
+	}
+
+	/**
+	 * Close a connection without returning it to the pool, e.g. after a failed login.
+	 *
+	 * @param server Leased connection
+	 */
+	public static void invalidate(IOptionsServer server) {
+		close(server);
+	}
+
+	/**
+	 * Record a newly opened connection (for reporting).
+	 */
+	static void opened() {
+		created.incrementAndGet();
+	}
+
+	/**
+	 * Close all idle connections.
+	 */
+	public static void clear() {
+		for (Deque<Entry> entries : idle.values()) {
+			Entry entry;
+			while ((entry = entries.pollFirst()) != null) {
+				close(entry.getServer());
+			}
+		}
+		idle.clear();
+	}
+
+	public static int getIdleCount() {
+		int count = 0;
+		for (Deque<Entry> entries : idle.values()) {
+			count += entries.size();
+		}
+		return count;
+	}
+
+	public static long getCreatedCount() {
+		return created.get();
+	}
+
+	public static long getReusedCount() {
+		return reused.get();
+	}
+
+	public static long getEvictedCount() {
+		return evicted.get();
+	}
+
+	private static void evictIdle() {
+		long now = System.currentTimeMillis();
+		for (Map.Entry<Key, Deque<Entry>> map : idle.entrySet()) {
+			Iterator<Entry> it = map.getValue().iterator();
+			while (it.hasNext()) {
+				Entry entry = it.next();
+				if (now - entry.getSince() > idleTimeout && map.getValue().remove(entry)) {
+					evicted.incrementAndGet();
+					close(entry.getServer());
+				}
+			}
+		}
+	}
+
+	private static boolean isValid(Entry entry) {
+		IOptionsServer server = entry.getServer();
+		if (!server.isConnected()) {
+			return false;
+		}
+
+		// skip the round trip for recently used connections
+		long age = System.currentTimeMillis() - entry.getSince();
+		if (age < validateAfter) {
+			return true;
+		}
+
+		try {
+			server.execMapCmdList(CmdSpec.INFO, new String[]{"-s"}, null);
+			return true;
+		} catch (Exception e) {
+			logger.fine("P4: pooled connection failed validation: " + e.getMessage());
+			return false;
+		}
+	}
+
+	private static void close(IOptionsServer server) {
+		if (server == null) {
+			return;
+		}
+		try {
+			server.disconnect();
+			logger.fine("P4: closed connection OK");
+		} catch (Exception e) {
+			logger.fine("P4: unable to close pooled connection: " + e.getMessage());
+		}
+	}
+
+	private static final class Entry {
+		private final IOptionsServer server;
+		private final long since;
+
+		private Entry(IOptionsServer server) {
+			this.server = server;
+			this.since = System.currentTimeMillis();
+		}
+
+		private IOptionsServer getServer() {
+			return server;
+		}
+
+		private long getSince() {
+			return since;
+		}
+	}
+
+	/**
+	 * Pool key; connections are only shared between leases with the same
+	 * server, user, host and credential. The charset is not part of the key as
+	 * it is restored when a connection is released.
+	 */
+	public static final class Key {
+		private final String serverUri;
+		private final String user;
+		private final String p4host;
+		private final String trust;
+		private final int timeout;
+		private final String credentialId;
+
+		public Key(ConnectionConfig config, String credentialId) {
+			this.serverUri = config.getServerUri();
+			this.user = config.getUserName();
+			this.p4host = config.getP4Host();
+			this.trust = config.getTrust();
+			this.timeout = config.getTimeout();
+			this.credentialId = credentialId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key key)) {
+				return false;
+			}
+			return timeout == key.timeout
+					&& Objects.equals(serverUri, key.serverUri)
+					&& Objects.equals(user, key.user)
+					&& Objects.equals(p4host, key.p4host)
+					&& Objects.equals(trust, key.trust)
+					&& Objects.equals(credentialId, key.credentialId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(serverUri, user, p4host, trust, timeout, credentialId);
+		}
+
+		@Override
+		public String toString() {
+			return user + "@" + serverUri + " (" + credentialId + ")";
+		}
+	}
+}
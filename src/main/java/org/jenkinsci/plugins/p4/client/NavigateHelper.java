@@ -50,7 +50,13 @@ public class NavigateHelper implements Closeable {
 	 */
 	public AutoCompletionCandidates getCandidates(String depotPath) {
 		nodes = new ArrayList<>();
-		buildPaths(depotPath);
+		try (CommandLimiter.Permit permit = CommandLimiter.ui(p4)) {
+			buildPaths(depotPath);
+		} catch (IOException e) {
+			logger.fine(e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 		return getCandidates();
 	}
 
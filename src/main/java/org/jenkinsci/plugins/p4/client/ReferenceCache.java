@@ -0,0 +1,294 @@
+package org.jenkinsci.plugins.p4.client;
+
+import hudson.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Agent-local cache of pristine workspace copies, one per workspace view.
+ * <p>
+ * Layout: <code>&lt;root&gt;/&lt;key&gt;/reference.properties</code> records
+ * the change the files were synced to and their size; the files are held in
+ * <code>&lt;root&gt;/&lt;key&gt;/files</code>. References are published with
+ * an atomic rename and evicted least recently used first.
+ */
+public class ReferenceCache {
+
+	private static Logger logger = Logger.getLogger(ReferenceCache.class.getName());
+
+	private static final String FILES = "files";
+	private static final String PROPERTIES = "reference.properties";
+	private static final String TMP = ".tmp-";
+
+	private static final long GB = 1024L * 1024L * 1024L;
+
+	// one writer per reference for executors on the same agent
+	private static final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+	private final Path root;
+	private final long maxBytes;
+
+	/**
+	 * @param root   Cache directory
+	 * @param maxGb  Max size of all references (GB)
+	 */
+	public ReferenceCache(File root, int maxGb) {
+		this.root = root.toPath();
+		this.maxBytes = maxGb * GB;
+	}
+
+	/**
+	 * Find a complete reference.
+	 *
+	 * @param key Reference key
+	 * @return the reference or null
+	 */
+	public Reference lookup(String key) {
+		Path dir = root.resolve(key);
+		Path props = dir.resolve(PROPERTIES);
+		if (!Files.isRegularFile(props)) {
+			return null;
+		}
+		Properties p = new Properties();
+		try (InputStream in = Files.newInputStream(props)) {
+			p.load(in);
+			long change = Long.parseLong(p.getProperty("change"));
+			long size = Long.parseLong(p.getProperty("size", "0"));
+			return new Reference(dir, change, size);
+		} catch (IOException | RuntimeException e) {
+			logger.warning("P4: unable to read reference " + dir + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Copy (or link) a reference into an empty workspace and mark it as used.
+	 *
+	 * @param ref    Reference
+	 * @param target Workspace root
+	 * @param link   Hard link files where possible
+	 * @return number of bytes seeded
+	 * @throws IOException push up stack
+	 */
+	public long seed(Reference ref, Path target, boolean link) throws IOException {
+		touch(ref.dir);
+		return copyTree(ref.dir.resolve(FILES), target, link);
+	}
+
+	/**
+	 * Keep a copy of a freshly synced workspace, unless the reference exists.
+	 *
+	 * @param key    Reference key
+	 * @param change Change the workspace was synced to
+	 * @param source Workspace root
+	 * @return the reference or null if one already existed
+	 * @throws IOException push up stack
+	 */
+	public Reference store(String key, long change, Path source) throws IOException {
+		Object lock = locks.computeIfAbsent(key, k -> new Object());
+		synchronized (lock) {
+			if (lookup(key) != null) {
+				return null;
+			}
+
+			Files.createDirectories(root);
+			Path tmp = root.resolve(key + TMP + UUID.randomUUID());
+			try {
+				long size = copyTree(source, tmp.resolve(FILES), false);
+
+				Properties p = new Properties();
+				p.setProperty("change", String.valueOf(change));
+				p.setProperty("size", String.valueOf(size));
+				try (OutputStream out = Files.newOutputStream(tmp.resolve(PROPERTIES))) {
+					p.store(out, "P4 reference workspace");
+				}
+
+				Path dir = root.resolve(key);
+				Files.move(tmp, dir, StandardCopyOption.ATOMIC_MOVE);
+				return new Reference(dir, change, size);
+			} catch (FileAlreadyExistsException e) {
+				return null;
+			} finally {
+				if (Files.exists(tmp)) {
+					Util.deleteRecursive(tmp.toFile());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove least recently used references until the cache is within its limit.
+	 *
+	 * @param keep Reference key in use (never removed)
+	 * @return number of references removed
+	 */
+	public int evict(String keep) {
+		List<Reference> refs = list();
+		long total = 0;
+		for (Reference ref : refs) {
+			total += ref.size;
+		}
+
+		refs.sort(Comparator.comparingLong(Reference::getLastUsed));
+		int removed = 0;
+		for (Reference ref : refs) {
+			if (total <= maxBytes) {
+				break;
+			}
+			if (ref.dir.getFileName().toString().equals(keep)) {
+				continue;
+			}
+			try {
+				Util.deleteRecursive(ref.dir.toFile());
+				total -= ref.size;
+				removed++;
+				logger.info("P4: evicted reference " + ref.dir);
+			} catch (IOException e) {
+				logger.warning("P4: unable to evict reference " + ref.dir + ": " + e.getMessage());
+			}
+		}
+		return removed;
+	}
+
+	List<Reference> list() {
+		List<Reference> refs = new ArrayList<>();
+		if (!Files.isDirectory(root)) {
+			return refs;
+		}
+		try (Stream<Path> dirs = Files.list(root)) {
+			dirs.forEach(dir -> {
+				String name = dir.getFileName().toString();
+				if (!name.contains(TMP)) {
+					Reference ref = lookup(name);
+					if (ref != null) {
+						refs.add(ref);
+					}
+				}
+			});
+		} catch (IOException e) {
+			logger.warning("P4: unable to list references in " + root + ": " + e.getMessage());
+		}
+		return refs;
+	}
+
+	private static void touch(Path dir) {
+		try {
+			Files.setLastModifiedTime(dir.resolve(PROPERTIES), FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			logger.fine("P4: unable to touch reference " + dir + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Copy a file tree: directories first, then the files in parallel.
+	 *
+	 * @return number of bytes copied (or linked)
+	 */
+	static long copyTree(Path source, Path target, boolean link) throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (Stream<Path> walk = Files.walk(source)) {
+			for (Path path : (Iterable<Path>) walk::iterator) {
+				Path dest = target.resolve(source.relativize(path).toString());
+				if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+					Files.createDirectories(dest);
+				} else {
+					files.add(path);
+				}
+			}
+		}
+
+		AtomicLong bytes = new AtomicLong();
+		ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		try {
+			pool.submit(() -> files.parallelStream().forEach(path -> {
+				Path dest = target.resolve(source.relativize(path).toString());
+				try {
+					bytes.addAndGet(copyFile(path, dest, link));
+				} catch (IOException e) {
+					throw new ReferenceException(e);
+				}
+			})).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (Exception e) {
+			Throwable cause = (e.getCause() instanceof ReferenceException) ? e.getCause().getCause() : e;
+			throw (cause instanceof IOException io) ? io : new IOException(cause);
+		} finally {
+			pool.shutdown();
+		}
+		return bytes.get();
+	}
+
+	private static long copyFile(Path source, Path dest, boolean link) throws IOException {
+		if (Files.isSymbolicLink(source)) {
+			Files.createSymbolicLink(dest, Files.readSymbolicLink(source));
+			return 0;
+		}
+		long size = Files.size(source);
+		if (link) {
+			try {
+				Files.createLink(dest, source);
+				return size;
+			} catch (IOException | UnsupportedOperationException e) {
+				logger.fine("P4: unable to link " + source + ", copying: " + e.getMessage());
+			}
+		}
+		Files.copy(source, dest, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+		return size;
+	}
+
+	private static final class ReferenceException extends RuntimeException {
+		private ReferenceException(IOException e) {
+			super(e);
+		}
+	}
+
+	public static final class Reference {
+		private final Path dir;
+		private final long change;
+		private final long size;
+
+		private Reference(Path dir, long change, long size) {
+			this.dir = dir;
+			this.change = change;
+			this.size = size;
+		}
+
+		public long getChange() {
+			return change;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getLastUsed() {
+			try {
+				return Files.getLastModifiedTime(dir.resolve(PROPERTIES)).toMillis();
+			} catch (IOException e) {
+				return 0;
+			}
+		}
+	}
+}
@@ -190,6 +190,21 @@ public class SessionHelper extends CredentialsHelper {
 		}
 	}
 
+	/**
+	 * Return the connection to the pool for reuse; aborted connections are closed.
+	 */
+	protected void release() {
+		if (connection == null) {
+			return;
+		}
+		if (abort) {
+			disconnect();
+			return;
+		}
+		ConnectionFactory.releaseConnection(connectionConfig, sessionId, connection);
+		logger.fine("P4: released connection OK");
+	}
+
 	/**
 	 * Disconnect from the Perforce Server.
 	 */
@@ -263,7 +278,7 @@ public class SessionHelper extends CredentialsHelper {
 	 */
 	private boolean connect() throws Exception {
 		// Connect to the Perforce server
-		this.connection = ConnectionFactory.getConnection(connectionConfig);
+		this.connection = ConnectionFactory.getConnection(connectionConfig, sessionId);
 		logger.fine("P4: opened connection OK");
 
 		// Login to Perforce
@@ -273,6 +288,8 @@ public class SessionHelper extends CredentialsHelper {
 			String err = "P4: Unable to login: " + e;
 			logger.severe(err);
 			log(err);
+			// do not return a failed connection to the pool
+			ConnectionPool.invalidate(this.connection);
 			return false;
 		}
 
@@ -3,11 +3,13 @@ package org.jenkinsci.plugins.p4.client;
 import hudson.AbortException;
 import hudson.model.Item;
 import hudson.model.TaskListener;
+import org.jenkinsci.plugins.p4.changes.P4Ref;
 import org.jenkinsci.plugins.p4.workspace.ManualWorkspaceImpl;
 import org.jenkinsci.plugins.p4.workspace.Workspace;
 import org.jenkinsci.plugins.p4.workspace.WorkspaceSpec;
 
 import java.io.Closeable;
+import java.util.List;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,6 +20,10 @@ public class TempClientHelper extends ClientHelper implements Closeable {
 
 	private final String clientUUID;
 
+	// set when a head is resolved in depot syntax, without a client
+	private List<String> depotView = null;
+	private boolean created = false;
+
 	public TempClientHelper(Item context, String credential, TaskListener listener, Workspace workspace) throws Exception {
 		super(context, credential, listener);
 		this.clientUUID = "jenkinsTemp-" + UUID.randomUUID();
@@ -28,12 +34,14 @@ public class TempClientHelper extends ClientHelper implements Closeable {
 
 	@Override
 	public void close() {
-		try {
-			deleteClient(clientUUID);
-		} catch (Exception e) {
-			LOGGER.log(Level.INFO, "Unable to remove temporary client: " + clientUUID);
+		if (created) {
+			try {
+				deleteClient(clientUUID);
+			} catch (Exception e) {
+				LOGGER.log(Level.INFO, "Unable to remove temporary client: " + clientUUID);
+			}
 		}
-		disconnect();
+		release();
 	}
 
 	public String getClientUUID() {
@@ -41,6 +49,41 @@ public class TempClientHelper extends ClientHelper implements Closeable {
 	}
 
 	public void update(Workspace workspace) throws AbortException {
+		depotView = null;
+		created = true;
+		rename(workspace);
+		clientLogin(workspace);
+	}
+
+	/**
+	 * Map client paths for the workspace in process, in place of creating a
+	 * client. Only manual workspaces with a plain view (no view file, limit
+	 * or change view) are mapped.
+	 *
+	 * @param workspace Workspace
+	 * @return a mapper for the temporary client's paths, or null if a client is needed
+	 * @throws Exception push up stack
+	 */
+	public ClientViewMapper map(Workspace workspace) throws Exception {
+		if (!(workspace instanceof ManualWorkspaceImpl manual) || manual.getSpec() == null || manual.getSpec().getView() == null) {
+			return null;
+		}
+		WorkspaceSpec spec = manual.getSpec();
+		if (spec.getLimitView() != null && !spec.getLimitView().isEmpty()
+				|| spec.getChangeView() != null && !spec.getChangeView().isEmpty()) {
+			return null;
+		}
+
+		rename(workspace);
+		ClientViewMapper mapper = ClientViewMapper.parse(manual.getViewLines());
+		if (mapper != null && isUnicode() && workspace.getCharset() != null) {
+			getConnection().setCharsetName(workspace.getCharset());
+		}
+		return mapper;
+	}
+
+	// give the workspace the temporary client's name, in its name and view
+	private void rename(Workspace workspace) {
 		String oldName = workspace.getName();
 		workspace.setName(clientUUID);
 
@@ -56,7 +99,37 @@ public class TempClientHelper extends ClientHelper implements Closeable {
 			}
 			manual.setSpec(spec);
 		}
+	}
 
-		clientLogin(workspace);
+	/**
+	 * Resolve changes in depot syntax over the given paths, in place of
+	 * writing a client view. Used for views with no exclude or overlay lines.
+	 *
+	 * @param view    Depot paths of the view
+	 * @param charset Charset for unicode servers
+	 * @throws Exception push up stack
+	 */
+	public void update(List<String> view, String charset) throws Exception {
+		if (isUnicode() && charset != null) {
+			getConnection().setCharsetName(charset);
+		}
+		depotView = view;
+	}
+
+	/**
+	 * @return depot paths of the view, or null if a client view is used
+	 */
+	public List<String> getDepotView() {
+		return depotView;
+	}
+
+	@Override
+	public long getClientHead(P4Ref from, P4Ref to) throws Exception {
+		if (depotView == null) {
+			return super.getClientHead(from, to);
+		}
+		long change = getHead(depotView, from, to);
+		log("P4: found " + change + " revision in " + depotView);
+		return change;
 	}
 }
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 public class Validate {
 
@@ -115,6 +116,55 @@ public class Validate {
 		return success;
 	}
 
+	/**
+	 * Compile a list of messages to ignore (case insensitive) into one pattern.
+	 *
+	 * @param ignore Parameter list of messages to ignore; empty strings are skipped
+	 * @return pattern or null if there is nothing to ignore
+	 */
+	public static Pattern compile(String... ignore) {
+		StringBuilder regex = new StringBuilder();
+		for (String istring : ignore) {
+			if (istring == null || istring.isEmpty()) {
+				continue;
+			}
+			if (regex.length() > 0) {
+				regex.append("|");
+			}
+			regex.append(Pattern.quote(istring));
+		}
+		if (regex.length() == 0) {
+			return null;
+		}
+		return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+	}
+
+	/**
+	 * Look for a message in a single FileSpec, using a precompiled ignore pattern.
+	 * Unknown messages are not logged (as with {@link #check(List, String...)}).
+	 *
+	 * @param fileSpec Perforce file spec
+	 * @param ignore   Messages to ignore, from {@link #compile(String...)} (may be null)
+	 * @return true if no errors.
+	 * @throws Exception push up stack
+	 */
+	public boolean check(IFileSpec fileSpec, Pattern ignore) throws Exception {
+		FileSpecOpStatus status = fileSpec.getOpStatus();
+		if (status == FileSpecOpStatus.VALID) {
+			return true;
+		}
+
+		String msg = fileSpec.getStatusMessage();
+		if (ignore != null && msg != null && ignore.matcher(msg).find()) {
+			return true;
+		}
+
+		if (status == FileSpecOpStatus.ERROR || status == FileSpecOpStatus.CLIENT_ERROR) {
+			throw new AbortException("P4JAVA: Error(s):\n" + msg + "\n");
+		}
+		return false;
+	}
+
 	public void log(String msg) {
 		if (listener == null) {
 			return;
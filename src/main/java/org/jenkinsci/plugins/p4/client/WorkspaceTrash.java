@@ -0,0 +1,252 @@
+package org.jenkinsci.plugins.p4.client;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Workspace deletion engine.
+ * <p>
+ * A workspace root is renamed aside into a trash directory next to it (on the
+ * same file system, so the rename is atomic and instant) and the trash is
+ * deleted in the background by a bounded fork/join walker. Trash left behind,
+ * e.g. by an agent restart, is reclaimed when the agent comes online (see
+ * {@link WorkspaceTrashListener}) or the next time a workspace in the same
+ * directory is moved aside.
+ * <p>
+ * The number of delete threads can be set with the system property
+ * <code>org.jenkinsci.plugins.p4.client.WorkspaceTrash.threads</code>.
+ */
+public class WorkspaceTrash {
+
+	private static Logger logger = Logger.getLogger(WorkspaceTrash.class.getName());
+
+	public static final String TRASH = ".p4-trash";
+
+	private static final int threads = Integer.getInteger(WorkspaceTrash.class.getName() + ".threads",
+			Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+
+	private static final long PROGRESS = 10000;
+
+	// daemon worker threads; bounded for all workspaces on the agent
+	private static final ForkJoinPool pool = new ForkJoinPool(threads);
+
+	private static final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+
+	private WorkspaceTrash() {
+	}
+
+	/**
+	 * Rename a directory into the trash and delete it in the background.
+	 *
+	 * @param root directory to remove
+	 * @return the trash path or null if the root did not exist
+	 * @throws IOException if the rename failed (the root is unchanged)
+	 */
+	public static Path moveAside(Path root) throws IOException {
+		if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+			return null;
+		}
+
+		Path parent = root.toAbsolutePath().getParent();
+		if (parent == null) {
+			throw new IOException("No parent directory for trash: " + root);
+		}
+		Path trash = parent.resolve(TRASH);
+		Files.createDirectories(trash);
+
+		Path target = trash.resolve(root.getFileName() + "-" + UUID.randomUUID());
+		Files.move(root, target, StandardCopyOption.ATOMIC_MOVE);
+
+		deleteAsync(target);
+		reclaim(trash);
+		return target;
+	}
+
+	/**
+	 * Schedule deletion of anything left in a trash directory.
+	 *
+	 * @param trash trash directory
+	 * @return number of entries scheduled
+	 */
+	public static int reclaim(Path trash) {
+		int count = 0;
+		if (!Files.isDirectory(trash)) {
+			return count;
+		}
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(trash)) {
+			for (Path entry : entries) {
+				if (deleteAsync(entry) != null) {
+					logger.info("P4: reclaiming trash " + entry);
+					count++;
+				}
+			}
+		} catch (IOException e) {
+			logger.warning("P4: unable to list trash " + trash + ": " + e.getMessage());
+		}
+		return count;
+	}
+
+	/**
+	 * Schedule deletion of trash found in a directory or its subdirectories, up
+	 * to the given depth; trash is created next to a workspace, so deeper
+	 * directories are not searched.
+	 *
+	 * @param root  directory to search, e.g. a node's workspace root
+	 * @param depth levels of subdirectories to search
+	 * @return number of entries scheduled
+	 */
+	public static int reclaimUnder(Path root, int depth) {
+		if (!Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+			return 0;
+		}
+		int count = reclaim(root.resolve(TRASH));
+		if (depth <= 0) {
+			return count;
+		}
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+			for (Path entry : entries) {
+				if (!TRASH.equals(entry.getFileName().toString()) && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+					count += reclaimUnder(entry, depth - 1);
+				}
+			}
+		} catch (IOException e) {
+			logger.warning("P4: unable to search for trash in " + root + ": " + e.getMessage());
+		}
+		return count;
+	}
+
+	/**
+	 * Delete a path in the background, unless it is already being deleted.
+	 *
+	 * @param path directory or file
+	 * @return a future for the deletion, or null if already in progress
+	 */
+	public static Future<Boolean> deleteAsync(Path path) {
+		Path key = path.toAbsolutePath();
+		if (!inFlight.add(key)) {
+			return null;
+		}
+		return pool.submit(() -> {
+			try {
+				return delete(key);
+			} finally {
+				inFlight.remove(key);
+			}
+		});
+	}
+
+	/**
+	 * Delete a path in parallel, waiting for the result.
+	 *
+	 * @param path directory or file
+	 * @return true if everything was deleted
+	 */
+	public static boolean delete(Path path) {
+		long start = System.currentTimeMillis();
+		Progress progress = new Progress(path);
+		DeleteTask task = new DeleteTask(path, progress);
+		if (ForkJoinTask.inForkJoinPool()) {
+			task.invoke();
+		} else {
+			pool.invoke(task);
+		}
+
+		long duration = System.currentTimeMillis() - start;
+		if (progress.failed.get() > 0) {
+			IOException e = progress.error.get();
+			logger.warning("P4: unable to delete " + progress.failed.get() + " paths in " + path
+					+ ((e == null) ? "" : ": " + e.getMessage()));
+			return false;
+		}
+		logger.fine("P4: deleted " + progress.deleted.get() + " paths in " + path + " (" + duration + "ms)");
+		return true;
+	}
+
+	private static final class Progress {
+		private final Path root;
+		private final AtomicLong deleted = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+		private final AtomicReference<IOException> error = new AtomicReference<>();
+
+		private Progress(Path root) {
+			this.root = root;
+		}
+
+		private void deleted() {
+			long count = deleted.incrementAndGet();
+			if (count % PROGRESS == 0) {
+				logger.fine("P4: deleted " + count + " paths in " + root);
+			}
+		}
+
+		private void failed(IOException e) {
+			failed.incrementAndGet();
+			error.compareAndSet(null, e);
+		}
+	}
+
+	private static final class DeleteTask extends RecursiveAction {
+		private final Path path;
+		private final Progress progress;
+
+		private DeleteTask(Path path, Progress progress) {
+			this.path = path;
+			this.progress = progress;
+		}
+
+		@Override
+		protected void compute() {
+			if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+				List<DeleteTask> subTasks = new ArrayList<>();
+				try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+					for (Path entry : entries) {
+						if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+							subTasks.add(new DeleteTask(entry, progress));
+						} else {
+							deletePath(entry);
+						}
+					}
+				} catch (NoSuchFileException e) {
+					return;
+				} catch (IOException e) {
+					progress.failed(e);
+				}
+				invokeAll(subTasks);
+			}
+			deletePath(path);
+		}
+
+		private void deletePath(Path entry) {
+			try {
+				Files.deleteIfExists(entry);
+				progress.deleted();
+			} catch (IOException e) {
+				// read-only files can not be deleted on Windows
+				try {
+					entry.toFile().setWritable(true);
+					Files.deleteIfExists(entry);
+					progress.deleted();
+				} catch (IOException alt) {
+					progress.failed(alt);
+				}
+			}
+		}
+	}
+}
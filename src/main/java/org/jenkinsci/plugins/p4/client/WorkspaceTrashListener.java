@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.p4.client;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.FilePath.FileCallable;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Slave;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.ComputerListener;
+import jenkins.model.Jenkins;
+import jenkins.security.Roles;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.logging.Logger;
+
+/**
+ * Reclaims workspaces left in the trash, e.g. by an agent restart during a
+ * background delete, when a node comes online.
+ */
+@Extension
+public class WorkspaceTrashListener extends ComputerListener {
+
+	private static Logger logger = Logger.getLogger(WorkspaceTrashListener.class.getName());
+
+	// job workspaces and those of jobs in (nested) folders
+	private static final int DEPTH = 2;
+
+	@Override
+	public void onOnline(Computer c, TaskListener listener) throws IOException, InterruptedException {
+		FilePath root = getWorkspaceRoot(c.getNode());
+		if (root == null) {
+			return;
+		}
+		try {
+			int count = root.act(new ReclaimTask());
+			if (count > 0) {
+				listener.getLogger().println("P4: reclaiming " + count + " workspaces left in trash.");
+			}
+		} catch (IOException e) {
+			logger.warning("P4: unable to reclaim trash on " + c.getName() + ": " + e.getMessage());
+		}
+	}
+
+	private static FilePath getWorkspaceRoot(Node node) {
+		if (node instanceof Slave slave) {
+			return slave.getWorkspaceRoot();
+		}
+		if (node instanceof Jenkins jenkins) {
+			return jenkins.getRootPath().child("workspace");
+		}
+		return null;
+	}
+
+	private static class ReclaimTask implements FileCallable<Integer>, Serializable {
+
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Integer invoke(File f, VirtualChannel channel) {
+			return WorkspaceTrash.reclaimUnder(f.toPath(), DEPTH);
+		}
+
+		@Override
+		public void checkRoles(RoleChecker checker) throws SecurityException {
+			checker.check(this, Roles.SLAVE);
+		}
+	}
+}
@@ -0,0 +1,428 @@
+package org.jenkinsci.plugins.p4.filters;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Polling filters compiled once, for matching the files of many changes.
+ * <p>
+ * Filters apply in order, as in the job configuration: a user filter excludes
+ * the change if the user matches; path filters remove the files under their
+ * paths and exclude the change once no files remain; a view mask excludes the
+ * change if none of the remaining files are in the mask; and the first
+ * pattern list decides the change (kept if a remaining file matches) without
+ * looking at any later filters.
+ * <p>
+ * Path and view mask filters can also be turned into a {@link Query}, so the
+ * server lists the changes under their paths and only the changes the lists
+ * cannot decide need their files.
+ * <p>
+ * Consecutive path filters share one prefix trie and each view mask is a
+ * prefix trie whose last matching line decides; pattern lists are joined into
+ * one pattern where that keeps their meaning. Only the filters are
+ * serialized; the matcher is compiled again where it is used.
+ */
+public final class FilterMatcher implements Serializable {
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+
+	// characters that make a depot path more than a literal prefix
+	private static final Pattern SPECIAL = Pattern.compile("[*@#%]");
+
+	// patterns that cannot be joined into one alternation
+	// (back references, named groups, quoting or comments)
+	private static final Pattern UNJOINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\\\Q|\\(\\?<[^=!]|\\(\\?[a-zA-Z-]*x");
+
+	private final List<Filter> filters;
+	private final transient List<Step> steps;
+	private final transient PrefixTrie paths;
+
+	private FilterMatcher(List<Filter> filters) {
+		this.filters = filters;
+		this.steps = new ArrayList<>();
+
+		PrefixTrie all = new PrefixTrie();
+		PathStep pending = null;
+		for (Filter f : filters) {
+			if (f instanceof FilterUserImpl user) {
+				if (user.getUser() != null) {
+					steps.add(new UserStep(user.getUser()));
+				}
+			} else if (f instanceof FilterPathImpl path) {
+				if (path.getPath() == null) {
+					continue;
+				}
+				all.add(path.getPath(), 0, true);
+				if (pending == null) {
+					pending = new PathStep();
+					steps.add(pending);
+				}
+				pending.trie.add(path.getPath(), 0, true);
+				pending.prefixes.add(path.getPath());
+				continue;
+			} else if (f instanceof FilterViewMaskImpl mask) {
+				if (mask.getViewMask() != null) {
+					steps.add(new MaskStep(mask.getViewMask()));
+				}
+			} else if (f instanceof FilterPatternListImpl list) {
+				// the first pattern list decides the change
+				steps.add(new PatternStep(list));
+				break;
+			}
+			pending = null;
+		}
+		this.paths = all;
+	}
+
+	/**
+	 * @param filters Job filters (may be null)
+	 * @return compiled matcher
+	 */
+	public static FilterMatcher compile(List<Filter> filters) {
+		List<Filter> list = (filters == null) ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(filters));
+		return new FilterMatcher(list);
+	}
+
+	/**
+	 * @return true if no filter applies to the files or user of a change
+	 */
+	public boolean isEmpty() {
+		return steps.isEmpty();
+	}
+
+	/**
+	 * @param user  Owner of the change
+	 * @param files Depot paths of the change's files
+	 * @return true if the change should be filtered
+	 */
+	public boolean isFiltered(String user, Collection<String> files) {
+		List<String> remaining = new ArrayList<>(files.size());
+		for (String file : files) {
+			if (file != null) {
+				remaining.add(file);
+			}
+		}
+		for (Step step : steps) {
+			Boolean result = step.apply(user, remaining);
+			if (result != null) {
+				return result;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param files Depot paths of the change's files
+	 * @return true if there are path filters and every file is under one of them
+	 */
+	public boolean isExcludedByPath(Collection<String> files) {
+		if (paths.isEmpty()) {
+			return false;
+		}
+		for (String file : files) {
+			if (file != null && !paths.matches(file)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return a query for the server, or null if it cannot decide any change
+	 */
+	public Query getQuery() {
+		List<List<String>> masks = new ArrayList<>();
+		List<String> paths = new ArrayList<>();
+		boolean pathsOnly = !steps.isEmpty();
+		for (Step step : steps) {
+			if (step instanceof MaskStep mask) {
+				List<String> specs = toSpecs(mask.includes);
+				if (specs != null) {
+					masks.add(specs);
+				}
+				pathsOnly = false;
+			} else if (step instanceof PathStep path) {
+				List<String> specs = toSpecs(path.prefixes);
+				if (specs == null) {
+					pathsOnly = false;
+				} else {
+					paths.addAll(specs);
+				}
+			} else {
+				pathsOnly = false;
+			}
+		}
+		if (masks.isEmpty() && !pathsOnly) {
+			return null;
+		}
+		return new Query(masks, pathsOnly ? paths : null);
+	}
+
+	// depot path prefixes as file specs, or null if one has wildcards or
+	// revision characters and cannot be listed by prefix
+	private static List<String> toSpecs(List<String> prefixes) {
+		List<String> specs = new ArrayList<>();
+		for (String prefix : prefixes) {
+			if (!prefix.startsWith("//") || prefix.contains("...") || SPECIAL.matcher(prefix).find()) {
+				return null;
+			}
+			specs.add(prefix + "...");
+		}
+		return specs;
+	}
+
+	@Serial
+	private Object readResolve() {
+		return new FilterMatcher(filters);
+	}
+
+	private interface Step {
+		/**
+		 * @return true to filter, false to keep, or null to carry on with the remaining files
+		 */
+		Boolean apply(String user, List<String> remaining);
+	}
+
+	private static final class UserStep implements Step {
+		private final String user;
+
+		private UserStep(String user) {
+			this.user = user;
+		}
+
+		@Override
+		public Boolean apply(String change, List<String> remaining) {
+			return user.equalsIgnoreCase(change) ? Boolean.TRUE : null;
+		}
+	}
+
+	private static final class PathStep implements Step {
+		private final PrefixTrie trie = new PrefixTrie();
+		private final List<String> prefixes = new ArrayList<>();
+
+		@Override
+		public Boolean apply(String user, List<String> remaining) {
+			remaining.removeIf(trie::matches);
+			return remaining.isEmpty() ? Boolean.TRUE : null;
+		}
+	}
+
+	private static final class MaskStep implements Step {
+		private final PrefixTrie trie = new PrefixTrie();
+		private final List<String> includes = new ArrayList<>();
+
+		private MaskStep(String viewMask) {
+			// later lines override earlier ones; '-' lines exclude
+			int index = 0;
+			for (String line : viewMask.split("\\R")) {
+				String mask = line.trim();
+				index++;
+				if (mask.startsWith("-")) {
+					trie.add(mask.substring(1), index, false);
+				} else {
+					trie.add(mask, index, true);
+					includes.add(mask);
+				}
+			}
+		}
+
+		@Override
+		public Boolean apply(String user, List<String> remaining) {
+			for (String file : remaining) {
+				if (trie.lastMatch(file)) {
+					return null;
+				}
+			}
+			return Boolean.TRUE;
+		}
+	}
+
+	private static final class PatternStep implements Step {
+		private final List<Pattern> patterns;
+
+		private PatternStep(FilterPatternListImpl list) {
+			List<Pattern> compiled = list.getPatternList();
+			boolean joinable = compiled.size() > 1;
+			StringBuilder sb = new StringBuilder();
+			for (Pattern pattern : compiled) {
+				if (UNJOINABLE.matcher(pattern.pattern()).find()) {
+					joinable = false;
+					break;
+				}
+				sb.append((sb.length() > 0) ? "|" : "").append("(?:").append(pattern.pattern()).append(")");
+			}
+			if (joinable) {
+				int flags = list.isCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE;
+				try {
+					compiled = Collections.singletonList(Pattern.compile(sb.toString(), flags));
+				} catch (PatternSyntaxException e) {
+					// keep the separate patterns
+				}
+			}
+			this.patterns = compiled;
+		}
+
+		@Override
+		public Boolean apply(String user, List<String> remaining) {
+			for (String file : remaining) {
+				for (Pattern pattern : patterns) {
+					if (pattern.matcher(file).matches()) {
+						return Boolean.FALSE;
+					}
+				}
+			}
+			return Boolean.TRUE;
+		}
+	}
+
+	/**
+	 * Groups of depot paths to list changes for on the server.
+	 * <p>
+	 * A change with no files under the include lines of a view mask is
+	 * filtered, whatever its other files. If the job only has path filters, a
+	 * change with no files under them is kept: the filters remove none of its
+	 * files. Exclude lines are left out, so the lists may hold more changes
+	 * than the filters keep; those changes are left undecided.
+	 */
+	public static final class Query {
+		private final List<List<String>> groups;
+		private final int masks;
+		private final boolean paths;
+
+		private Query(List<List<String>> masks, List<String> paths) {
+			this.groups = new ArrayList<>(masks);
+			this.masks = masks.size();
+			this.paths = (paths != null);
+			if (paths != null) {
+				groups.add(paths);
+			}
+		}
+
+		/**
+		 * @return groups of file specs, e.g. <code>//depot/main/...</code>; list
+		 * the changes under each group
+		 */
+		public List<List<String>> getGroups() {
+			return groups;
+		}
+
+		/**
+		 * @param listed Changes listed under each group, in the order of {@link #getGroups()}
+		 * @param change Change number
+		 * @return true if the change is filtered, false if it is kept, or null if
+		 * its files are needed to decide
+		 */
+		public Boolean decide(List<Set<Long>> listed, long change) {
+			for (int i = 0; i < masks; i++) {
+				if (!listed.get(i).contains(change)) {
+					return Boolean.TRUE;
+				}
+			}
+			if (paths && !listed.get(masks).contains(change)) {
+				return Boolean.FALSE;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Character trie of path prefixes. Each prefix holds the line it came
+	 * from and whether it includes or excludes.
+	 */
+	private static final class PrefixTrie {
+		private final Node root = new Node();
+		private boolean empty = true;
+
+		private void add(String prefix, int index, boolean include) {
+			Node node = root;
+			for (int i = 0; i < prefix.length(); i++) {
+				node = node.child(prefix.charAt(i), true);
+			}
+			// a later line with the same prefix replaces an earlier one
+			node.index = index;
+			node.include = include;
+			node.terminal = true;
+			empty = false;
+		}
+
+		private boolean isEmpty() {
+			return empty;
+		}
+
+		// true if any prefix matches the path
+		private boolean matches(String path) {
+			Node node = root;
+			for (int i = 0; ; i++) {
+				if (node.terminal) {
+					return true;
+				}
+				if (i == path.length()) {
+					return false;
+				}
+				node = node.child(path.charAt(i), false);
+				if (node == null) {
+					return false;
+				}
+			}
+		}
+
+		// true if the last line whose prefix matches the path includes it
+		private boolean lastMatch(String path) {
+			Node node = root;
+			int index = -1;
+			boolean include = false;
+			for (int i = 0; ; i++) {
+				if (node.terminal && node.index > index) {
+					index = node.index;
+					include = node.include;
+				}
+				if (i == path.length()) {
+					return include;
+				}
+				node = node.child(path.charAt(i), false);
+				if (node == null) {
+					return include;
+				}
+			}
+		}
+	}
+
+	private static final class Node {
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		private boolean terminal;
+		private boolean include;
+		private int index;
+
+		private Node child(char c, boolean create) {
+			int pos = Arrays.binarySearch(keys, c);
+			if (pos >= 0) {
+				return children[pos];
+			}
+			if (!create) {
+				return null;
+			}
+			int at = -pos - 1;
+			char[] k = new char[keys.length + 1];
+			Node[] n = new Node[children.length + 1];
+			System.arraycopy(keys, 0, k, 0, at);
+			System.arraycopy(children, 0, n, 0, at);
+			k[at] = c;
+			n[at] = new Node();
+			System.arraycopy(keys, at, k, at + 1, keys.length - at);
+			System.arraycopy(children, at, n, at + 1, children.length - at);
+			keys = k;
+			children = n;
+			return n[at];
+		}
+	}
+}
@@ -6,6 +6,7 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.AutoCompletionCandidates;
 import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
 import org.jenkinsci.plugins.p4.client.ConnectionFactory;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -45,8 +46,8 @@ public class FilterUserImpl extends Filter implements Serializable {
 				@QueryParameter String value) {
 
 			AutoCompletionCandidates c = new AutoCompletionCandidates();
-			try {
-				IOptionsServer iserver = ConnectionFactory.getConnection();
+			IOptionsServer iserver = ConnectionFactory.getConnection();
+			try (CommandLimiter.Permit permit = CommandLimiter.ui(iserver)) {
 				if (iserver != null && !value.isEmpty()) {
 					List<String> users = new ArrayList<>();
 					users.add(value + "*");
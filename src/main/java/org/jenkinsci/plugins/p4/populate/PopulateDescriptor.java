@@ -5,6 +5,7 @@ import com.perforce.p4java.option.server.GetLabelsOptions;
 import com.perforce.p4java.server.IOptionsServer;
 import hudson.model.AutoCompletionCandidates;
 import hudson.model.Descriptor;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
 import org.jenkinsci.plugins.p4.client.ConnectionFactory;
 import org.kohsuke.stapler.QueryParameter;
 
@@ -22,8 +23,8 @@ public abstract class PopulateDescriptor extends Descriptor<Populate> {
 	public AutoCompletionCandidates doAutoCompletePin(
 			@QueryParameter String value) {
 		AutoCompletionCandidates c = new AutoCompletionCandidates();
-		try {
-			IOptionsServer iserver = ConnectionFactory.getConnection();
+		IOptionsServer iserver = ConnectionFactory.getConnection();
+		try (CommandLimiter.Permit permit = CommandLimiter.ui(iserver)) {
 			if (iserver != null && !value.isEmpty()) {
 				List<ILabelSummary> list;
 				GetLabelsOptions opts = new GetLabelsOptions();
@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.p4.populate;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.io.Serial;
+
+/**
+ * Sync only, seeding empty workspaces from a reference copy kept on the agent.
+ * <p>
+ * The first build of a view on an agent syncs in full and keeps a copy of the
+ * files; later empty workspaces for the same view are copied from it, flushed
+ * to the reference change and only the difference is synced.
+ */
+public class ReferenceSyncImpl extends SyncOnlyImpl {
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+
+	public static final int DEFAULT_MAX_SIZE = 20;
+
+	private final String cacheDir;
+	private final int maxSize;
+	private final boolean link;
+
+	/**
+	 * Reference sync
+	 *
+	 * @param revert   revert before sync option
+	 * @param quiet    P4 quiet option
+	 * @param pin      Change or label to pin the sync
+	 * @param parallel Parallel sync option
+	 * @param cacheDir Reference cache directory on the agent (empty for default)
+	 * @param maxSize  Max size of all references on the agent (GB)
+	 * @param link     Use hard links in place of copies
+	 */
+	@DataBoundConstructor
+	public ReferenceSyncImpl(boolean revert, boolean quiet, String pin, ParallelSync parallel,
+	                         String cacheDir, int maxSize, boolean link) {
+		super(revert, true, false, quiet, pin, parallel);
+		this.cacheDir = cacheDir;
+		this.maxSize = maxSize;
+		this.link = link;
+	}
+
+	public String getCacheDir() {
+		return cacheDir;
+	}
+
+	public int getMaxSize() {
+		return (maxSize > 0) ? maxSize : DEFAULT_MAX_SIZE;
+	}
+
+	public boolean isLink() {
+		return link;
+	}
+
+	@Extension
+	@Symbol("referenceSync")
+	public static final class DescriptorImpl extends PopulateDescriptor {
+
+		@NonNull
+		@Override
+		public String getDisplayName() {
+			return "Sync with agent reference";
+		}
+
+		@Override
+		public boolean isGraphCompatible() {
+			return false;
+		}
+	}
+}
@@ -25,7 +25,9 @@ import org.jenkinsci.plugins.p4.changes.P4ChangeEntry;
 import org.jenkinsci.plugins.p4.changes.P4ChangeSet;
 import org.jenkinsci.plugins.p4.changes.P4Ref;
 import org.jenkinsci.plugins.p4.client.ClientHelper;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
 import org.jenkinsci.plugins.p4.credentials.P4CredentialsImpl;
+import org.jenkinsci.plugins.p4.credentials.P4InvalidCredentialException;
 import org.jenkinsci.plugins.p4.tagging.TagAction;
 import org.jenkinsci.plugins.p4.tasks.PublishTask;
 import org.jenkinsci.plugins.p4.tasks.RemoveClientTask;
@@ -97,7 +99,12 @@ public class PublishNotifier extends Notifier {
 		desc = ws.getExpand().format(desc, false);
 		getPublish().setExpandedDesc(desc);
 
-		String publishedChangeId = buildWorkspace.act(task);
+		String publishedChangeId;
+		try (CommandLimiter.Permit permit = CommandLimiter.acquire(task.getCredential(), CommandLimiter.Priority.BUILD)) {
+			publishedChangeId = buildWorkspace.act(task);
+		} catch (P4InvalidCredentialException e) {
+			throw new AbortException("P4: Unable to publish: " + e);
+		}
 
 		if (StringUtils.isNotEmpty(publishedChangeId)) {
 			storeChangeToChangelog(build, listener, publishedChangeId, task, buildWorkspace);
@@ -14,7 +14,6 @@ import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.p4.workflow.source.P4SwarmUpdateAction;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.springframework.util.CollectionUtils;
 
 import java.io.IOException;
 import java.io.OutputStreamWriter;
@@ -23,8 +22,6 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +36,10 @@ public class ReviewNotifier extends RunListener<Run> {
 			return;
 		}
 		logger.fine("ReviewNotifier: onCompleted");
+
+		// no 'running' updates after the final status
+		SwarmUpdateScheduler.cancel(run);
+
 		Result result = run.getResult();
 		if (result == null) {
 			logger.warning("Cannot notify onCompleted - job Result is null!");
@@ -67,6 +68,11 @@ public class ReviewNotifier extends RunListener<Run> {
 		}
 	}
 
+	@Override
+	public void onFinalized(Run run) {
+		SwarmUpdateScheduler.cancel(run);
+	}
+
 	@Override
 	public void onStarted(Run run, TaskListener listener) {
 		if (run == null || run instanceof MatrixRun) {
@@ -82,30 +88,8 @@ public class ReviewNotifier extends RunListener<Run> {
 			EnvVars env = run.getEnvironment(listener);
 			String updateCallback = env.get(ReviewProp.SWARM_UPDATE.getProp());
 			if (StringUtils.isNotEmpty(updateCallback)) {
-				// onStarted() is only called once when build is stated. A scheduled task required to get message and notify update periodically
-				Timer timer = new Timer();
-
-				TimerTask task = new TimerTask() {
-					@Override
-					public void run() {
-						if (run.isBuilding()) {
-							List<P4SwarmUpdateAction> actions = run.getActions(P4SwarmUpdateAction.class);
-							if (!CollectionUtils.isEmpty(actions)) {
-								List<String> message = getUpdateMessage(actions);
-								try {
-									String buildURL = getBuildURL(run);
-									notifySwarmUpdate(updateCallback, "running", message, buildURL);
-								} catch (Exception e) {
-									logger.log(Level.WARNING, "Unable to notify swarm update: " + e.getMessage(), e);
-								}
-							}
-						} else {
-							logger.log(Level.INFO, "Build finished: " + run.getFullDisplayName());
-							timer.cancel();
-						}
-					}
-				};
-				timer.scheduleAtFixedRate(task, 2000, 10000);
+				// onStarted() is only called once when build is stated; a shared scheduler sends the update messages
+				SwarmUpdateScheduler.register(run, updateCallback, getBuildURL(run));
 			} else {
 				logger.log(Level.INFO, "Skipping job onStarted because update callback url is empty.");
 			}
@@ -114,7 +98,7 @@ public class ReviewNotifier extends RunListener<Run> {
 		}
 	}
 
-	private static List<String> getUpdateMessage(List<P4SwarmUpdateAction> action) {
+	static List<String> getUpdateMessage(List<P4SwarmUpdateAction> action) {
 		// Reverse swarm update message, swarm will accept latest 10 messages only
 		List<String> messages = new ArrayList<>();
 		for (int i = action.size() - 1; i >= 0; i--) {
@@ -132,7 +116,7 @@ public class ReviewNotifier extends RunListener<Run> {
 	 * @param status   Swarm supported status values are running, fail, pass.  Not enforced.
 	 * @param messages zero or more messages to send
 	 */
-	private void notifySwarmUpdate(String callback, String status, List<String> messages, String buildUrl) throws Exception {
+	static void notifySwarmUpdate(String callback, String status, List<String> messages, String buildUrl) throws Exception {
 		if (StringUtils.isEmpty(callback)) {
 			return;
 		}
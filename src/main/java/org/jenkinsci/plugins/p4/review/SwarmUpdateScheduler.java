@@ -0,0 +1,210 @@
+package org.jenkinsci.plugins.p4.review;
+
+import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.jenkinsci.plugins.p4.workflow.source.P4SwarmUpdateAction;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends 'running' updates to Swarm for all review builds in progress.
+ * <p>
+ * One scheduler thread checks the registered builds every period and only
+ * posts when a build's update messages have changed since the last post.
+ * Updates are grouped by Swarm host and each host's batch is sent in turn,
+ * so a host receives one request at a time; batches for different hosts
+ * run on a small bounded pool.
+ * <p>
+ * The period and number of threads can be set with the system properties
+ * <code>org.jenkinsci.plugins.p4.review.SwarmUpdateScheduler.period</code>
+ * (seconds) and <code>.threads</code>.
+ */
+public class SwarmUpdateScheduler {
+
+	private static Logger logger = Logger.getLogger(SwarmUpdateScheduler.class.getName());
+
+	public static final int DEFAULT_PERIOD = 10;
+	public static final int DEFAULT_THREADS = 4;
+
+	private static final long INITIAL_DELAY = 2;
+
+	private static final int period = Integer.getInteger(SwarmUpdateScheduler.class.getName() + ".period", DEFAULT_PERIOD);
+	private static final int threads = Integer.getInteger(SwarmUpdateScheduler.class.getName() + ".threads", DEFAULT_THREADS);
+
+	private static final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+			new NamingThreadFactory(new DaemonThreadFactory(), "P4SwarmUpdate"));
+
+	private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+			60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+			new NamingThreadFactory(new DaemonThreadFactory(), "P4SwarmUpdatePost"));
+
+	static {
+		scheduler.setRemoveOnCancelPolicy(true);
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	// build -> callback and last messages sent
+	private static final Map<Run<?, ?>, Entry> builds = new ConcurrentHashMap<>();
+
+	private static ScheduledFuture<?> task;
+
+	private SwarmUpdateScheduler() {
+	}
+
+	/**
+	 * Send updates for a build until it is cancelled or no longer building.
+	 *
+	 * @param run      Build
+	 * @param callback Swarm update callback URL
+	 * @param buildUrl URL of the build
+	 */
+	public static void register(Run<?, ?> run, String callback, String buildUrl) {
+		builds.put(run, new Entry(callback, buildUrl));
+		start();
+	}
+
+	/**
+	 * Stop sending updates for a build.
+	 *
+	 * @param run Build
+	 */
+	public static void cancel(Run<?, ?> run) {
+		if (run != null && builds.remove(run) != null) {
+			logger.fine("Swarm updates cancelled: " + run.getFullDisplayName());
+		}
+	}
+
+	/**
+	 * @return number of builds sending updates
+	 */
+	public static int getSize() {
+		return builds.size();
+	}
+
+	/**
+	 * Post the changed updates of all registered builds and wait for them.
+	 *
+	 * @return number of updates sent
+	 */
+	public static int update() {
+		// group changed builds by Swarm host
+		Map<String, List<Update>> hosts = new LinkedHashMap<>();
+		for (Map.Entry<Run<?, ?>, Entry> e : builds.entrySet()) {
+			Run<?, ?> run = e.getKey();
+			Entry entry = e.getValue();
+			if (!run.isBuilding()) {
+				logger.fine("Build finished: " + run.getFullDisplayName());
+				builds.remove(run, entry);
+				continue;
+			}
+			List<P4SwarmUpdateAction> actions = run.getActions(P4SwarmUpdateAction.class);
+			if (actions == null || actions.isEmpty()) {
+				continue;
+			}
+			List<String> messages = ReviewNotifier.getUpdateMessage(actions);
+			if (messages.equals(entry.sent)) {
+				continue;
+			}
+			hosts.computeIfAbsent(getHost(entry.callback), k -> new ArrayList<>()).add(new Update(entry, messages));
+		}
+
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (List<Update> batch : hosts.values()) {
+			futures.add(executor.submit(() -> send(batch)));
+		}
+
+		int sent = 0;
+		for (Future<Integer> future : futures) {
+			try {
+				sent += future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				logger.log(Level.WARNING, "Unable to notify swarm update: " + e.getMessage(), e);
+			}
+		}
+		return sent;
+	}
+
+	private static int send(List<Update> batch) {
+		int sent = 0;
+		for (Update update : batch) {
+			try {
+				ReviewNotifier.notifySwarmUpdate(update.entry.callback, "running", update.messages, update.entry.buildUrl);
+				update.entry.sent = update.messages;
+				sent++;
+			} catch (Exception e) {
+				logger.log(Level.WARNING, "Unable to notify swarm update: " + e.getMessage(), e);
+			}
+		}
+		return sent;
+	}
+
+	private static synchronized void start() {
+		if (task == null || task.isDone()) {
+			task = scheduler.scheduleWithFixedDelay(SwarmUpdateScheduler::tick, INITIAL_DELAY, period, TimeUnit.SECONDS);
+		}
+	}
+
+	private static void tick() {
+		try {
+			update();
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Swarm update failed: " + e.getMessage(), e);
+		}
+
+		// stop the periodic task until the next build registers
+		synchronized (SwarmUpdateScheduler.class) {
+			if (builds.isEmpty() && task != null) {
+				task.cancel(false);
+				task = null;
+			}
+		}
+	}
+
+	private static String getHost(String callback) {
+		try {
+			URI uri = new URI(callback);
+			return uri.getHost() + ":" + uri.getPort();
+		} catch (Exception e) {
+			return callback;
+		}
+	}
+
+	private static final class Entry {
+		private final String callback;
+		private final String buildUrl;
+		private volatile List<String> sent;
+
+		private Entry(String callback, String buildUrl) {
+			this.callback = callback;
+			this.buildUrl = buildUrl;
+		}
+	}
+
+	private static final class Update {
+		private final Entry entry;
+		private final List<String> messages;
+
+		private Update(Entry entry, List<String> messages) {
+			this.entry = entry;
+			this.messages = messages;
+		}
+	}
+}
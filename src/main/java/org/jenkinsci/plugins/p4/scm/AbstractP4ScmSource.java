@@ -6,7 +6,13 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Util;
 import hudson.model.Action;
 import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.branch.Branch;
 import jenkins.branch.BranchProjectFactory;
+import jenkins.model.Jenkins;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHeadCategory;
 import jenkins.scm.api.SCMHeadEvent;
@@ -29,6 +35,7 @@ import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
 import org.jenkinsci.plugins.p4.changes.P4Ref;
 import org.jenkinsci.plugins.p4.changes.P4RefBuilder;
 import org.jenkinsci.plugins.p4.client.ClientHelper;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
 import org.jenkinsci.plugins.p4.client.ConnectionHelper;
 import org.jenkinsci.plugins.p4.client.TempClientHelper;
 import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
@@ -37,6 +44,7 @@ import org.jenkinsci.plugins.p4.filters.FilterPerChangeImpl;
 import org.jenkinsci.plugins.p4.populate.Populate;
 import org.jenkinsci.plugins.p4.review.ReviewProp;
 import org.jenkinsci.plugins.p4.scm.events.P4BranchScanner;
+import org.jenkinsci.plugins.p4.trigger.ViewTrie;
 import org.jenkinsci.plugins.p4.utils.FolderPropertiesUtil;
 import org.jenkinsci.plugins.p4.workspace.Workspace;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
@@ -44,13 +52,24 @@ import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.jenkinsci.plugins.workflow.multibranch.WorkflowBranchProjectFactory;
 import org.jenkinsci.plugins.workflow.multibranch.WorkflowMultiBranchProject;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.springframework.security.core.Authentication;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import static org.jenkinsci.plugins.p4.review.ReviewProp.P4_CHANGE;
@@ -61,6 +80,25 @@ public abstract class AbstractP4ScmSource extends SCMSource {
 
 	public static final String defaultExcludes = "a^"; // matches nothing
 
+	public static final int DEFAULT_SCAN_THREADS = 4;
+
+	// heads resolved concurrently by a scan (1 to resolve in turn)
+	private static final int scanThreads = Integer.getInteger(AbstractP4ScmSource.class.getName() + ".scanThreads", DEFAULT_SCAN_THREADS);
+
+	// resolve heads with a known view in depot syntax, without a temp client
+	private static final boolean depotSyntax = !Boolean.getBoolean(AbstractP4ScmSource.class.getName() + ".clientScan");
+
+	public static final int DEFAULT_FULL_SCAN_MINUTES = 1440;
+	public static final int DEFAULT_INCREMENTAL_LIMIT = 10000;
+
+	// scans between full scans only resolve heads with changes (0 for full scans only)
+	private static final long fullScanMillis = TimeUnit.MINUTES.toMillis(
+			Integer.getInteger(AbstractP4ScmSource.class.getName() + ".fullScanMinutes", DEFAULT_FULL_SCAN_MINUTES));
+	private static final int incrementalLimit = Integer.getInteger(AbstractP4ScmSource.class.getName() + ".incrementalLimit", DEFAULT_INCREMENTAL_LIMIT);
+
+	private static final ExecutorService scanExecutor = Executors.newCachedThreadPool(
+			new NamingThreadFactory(new DaemonThreadFactory(), "P4ScmScan"));
+
 	protected final String credential;
 
 	private List<SCMSourceTrait> traits = new ArrayList<>();
@@ -158,6 +196,20 @@ public abstract class AbstractP4ScmSource extends SCMSource {
 
 	public abstract Workspace getWorkspace(P4Path path);
 
+	/**
+	 * Depot paths of the view for a head, to find its changes and files
+	 * without writing a temporary client.
+	 *
+	 * @param p4   Connection
+	 * @param path Head path
+	 * @return depot paths or null if the view needs a client (e.g. exclude or
+	 * overlay mappings, virtual streams)
+	 * @throws Exception push up stack
+	 */
+	protected List<String> getDepotView(ConnectionHelper p4, P4Path path) throws Exception {
+		return null;
+	}
+
 	public String getScriptPathOrDefault() {
 		SCMSourceOwner owner = getOwner();
 		if (owner instanceof WorkflowMultiBranchProject branchProject) {
@@ -171,17 +223,246 @@ public abstract class AbstractP4ScmSource extends SCMSource {
 
 	@Override
 	protected void retrieve(@CheckForNull SCMSourceCriteria criteria, @NonNull SCMHeadObserver observer, @CheckForNull SCMHeadEvent<?> event, @NonNull TaskListener listener) throws IOException {
-		try (TempClientHelper p4 = new TempClientHelper(getOwner(), credential, listener, null)) {
-			List<P4SCMHead> heads = getP4SCMHeads(observer, listener);
-			for (P4SCMHead head : heads) {
-				logger.fine("SCM: retrieve Head: " + head);
-				retrieveHead(p4, head, criteria, observer, event);
+		P4BaseCredentials baseCredentials = ConnectionHelper.findCredential(credential, getOwner());
+
+		// only a periodic scan of all heads can be incremental
+		boolean scan = event == null && observer.getIncludes() == null && getOwner() != null;
+		String scanKey = (scan) ? ScanHistory.getKey(getOwner(), getId()) : null;
+		ScanHistory.Entry last = (scan) ? ScanHistory.get(scanKey) : null;
+		boolean incremental = last != null && isIncremental(last);
+
+		try {
+			List<P4SCMHead> heads;
+			Map<SCMHead, SCMRevision> unchanged = new HashMap<>();
+			long latest = 0;
+			try (CommandLimiter.Permit permit = CommandLimiter.acquire(baseCredentials, CommandLimiter.Priority.SCAN);
+			     ConnectionHelper p4 = new ConnectionHelper(getOwner(), credential, listener)) {
+				heads = getP4SCMHeads(observer, listener);
+				if (scan) {
+					// not the 'change' counter: a pending change may still be submitted with its number
+					latest = p4.getSubmittedHead();
+				}
+				if (incremental) {
+					unchanged = getUnchangedHeads(p4, heads, last.getChange(), latest);
+				}
+			}
+
+			int workers = Math.min(scanThreads, heads.size() - unchanged.size());
+			if (workers > 1) {
+				retrieveHeads(heads, unchanged, workers, criteria, observer, event, listener);
+			} else {
+				retrieveHeads(heads, unchanged, criteria, observer, event, listener);
+			}
+
+			if (scan) {
+				long fullScan = (incremental) ? last.getFullScan() : System.currentTimeMillis();
+				ScanHistory.put(scanKey, latest, fullScan);
 			}
 		} catch (Exception e) {
 			throw new IOException(e);
 		}
 	}
 
+	// Resolve heads in turn on one temp client
+	private void retrieveHeads(List<P4SCMHead> heads, Map<SCMHead, SCMRevision> unchanged, SCMSourceCriteria criteria,
+	                           SCMHeadObserver observer, SCMHeadEvent<?> event, TaskListener listener) throws Exception {
+		P4BaseCredentials baseCredentials = ConnectionHelper.findCredential(credential, getOwner());
+		TempClientHelper p4 = null;
+		try (CommandLimiter.Permit permit = CommandLimiter.acquire(baseCredentials, CommandLimiter.Priority.SCAN)) {
+			for (P4SCMHead head : heads) {
+				SCMRevision revision = unchanged.get(head);
+				if (revision == null) {
+					logger.fine("SCM: retrieve Head: " + head);
+					if (p4 == null) {
+						p4 = getScanClient(listener);
+					}
+					revision = retrieveHead(p4, head, criteria, event);
+				}
+				observe(observer, head, criteria, revision);
+
+				// check for user abort
+				checkInterrupt();
+			}
+		} finally {
+			if (p4 != null) {
+				p4.close();
+			}
+		}
+	}
+
+	private boolean isIncremental(ScanHistory.Entry last) {
+		if (fullScanMillis <= 0 || !depotSyntax) {
+			return false;
+		}
+		if (System.currentTimeMillis() - last.getFullScan() >= fullScanMillis) {
+			return false;
+		}
+		// 'Polling per Change' may not have caught up with the changes seen
+		return !FilterPerChangeImpl.isActive(getFilter());
+	}
+
+	/**
+	 * Find the heads with no change in their view since the last scan; they
+	 * keep the revision they were last scanned at. Changes are listed once
+	 * for the include paths and matched to the depot view of each head.
+	 *
+	 * @return unchanged heads and their revision
+	 */
+	private Map<SCMHead, SCMRevision> getUnchangedHeads(ConnectionHelper p4, List<P4SCMHead> heads, long since, long latest) throws Exception {
+		Map<SCMHead, SCMRevision> unchanged = new HashMap<>();
+		List<String> roots = getScanRoots();
+		if (roots.isEmpty()) {
+			return unchanged;
+		}
+
+		List<String> files = new ArrayList<>();
+		if (latest > since) {
+			files = p4.getChangedFiles(roots, new P4ChangeRef(since + 1), new P4ChangeRef(latest), incrementalLimit);
+			if (files == null) {
+				logger.info("SCM: more than " + incrementalLimit + " files changed since " + since + "; full scan");
+				return unchanged;
+			}
+		}
+
+		// heads with a depot view under the include paths, that were scanned before
+		ViewTrie views = new ViewTrie();
+		Map<String, SCMRevision> candidates = new HashMap<>();
+		for (P4SCMHead head : heads) {
+			P4SCMRevision rev = getLastScan(head);
+			if (rev == null || isDeadBranch(head)) {
+				continue;
+			}
+			List<String> view = getDepotView(p4, head.getPath());
+			if (view == null || !isUnder(view, roots)) {
+				continue;
+			}
+			views.add(head.getName(), view);
+			candidates.put(head.getName(), new P4SCMRevision(head, rev.getRef()));
+		}
+
+		Set<String> changed = new HashSet<>();
+		for (String file : files) {
+			changed.addAll(views.match(file));
+		}
+		for (P4SCMHead head : heads) {
+			SCMRevision rev = candidates.get(head.getName());
+			if (rev != null && !changed.contains(head.getName())) {
+				unchanged.put(head, rev);
+			}
+		}
+		logger.info("SCM: " + unchanged.size() + " of " + heads.size() + " heads unchanged since change " + since);
+		return unchanged;
+	}
+
+	// Depot paths for the include paths, up to their first wildcard
+	private List<String> getScanRoots() {
+		List<String> paths = getIncludePaths();
+		if (pathContainsFolderPropertyVar(paths)) {
+			paths = FolderPropertiesUtil.processFolderPropertiesIn(paths, getOwner());
+		}
+		List<String> roots = new ArrayList<>();
+		for (String path : paths) {
+			path = path.trim();
+			if (!path.startsWith("//") || path.contains("${")) {
+				continue;
+			}
+			int wild = path.length();
+			for (String w : new String[]{"*", "...", "%%"}) {
+				int i = path.indexOf(w);
+				if (i >= 0) {
+					wild = Math.min(wild, i);
+				}
+			}
+			String root = path.substring(0, path.lastIndexOf('/', Math.max(0, wild - 1)) + 1);
+			if (root.length() > 2 && !roots.contains(root)) {
+				roots.add(root);
+			}
+		}
+		return roots;
+	}
+
+	private static boolean isUnder(List<String> view, List<String> roots) {
+		for (String line : view) {
+			boolean under = false;
+			for (String root : roots) {
+				if (line.startsWith(root)) {
+					under = true;
+					break;
+				}
+			}
+			if (!under) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Resolve heads on a pool of workers, each with its own temp client and
+	 * SCAN permit. Heads are observed on the calling thread in list order.
+	 */
+	private void retrieveHeads(List<P4SCMHead> heads, Map<SCMHead, SCMRevision> unchanged, int workers, SCMSourceCriteria criteria,
+	                           SCMHeadObserver observer, SCMHeadEvent<?> event, TaskListener listener) throws Exception {
+		P4BaseCredentials baseCredentials = ConnectionHelper.findCredential(credential, getOwner());
+		Authentication auth = Jenkins.getAuthentication2();
+
+		List<CompletableFuture<SCMRevision>> results = new ArrayList<>();
+		for (P4SCMHead head : heads) {
+			SCMRevision revision = unchanged.get(head);
+			results.add((revision == null) ? new CompletableFuture<>() : CompletableFuture.completedFuture(revision));
+		}
+		AtomicInteger next = new AtomicInteger();
+
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int w = 0; w < workers; w++) {
+			tasks.add(scanExecutor.submit(() -> {
+				try (ACLContext ctx = ACL.as2(auth);
+				     CommandLimiter.Permit permit = CommandLimiter.acquire(baseCredentials, CommandLimiter.Priority.SCAN);
+				     TempClientHelper p4 = getScanClient(listener)) {
+					for (int i = next.getAndIncrement(); i < heads.size(); i = next.getAndIncrement()) {
+						if (Thread.currentThread().isInterrupted()) {
+							throw new InterruptedException();
+						}
+						if (results.get(i).isDone()) {
+							continue;
+						}
+						P4SCMHead head = heads.get(i);
+						logger.fine("SCM: retrieve Head: " + head);
+						try {
+							results.get(i).complete(retrieveHead(p4, head, criteria, event));
+						} catch (Exception e) {
+							results.get(i).completeExceptionally(e);
+						}
+					}
+				} catch (Exception e) {
+					// unable to connect or aborted; fail the heads not yet resolved
+					for (CompletableFuture<SCMRevision> result : results) {
+						result.completeExceptionally(e);
+					}
+				}
+			}));
+		}
+
+		try {
+			for (int i = 0; i < heads.size(); i++) {
+				SCMRevision revision;
+				try {
+					revision = results.get(i).get();
+				} catch (ExecutionException e) {
+					throw (e.getCause() instanceof Exception cause) ? cause : e;
+				}
+				observe(observer, heads.get(i), criteria, revision);
+
+				// check for user abort
+				checkInterrupt();
+			}
+		} finally {
+			for (Future<?> task : tasks) {
+				task.cancel(true);
+			}
+		}
+	}
+
 	public boolean pathContainsFolderPropertyVar(List<String> paths) {
 		if (paths == null || paths.isEmpty()) {
 			return false;
@@ -208,10 +489,31 @@ public abstract class AbstractP4ScmSource extends SCMSource {
 		return heads;
 	}
 
-	private void retrieveHead(TempClientHelper p4, P4SCMHead head, SCMSourceCriteria criteria, SCMHeadObserver observer, SCMHeadEvent<?> event) throws Exception {
+	/**
+	 * Temp client to resolve heads with; a scan opens one per worker.
+	 *
+	 * @param listener Task listener
+	 * @return connection with a temp client
+	 * @throws Exception push up stack
+	 */
+	protected TempClientHelper getScanClient(TaskListener listener) throws Exception {
+		return new TempClientHelper(getOwner(), credential, listener, null);
+	}
+
+	/**
+	 * Resolve the revision of a head and apply the criteria.
+	 *
+	 * @return the revision to observe, or null if the head does not match
+	 */
+	private SCMRevision retrieveHead(TempClientHelper p4, P4SCMHead head, SCMSourceCriteria criteria, SCMHeadEvent<?> event) throws Exception {
 		P4Path p4Path = head.getPath();
-		Workspace workspace = getWorkspace(p4Path);
-		p4.update(workspace);
+		List<String> depotView = (depotSyntax) ? getDepotView(p4, p4Path) : null;
+		if (depotView != null) {
+			p4.update(depotView, getCharset());
+		} else {
+			Workspace workspace = getWorkspace(p4Path);
+			p4.update(workspace);
+		}
 
 		// get SCMRevision from payload if trigger event, else build from head (latest)
 		SCMRevision revision = getEventRevision(head, event);
@@ -221,20 +523,31 @@ public abstract class AbstractP4ScmSource extends SCMSource {
 
 		// null criteria means that all branches match.
 		if (criteria == null) {
-			// get revision and add observe
-			observer.observe(head, revision);
-		} else {
-			SCMSourceCriteria.Probe probe = new P4SCMProbe(p4, head);
-			if (criteria.isHead(probe, p4.getListener())) {
-				logger.fine("SCM: observer head: " + head + " revision: " + revision);
-				if (revision != null) {
-					observer.observe(revision.getHead(), revision);
-				}
-			}
+			return revision;
 		}
-		// check for user abort
-		checkInterrupt();
+		SCMSourceCriteria.Probe probe = new P4SCMProbe(p4, head, getProbeChange(head, revision));
+		if (criteria.isHead(probe, p4.getListener())) {
+			logger.fine("SCM: observer head: " + head + " revision: " + revision);
+			return revision;
+		}
+		return null;
+	}
 
+	// Submitted change to probe a head at; reviews and labels probe the head revision
+	private static long getProbeChange(P4SCMHead head, SCMRevision revision) {
+		if (head instanceof ChangeRequestSCMHead || !(revision instanceof P4SCMRevision p4rev)) {
+			return 0L;
+		}
+		return (p4rev.getRef() instanceof P4ChangeRef) ? p4rev.getRef().getChange() : 0L;
+	}
+
+	private void observe(SCMHeadObserver observer, P4SCMHead head, SCMSourceCriteria criteria, SCMRevision revision) throws IOException, InterruptedException {
+		// null criteria means that all branches match, with or without a revision
+		if (criteria == null) {
+			observer.observe(head, revision);
+		} else if (revision != null) {
+			observer.observe(revision.getHead(), revision);
+		}
 	}
 
 	/**
@@ -416,19 +729,27 @@ public abstract class AbstractP4ScmSource extends SCMSource {
 		long rangeLimit = to - p4.getHeadLimit();
 		P4Ref fromRef = (rangeLimit > 0) ? new P4ChangeRef(rangeLimit) : null;
 
-		// Use temp client to map branches/streams when calculating change
+		// Use temp client (or its depot view) to map branches/streams when calculating change
 		long change = p4.getClientHead(fromRef, toRef);
 
-		List<String> maps = path.getMappings();
-		if (maps != null && !maps.isEmpty()) {
-			for (String map : maps) {
-				if (map.startsWith("-")) {
-					continue;
+		// a depot view already includes the mappings
+		if (p4 instanceof TempClientHelper temp && temp.getDepotView() != null) {
+			return change;
+		}
+
+		// query the mappings in one command
+		List<String> maps = new ArrayList<>();
+		if (path.getMappings() != null) {
+			for (String map : path.getMappings()) {
+				if (!map.startsWith("-")) {
+					maps.add(map);
 				}
-				long c = p4.getHead(map, fromRef, toRef);
-				change = Math.max(c, change);
 			}
 		}
+		if (!maps.isEmpty()) {
+			long c = p4.getHead(maps, fromRef, toRef);
+			change = Math.max(c, change);
+		}
 		return change;
 	}
 
@@ -498,6 +819,15 @@ public abstract class AbstractP4ScmSource extends SCMSource {
 		return null;
 	}
 
+	// A branch job left after its head was removed
+	private boolean isDeadBranch(P4SCMHead head) {
+		if (getOwner() instanceof WorkflowMultiBranchProject branchProject) {
+			WorkflowJob job = branchProject.getJob(head.getName());
+			return job != null && branchProject.getProjectFactory().getBranch(job) instanceof Branch.Dead;
+		}
+		return false;
+	}
+
 	/**
 	 * A specific revision based on the Event Payload.
 	 *
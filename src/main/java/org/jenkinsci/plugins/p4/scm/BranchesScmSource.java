@@ -185,6 +185,27 @@ public class BranchesScmSource extends AbstractP4ScmSource {
 		return ws;
 	}
 
+	@Override
+	protected List<String> getDepotView(ConnectionHelper p4, P4Path path) {
+		// exclude or overlay lines need a client view
+		for (String mapping : getViewMappings()) {
+			if (mapping.startsWith("-") || mapping.startsWith("+")) {
+				return null;
+			}
+		}
+
+		List<String> view = new ArrayList<>();
+		view.add(path.getPath() + "/" + getScriptPathOrDefault());
+		view.addAll(getDepotPathMappings(path));
+		view.addAll(getLocalPathMappings(path));
+		for (String line : view) {
+			if (line.contains("${")) {
+				return null;
+			}
+		}
+		return view;
+	}
+
 	private List<String> getViewMappings() {
 		return toLines(getMappings());
 	}
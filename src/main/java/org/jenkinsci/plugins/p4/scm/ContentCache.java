@@ -0,0 +1,131 @@
+package org.jenkinsci.plugins.p4.scm;
+
+import hudson.Util;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Disk cache of file contents read by lightweight checkouts (e.g. a
+ * Jenkinsfile), keyed by the server's digest of the revision.
+ * <p>
+ * The key holds the digest, size, file type and charset but not the depot
+ * path, so branches with the same script revision share one entry. Files are
+ * kept under <code>caches/p4-content</code> in the Jenkins root directory;
+ * the least recently used are removed beyond
+ * <code>org.jenkinsci.plugins.p4.scm.ContentCache.size</code> entries.
+ */
+public class ContentCache {
+
+	private static Logger logger = Logger.getLogger(ContentCache.class.getName());
+
+	public static final int DEFAULT_SIZE = 1000;
+
+	private static final int size = Integer.getInteger(ContentCache.class.getName() + ".size", DEFAULT_SIZE);
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	private ContentCache() {
+	}
+
+	/**
+	 * @param digest  Server digest of the revision (fstat -Ol)
+	 * @param length  File size
+	 * @param type    File type
+	 * @param charset Charset for unicode servers, or null
+	 * @return key for the content, or null if the revision has no digest
+	 */
+	public static String getKey(String digest, long length, String type, String charset) {
+		if (digest == null || digest.isEmpty()) {
+			return null;
+		}
+		return Util.getDigestOf(digest + "\n" + length + "\n" + type + "\n" + charset);
+	}
+
+	/**
+	 * Get the content for a key, loading and storing it on a miss.
+	 *
+	 * @param key    Key from {@link #getKey}
+	 * @param loader Reads the content from the server
+	 * @return the content
+	 * @throws Exception from the loader
+	 */
+	public static byte[] get(String key, ProbeCache.Loader<InputStream> loader) throws Exception {
+		File dir = getDir();
+		if (key == null || dir == null || size <= 0) {
+			return load(loader);
+		}
+
+		Path file = dir.toPath().resolve(key);
+		try {
+			byte[] content = Files.readAllBytes(file);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			hits.incrementAndGet();
+			return content;
+		} catch (IOException e) {
+			// not cached
+		}
+
+		misses.incrementAndGet();
+		byte[] content = load(loader);
+		try {
+			Files.createDirectories(file.getParent());
+			Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+			Files.write(tmp, content);
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			prune(dir);
+		} catch (IOException e) {
+			logger.warning("P4: unable to cache content: " + e.getMessage());
+		}
+		return content;
+	}
+
+	/**
+	 * @return number of reads from the cache
+	 */
+	public static long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of reads from the server
+	 */
+	public static long getMisses() {
+		return misses.get();
+	}
+
+	private static byte[] load(ProbeCache.Loader<InputStream> loader) throws Exception {
+		try (InputStream in = loader.load()) {
+			return (in == null) ? new byte[0] : in.readAllBytes();
+		}
+	}
+
+	private static synchronized void prune(File dir) {
+		File[] files = dir.listFiles(f -> f.isFile() && !f.getName().endsWith(".tmp"));
+		if (files == null || files.length <= size) {
+			return;
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (int i = 0; i < files.length - size; i++) {
+			if (!files[i].delete()) {
+				logger.fine("P4: unable to remove cached content: " + files[i]);
+			}
+		}
+	}
+
+	private static File getDir() {
+		Jenkins j = Jenkins.getInstanceOrNull();
+		return (j == null) ? null : new File(j.getRootDir(), "caches/p4-content");
+	}
+}
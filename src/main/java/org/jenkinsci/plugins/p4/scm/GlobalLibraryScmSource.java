@@ -89,6 +89,7 @@ public class GlobalLibraryScmSource extends AbstractP4ScmSource {
 			String pin = perforceRevision.getRef().toString();
 			Populate populate = new GraphHybridImpl(true, pin, null);
 			PerforceScm scm = new PerforceScm(getCredential(), workspace, null, populate, getBrowser());
+			scm.setLibrary(path.getPath());
 			return scm;
 		} else {
 			throw new IllegalArgumentException("SCMHead and/or SCMRevision not a Perforce instance!");
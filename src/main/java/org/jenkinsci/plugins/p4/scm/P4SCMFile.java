@@ -1,6 +1,7 @@
 package org.jenkinsci.plugins.p4.scm;
 
 import com.perforce.p4java.client.IClient;
+import com.perforce.p4java.core.file.FileAction;
 import com.perforce.p4java.core.file.FileSpecBuilder;
 import com.perforce.p4java.core.file.FileSpecOpStatus;
 import com.perforce.p4java.core.file.IExtendedFileSpec;
@@ -13,11 +14,13 @@ import jenkins.scm.api.SCMFile;
 import org.jenkinsci.plugins.p4.client.ConnectionHelper;
 import org.jenkinsci.plugins.p4.client.NavigateHelper;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 public class P4SCMFile extends SCMFile {
@@ -52,13 +55,21 @@ public class P4SCMFile extends SCMFile {
 	 */
 	@NonNull
 	@Override
-	public Iterable<SCMFile> children() {
+	public Iterable<SCMFile> children() throws IOException {
 		String path = getPath();
 
-		ConnectionHelper p4 = fs.getConnection();
+		List<SCMFile> list = new ArrayList<>();
+		P4SCMFileTree tree = fs.getTree(path);
+		if (tree != null) {
+			for (Map.Entry<String, Boolean> child : tree.getChildren(path).entrySet()) {
+				list.add(newChild(child.getKey(), child.getValue()));
+			}
+			return list;
+		}
+
+		ConnectionHelper p4 = fs.getClientConnection();
 		NavigateHelper nav = new NavigateHelper(p4.getConnection());
 
-		List<SCMFile> list = new ArrayList<>();
 		List<NavigateHelper.Node> nodes = nav.getNodes(path);
 		for (NavigateHelper.Node node : nodes) {
 			list.add(newChild(node.getName(), node.isDir()));
@@ -76,8 +87,18 @@ public class P4SCMFile extends SCMFile {
 	 */
 	@Override
 	public long lastModified() throws IOException {
+		P4SCMFileTree tree = fs.findTree(getPath());
+		if (tree != null) {
+			return tree.getLastModified(getPath());
+		}
 
-		ConnectionHelper p4 = fs.getConnection();
+		if (getDepotPath() != null) {
+			IExtendedFileSpec mapped = getMappedSpec();
+			Date date = (mapped == null) ? null : mapped.getHeadModTime();
+			return (date == null) ? 0 : date.getTime();
+		}
+
+		ConnectionHelper p4 = fs.getClientConnection();
 		List<IFileSpec> file = getFileSpec();
 
 		GetExtendedFilesOptions exOpts = new GetExtendedFilesOptions();
@@ -108,18 +129,42 @@ public class P4SCMFile extends SCMFile {
 			return Type.DIRECTORY;
 		}
 
-		ConnectionHelper p4 = fs.getConnection();
-		List<IFileSpec> file = getFileSpec();
+		P4SCMFileTree tree = fs.findTree(getPath());
+		if (tree != null) {
+			return tree.getType(getPath());
+		}
 
+		if (getDepotPath() != null) {
+			IExtendedFileSpec mapped = getMappedSpec();
+			if (mapped == null) {
+				return Type.NONEXISTENT;
+			}
+			return getType(mapped.getHeadType());
+		}
+
+		ConnectionHelper p4 = fs.getClientConnection();
+
+		// cache by view and path when the change is known
+		String view = fs.getViewKey();
+		if (view == null || fs.getChange() <= 0) {
+			return getType(p4, getFileSpec());
+		}
+		List<IFileSpec> file = FileSpecBuilder.makeFileSpecList(getClientPath() + "@" + fs.getChange());
+		try {
+			return ProbeCache.get(p4.getPort(), p4.getUser(), view + "\n" + getPath(), fs.getChange(), () -> getType(p4, file));
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static Type getType(ConnectionHelper p4, List<IFileSpec> file) throws IOException {
 		GetExtendedFilesOptions exOpts = new GetExtendedFilesOptions();
 		try {
 			List<IExtendedFileSpec> fstat = p4.getConnection().getExtendedFiles(file, exOpts);
 			if (fstat.get(0).getOpStatus().equals(FileSpecOpStatus.VALID)) {
-				String type = fstat.get(0).getHeadType();
-				if (type.startsWith("symlink")) {
-					return Type.LINK;
-				}
-				return Type.REGULAR_FILE;
+				return getType(fstat.get(0).getHeadType());
 			}
 		} catch (P4JavaException e) {
 			throw new IOException(e);
@@ -128,6 +173,13 @@ public class P4SCMFile extends SCMFile {
 		return Type.NONEXISTENT;
 	}
 
+	private static Type getType(String type) {
+		if (type != null && type.startsWith("symlink")) {
+			return Type.LINK;
+		}
+		return Type.REGULAR_FILE;
+	}
+
 	/**
 	 * Reads the content of this file.
 	 *
@@ -138,10 +190,30 @@ public class P4SCMFile extends SCMFile {
 	@NonNull
 	@Override
 	public InputStream content() throws IOException {
-		ConnectionHelper p4 = fs.getConnection();
-		List<IFileSpec> file = getFileSpec();
 		GetFileContentsOptions printOpts = new GetFileContentsOptions();
 		printOpts.setNoHeaderLine(true);
+
+		// one print at the change, shared by revisions with the same digest
+		String depotPath = getDepotPath();
+		if (depotPath != null) {
+			ConnectionHelper p4 = fs.getConnection();
+			IExtendedFileSpec mapped = getMappedSpec();
+			String key = (mapped == null) ? null : ContentCache.getKey(mapped.getDigest(), mapped.getFileSize(),
+					mapped.getHeadType(), p4.getConnection().getCharsetName());
+			List<IFileSpec> file = FileSpecBuilder.makeFileSpecList(getDepotRevision(depotPath));
+			fs.addJenkinsFilePath(depotPath);
+			try {
+				byte[] content = ContentCache.get(key, () -> p4.getConnection().getFileContents(file, printOpts));
+				return new ByteArrayInputStream(content);
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+
+		ConnectionHelper p4 = fs.getClientConnection();
+		List<IFileSpec> file = getFileSpec();
 		addJenkinsFilePathToTagAction(p4, file);
 		try {
 			return p4.getConnection().getFileContents(file, printOpts);
@@ -150,6 +222,42 @@ public class P4SCMFile extends SCMFile {
 		}
 	}
 
+	// depot path through the file system's view, or null if a client is needed
+	private String getDepotPath() {
+		return isDir ? null : fs.getDepotPath(getClientPath());
+	}
+
+	private String getDepotRevision(String depotPath) {
+		return depotPath + ((fs.getChange() > 0) ? "@" + fs.getChange() : "");
+	}
+
+	// fstat of the mapped depot path, with digest; null if the file does not exist
+	private IExtendedFileSpec getMappedSpec() throws IOException {
+		String depotPath = getDepotPath();
+		if (depotPath == null) {
+			return null;
+		}
+		ConnectionHelper p4 = fs.getConnection();
+		List<IFileSpec> file = FileSpecBuilder.makeFileSpecList(getDepotRevision(depotPath));
+		try {
+			return ProbeCache.get(p4.getPort(), p4.getUser(), "fstat " + depotPath, fs.getChange(), () -> {
+				GetExtendedFilesOptions exOpts = new GetExtendedFilesOptions();
+				exOpts.setIncludeFileSizeDigest(true);
+				List<IExtendedFileSpec> fstat = p4.getConnection().getExtendedFiles(file, exOpts);
+				if (fstat.isEmpty() || !FileSpecOpStatus.VALID.equals(fstat.get(0).getOpStatus())) {
+					return null;
+				}
+				IExtendedFileSpec spec = fstat.get(0);
+				FileAction action = spec.getHeadAction();
+				return (action == FileAction.DELETE || action == FileAction.MOVE_DELETE) ? null : spec;
+			});
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
 	private void addJenkinsFilePathToTagAction(ConnectionHelper p4, List<IFileSpec> file) {
 		try {
 			IClient currentClient = p4.getConnection().getCurrentClient();
@@ -163,13 +271,17 @@ public class P4SCMFile extends SCMFile {
 	}
 
 	private List<IFileSpec> getFileSpec() {
+		List<IFileSpec> file = FileSpecBuilder.makeFileSpecList(getClientPath());
+		return file;
+	}
+
+	private String getClientPath() {
 		String clientPath = "//" + fs.getConnection().getClientUUID() + "/";
 
 		String path = getPath();
 		if (!path.startsWith(clientPath)) {
 			path = clientPath + path;
 		}
-		List<IFileSpec> file = FileSpecBuilder.makeFileSpecList(path);
-		return file;
+		return path;
 	}
 }
@@ -1,8 +1,16 @@
 package org.jenkinsci.plugins.p4.scm;
 
+import com.perforce.p4java.client.IClient;
+import com.perforce.p4java.client.IClientViewMapping;
+import com.perforce.p4java.core.file.FileAction;
+import com.perforce.p4java.core.file.FileSpecBuilder;
+import com.perforce.p4java.core.file.FileSpecOpStatus;
+import com.perforce.p4java.core.file.IExtendedFileSpec;
+import com.perforce.p4java.option.server.GetExtendedFilesOptions;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.EnvVars;
+import hudson.AbortException;
 import hudson.Extension;
 import hudson.model.Item;
 import hudson.model.Run;
@@ -14,15 +22,25 @@ import jenkins.scm.api.SCMFileSystem;
 import jenkins.scm.api.SCMRevision;
 import jenkins.scm.api.SCMSource;
 import jenkins.scm.api.SCMSourceDescriptor;
+import jenkins.scm.api.mixin.ChangeRequestSCMHead;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.p4.PerforceScm;
+import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
+import org.jenkinsci.plugins.p4.client.ClientViewMapper;
 import org.jenkinsci.plugins.p4.client.TempClientHelper;
 import org.jenkinsci.plugins.p4.tagging.TagAction;
+import org.jenkinsci.plugins.p4.workspace.ManualWorkspaceImpl;
+import org.jenkinsci.plugins.p4.workspace.StreamWorkspaceImpl;
 import org.jenkinsci.plugins.p4.workspace.Workspace;
 import org.jenkinsci.plugins.workflow.cps.CpsScmFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,12 +48,35 @@ public class P4SCMFileSystem extends SCMFileSystem {
 
 	private static Logger logger = Logger.getLogger(P4SCMFileSystem.class.getName());
 
+	// create a temporary client for every lightweight checkout, as before
+	private static final boolean tempClient = Boolean.getBoolean(P4SCMFileSystem.class.getName() + ".tempClient");
+
+	public static final int DEFAULT_TREE_FILES = 10000;
+
+	// most files fetched in one go when listing a directory
+	private static final int treeFiles = Integer.getInteger(P4SCMFileSystem.class.getName() + ".treeFiles", DEFAULT_TREE_FILES);
+
 	private TempClientHelper p4;
 
 	private WorkflowJob _job = null;
 
 	private String credential;
 
+	private long change = 0L;
+
+	private String viewKey = null;
+
+	private final Workspace workspace;
+
+	private ClientViewMapper mapper = null;
+
+	private boolean clientReady = false;
+
+	private final List<P4SCMFileTree> trees = new ArrayList<>();
+
+	// directories with too many files to fetch, or whose fetch failed
+	private final Set<String> untreed = new HashSet<>();
+
 	protected P4SCMFileSystem(@NonNull Item owner, @NonNull PerforceScm scm, @CheckForNull P4SCMRevision rev) throws Exception {
 		super(rev);
 		credential = scm.getCredential();
@@ -49,7 +90,148 @@ public class P4SCMFileSystem extends SCMFileSystem {
 			ws.setExpand(env);
 		}
 
-		this.p4 = new TempClientHelper(owner, credential, null, ws);
+		this.p4 = new TempClientHelper(owner, credential, null, null);
+		this.workspace = ws;
+
+		// read files through an in-process view, creating a client only if needed
+		if (!tempClient) {
+			this.mapper = p4.map(ws);
+		}
+		if (mapper == null) {
+			getClientConnection();
+		}
+
+		// a submitted change, the user and the expanded view identify the files, for the probe cache
+		if (rev != null && rev.getRef() instanceof P4ChangeRef && !(rev.getHead() instanceof ChangeRequestSCMHead)) {
+			this.change = rev.getRef().getChange();
+		}
+		String view = null;
+		if (mapper != null) {
+			view = "view " + String.join("\n", ((ManualWorkspaceImpl) ws).getViewLines());
+		} else if (ws instanceof StreamWorkspaceImpl || ws instanceof ManualWorkspaceImpl) {
+			IClient client = p4.getClient();
+			String stream = client.getStream();
+			if (stream != null && !stream.isEmpty()) {
+				view = "stream " + stream;
+			} else if (ws instanceof ManualWorkspaceImpl && client.getClientView() != null) {
+				List<String> lines = new ArrayList<>();
+				for (IClientViewMapping mapping : client.getClientView()) {
+					lines.add(mapping.toString(" ", true));
+				}
+				view = "view " + String.join("\n", lines);
+			}
+		}
+		if (view != null) {
+			this.viewKey = view.replace(p4.getClientUUID(), "${P4_CLIENT}");
+		}
+	}
+
+	/**
+	 * @param clientPath Path in the temporary client
+	 * @return depot path, or null if the path must be resolved by a client
+	 */
+	public String getDepotPath(String clientPath) {
+		return (mapper == null) ? null : mapper.toDepot(clientPath);
+	}
+
+	/**
+	 * @return the connection, with the temporary client created
+	 * @throws AbortException if the client cannot be created
+	 */
+	public synchronized TempClientHelper getClientConnection() throws AbortException {
+		if (!clientReady) {
+			p4.update(workspace);
+			clientReady = true;
+		}
+		return p4;
+	}
+
+	/**
+	 * @return submitted change the files are at, or 0 if not known
+	 */
+	public long getChange() {
+		return change;
+	}
+
+	/**
+	 * @return the client view, or null if only known by the server
+	 */
+	public String getViewKey() {
+		return viewKey;
+	}
+
+	/**
+	 * Files under a directory, fetched once with a single fstat. A directory
+	 * with too many files, or whose fetch fails, is not tried again.
+	 *
+	 * @param dir Relative directory, or "" for the client root
+	 * @return the files, or null if they must be listed one directory at a time
+	 */
+	public synchronized P4SCMFileTree getTree(String dir) {
+		P4SCMFileTree tree = findTree(dir);
+		if (tree != null || treeFiles <= 0 || untreed.contains(dir)) {
+			return tree;
+		}
+
+		try {
+			TempClientHelper client = getClientConnection();
+			ClientViewMapper view = (mapper != null) ? mapper : ClientViewMapper.fromView(client.getClient().getClientView());
+			if (view == null) {
+				untreed.add(dir);
+				return null;
+			}
+
+			String clientRoot = "//" + client.getClientUUID() + "/";
+			String path = clientRoot + (dir.isEmpty() ? "" : dir + "/") + "..." + ((change > 0) ? "@" + change : "");
+			GetExtendedFilesOptions exOpts = new GetExtendedFilesOptions();
+			exOpts.setMaxResults(treeFiles + 1);
+			List<IExtendedFileSpec> fstat = client.getConnection().getExtendedFiles(FileSpecBuilder.makeFileSpecList(path), exOpts);
+			if (fstat.size() > treeFiles) {
+				logger.fine("P4: too many files to fetch under: " + path);
+				untreed.add(dir);
+				return null;
+			}
+
+			List<P4SCMFileTree.Leaf> leaves = new ArrayList<>();
+			for (IExtendedFileSpec spec : fstat) {
+				if (spec == null || !FileSpecOpStatus.VALID.equals(spec.getOpStatus())) {
+					continue;
+				}
+				FileAction action = spec.getHeadAction();
+				if (action == FileAction.DELETE || action == FileAction.MOVE_DELETE) {
+					continue;
+				}
+				String clientPath = view.toClient(spec.getDepotPathString());
+				if (clientPath == null || !clientPath.startsWith(clientRoot)) {
+					continue;
+				}
+				String type = spec.getHeadType();
+				Date date = spec.getHeadModTime();
+				leaves.add(new P4SCMFileTree.Leaf(clientPath.substring(clientRoot.length()),
+						type != null && type.startsWith("symlink"), (date == null) ? 0 : date.getTime()));
+			}
+
+			tree = new P4SCMFileTree(dir, leaves);
+			trees.add(tree);
+			return tree;
+		} catch (Exception e) {
+			logger.warning("P4: unable to fetch files under " + dir + ": " + e.getMessage());
+			untreed.add(dir);
+			return null;
+		}
+	}
+
+	/**
+	 * @param path Relative path
+	 * @return files already fetched for the path, or null
+	 */
+	public synchronized P4SCMFileTree findTree(String path) {
+		for (P4SCMFileTree tree : trees) {
+			if (tree.covers(path)) {
+				return tree;
+			}
+		}
+		return null;
 	}
 
 	public void addJenkinsFilePath(String path) {
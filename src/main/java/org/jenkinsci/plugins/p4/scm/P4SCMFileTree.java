@@ -0,0 +1,104 @@
+package org.jenkinsci.plugins.p4.scm;
+
+import jenkins.scm.api.SCMFile;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Files under a directory of a {@link P4SCMFileSystem}, fetched with one
+ * fstat so that listing, type and modification time are answered locally.
+ * <p>
+ * Paths are relative to the client root, e.g. <code>vars/build.groovy</code>.
+ */
+public class P4SCMFileTree {
+
+	private final String root;
+
+	// file -> leaf
+	private final Map<String, Leaf> files = new HashMap<>();
+
+	// directory -> child name -> is directory
+	private final Map<String, SortedMap<String, Boolean>> dirs = new HashMap<>();
+
+	/**
+	 * @param root   Directory fetched, or "" for the client root
+	 * @param leaves Files under the directory
+	 */
+	public P4SCMFileTree(String root, List<Leaf> leaves) {
+		this.root = root;
+		dirs.put(root, new TreeMap<>());
+		for (Leaf leaf : leaves) {
+			if (!covers(leaf.path) || leaf.path.equals(root)) {
+				continue;
+			}
+			files.put(leaf.path, leaf);
+
+			// add the file and its parents up to the root
+			String path = leaf.path;
+			boolean isDir = false;
+			while (!path.equals(root)) {
+				int slash = path.lastIndexOf('/');
+				String parent = (slash < 0) ? "" : path.substring(0, slash);
+				SortedMap<String, Boolean> children = dirs.computeIfAbsent(parent, k -> new TreeMap<>());
+				children.put(path.substring(slash + 1), isDir);
+				path = parent;
+				isDir = true;
+			}
+		}
+	}
+
+	/**
+	 * @param path Relative path
+	 * @return true if the path is under the directory fetched
+	 */
+	public boolean covers(String path) {
+		return root.isEmpty() || path.equals(root) || path.startsWith(root + "/");
+	}
+
+	/**
+	 * @param dir Relative directory
+	 * @return child names, with true for directories
+	 */
+	public SortedMap<String, Boolean> getChildren(String dir) {
+		SortedMap<String, Boolean> children = dirs.get(dir);
+		return (children == null) ? Collections.emptySortedMap() : Collections.unmodifiableSortedMap(children);
+	}
+
+	/**
+	 * @param path Relative path
+	 * @return the type of the path
+	 */
+	public SCMFile.Type getType(String path) {
+		Leaf leaf = files.get(path);
+		if (leaf != null) {
+			return leaf.link ? SCMFile.Type.LINK : SCMFile.Type.REGULAR_FILE;
+		}
+		return dirs.containsKey(path) ? SCMFile.Type.DIRECTORY : SCMFile.Type.NONEXISTENT;
+	}
+
+	/**
+	 * @param path Relative path
+	 * @return modification time of a file, or 0
+	 */
+	public long getLastModified(String path) {
+		Leaf leaf = files.get(path);
+		return (leaf == null) ? 0 : leaf.lastModified;
+	}
+
+	public static final class Leaf {
+		private final String path;
+		private final boolean link;
+		private final long lastModified;
+
+		public Leaf(String path, boolean link, long lastModified) {
+			this.path = path;
+			this.link = link;
+			this.lastModified = lastModified;
+		}
+	}
+}
@@ -7,10 +7,13 @@ import hudson.model.Items;
 import jenkins.scm.api.SCMFile;
 import jenkins.scm.api.SCMProbe;
 import jenkins.scm.api.SCMProbeStat;
+import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
 import org.jenkinsci.plugins.p4.client.TempClientHelper;
+import org.jenkinsci.plugins.p4.trigger.ViewTrie;
 
 import java.io.IOException;
 import java.io.Serial;
+import java.util.List;
 import java.util.logging.Logger;
 
 public class P4SCMProbe extends SCMProbe {
@@ -28,9 +31,17 @@ public class P4SCMProbe extends SCMProbe {
 	private final P4SCMHead head;
 	private transient TempClientHelper p4 = null;
 
+	// submitted change the head was resolved at, or 0 for the head revision
+	private final long change;
+
 	public P4SCMProbe(TempClientHelper p4, P4SCMHead head) {
+		this(p4, head, 0L);
+	}
+
+	public P4SCMProbe(TempClientHelper p4, P4SCMHead head, long change) {
 		this.head = head;
 		this.p4 = p4;
+		this.change = change;
 	}
 
 	@Override
@@ -42,8 +53,18 @@ public class P4SCMProbe extends SCMProbe {
 	public long lastModified() {
 		long last = 0L;
 		try {
-			// use temp workspace and client syntax to get changes
-			long change = p4.getClientHead();
+			long change;
+			List<String> depotView = p4.getDepotView();
+			if (depotView != null) {
+				// depot view changes, cached for a resolved change
+				String key = "changes " + String.join(" ", depotView);
+				change = ProbeCache.get(p4.getPort(), p4.getUser(), key, this.change, () -> (this.change > 0)
+						? p4.getHead(depotView, null, new P4ChangeRef(this.change))
+						: p4.getClientHead());
+			} else {
+				// use temp workspace and client syntax to get changes
+				change = p4.getClientHead();
+			}
 			if (change > last) {
 				last = change;
 			}
@@ -60,6 +81,22 @@ public class P4SCMProbe extends SCMProbe {
 			P4Path path = head.getPath();
 			String filePath = path.getPathBuilder(file); // Depot Path syntax
 
+			// Without a temp client, check the file is within the depot view
+			List<String> depotView = p4.getDepotView();
+			if (depotView != null) {
+				ViewTrie view = new ViewTrie();
+				view.add(head.getName(), depotView);
+				if (view.match(path.getPath() + "/" + file).isEmpty()) {
+					return SCMProbeStat.fromType(SCMFile.Type.NONEXISTENT);
+				}
+
+				// check the file at the resolved change, so the result can be cached
+				String depotPath = (change > 0 && !filePath.contains("@")) ? filePath + "@" + change : filePath;
+				p4.log("Scanning for " + depotPath);
+				boolean found = ProbeCache.get(p4.getPort(), p4.getUser(), depotPath, change, () -> p4.hasFile(depotPath));
+				return SCMProbeStat.fromType(found ? SCMFile.Type.REGULAR_FILE : SCMFile.Type.NONEXISTENT);
+			}
+
 			// When probing Streams, switch to use client path syntax.  This works for
 			// all streams, including virtual streams(JENKINS-62699).
 			p4.log("Scanning for " + filePath);
@@ -0,0 +1,157 @@
+package org.jenkinsci.plugins.p4.scm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Least recently used cache of file probes (e.g. does a Jenkinsfile exist,
+ * what is its type) keyed by P4PORT, user, path and change; protections
+ * decide which files a user can see.
+ * <p>
+ * Submitted changes do not change, so results for a change are kept until
+ * evicted; results with no change (the head revision) expire after a short
+ * time. Shared by {@link P4SCMProbe}, the branch scanner and {@link P4SCMFile}.
+ * <p>
+ * The size and expiry can be set with the system properties
+ * <code>org.jenkinsci.plugins.p4.scm.ProbeCache.size</code> and
+ * <code>.ttl</code> (seconds).
+ */
+public class ProbeCache {
+
+	public static final int DEFAULT_SIZE = 10000;
+	public static final int DEFAULT_TTL = 60;
+
+	private static final int size = Integer.getInteger(ProbeCache.class.getName() + ".size", DEFAULT_SIZE);
+	private static final long ttl = TimeUnit.SECONDS.toMillis(Integer.getInteger(ProbeCache.class.getName() + ".ttl", DEFAULT_TTL));
+
+	private static final Map<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			if (size() > size) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+	private static final AtomicLong evictions = new AtomicLong();
+
+	private ProbeCache() {
+	}
+
+	/**
+	 * Get a probe result, loading it on a miss.
+	 *
+	 * @param port   P4PORT
+	 * @param user   Perforce user
+	 * @param path   Path (and any view it depends on)
+	 * @param change Change the result is for, or 0 for the head revision
+	 * @param loader Runs the probe
+	 * @param <T>    Result type
+	 * @return the result
+	 * @throws Exception from the loader
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(String port, String user, String path, long change, Loader<T> loader) throws Exception {
+		if (size <= 0) {
+			return loader.load();
+		}
+
+		String key = port + "\n" + user + "\n" + path + "\n" + change;
+		long now = System.currentTimeMillis();
+		synchronized (cache) {
+			Entry entry = cache.get(key);
+			if (entry != null && (entry.expires == 0 || entry.expires > now)) {
+				hits.incrementAndGet();
+				return (T) entry.value;
+			}
+		}
+
+		misses.incrementAndGet();
+		T value = loader.load();
+		synchronized (cache) {
+			cache.put(key, new Entry(value, (change > 0) ? 0 : now + ttl));
+		}
+		return value;
+	}
+
+	/**
+	 * Drop all entries.
+	 */
+	public static void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return cache statistics
+	 */
+	public static Stats getStats() {
+		return new Stats();
+	}
+
+	/**
+	 * Loads a probe result; may throw.
+	 *
+	 * @param <T> Result type
+	 */
+	@FunctionalInterface
+	public interface Loader<T> {
+		T load() throws Exception;
+	}
+
+	private static final class Entry {
+		private final Object value;
+		private final long expires;
+
+		private Entry(Object value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	public static final class Stats {
+		private final int entries;
+		private final int size = ProbeCache.size;
+		private final long hits = ProbeCache.hits.get();
+		private final long misses = ProbeCache.misses.get();
+		private final long evictions = ProbeCache.evictions.get();
+
+		private Stats() {
+			synchronized (cache) {
+				entries = cache.size();
+			}
+		}
+
+		public int getEntries() {
+			return entries;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public double getHitRate() {
+			long total = hits + misses;
+			return (total == 0) ? 0 : (double) hits / total;
+		}
+	}
+}
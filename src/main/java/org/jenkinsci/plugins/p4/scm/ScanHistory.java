@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.p4.scm;
+
+import jenkins.scm.api.SCMSourceOwner;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The highest submitted change at the last scan of each multibranch source,
+ * so the next scan only resolves the heads with changes since.
+ * <p>
+ * Held in memory; the first scan after a restart is a full scan.
+ */
+public class ScanHistory {
+
+	private static final Map<String, Entry> history = new ConcurrentHashMap<>();
+
+	private ScanHistory() {
+	}
+
+	/**
+	 * @param owner    Multibranch project
+	 * @param sourceId SCM source id
+	 * @return key for the source
+	 */
+	public static String getKey(SCMSourceOwner owner, String sourceId) {
+		return owner.getFullName() + "\n" + sourceId;
+	}
+
+	/**
+	 * @param key Source key
+	 * @return the last scan, or null if not scanned since start up
+	 */
+	public static Entry get(String key) {
+		return history.get(key);
+	}
+
+	/**
+	 * Record a scan.
+	 *
+	 * @param key      Source key
+	 * @param change   Highest submitted change at the start of the scan
+	 * @param fullScan Time of the last full scan
+	 */
+	public static void put(String key, long change, long fullScan) {
+		history.put(key, new Entry(change, fullScan));
+	}
+
+	/**
+	 * Forget the sources of a project, e.g. when it is deleted or renamed.
+	 *
+	 * @param owner Project full name
+	 */
+	public static void forget(String owner) {
+		history.keySet().removeIf(key -> key.startsWith(owner + "\n"));
+	}
+
+	public static final class Entry {
+		private final long change;
+		private final long fullScan;
+
+		private Entry(long change, long fullScan) {
+			this.change = change;
+			this.fullScan = fullScan;
+		}
+
+		public long getChange() {
+			return change;
+		}
+
+		public long getFullScan() {
+			return fullScan;
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package org.jenkinsci.plugins.p4.scm;
 
+import com.perforce.p4java.core.IStream;
 import com.perforce.p4java.core.IStreamSummary;
+import com.perforce.p4java.core.IStreamViewMapping;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.TaskListener;
@@ -16,6 +18,7 @@ import org.kohsuke.stapler.DataBoundSetter;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 public class StreamsScmSource extends AbstractP4ScmSource {
@@ -81,6 +84,74 @@ public class StreamsScmSource extends AbstractP4ScmSource {
 		return new StreamWorkspaceImpl(getCharset(), false, path.getPath(), getFormat());
 	}
 
+	/**
+	 * Shared and isolated paths of the stream. Virtual and task streams,
+	 * import, exclude, remapped or ignored paths, and parents that do not
+	 * share their whole stream, need a client view.
+	 */
+	@Override
+	protected List<String> getDepotView(ConnectionHelper p4, P4Path path) throws Exception {
+		IStream stream = p4.getStream(path.getPath());
+		if (!isDepotView(stream)) {
+			return null;
+		}
+
+		List<String> view = new ArrayList<>();
+		for (IStreamViewMapping mapping : stream.getStreamView().getEntryList()) {
+			view.add(stream.getStream() + "/" + mapping.getViewPath());
+		}
+
+		Set<String> parents = new HashSet<>();
+		String parent = stream.getParent();
+		while (parent != null && !parent.isEmpty() && !"none".equals(parent) && parents.add(parent)) {
+			IStream spec = p4.getStream(parent);
+			if (!isDepotView(spec)) {
+				return null;
+			}
+			for (IStreamViewMapping mapping : spec.getStreamView().getEntryList()) {
+				if (!"...".equals(mapping.getViewPath())) {
+					return null;
+				}
+			}
+			parent = spec.getParent();
+		}
+		return view;
+	}
+
+	private static boolean isDepotView(IStream stream) {
+		if (stream == null || stream.getType() == null || stream.getStreamView() == null) {
+			return false;
+		}
+		switch (stream.getType()) {
+			case MAINLINE:
+			case DEVELOPMENT:
+			case RELEASE:
+				break;
+			default:
+				return false;
+		}
+		if (stream.getRemappedView() != null && !stream.getRemappedView().getEntryList().isEmpty()) {
+			return false;
+		}
+		if (stream.getIgnoredView() != null && !stream.getIgnoredView().getEntryList().isEmpty()) {
+			return false;
+		}
+		for (IStreamViewMapping mapping : stream.getStreamView().getEntryList()) {
+			if (mapping.getPathType() == null) {
+				return false;
+			}
+			switch (mapping.getPathType().name()) {
+				case "SHARE":
+				case "ISOLATE":
+				case "PUBLIC":
+					break;
+				default:
+					return false;
+			}
+		}
+		return true;
+	}
+
 	@Extension
 	@Symbol("multiStreams")
 	public static final class DescriptorImpl extends P4SCMSourceDescriptor {
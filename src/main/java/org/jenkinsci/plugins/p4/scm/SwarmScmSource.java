@@ -24,6 +24,7 @@ import org.jenkinsci.plugins.p4.client.TempClientHelper;
 import org.jenkinsci.plugins.p4.client.ViewMapHelper;
 import org.jenkinsci.plugins.p4.review.ReviewProp;
 import org.jenkinsci.plugins.p4.scm.events.P4BranchScanner;
+import org.jenkinsci.plugins.p4.swarmAPI.SwarmClient;
 import org.jenkinsci.plugins.p4.swarmAPI.SwarmHelper;
 import org.jenkinsci.plugins.p4.swarmAPI.SwarmProjectAPI;
 import org.jenkinsci.plugins.p4.swarmAPI.SwarmReviewAPI;
@@ -126,10 +127,24 @@ public class SwarmScmSource extends AbstractP4ScmSource {
 		List<P4SCMHead> list = new ArrayList<>();
 
 		List<SwarmReviewsAPI.Reviews> reviews = getSwarm().getActiveReviews(project);
-		for (SwarmReviewsAPI.Reviews review : reviews) {
+		List<SwarmProjectAPI.Branch> projectBranches = getSwarm().getBranchesInProject(project);
+
+		// review branches come with the list; fetch details in parallel if not
+		List<List<String>> reviewBranches = SwarmClient.fetchAll(reviews, review -> {
+			if (review.getProjects() != null) {
+				return review.getProjects().get(project);
+			}
+			return getBranchesInReview(String.valueOf(review.getId()), project);
+		});
+
+		for (int i = 0; i < reviews.size(); i++) {
+			SwarmReviewsAPI.Reviews review = reviews.get(i);
 			String reviewID = String.valueOf(review.getId());
 
-			List<String> branches = getBranchesInReview(reviewID, project);
+			List<String> branches = reviewBranches.get(i);
+			if (branches == null) {
+				continue;
+			}
 			for (String branch : branches) {
 				// check the excludes
 				if (excludesPattern.matcher(branch).matches()) {
@@ -137,7 +152,7 @@ public class SwarmScmSource extends AbstractP4ScmSource {
 				}
 
 				// Get first Swarm path; it MUST include the Jenkinsfile
-				P4Path p4Path = getPathsInBranch(branch, project);
+				P4Path p4Path = getPathsInBranch(branch, projectBranches);
 				if (p4Path != null) {
 					p4Path.setRevision(reviewID);
 
@@ -335,10 +350,7 @@ public class SwarmScmSource extends AbstractP4ScmSource {
 		return lastChange;
 	}
 
-	private P4Path getPathsInBranch(String id, String project) throws Exception {
-
-		List<SwarmProjectAPI.Branch> branches = getSwarm().getBranchesInProject(project);
-
+	private P4Path getPathsInBranch(String id, List<SwarmProjectAPI.Branch> branches) {
 		for (SwarmProjectAPI.Branch branch : branches) {
 			if (id.equals(branch.getId())) {
 				P4Path swarmPath = branch.getPath();
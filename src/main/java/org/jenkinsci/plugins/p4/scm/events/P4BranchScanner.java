@@ -1,13 +1,17 @@
 package org.jenkinsci.plugins.p4.scm.events;
 
+import com.perforce.p4java.core.file.FileSpecOpStatus;
 import com.perforce.p4java.core.file.IFileSpec;
 import hudson.model.TaskListener;
 import hudson.util.LogTaskListener;
+import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
 import org.jenkinsci.plugins.p4.changes.P4Ref;
 import org.jenkinsci.plugins.p4.client.ConnectionHelper;
 import org.jenkinsci.plugins.p4.client.ViewMapHelper;
 import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
+import org.jenkinsci.plugins.p4.scm.ProbeCache;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
@@ -17,6 +21,11 @@ public class P4BranchScanner {
 
 	private static Logger logger = Logger.getLogger(P4BranchScanner.class.getName());
 
+	public static final int DEFAULT_SCAN_FILES = 1000;
+
+	// files read from a change to spot script adds and deletes
+	private static final int scanFiles = Integer.getInteger(P4BranchScanner.class.getName() + ".scanFiles", DEFAULT_SCAN_FILES);
+
 	private final P4BaseCredentials credential;
 	private final P4Ref change;
 	private final String file;
@@ -49,13 +58,46 @@ public class P4BranchScanner {
 	}
 
 	private void scan() throws Exception {
+		// changes are fixed, so a change scanned for another source or event is not scanned again
+		boolean fixed = change instanceof P4ChangeRef;
+		String port = credential.getFullP4port();
+		String id = change.toString();
+		if (fixed) {
+			String[] found = ScriptLocationCache.getChange(port, id, file);
+			if (found != null) {
+				if (found.length == 2) {
+					projectRoot = found[0];
+					branch = found[1];
+				}
+				return;
+			}
+		}
+
 		try (ConnectionHelper p4 = new ConnectionHelper(credential, getListener())) {
-			List<IFileSpec> files = change.getFiles(p4, 1);
+			List<IFileSpec> files = change.getFiles(p4, fixed ? scanFiles + 1 : 1);
 			if (files == null || files.isEmpty() || files.get(0) == null) {
 				p4.log("BranchScanner: Aborting - empty changelist.");
 				return;
 			}
 
+			// forget directories where the change adds, deletes or moves the script
+			if (fixed) {
+				boolean truncated = files.size() > scanFiles;
+				List<String> paths = new ArrayList<>();
+				for (IFileSpec spec : files.subList(0, Math.min(files.size(), scanFiles))) {
+					if (spec != null && spec.getOpStatus() == FileSpecOpStatus.VALID) {
+						paths.add(spec.getDepotPathString());
+					}
+				}
+				ScriptLocationCache.invalidate(port, file, paths);
+
+				// files past the limit are not read, so forget every directory the change spans
+				if (truncated) {
+					String prefix = p4.getChangePath(change.getChange());
+					ScriptLocationCache.invalidateUnder(port, file, (prefix == null) ? "//" : prefix);
+				}
+			}
+
 			String path = files.get(0).getDepotPathString();
 			String[] parts = ViewMapHelper.splitDepotPath(path);
 			if (parts.length < 2) {
@@ -63,17 +105,34 @@ public class P4BranchScanner {
 				return;
 			}
 
+			// look for the file at the change, so the walk can be cached
+			long at = fixed ? change.getChange() : 0L;
 			for (int n = parts.length - 1; n >= 1; n--) {
 				String[] sub = Arrays.copyOfRange(parts, 0, n);
-				String subPath = "//" + String.join("/", sub) + "/" + file;
-				if (p4.hasFile(subPath)) {
+				String dir = "//" + String.join("/", sub);
+				if (hasScript(p4, port, dir, at)) {
 					branch = sub[n - 1];
 					String[] projectSub = Arrays.copyOfRange(parts, 0, n - 1);
 					projectRoot = "//" + String.join("/", projectSub);
-					return;
+					break;
 				}
 			}
 		}
+
+		if (fixed) {
+			ScriptLocationCache.putChange(port, id, file, projectRoot, branch);
+		}
+	}
+
+	private boolean hasScript(ConnectionHelper p4, String port, String dir, long at) throws Exception {
+		Boolean known = ScriptLocationCache.hasScript(port, file, dir);
+		if (known != null) {
+			return known;
+		}
+		String subPath = dir + "/" + file + ((at > 0) ? "@" + at : "");
+		boolean found = ProbeCache.get(p4.getPort(), p4.getUser(), subPath, at, () -> p4.hasFile(subPath));
+		ScriptLocationCache.put(port, file, dir, found);
+		return found;
 	}
 
 	private TaskListener getListener() {
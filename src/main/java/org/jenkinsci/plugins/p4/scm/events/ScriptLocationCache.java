@@ -0,0 +1,238 @@
+package org.jenkinsci.plugins.p4.scm.events;
+
+import hudson.XmlFile;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Where the branch scanner found (or did not find) the pipeline script.
+ * <p>
+ * Remembers, for each directory walked, whether it holds the script, and the
+ * branch found for each change, so most events are routed without asking
+ * the server. A change that adds, deletes or moves a script file drops the
+ * entry for its directory; a change with too many files to list drops every
+ * entry under the change's common directory. Entries also expire after a day (for changes not
+ * seen as events) and are saved to the Jenkins root directory.
+ * <p>
+ * The number of directories and the expiry can be set with the system
+ * properties <code>org.jenkinsci.plugins.p4.scm.events.ScriptLocationCache.size</code>
+ * and <code>.ttl</code> (hours).
+ */
+public class ScriptLocationCache {
+
+	private static Logger logger = Logger.getLogger(ScriptLocationCache.class.getName());
+
+	public static final int DEFAULT_SIZE = 100000;
+	public static final int DEFAULT_TTL = 24;
+	public static final int CHANGE_SIZE = 1000;
+
+	private static final int size = Integer.getInteger(ScriptLocationCache.class.getName() + ".size", DEFAULT_SIZE);
+	private static final long ttl = TimeUnit.HOURS.toMillis(Integer.getInteger(ScriptLocationCache.class.getName() + ".ttl", DEFAULT_TTL));
+
+	// directory -> script found
+	private static final Map<String, Entry> dirs = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > size;
+		}
+	};
+
+	// change -> project root and branch (empty if not found)
+	private static final Map<String, String[]> changes = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+			return size() > CHANGE_SIZE;
+		}
+	};
+
+	private static boolean loaded = false;
+	private static boolean saveScheduled = false;
+
+	private ScriptLocationCache() {
+	}
+
+	/**
+	 * @param port   P4PORT
+	 * @param script Script path (e.g. Jenkinsfile)
+	 * @param dir    Depot directory
+	 * @return true if the directory holds the script, false if not, or null if not known
+	 */
+	public static synchronized Boolean hasScript(String port, String script, String dir) {
+		load();
+		String key = key(port, script, dir);
+		Entry entry = dirs.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - entry.time > ttl) {
+			dirs.remove(key);
+			return null;
+		}
+		return entry.found;
+	}
+
+	/**
+	 * Record whether a directory holds the script.
+	 *
+	 * @param port   P4PORT
+	 * @param script Script path
+	 * @param dir    Depot directory
+	 * @param found  true if the script is in the directory
+	 */
+	public static synchronized void put(String port, String script, String dir, boolean found) {
+		load();
+		dirs.put(key(port, script, dir), new Entry(found, System.currentTimeMillis()));
+		scheduleSave();
+	}
+
+	/**
+	 * Forget the directories where a change adds, deletes or moves the script.
+	 *
+	 * @param port   P4PORT
+	 * @param script Script path
+	 * @param files  Depot paths of the change's files
+	 */
+	public static synchronized void invalidate(String port, String script, List<String> files) {
+		load();
+		String suffix = "/" + script;
+		for (String file : files) {
+			if (file != null && file.endsWith(suffix)) {
+				String dir = file.substring(0, file.length() - suffix.length());
+				if (dirs.remove(key(port, script, dir)) != null) {
+					logger.fine("P4: script changed in " + dir);
+					scheduleSave();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forget every directory under a path, for a change too large to list.
+	 *
+	 * @param port   P4PORT
+	 * @param script Script path
+	 * @param prefix Depot directory the change's files are under, or // for all
+	 */
+	public static synchronized void invalidateUnder(String port, String script, String prefix) {
+		load();
+		String under = key(port, script, prefix.endsWith("/") ? prefix : prefix + "/");
+		String exact = key(port, script, prefix);
+		if (dirs.keySet().removeIf(k -> k.equals(exact) || k.startsWith(under))) {
+			logger.fine("P4: script locations dropped under " + prefix);
+			scheduleSave();
+		}
+	}
+
+	/**
+	 * @param port   P4PORT
+	 * @param change Change
+	 * @param script Script path
+	 * @return project root and branch, an empty array if not found, or null if not scanned
+	 */
+	public static synchronized String[] getChange(String port, String change, String script) {
+		return changes.get(key(port, script, change));
+	}
+
+	/**
+	 * Record the scan of a change.
+	 *
+	 * @param port        P4PORT
+	 * @param change      Change
+	 * @param script      Script path
+	 * @param projectRoot Project root or null if not found
+	 * @param branch      Branch or null if not found
+	 */
+	public static synchronized void putChange(String port, String change, String script, String projectRoot, String branch) {
+		String[] found = (projectRoot == null || branch == null) ? new String[0] : new String[]{projectRoot, branch};
+		changes.put(key(port, script, change), found);
+	}
+
+	/**
+	 * Drop all entries.
+	 */
+	public static synchronized void clear() {
+		dirs.clear();
+		changes.clear();
+		scheduleSave();
+	}
+
+	private static String key(String port, String script, String path) {
+		return port + "\n" + script + "\n" + path;
+	}
+
+	private static XmlFile getFile() {
+		Jenkins j = Jenkins.getInstanceOrNull();
+		if (j == null) {
+			return null;
+		}
+		return new XmlFile(Jenkins.XSTREAM2, new File(j.getRootDir(), ScriptLocationCache.class.getName() + ".xml"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		XmlFile file = getFile();
+		if (file == null || !file.exists()) {
+			return;
+		}
+		try {
+			Map<String, Entry> saved = (Map<String, Entry>) file.read();
+			long now = System.currentTimeMillis();
+			for (Map.Entry<String, Entry> e : saved.entrySet()) {
+				if (e.getValue() != null && now - e.getValue().time <= ttl) {
+					dirs.put(e.getKey(), e.getValue());
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.warning("P4: unable to read script locations: " + e.getMessage());
+		}
+	}
+
+	// Save at most once a minute
+	private static void scheduleSave() {
+		if (saveScheduled || getFile() == null) {
+			return;
+		}
+		saveScheduled = true;
+		Timer.get().schedule(ScriptLocationCache::save, 1, TimeUnit.MINUTES);
+	}
+
+	private static void save() {
+		Map<String, Entry> copy;
+		synchronized (ScriptLocationCache.class) {
+			saveScheduled = false;
+			copy = new HashMap<>(dirs);
+		}
+		XmlFile file = getFile();
+		if (file == null) {
+			return;
+		}
+		try {
+			file.write(copy);
+		} catch (IOException e) {
+			logger.warning("P4: unable to save script locations: " + e.getMessage());
+		}
+	}
+
+	private static final class Entry {
+		private final boolean found;
+		private final long time;
+
+		private Entry(boolean found, long time) {
+			this.found = found;
+			this.time = time;
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package org.jenkinsci.plugins.p4.swarmAPI;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import kong.unirest.core.GetRequest;
+import kong.unirest.core.HttpResponse;
+import kong.unirest.core.Unirest;
+import kong.unirest.core.UnirestInstance;
+import kong.unirest.core.json.JSONArray;
+import kong.unirest.core.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Shared HTTP client for the Swarm API.
+ * <p>
+ * One pooled client serves all Swarm servers. The API versions of each
+ * server are cached, and GET responses are kept for a given time and then
+ * revalidated with their ETag (If-None-Match), so an unchanged project or
+ * branch list costs a '304 Not Modified' at most. Review details are fetched
+ * in parallel on a small bounded pool.
+ * <p>
+ * Timeouts, the number of cached responses and fetch threads can be set
+ * with the system properties
+ * <code>org.jenkinsci.plugins.p4.swarmAPI.SwarmClient.timeout</code>
+ * (seconds), <code>.size</code> and <code>.threads</code>.
+ */
+public class SwarmClient {
+
+	private static Logger logger = Logger.getLogger(SwarmClient.class.getName());
+
+	public static final int DEFAULT_TIMEOUT = 30;
+	public static final int DEFAULT_SIZE = 1000;
+	public static final int DEFAULT_THREADS = 4;
+
+	// how long API versions are kept for a server
+	private static final long VERSION_TTL = TimeUnit.HOURS.toMillis(1);
+
+	private static final int timeout = Integer.getInteger(SwarmClient.class.getName() + ".timeout", DEFAULT_TIMEOUT);
+	private static final int size = Integer.getInteger(SwarmClient.class.getName() + ".size", DEFAULT_SIZE);
+	private static final int threads = Integer.getInteger(SwarmClient.class.getName() + ".threads", DEFAULT_THREADS);
+
+	private static final UnirestInstance http = Unirest.spawnInstance();
+
+	static {
+		http.config()
+				.connectTimeout((int) TimeUnit.SECONDS.toMillis(timeout))
+				.requestTimeout((int) TimeUnit.SECONDS.toMillis(timeout));
+	}
+
+	private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+			60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+			new NamingThreadFactory(new DaemonThreadFactory(), "P4SwarmFetch"));
+
+	static {
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	// base URL -> API versions
+	private static final Map<String, Entry> versions = new LinkedHashMap<>();
+
+	// user and request -> response
+	private static final Map<String, Entry> responses = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > size;
+		}
+	};
+
+	private SwarmClient() {
+	}
+
+	/**
+	 * @return the shared HTTP client
+	 */
+	public static UnirestInstance getHttp() {
+		return http;
+	}
+
+	/**
+	 * API versions supported by a Swarm server, cached per base URL.
+	 *
+	 * @param base   Swarm base URL
+	 * @param user   Perforce user
+	 * @param ticket Perforce ticket
+	 * @return API versions, e.g. ["9", "10", "11"]
+	 * @throws Exception API or connection errors
+	 */
+	public static List<String> getApiVersions(String base, String user, String ticket) throws Exception {
+		long now = System.currentTimeMillis();
+		synchronized (versions) {
+			Entry entry = versions.get(base);
+			if (entry != null && now - entry.time < VERSION_TTL) {
+				return toList(new JSONObject(entry.body).getJSONArray("apiVersions"));
+			}
+		}
+
+		JSONObject json = get(base + "/api/version", new LinkedHashMap<>(), user, ticket, 0);
+		synchronized (versions) {
+			versions.put(base, new Entry(json.toString(), null, now));
+		}
+		return toList(json.getJSONArray("apiVersions"));
+	}
+
+	/**
+	 * GET a JSON response, from the cache while it is fresh and revalidated
+	 * with its ETag once it is not.
+	 *
+	 * @param url    Request URL
+	 * @param query  Query parameters; collections are sent as repeated parameters
+	 * @param user   Perforce user
+	 * @param ticket Perforce ticket
+	 * @param ttl    Milliseconds a response is used without asking the server
+	 * @return the response
+	 * @throws Exception API or connection errors
+	 */
+	public static JSONObject get(String url, Map<String, Object> query, String user, String ticket, long ttl) throws Exception {
+		String key = user + "\n" + url + "\n" + new TreeMap<>(query);
+		long now = System.currentTimeMillis();
+		Entry cached;
+		synchronized (responses) {
+			cached = responses.get(key);
+		}
+		if (cached != null && now - cached.time < ttl) {
+			return new JSONObject(cached.body);
+		}
+
+		GetRequest request = http.get(url).basicAuth(user, ticket);
+		for (Map.Entry<String, Object> param : query.entrySet()) {
+			if (param.getValue() instanceof Collection<?> values) {
+				request.queryString(param.getKey(), values);
+			} else {
+				request.queryString(param.getKey(), param.getValue());
+			}
+		}
+		if (cached != null && cached.etag != null) {
+			request.header("If-None-Match", cached.etag);
+		}
+
+		HttpResponse<String> res = request.asString();
+		if (res.getStatus() == 304 && cached != null) {
+			logger.fine("Swarm: not modified: " + url);
+			store(key, new Entry(cached.body, cached.etag, now), ttl);
+			return new JSONObject(cached.body);
+		}
+		if (res.getStatus() != 200) {
+			throw new SwarmHelper.SwarmException(res);
+		}
+
+		String etag = res.getHeaders().getFirst("ETag");
+		store(key, new Entry(res.getBody(), (etag == null || etag.isEmpty()) ? null : etag, now), ttl);
+		return new JSONObject(res.getBody());
+	}
+
+	/**
+	 * Fetch a value for each item in parallel, on the shared bounded pool.
+	 *
+	 * @param items   Items to fetch for
+	 * @param fetcher Fetches the value for an item
+	 * @param <T>     Item type
+	 * @param <R>     Value type
+	 * @return values, in the order of the items
+	 * @throws Exception the first failure
+	 */
+	public static <T, R> List<R> fetchAll(List<T> items, Fetcher<T, R> fetcher) throws Exception {
+		List<Future<R>> futures = new ArrayList<>();
+		for (T item : items) {
+			futures.add(executor.submit(() -> fetcher.fetch(item)));
+		}
+
+		List<R> values = new ArrayList<>();
+		try {
+			for (Future<R> future : futures) {
+				values.add(future.get());
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw (cause instanceof Exception ex) ? ex : new Exception(cause);
+		} finally {
+			for (Future<R> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Drop all cached versions and responses.
+	 */
+	public static void clear() {
+		synchronized (versions) {
+			versions.clear();
+		}
+		synchronized (responses) {
+			responses.clear();
+		}
+	}
+
+	// keep responses that are fresh for a while or can be revalidated
+	private static void store(String key, Entry entry, long ttl) {
+		if (ttl <= 0 && entry.etag == null) {
+			return;
+		}
+		synchronized (responses) {
+			responses.put(key, entry);
+		}
+	}
+
+	private static List<String> toList(JSONArray json) {
+		List<String> list = new ArrayList<>();
+		for (int i = 0; i < json.length(); i++) {
+			list.add(String.valueOf(json.get(i)));
+		}
+		return list;
+	}
+
+	/**
+	 * Fetches a value for an item; may throw.
+	 *
+	 * @param <T> Item type
+	 * @param <R> Value type
+	 */
+	@FunctionalInterface
+	public interface Fetcher<T, R> {
+		R fetch(T item) throws Exception;
+	}
+
+	private static final class Entry {
+		private final String body;
+		private final String etag;
+		private final long time;
+
+		private Entry(String body, String etag, long time) {
+			this.body = body;
+			this.etag = etag;
+			this.time = time;
+		}
+	}
+}
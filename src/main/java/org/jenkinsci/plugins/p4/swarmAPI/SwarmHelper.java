@@ -3,7 +3,6 @@ package org.jenkinsci.plugins.p4.swarmAPI;
 import com.google.gson.Gson;
 import kong.unirest.core.HttpResponse;
 import kong.unirest.core.JsonNode;
-import kong.unirest.core.Unirest;
 import kong.unirest.core.json.JSONArray;
 import kong.unirest.core.json.JSONObject;
 import org.apache.commons.collections.map.HashedMap;
@@ -12,12 +11,23 @@ import org.jenkinsci.plugins.p4.client.ConnectionHelper;
 import org.jenkinsci.plugins.p4.review.ApproveState;
 
 import java.io.Serial;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class SwarmHelper {
 
+	public static final int PAGE_SIZE = 100;
+	public static final int DEFAULT_TTL = 60;
+
+	// guards against a server that repeats the same page
+	private static final int MAX_PAGES = 1000;
+
+	// seconds project and branch lists are used before revalidating
+	private static final long ttl = TimeUnit.SECONDS.toMillis(Integer.getInteger(SwarmHelper.class.getName() + ".ttl", DEFAULT_TTL));
+
 	private final ConnectionHelper p4;
 	private final String version;
 	private final String base;
@@ -45,24 +55,7 @@ public class SwarmHelper {
 	}
 
 	private boolean checkVersion(String ver) throws Exception {
-
-		String url = base + "/api/version";
-
-		HttpResponse<JsonNode> res = Unirest.get(url)
-				.basicAuth(user, ticket)
-				.asJson();
-
-		handleAPICallExceptions(res);
-
-		JSONArray json = res.getBody().getObject().getJSONArray("apiVersions");
-		for (int i = 0; i < json.length(); i++) {
-			String v = String.valueOf(json.get(i));
-			if (ver.equals(v)) {
-				return true;
-			}
-		}
-
-		return false;
+		return SwarmClient.getApiVersions(base, user, ticket).contains(ver);
 	}
 
 	public boolean approveReview(String id, ApproveState state, String description) throws Exception {
@@ -90,7 +83,7 @@ public class SwarmHelper {
 		JSONObject body = new JSONObject();
 		body.put("transition", state.getId());
 
-		HttpResponse<JsonNode> res = Unirest.post(url)
+		HttpResponse<JsonNode> res = SwarmClient.getHttp().post(url)
 				.basicAuth(user, ticket)
 				.body(body)
 				.asJson();
@@ -115,7 +108,7 @@ public class SwarmHelper {
 		Map<String, Object> parameters = new HashedMap();
 		parameters.put("body", description);
 
-		HttpResponse<JsonNode> res = Unirest.post(url)
+		HttpResponse<JsonNode> res = SwarmClient.getHttp().post(url)
 				.basicAuth(user, ticket)
 				.fields(parameters)
 				.asJson();
@@ -139,7 +132,7 @@ public class SwarmHelper {
 		body.put("vote", vote);
 
 		// Send VOTE request to Swarm
-		HttpResponse<JsonNode> res = Unirest.post(url)
+		HttpResponse<JsonNode> res = SwarmClient.getHttp().post(url)
 				.basicAuth(user, ticket)
 				.body(body)
 				.asJson();
@@ -162,36 +155,56 @@ public class SwarmHelper {
 		}
 	}
 
+	/**
+	 * All reviews of a project that need review or revision, a page at a time.
+	 *
+	 * @param project Swarm project
+	 * @return active reviews
+	 * @throws Exception API or connection errors
+	 */
 	public List<SwarmReviewsAPI.Reviews> getActiveReviews(String project) throws Exception {
 		String url = getApiUrl() + "/reviews";
-		Map<String, Object> query = new HashMap<>();
-		query.put("max", "10");
-		query.put("fields", "id,state,changes,author");
-		query.put("project", project);
-		HttpResponse<JsonNode> res = Unirest.get(url)
-				.basicAuth(user, ticket)
-				.queryString(query)
-				.queryString("state[]", "needsReview")
-				.queryString("state[]", "needsRevision")
-				.asJson();
-		handleAPICallExceptions(res);
-		JSONObject data = getDataFromSwarmResponse(res);
+		List<SwarmReviewsAPI.Reviews> reviews = new ArrayList<>();
 		Gson gson = new Gson();
-		SwarmReviewsAPI api = gson.fromJson(data.toString(), SwarmReviewsAPI.class);
-		return api.getReviews();
+		String after = null;
+		for (int page = 0; page < MAX_PAGES; page++) {
+			Map<String, Object> query = new HashMap<>();
+			query.put("max", String.valueOf(PAGE_SIZE));
+			query.put("fields", "id,state,changes,author,projects");
+			query.put("project", project);
+			query.put("state[]", List.of("needsReview", "needsRevision"));
+			if (after != null) {
+				query.put("after", after);
+			}
+			JSONObject res = SwarmClient.get(url, query, user, ticket, 0);
+			JSONObject data = res.getJSONObject("data");
+			SwarmReviewsAPI api = gson.fromJson(data.toString(), SwarmReviewsAPI.class);
+			List<SwarmReviewsAPI.Reviews> list = api.getReviews();
+			if (list == null || list.isEmpty()) {
+				break;
+			}
+			reviews.addAll(list);
+
+			// the cursor is in 'data' or, for older APIs, the response
+			String lastSeen = getLastSeen(data);
+			if (lastSeen == null) {
+				lastSeen = getLastSeen(res);
+			}
+			if (list.size() < PAGE_SIZE || lastSeen == null || lastSeen.equals(after)) {
+				break;
+			}
+			after = lastSeen;
+		}
+		return reviews;
 	}
 
 	public SwarmReviewAPI getSwarmReview(String review) throws Exception {
 		String url = getApiUrl() + "/reviews/" + review;
 		Map<String, Object> query = new HashMap<>();
 		query.put("fields", "projects,changes,commits,author");
-		HttpResponse<JsonNode> res = Unirest.get(url)
-				.basicAuth(user, ticket)
-				.queryString(query)
-				.asJson();
-		handleAPICallExceptions(res);
+		JSONObject res = SwarmClient.get(url, query, user, ticket, 0);
 		Gson gson = new Gson();
-		SwarmReviewAPI api = gson.fromJson(getDataFromSwarmResponse(res).toString(), SwarmReviewAPI.class);
+		SwarmReviewAPI api = gson.fromJson(res.getJSONObject("data").toString(), SwarmReviewAPI.class);
 		return api;
 	}
 
@@ -199,15 +212,9 @@ public class SwarmHelper {
 		String url = getApiUrl() + "/projects/" + project.toLowerCase();
 		Map<String, Object> query = new HashMap<>();
 		query.put("fields", "branches");
-		HttpResponse<JsonNode> res = Unirest.get(url)
-				.basicAuth(user, ticket)
-				.queryString(query)
-				.asJson();
-
-		handleAPICallExceptions(res);
-		JSONObject data = getDataFromSwarmResponse(res);
+		JSONObject res = SwarmClient.get(url, query, user, ticket, ttl);
 		Gson gson = new Gson();
-		SwarmProjectAPI api = gson.fromJson(data.toString(), SwarmProjectAPI.class);
+		SwarmProjectAPI api = gson.fromJson(res.getJSONObject("data").toString(), SwarmProjectAPI.class);
 		return api.getProject().get(0).getBranches();
 	}
 
@@ -221,30 +228,20 @@ public class SwarmHelper {
 		String url = getApiUrl() + "/projects";
 		Map<String, Object> query = new HashMap<>();
 		query.put("fields", "id,members,owners");
-
-		HttpResponse<JsonNode> res = Unirest.get(url)
-				.basicAuth(user, ticket)
-				.queryString(query)
-				.asJson();
-		handleAPICallExceptions(res);
+		JSONObject res = SwarmClient.get(url, query, user, ticket, ttl);
 		Gson gson = new Gson();
-		SwarmProjectsAPI api = gson.fromJson(getDataFromSwarmResponse(res).toString(), SwarmProjectsAPI.class);
+		SwarmProjectsAPI api = gson.fromJson(res.getJSONObject("data").toString(), SwarmProjectsAPI.class);
 		return api.getIDsByUser(user);
 	}
 
-	private static JSONObject getDataFromSwarmResponse(HttpResponse<JsonNode> res) {
-		return res.getBody()
-				.getObject()
-				.getJSONObject("data");
-	}
-
-	private static void handleAPICallExceptions(HttpResponse<JsonNode> res) throws SwarmException {
-		if (res.getStatus() != 200) {
-			throw new SwarmException(res);
+	private static String getLastSeen(JSONObject json) {
+		if (json == null || !json.has("lastSeen") || json.isNull("lastSeen")) {
+			return null;
 		}
+		return String.valueOf(json.get("lastSeen"));
 	}
 
-	private static class SwarmException extends Exception {
+	static class SwarmException extends Exception {
 		@Serial
 		private static final long serialVersionUID = 1;
 
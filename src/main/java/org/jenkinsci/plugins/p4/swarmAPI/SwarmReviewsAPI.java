@@ -1,5 +1,6 @@
 package org.jenkinsci.plugins.p4.swarmAPI;
 
+import java.util.HashMap;
 import java.util.List;
 
 public class SwarmReviewsAPI {
@@ -10,6 +11,7 @@ public class SwarmReviewsAPI {
 		private long id;
 		private List<Long> changes;
 		private String author;
+		private HashMap<String, List<String>> projects;
 
 		public long getId() {
 			return id;
@@ -23,6 +25,13 @@ public class SwarmReviewsAPI {
 			return author;
 		}
 
+		/**
+		 * @return project branches of the review, or null if not fetched
+		 */
+		public HashMap<String, List<String>> getProjects() {
+			return projects;
+		}
+
 		public Reviews(long id, List<Long> changes, String author) {
 			this.id = id;
 			this.changes = changes;
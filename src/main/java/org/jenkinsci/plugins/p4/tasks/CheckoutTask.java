@@ -12,6 +12,7 @@ import hudson.model.TaskListener;
 import hudson.remoting.VirtualChannel;
 import jenkins.security.Roles;
 import org.jenkinsci.plugins.p4.changes.P4ChangeEntry;
+import org.jenkinsci.plugins.p4.changes.P4ChangeLogBuilder;
 import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
 import org.jenkinsci.plugins.p4.changes.P4LabelRef;
 import org.jenkinsci.plugins.p4.changes.P4PollRef;
@@ -21,6 +22,7 @@ import org.jenkinsci.plugins.p4.client.ConnectionHelper;
 import org.jenkinsci.plugins.p4.console.P4Logging;
 import org.jenkinsci.plugins.p4.populate.AutoCleanImpl;
 import org.jenkinsci.plugins.p4.populate.Populate;
+import org.jenkinsci.plugins.p4.populate.ReferenceSyncImpl;
 import org.jenkinsci.plugins.p4.review.ReviewProp;
 import org.jenkinsci.plugins.p4.workspace.Expand;
 import org.jenkinsci.plugins.p4.workspace.ManualWorkspaceImpl;
@@ -50,6 +52,10 @@ public class CheckoutTask extends AbstractTask implements FileCallable<Boolean>,
 	private long head;
 	private List<P4Ref> builds;
 	private long review;
+	private String referenceRoot;
+	private String libraryRoot;
+	private String library;
+	private int libraryMaxSize;
 
 	/**
 	 * Constructor
@@ -184,7 +190,13 @@ public class CheckoutTask extends AbstractTask implements FileCallable<Boolean>,
 
 		// Sync workspace to label, head or specified change for each repo to build
 		for (P4Ref build : builds) {
-			p4.syncFiles(build, populate);
+			if (library != null) {
+				p4.syncLibrary(build, populate, libraryRoot, library, libraryMaxSize);
+			} else if (populate instanceof ReferenceSyncImpl reference) {
+				p4.syncReference(build, reference, referenceRoot);
+			} else {
+				p4.syncFiles(build, populate);
+			}
 		}
 
 		// Unshelve review if specified
@@ -300,33 +312,32 @@ public class CheckoutTask extends AbstractTask implements FileCallable<Boolean>,
 
 		List<P4ChangeEntry> changesFull = new ArrayList<>();
 
-		// Add changes to this build.
-		try (ClientHelper p4 = new ClientHelper(getCredential(), getListener(), getWorkspace())) {
+		// Add changes to this build; the client was set up by the checkout, so
+		// changes are listed and described without loading it again.
+		String clientName = getWorkspace().getFullName();
+		try (ConnectionHelper p4 = new ConnectionHelper(getCredential(), getListener())) {
 			if (status == CheckoutStatus.SHELVED) {
-				P4ChangeEntry cl = new P4ChangeEntry();
-				IChangelistSummary pending = p4.getChange(review);
-				cl.setChange(p4, pending);
-				changesFull.add(cl);
+				IChangelistSummary pending = p4.getShelvedChange(review);
+				if (pending != null) {
+					P4ChangeEntry cl = new P4ChangeEntry();
+					cl.setChange(p4, pending);
+					changesFull.add(cl);
+				}
 			}
 
 			// add all changes to list
+			List<P4Ref> refs = new ArrayList<>();
 			for (P4Ref build : builds) {
 				if (build.isCommit()) {
 					// add graph commits to list
-					List<P4Ref> commits = p4.listCommits(lastRefs, build);
-					for (P4Ref ref : commits) {
-						P4ChangeEntry cl = ref.getChangeEntry(p4);
-						changesFull.add(cl);
-					}
+					refs.addAll(p4.listCommits(lastRefs, build));
 				} else {
 					// add classic changes
-					List<P4Ref> changes = p4.listChanges(lastRefs, build);
-					for (P4Ref change : changes) {
-						P4ChangeEntry cl = change.getChangeEntry(p4);
-						changesFull.add(cl);
-					}
+					refs.addAll(p4.listClientChanges(clientName, lastRefs, build));
 				}
 			}
+			P4ChangeLogBuilder builder = new P4ChangeLogBuilder(p4, clientName);
+			changesFull.addAll(builder.build(refs));
 		} catch (Exception e) {
 			String err = "Unable to get full changes: " + e;
 			logger.severe(err);
@@ -377,6 +388,28 @@ public class CheckoutTask extends AbstractTask implements FileCallable<Boolean>,
 		builds.add(parentChange);
 	}
 
+	/**
+	 * Set the reference cache directory on the build node (used by ReferenceSyncImpl).
+	 *
+	 * @param referenceRoot path on the node
+	 */
+	public void setReferenceRoot(String referenceRoot) {
+		this.referenceRoot = referenceRoot;
+	}
+
+	/**
+	 * Set the library cache directory on the build node (used for pipeline libraries).
+	 *
+	 * @param libraryRoot path on the node
+	 * @param library     Library depot path
+	 * @param maxSize     Max size of the library cache (GB)
+	 */
+	public void setLibrary(String libraryRoot, String library, int maxSize) {
+		this.libraryRoot = libraryRoot;
+		this.library = library;
+		this.libraryMaxSize = maxSize;
+	}
+
 	public void setIncrementalChanges(List<P4Ref> changes) {
 		if (changes != null && !changes.isEmpty()) {
 			P4Ref lowest = changes.get(changes.size() - 1);
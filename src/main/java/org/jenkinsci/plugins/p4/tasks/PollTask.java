@@ -2,14 +2,13 @@ package org.jenkinsci.plugins.p4.tasks;
 
 import com.perforce.p4java.core.IRepo;
 import com.perforce.p4java.core.file.IFileSpec;
-import com.perforce.p4java.exception.AccessException;
-import com.perforce.p4java.exception.RequestException;
 import com.perforce.p4java.impl.generic.core.Changelist;
 import hudson.FilePath.FileCallable;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.remoting.VirtualChannel;
 import jenkins.security.Roles;
+import org.jenkinsci.plugins.p4.changes.ChangeStore;
 import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
 import org.jenkinsci.plugins.p4.changes.P4LabelRef;
 import org.jenkinsci.plugins.p4.changes.P4PollRef;
@@ -17,10 +16,7 @@ import org.jenkinsci.plugins.p4.changes.P4Ref;
 import org.jenkinsci.plugins.p4.client.ClientHelper;
 import org.jenkinsci.plugins.p4.filters.Filter;
 import org.jenkinsci.plugins.p4.filters.FilterLatestWithPinImpl;
-import org.jenkinsci.plugins.p4.filters.FilterPathImpl;
-import org.jenkinsci.plugins.p4.filters.FilterPatternListImpl;
-import org.jenkinsci.plugins.p4.filters.FilterUserImpl;
-import org.jenkinsci.plugins.p4.filters.FilterViewMaskImpl;
+import org.jenkinsci.plugins.p4.filters.FilterMatcher;
 import org.jenkinsci.plugins.p4.workspace.ManualWorkspaceImpl;
 import org.jenkinsci.remoting.RoleChecker;
 
@@ -29,9 +25,9 @@ import java.io.IOException;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 public class PollTask extends AbstractTask implements FileCallable<List<P4Ref>>, Serializable {
 
@@ -43,6 +39,7 @@ public class PollTask extends AbstractTask implements FileCallable<List<P4Ref>>,
 	private List<P4PollRef> lastPollRefs = new ArrayList<>();
 
 	private String pin;
+	private FilterMatcher matcher;
 
 	public PollTask(String credential, Run<?, ?> run, TaskListener listener, List<Filter> filter, List<P4Ref> lastRefs) {
 		super(credential, run, listener);
@@ -58,6 +55,8 @@ public class PollTask extends AbstractTask implements FileCallable<List<P4Ref>>,
 	@Override
 	public Object task(ClientHelper p4) throws Exception {
 		List<P4Ref> changes = new ArrayList<>();
+		FilterMatcher.Query query = null;
+		List<Set<Long>> listed = null;
 		boolean isCustomPollingPathPresent = (this.getWorkspace() instanceof ManualWorkspaceImpl)
 				&& ((ManualWorkspaceImpl) this.getWorkspace()).getSpec().hasCustomPollingPaths();
 
@@ -81,6 +80,8 @@ public class PollTask extends AbstractTask implements FileCallable<List<P4Ref>>,
 				changes = p4.listHaveChanges(lastRefs, new P4LabelRef(pin));
 			} else {
 				changes = p4.listHaveChanges(lastRefs);
+				query = getQuery();
+				listed = listQuery(p4, query, changes.size());
 			}
 
 			// Poll Graph commit changes
@@ -102,11 +103,16 @@ public class PollTask extends AbstractTask implements FileCallable<List<P4Ref>>,
 		for (P4Ref c : changes) {
 			long change = c.getChange();
 			if (change > 0) {
-				Changelist changelist = p4.getChange(change);
+				// use the server lists where they decide the change
+				Boolean filtered = (listed == null) ? null : query.decide(listed, change);
+				if (filtered == null) {
+					filtered = filterChange(p4, change, filter);
+				}
+
 				// add unfiltered changes to remainder list
-				if (!filterChange(changelist, filter)) {
-					remainder.add(new P4ChangeRef(changelist.getId()));
-					p4.log("... found change: " + changelist.getId());
+				if (!filtered) {
+					remainder.add(new P4ChangeRef(change));
+					p4.log("... found change: " + change);
 				}
 			}
 		}
@@ -115,6 +121,13 @@ public class PollTask extends AbstractTask implements FileCallable<List<P4Ref>>,
 		return changes;
 	}
 
+	/**
+	 * @param matcher Filters compiled for the job configuration
+	 */
+	public void setFilterMatcher(FilterMatcher matcher) {
+		this.matcher = matcher;
+	}
+
 	public void setLimit(String expandedPin) {
 		pin = expandedPin;
 	}
@@ -128,114 +141,83 @@ public class PollTask extends AbstractTask implements FileCallable<List<P4Ref>>,
 	}
 
 	/**
-	 * Returns true if change should be filtered
+	 * Lists the changes under the paths of the path and view mask filters, so
+	 * the changes they decide need not be described.
 	 *
-	 * @param changelist
-	 * @throws AccessException
-	 * @throws RequestException
-	 * @throws Exception
+	 * @param p4    Client
+	 * @param query Query for the job's filters (may be null)
+	 * @param count Number of changes to filter
+	 * @return changes listed for each group of the query, or null if there is
+	 * no query, it costs more than describing the changes or a list may be
+	 * incomplete
+	 * @throws Exception push up stack
 	 */
-	private boolean filterChange(Changelist changelist, List<Filter> scmFilter) throws Exception {
-		// exit early if no filters
-		if (scmFilter == null) {
-			return false;
+	private List<Set<Long>> listQuery(ClientHelper p4, FilterMatcher.Query query, int count) throws Exception {
+		// one list per group, against one describe per change
+		if (query == null || count <= query.getGroups().size()) {
+			return null;
 		}
 
-		String user = changelist.getUsername();
-		List<IFileSpec> files = changelist.getFiles(true);
-
-		for (Filter f : scmFilter) {
-			// Scan through User filters
-			if (f instanceof FilterUserImpl) {
-				// return is user matches filter
-				String u = ((FilterUserImpl) f).getUser();
-				if (u.equalsIgnoreCase(user)) {
-					return true;
-				}
-			}
-
-			// Scan through Path filters
-			if (f instanceof FilterPathImpl) {
-				// add unmatched files to remainder list
-				List<IFileSpec> remainder = new ArrayList<>();
-				String path = ((FilterPathImpl) f).getPath();
-				for (IFileSpec s : files) {
-					String p = s.getDepotPathString();
-					if (!p.startsWith(path)) {
-						remainder.add(s);
-					}
-				}
-
-				// update files with remainder
-				files = remainder;
-
-				// add if all files are removed then remove change
-				if (files.isEmpty()) {
-					return true;
-				}
+		List<Set<Long>> listed = new ArrayList<>();
+		for (List<String> group : query.getGroups()) {
+			List<P4Ref> refs = p4.listPathChanges(lastRefs, group);
+			if (refs == null) {
+				return null;
 			}
-
-			// Scan through View Mask filters
-			if (f instanceof FilterViewMaskImpl) {
-				// at least one file in the change must be contained in the view mask
-				List<IFileSpec> included = new ArrayList<>();
-
-				String viewMask = ((FilterViewMaskImpl) f).getViewMask();
-				String[] maskPaths = viewMask.split("\\R");
-				for (IFileSpec s : files) {
-					boolean isFileInViewMask = false;
-					String p = s.getDepotPathString();
-					for (String maskPath : maskPaths) {
-						maskPath = maskPath.trim(); // remove leading/trailing spaces
-						if (p.startsWith(maskPath)) {
-							isFileInViewMask = true;
-						}
-
-						if (maskPath.startsWith("-")) {
-							String excludedMaskPath = maskPath.substring(maskPath.indexOf("-") + 1);
-							if (p.startsWith(excludedMaskPath)) {
-								isFileInViewMask = false;
-							}
-						}
-					}
-
-					if (isFileInViewMask) {
-						included.add(s);
-					}
-				}
-
-				if (included.isEmpty()) {
-					return true;
-				}
+			Set<Long> set = new HashSet<>();
+			for (P4Ref ref : refs) {
+				set.add(ref.getChange());
 			}
+			listed.add(set);
+		}
+		return listed;
+	}
 
-			// Scan through Pattern List filters
-			if (f instanceof FilterPatternListImpl) {
-				List<Pattern> patterns = ((FilterPatternListImpl) f).getPatternList();
-				boolean foundMatchingChange = false;
-
-				for (IFileSpec s : files) {
-					String p = s.getDepotPathString();
+	private FilterMatcher getMatcher() {
+		if (matcher == null) {
+			matcher = FilterMatcher.compile(filter);
+		}
+		return matcher;
+	}
 
-					for (Pattern pattern : patterns) {
-						Matcher matcher = pattern.matcher(p);
-						if(matcher.matches()) {
-							foundMatchingChange = true;
-							break;
-						}
-					}
+	private FilterMatcher.Query getQuery() {
+		return (filter == null) ? null : getMatcher().getQuery();
+	}
 
-					if (foundMatchingChange) {
-						break;
-					}
-				}
+	/**
+	 * Returns true if change should be filtered
+	 *
+	 * @param p4        Client
+	 * @param change    Change number
+	 * @param scmFilter Filters
+	 * @throws Exception push up stack
+	 */
+	private boolean filterChange(ClientHelper p4, long change, List<Filter> scmFilter) throws Exception {
+		// exit early if no filters
+		if (scmFilter == null) {
+			return false;
+		}
+		if (getMatcher().isEmpty()) {
+			return false;
+		}
 
-				// If we've found a change matching one of our patterns, do not filter!
-				return !foundMatchingChange;
+		// use the stored change unless it holds too few of the files
+		String user;
+		List<String> files;
+		ChangeStore.Metadata metadata = ChangeStore.get(p4, change, ChangeStore.DEFAULT_FILES, false);
+		if (metadata != null && metadata.isComplete()) {
+			user = metadata.getUser();
+			files = metadata.getPaths();
+		} else {
+			Changelist changelist = p4.getChange(change);
+			user = changelist.getUsername();
+			files = new ArrayList<>();
+			for (IFileSpec s : changelist.getFiles(true)) {
+				files.add(s.getDepotPathString());
 			}
-
 		}
-		return false;
+
+		return getMatcher().isFiltered(user, files);
 	}
 
 	public void checkRoles(RoleChecker checker) throws SecurityException {
@@ -0,0 +1,352 @@
+package org.jenkinsci.plugins.p4.trigger;
+
+import com.perforce.p4java.client.IClient;
+import com.perforce.p4java.client.IClientViewMapping;
+import com.perforce.p4java.core.IChangelistSummary;
+import com.perforce.p4java.core.IMapEntry;
+import com.perforce.p4java.core.file.IFileSpec;
+import com.perforce.p4java.impl.generic.client.ClientView;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
+import org.jenkinsci.plugins.p4.changes.P4Ref;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Server-wide change feed.
+ * <p>
+ * One feed per P4PORT (and credential, to respect protections) tails newly
+ * submitted changes up to the highest submitted change, describes each change once and
+ * matches its files against the client view of every registered job. A
+ * registered job can then be polled without contacting the server.
+ * <p>
+ * Jobs are registered after a normal poll and fall back to normal polling when
+ * the feed cannot vouch for them (e.g. a change had too many files to describe).
+ */
+public class ChangeFeed {
+
+	private static Logger logger = Logger.getLogger(ChangeFeed.class.getName());
+
+	private static final String PREFIX = ChangeFeed.class.getName();
+
+	public static final long DEFAULT_REFRESH = 10;
+	public static final long DEFAULT_VIEW_LIFE = 3600;
+	public static final int DEFAULT_MAX_CHANGES = 500;
+	public static final int DEFAULT_MAX_FILES = 10000;
+	public static final int MAX_MATCHED = 100;
+
+	private static final long refreshInterval = TimeUnit.SECONDS.toMillis(Long.getLong(PREFIX + ".refresh", DEFAULT_REFRESH));
+	private static final long viewLife = TimeUnit.SECONDS.toMillis(Long.getLong(PREFIX + ".viewLife", DEFAULT_VIEW_LIFE));
+	private static final int maxChanges = Integer.getInteger(PREFIX + ".maxChanges", DEFAULT_MAX_CHANGES);
+	private static final int maxFiles = Integer.getInteger(PREFIX + ".maxFiles", DEFAULT_MAX_FILES);
+
+	private static final ConcurrentMap<String, ChangeFeed> feeds = new ConcurrentHashMap<>();
+
+	private final P4BaseCredentials credential;
+	private final Map<String, JobEntry> jobs = new ConcurrentHashMap<>();
+
+	private long head = -1;
+	private long lastRefresh = 0;
+
+	private ChangeFeed(P4BaseCredentials credential) {
+		this.credential = credential;
+	}
+
+	/**
+	 * Get (or create) the feed for the credential's server.
+	 *
+	 * @param credential Perforce credential
+	 * @return the shared feed
+	 */
+	public static ChangeFeed get(P4BaseCredentials credential) {
+		String key = credential.getFullP4port() + ":" + credential.getId();
+		return feeds.computeIfAbsent(key, k -> new ChangeFeed(credential));
+	}
+
+	/**
+	 * Remove a job from all feeds.
+	 *
+	 * @param jobName Job full name
+	 */
+	public static void forget(String jobName) {
+		for (ChangeFeed feed : feeds.values()) {
+			feed.jobs.remove(jobName);
+		}
+	}
+
+	/**
+	 * Look for changes for a registered job.
+	 *
+	 * @param jobName    Job full name
+	 * @param client     Expanded client name used for polling
+	 * @param view       Job's configured view, as registered
+	 * @param lastChange Highest change built by the job
+	 * @param listener   for logging
+	 * @return list of matched changes (empty if up to date) or null if the job must be polled.
+	 */
+	public List<P4Ref> check(String jobName, String client, String view, long lastChange, TaskListener listener) {
+		JobEntry entry = jobs.get(jobName);
+		if (entry == null || !entry.isFor(client, view) || entry.isExpired()) {
+			return null;
+		}
+
+		try {
+			refresh(listener);
+		} catch (Exception e) {
+			logger.warning("P4: change feed refresh failed: " + e.getMessage());
+			return null;
+		}
+
+		// the feed may have dropped the job during the refresh
+		entry = jobs.get(jobName);
+		if (entry == null) {
+			return null;
+		}
+
+		List<P4Ref> changes = new ArrayList<>();
+		for (Long change : entry.matched.descendingSet()) {
+			if (change <= lastChange) {
+				break;
+			}
+			changes.add(new P4ChangeRef(change));
+		}
+		entry.matched.headSet(lastChange, true).clear();
+
+		listener.getLogger().println("P4: Polling with change feed at: " + head);
+		return changes;
+	}
+
+	/**
+	 * Register (or refresh) a job after a normal poll.
+	 *
+	 * @param jobName  Job full name
+	 * @param client   Expanded client name used for polling
+	 * @param view     Job's configured view
+	 * @param since    Highest submitted change read before the poll
+	 * @param found    Changes found by the poll and not yet built
+	 * @param listener for logging
+	 */
+	public void register(String jobName, String client, String view, long since, List<P4Ref> found, TaskListener listener) {
+		if (since < 0) {
+			return;
+		}
+
+		try (ConnectionHelper p4 = new ConnectionHelper(credential, listener)) {
+			IClient spec = p4.getConnection().getClient(client);
+			if (spec == null || spec.getClientView() == null) {
+				jobs.remove(jobName);
+				return;
+			}
+			JobEntry entry = new JobEntry(client, view, spec.getClientView());
+			if (found != null) {
+				for (P4Ref ref : found) {
+					if (!ref.isCommit() && ref.getChange() > 0) {
+						entry.add(ref.getChange());
+					}
+				}
+			}
+
+			synchronized (this) {
+				// start the feed from the first registration
+				if (head < 0) {
+					head = since;
+					lastRefresh = System.currentTimeMillis();
+				}
+
+				// changes already consumed by the feed since the poll
+				if (head > since) {
+					String path = "//" + client + "/...@" + (since + 1) + "," + head;
+					long change = p4.getHead(path, null, null);
+					if (change > 0) {
+						entry.add(change);
+					}
+				}
+				jobs.put(jobName, entry);
+			}
+		} catch (Exception e) {
+			logger.warning("P4: change feed unable to register " + jobName + ": " + e.getMessage());
+			jobs.remove(jobName);
+		}
+	}
+
+	/**
+	 * Tail new submitted changes and match them against all registered jobs.
+	 * Calls within the refresh interval share the previous result.
+	 *
+	 * @param listener for logging
+	 * @throws Exception push up stack
+	 */
+	public void refresh(TaskListener listener) throws Exception {
+		refresh(listener, refreshInterval);
+	}
+
+	/**
+	 * Tail new submitted changes, unless refreshed within the interval.
+	 *
+	 * @param listener for logging
+	 * @param interval Milliseconds a refresh is shared for
+	 * @throws Exception push up stack
+	 */
+	public synchronized void refresh(TaskListener listener, long interval) throws Exception {
+		long now = System.currentTimeMillis();
+		if (now - lastRefresh < interval) {
+			return;
+		}
+
+		try (ConnectionHelper p4 = new ConnectionHelper(credential, listener)) {
+			long latest = p4.getSubmittedHead();
+			lastRefresh = now;
+
+			// too far behind to catch up: start again from the head
+			if (head < 0 || latest - head > maxChanges) {
+				logger.info("P4: change feed reset at change " + latest);
+				jobs.clear();
+				head = latest;
+				return;
+			}
+
+			if (latest <= head) {
+				return;
+			}
+
+			List<IChangelistSummary> changes = p4.getSubmittedChanges(head + 1, latest, maxChanges);
+			Collections.reverse(changes);
+			for (IChangelistSummary summary : changes) {
+				long id = summary.getId();
+				List<IFileSpec> files = p4.getChangeFiles(id, maxFiles);
+				if (files == null || files.size() >= maxFiles) {
+					// unable to see every file; jobs must fall back to polling
+					logger.info("P4: change feed unable to describe change " + id + ", dropping jobs.");
+					jobs.clear();
+					continue;
+				}
+				match(id, files);
+			}
+			head = latest;
+
+			jobs.values().removeIf(JobEntry::isExpired);
+		}
+	}
+
+	private void match(long change, List<IFileSpec> files) {
+		for (JobEntry entry : jobs.values()) {
+			for (IFileSpec file : files) {
+				String path = (file == null) ? null : file.getDepotPathString();
+				if (path != null && entry.matches(path)) {
+					entry.add(change);
+					break;
+				}
+			}
+		}
+	}
+
+	public long getHead() {
+		return head;
+	}
+
+	public int getJobCount() {
+		return jobs.size();
+	}
+
+	private static final class JobEntry {
+		private final String client;
+		private final String view;
+		private final long expire;
+		private final List<Pattern> patterns = new ArrayList<>();
+		private final List<Boolean> excludes = new ArrayList<>();
+		private final NavigableSet<Long> matched = new ConcurrentSkipListSet<>();
+
+		private JobEntry(String client, String view, ClientView clientView) {
+			this.client = client;
+			this.view = view;
+			this.expire = System.currentTimeMillis() + viewLife;
+			for (IClientViewMapping mapping : clientView) {
+				String left = mapping.getLeft();
+				if (left == null || left.isEmpty()) {
+					continue;
+				}
+				patterns.add(toPattern(left));
+				excludes.add(mapping.getType() == IMapEntry.EntryType.EXCLUDE);
+			}
+		}
+
+		// a job whose view changed must be registered again
+		private boolean isFor(String client, String view) {
+			return this.client.equals(client) && Objects.equals(this.view, view);
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() > expire;
+		}
+
+		// later view lines take precedence, as in a Perforce client view
+		private boolean matches(String path) {
+			boolean match = false;
+			for (int i = 0; i < patterns.size(); i++) {
+				if (patterns.get(i).matcher(path).matches()) {
+					match = !excludes.get(i);
+				}
+			}
+			return match;
+		}
+
+		private void add(long change) {
+			matched.add(change);
+			while (matched.size() > MAX_MATCHED) {
+				matched.pollFirst();
+			}
+		}
+	}
+
+	/**
+	 * Convert a depot path with Perforce wildcards into a regular expression.
+	 *
+	 * @param path depot path, e.g. //depot/.../*.java
+	 * @return compiled pattern
+	 */
+	static Pattern toPattern(String path) {
+		StringBuilder sb = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < path.length()) {
+			if (path.startsWith("...", i)) {
+				flush(sb, literal);
+				sb.append(".*");
+				i += 3;
+			} else if (path.charAt(i) == '*') {
+				flush(sb, literal);
+				sb.append("[^/]*");
+				i++;
+			} else if (path.startsWith("%%", i) && i + 2 < path.length() && Character.isDigit(path.charAt(i + 2))) {
+				flush(sb, literal);
+				sb.append("[^/]*");
+				i += 3;
+			} else {
+				literal.append(path.charAt(i));
+				i++;
+			}
+		}
+		flush(sb, literal);
+		return Pattern.compile(sb.toString());
+	}
+
+	private static void flush(StringBuilder sb, StringBuilder literal) {
+		if (literal.length() > 0) {
+			sb.append(Pattern.quote(literal.toString()));
+			literal.setLength(0);
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package org.jenkinsci.plugins.p4.trigger;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.scm.SCM;
+import hudson.util.LogTaskListener;
+import jenkins.triggers.SCMTriggerItem;
+import org.jenkinsci.plugins.p4.PerforceScm;
+import org.jenkinsci.plugins.p4.changes.ChangeStore;
+import org.jenkinsci.plugins.p4.changes.P4Ref;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
+import org.jenkinsci.plugins.p4.filters.Filter;
+import org.jenkinsci.plugins.p4.populate.Populate;
+import org.jenkinsci.plugins.p4.tagging.TagAction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Routes a submitted change to the jobs whose view contains its files.
+ * <p>
+ * The change is described once for each Perforce user, as protections decide
+ * which files a user sees, or read from the {@link ChangeStore}; jobs with a
+ * known view (see {@link ViewIndex}), no polling filters and no pin are built
+ * at the change without polling, jobs whose view is only known by the server,
+ * that filter changes, that are pinned or that have already built the change
+ * (e.g. a late or replayed trigger) are polled, and the other jobs are
+ * skipped.
+ * <p>
+ * Changes with more files than
+ * <code>org.jenkinsci.plugins.p4.trigger.ChangeRouter.maxFiles</code> are not
+ * routed; all jobs are polled.
+ */
+public class ChangeRouter {
+
+	private static Logger logger = Logger.getLogger(ChangeRouter.class.getName());
+
+	public static final int DEFAULT_MAX_FILES = 10000;
+
+	private static final int maxFiles = Integer.getInteger(ChangeRouter.class.getName() + ".maxFiles", DEFAULT_MAX_FILES);
+
+	// builds searched for the last Perforce checkout
+	private static final int MAX_BUILDS = 10;
+
+	private final List<Job<?, ?>> build = new ArrayList<>();
+	private final List<Job<?, ?>> poll = new ArrayList<>();
+
+	private ChangeRouter() {
+	}
+
+	/**
+	 * Route a change to the given jobs.
+	 *
+	 * @param port   P4PORT (as sent by the trigger)
+	 * @param change Submitted change
+	 * @param jobs   Triggered jobs using the server
+	 * @return the jobs to build and to poll
+	 */
+	public static ChangeRouter route(String port, long change, List<Job<?, ?>> jobs) {
+		ChangeRouter router = new ChangeRouter();
+
+		// items matched by the change's files, for each user that can see them
+		Map<String, Set<String>> users = new HashMap<>();
+		for (Job<?, ?> job : jobs) {
+			P4BaseCredentials credential = getCredential(job);
+			if (credential == null) {
+				router.poll.add(job);
+				continue;
+			}
+
+			String user = getUser(credential);
+			if (!users.containsKey(user)) {
+				users.put(user, getMatched(port, change, credential));
+			}
+			Set<String> matched = users.get(user);
+
+			String name = job.getFullName();
+			if (matched == null) {
+				router.poll.add(job);
+			} else if (!matched.contains(name)) {
+				logger.fine("P4: change " + change + " not in view: " + name);
+			} else if (!ViewIndex.isViewKnown(name) || isPolled(job)) {
+				router.poll.add(job);
+			} else if (change <= getLastChange(job)) {
+				logger.fine("P4: change " + change + " already built: " + name);
+				router.poll.add(job);
+			} else {
+				router.build.add(job);
+			}
+		}
+		logger.info("P4: change " + change + " routed to " + router.build.size()
+				+ " builds and " + router.poll.size() + " polls of " + jobs.size() + " jobs");
+		return router;
+	}
+
+	/**
+	 * @return jobs to build at the change
+	 */
+	public List<Job<?, ?>> getBuild() {
+		return build;
+	}
+
+	/**
+	 * @return jobs to poll
+	 */
+	public List<Job<?, ?>> getPoll() {
+		return poll;
+	}
+
+	// The credential of all the job's Perforce SCMs; null if none or they differ
+	private static P4BaseCredentials getCredential(Job<?, ?> job) {
+		P4BaseCredentials credential = null;
+		for (PerforceScm scm : getPerforceScms(job)) {
+			P4BaseCredentials c = ConnectionHelper.findCredential(scm.getCredential(), job);
+			if (c == null) {
+				return null;
+			}
+			if (credential != null && !getUser(credential).equals(getUser(c))) {
+				return null;
+			}
+			credential = c;
+		}
+		return credential;
+	}
+
+	private static String getUser(P4BaseCredentials credential) {
+		return credential.getFullP4port() + "\n" + credential.getUsername();
+	}
+
+	// Items whose view contains a file the user can see; null if not known
+	private static Set<String> getMatched(String port, long change, P4BaseCredentials credential) {
+		List<String> files = getFiles(change, credential);
+		if (files == null) {
+			return null;
+		}
+		Set<String> matched = new HashSet<>();
+		for (String file : files) {
+			matched.addAll(ViewIndex.match(port, file));
+		}
+		return matched;
+	}
+
+	// Describe the change as the credential's user; null if not possible
+	private static List<String> getFiles(long change, P4BaseCredentials credential) {
+		LogTaskListener listener = new LogTaskListener(logger, Level.FINE);
+		try (ConnectionHelper p4 = new ConnectionHelper(credential, listener)) {
+			ChangeStore.Metadata metadata = ChangeStore.get(p4, change, maxFiles + 1, false);
+			if (metadata == null) {
+				return null;
+			}
+			List<String> files = metadata.getPaths();
+			if (files.size() > maxFiles) {
+				return null;
+			}
+			return files.isEmpty() ? null : files;
+		} catch (Exception e) {
+			logger.warning("P4: unable to describe change " + change + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Highest change synced by the job's last build with a Perforce checkout;
+	 * a build of an older change would sync the workspace back.
+	 *
+	 * @param job Jenkins job
+	 * @return change or 0 if not known
+	 */
+	public static long getLastChange(Job<?, ?> job) {
+		Run<?, ?> run = job.getLastBuild();
+		for (int i = 0; run != null && i < MAX_BUILDS; i++, run = run.getPreviousBuild()) {
+			List<TagAction> actions = run.getActions(TagAction.class);
+			if (actions.isEmpty()) {
+				continue;
+			}
+			long change = 0;
+			for (TagAction action : actions) {
+				for (P4Ref ref : action.getRefChanges()) {
+					if (!ref.isLabel() && !ref.isCommit()) {
+						change = Math.max(change, ref.getChange());
+					}
+				}
+			}
+			return change;
+		}
+		return 0;
+	}
+
+	// Filters need the poll, and a pinned build does not sync the triggered change
+	private static boolean isPolled(Job<?, ?> job) {
+		for (PerforceScm scm : getPerforceScms(job)) {
+			List<Filter> filter = scm.getFilter();
+			if (filter != null && !filter.isEmpty()) {
+				return true;
+			}
+			Populate populate = scm.getPopulate();
+			String pin = (populate == null) ? null : populate.getPin();
+			if (pin != null && !pin.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<PerforceScm> getPerforceScms(Job<?, ?> job) {
+		List<PerforceScm> list = new ArrayList<>();
+		SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
+		if (item == null) {
+			return list;
+		}
+		for (SCM scm : item.getSCMs()) {
+			PerforceScm p4scm = PerforceScm.convertToPerforceScm(scm);
+			if (p4scm != null) {
+				list.add(p4scm);
+			}
+		}
+		return list;
+	}
+}
@@ -9,21 +9,25 @@ import jenkins.model.Jenkins;
 import jenkins.model.ParameterizedJobMixIn;
 import jenkins.scm.api.SCMEvent;
 import jenkins.scm.api.SCMHeadEvent;
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.apache.commons.io.IOUtils;
+import org.jenkinsci.plugins.p4.changes.ChangeStore;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
 import org.jenkinsci.plugins.p4.review.ReviewProp;
+import org.jenkinsci.plugins.p4.scm.ProbeCache;
 import org.jenkinsci.plugins.p4.scm.events.P4BranchSCMHeadEvent;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
 import org.kohsuke.stapler.verb.POST;
 
 import jakarta.servlet.ServletException;
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 import static hudson.Functions.checkPermission;
@@ -31,8 +35,6 @@ import static hudson.Functions.checkPermission;
 @Extension
 public class P4Hook implements UnprotectedRootAction {
 
-	ExecutorService executorService = Executors.newSingleThreadExecutor();
-
 	public static final String URLNAME = "p4";
 
 	@Override
@@ -70,7 +72,28 @@ public class P4Hook implements UnprotectedRootAction {
 		String typeString = payload.getString(ReviewProp.EVENT_TYPE.getProp());
 		SCMEvent.Type eventType = SCMEvent.Type.valueOf(typeString);
 
-		SCMHeadEvent.fireNow(new P4BranchSCMHeadEvent(eventType, payload, SCMEvent.originOf(req)));
+		String origin = SCMEvent.originOf(req);
+		long change = getChange(payload.optString(ReviewProp.P4_CHANGE.getProp(), null));
+
+		// Merge Swarm events for the same branch; the event with the highest change is fired
+		TriggerCoalescer.offer(getEventKey(payload, change), change,
+				c -> SCMHeadEvent.fireNow(new P4BranchSCMHeadEvent(eventType, payload, origin)));
+	}
+
+	// Swarm events name their branch; other events are only matched by their change's files, so are not merged
+	private static String getEventKey(JSONObject payload, long change) {
+		StringBuilder key = new StringBuilder("event");
+		key.append("\n").append(payload.optString(ReviewProp.P4_PORT.getProp()));
+		key.append("\n").append(payload.optString(ReviewProp.EVENT_TYPE.getProp()));
+		String project = payload.optString(ReviewProp.SWARM_PROJECT.getProp(), null);
+		if (project == null || project.isEmpty()) {
+			return key.append("\n").append(change).toString();
+		}
+		key.append("\n").append(project);
+		key.append("\n").append(payload.optString(ReviewProp.SWARM_BRANCH.getProp()));
+		key.append("\n").append(payload.optString(ReviewProp.SWARM_PATH.getProp()));
+		key.append("\n").append(payload.optString(ReviewProp.SWARM_REVIEW.getProp()));
+		return key.toString();
 	}
 
 	@POST
@@ -87,28 +110,76 @@ public class P4Hook implements UnprotectedRootAction {
 			body = body.substring(8);
 			JSONObject payload = JSONObject.fromObject(body);
 
-			final String port = payload.getString("p4port");
-			//final String change = payload.getString("change");
-			final List<Job> jobs = getJobs();
+			final String port = payload.optString("p4port", null);
+			final String change = payload.optString("change", null);
 
 			LOGGER.info("Received trigger event for: " + port);
-			if (port == null) {
+			if (port == null || port.isEmpty()) {
 				LOGGER.warning("p4port must be specified");
 				return;
 			}
+			final List<Job> jobs = getJobs(port);
 
-			// Use an executor to prevent blocking the trigger during polling
-			executorService.submit(() -> {
-                try {
-                    probeJobs(port, jobs);
-                } catch (IOException e) {
-                    LOGGER.severe("Error on Polling Thread : " + e.getMessage());
-                    e.printStackTrace();
-                }
-            });
+			// Queue the event to prevent blocking the trigger during polling
+			TriggerQueue.submit("change " + change + " on " + port, () -> probeChange(port, change, jobs));
 		}
 	}
 
+	/**
+	 * Command limiter queues and waits per server, for tuning the limits.
+	 */
+	@GET
+	public void doLimits(StaplerResponse2 rsp) throws IOException {
+
+		checkPermission(Jenkins.ADMINISTER);
+
+		JSONArray list = new JSONArray();
+		for (CommandLimiter.Stats stats : CommandLimiter.getStats()) {
+			list.add(JSONObject.fromObject(stats));
+		}
+		rsp.setContentType("application/json;charset=UTF-8");
+		rsp.getWriter().write(list.toString());
+	}
+
+	/**
+	 * Trigger queue length, lag and drop counts.
+	 */
+	@GET
+	public void doQueue(StaplerResponse2 rsp) throws IOException {
+
+		checkPermission(Jenkins.ADMINISTER);
+
+		JSONObject stats = JSONObject.fromObject(TriggerQueue.getStats());
+		rsp.setContentType("application/json;charset=UTF-8");
+		rsp.getWriter().write(stats.toString());
+	}
+
+	/**
+	 * Probe cache size and hit rate.
+	 */
+	@GET
+	public void doProbeCache(StaplerResponse2 rsp) throws IOException {
+
+		checkPermission(Jenkins.ADMINISTER);
+
+		JSONObject stats = JSONObject.fromObject(ProbeCache.getStats());
+		rsp.setContentType("application/json;charset=UTF-8");
+		rsp.getWriter().write(stats.toString());
+	}
+
+	/**
+	 * Change store size and hit rate.
+	 */
+	@GET
+	public void doChangeStore(StaplerResponse2 rsp) throws IOException {
+
+		checkPermission(Jenkins.ADMINISTER);
+
+		JSONObject stats = JSONObject.fromObject(ChangeStore.getStats());
+		rsp.setContentType("application/json;charset=UTF-8");
+		rsp.getWriter().write(stats.toString());
+	}
+
 	@POST
 	public void doChangeSubmit(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException, ServletException {
 
@@ -117,12 +188,12 @@ public class P4Hook implements UnprotectedRootAction {
 		JSONObject formData = req.getSubmittedForm();
 		if (!formData.isEmpty()) {
 			String port = req.getParameter("_.p4port");
-			//String change = req.getParameter("_.change");
-			List<Job> jobs = getJobs();
+			String change = req.getParameter("_.change");
 
 			LOGGER.info("Manual trigger event: ");
-			if (port != null) {
-				probeJobs(port, jobs);
+			if (port != null && !port.isEmpty()) {
+				List<Job> jobs = getJobs(port);
+				TriggerQueue.submit("change " + change + " on " + port, () -> probeChange(port, change, jobs));
 			} else {
 				LOGGER.warning("p4port must be specified");
 			}
@@ -132,35 +203,100 @@ public class P4Hook implements UnprotectedRootAction {
 		}
 	}
 
-	private void probeJobs(@CheckForNull String port, List<Job> jobs) throws IOException {
+	// Build the jobs with the change in view; poll if no change is given
+	private void probeChange(@CheckForNull String port, @CheckForNull String change, List<Job> jobs) throws IOException {
+		long id = getChange(change);
+		if (id <= 0) {
+			probeJobs(port, jobs);
+			return;
+		}
+
+		List<Job<?, ?>> triggered = new ArrayList<>();
 		for (Job<?, ?> job : jobs) {
-			if (!job.isBuildable()) {
-				continue;
+			if (job.isBuildable() && getTrigger(job) != null) {
+				triggered.add(job);
 			}
-			LOGGER.fine("P4: trying: " + job.getName());
+		}
 
-			P4Trigger trigger = null;
-			if (job instanceof ParameterizedJobMixIn.ParameterizedJob pJob) {
-				for (Object t : pJob.getTriggers().values()) {
-					if (t instanceof P4Trigger) {
-						trigger = (P4Trigger) t;
-						break;
+		ChangeRouter router = ChangeRouter.route(port, id, triggered);
+		for (Job<?, ?> job : router.getBuild()) {
+			P4Trigger trigger = getTrigger(job);
+			TriggerCoalescer.offer(port + "\n" + job.getFullName(), id, c -> {
+				try {
+					// a poll may have built a later change while coalescing
+					if (c > ChangeRouter.getLastChange(job)) {
+						trigger.build(job, c);
+					} else {
+						TriggerQueue.submitJob(port, job.getFullName(), () -> trigger.poke(job, port));
 					}
+				} catch (IOException e) {
+					LOGGER.severe("P4: unable to build " + job.getFullName() + ": " + e.getMessage());
 				}
+			});
+		}
+		probeJobs(port, new ArrayList<>(router.getPoll()), id);
+	}
+
+	private void probeJobs(@CheckForNull String port, List<Job> jobs) {
+		probeJobs(port, jobs, 0);
+	}
+
+	// Queue a poll of each job, once per job while queued or within the coalescing window
+	private void probeJobs(@CheckForNull String port, List<Job> jobs, long change) {
+		for (Job<?, ?> job : jobs) {
+			if (!job.isBuildable()) {
+				continue;
 			}
+			LOGGER.fine("P4: trying: " + job.getName());
 
+			P4Trigger trigger = getTrigger(job);
 			if (trigger != null) {
 				LOGGER.info("P4: probing: " + job.getName());
-				trigger.poke(job, port);
+				TriggerCoalescer.offer(port + "\n" + job.getFullName(), change,
+						c -> TriggerQueue.submitJob(port, job.getFullName(), () -> trigger.poke(job, port)));
 			} else {
 				LOGGER.fine("P4: trigger not set: " + job.getName());
 			}
 		}
 	}
 
-	private List<Job> getJobs() {
+	private static long getChange(@CheckForNull String change) {
+		if (change == null || change.trim().isEmpty()) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(change.trim());
+		} catch (NumberFormatException e) {
+			LOGGER.warning("P4: invalid change: " + change);
+			return 0;
+		}
+	}
+
+	private static P4Trigger getTrigger(Job<?, ?> job) {
+		if (job instanceof ParameterizedJobMixIn.ParameterizedJob pJob) {
+			for (Object t : pJob.getTriggers().values()) {
+				if (t instanceof P4Trigger) {
+					return (P4Trigger) t;
+				}
+			}
+		}
+		return null;
+	}
+
+	// Jobs using the server, from the view index in place of scanning all items
+	private List<Job> getJobs(String port) {
 		Jenkins j = Jenkins.get();
-		return j.getAllItems(Job.class);
+		List<Job> jobs = new ArrayList<>();
+		if (port == null) {
+			return jobs;
+		}
+		for (String name : ViewIndex.getItems(port)) {
+			Job job = j.getItemByFullName(name, Job.class);
+			if (job != null) {
+				jobs.add(job);
+			}
+		}
+		return jobs;
 	}
 
 	final static Logger LOGGER = Logger.getLogger(P4Hook.class.getName());
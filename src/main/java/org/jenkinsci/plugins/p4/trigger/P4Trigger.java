@@ -6,8 +6,13 @@ import hudson.Extension;
 import hudson.Util;
 import hudson.console.AnnotatedLargeText;
 import hudson.model.Action;
+import hudson.model.CauseAction;
 import hudson.model.Item;
 import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterValue;
 import hudson.scm.PollingResult;
 import hudson.scm.SCM;
 import hudson.triggers.SCMTrigger.SCMTriggerCause;
@@ -21,14 +26,18 @@ import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.p4.PerforceScm;
 import org.jenkinsci.plugins.p4.client.ConnectionHelper;
 import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
+import org.jenkinsci.plugins.p4.review.ReviewProp;
+import org.jenkinsci.plugins.p4.review.SafeParametersAction;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.logging.Logger;
 
 public class P4Trigger extends Trigger<Job<?, ?>> {
@@ -87,6 +96,42 @@ public class P4Trigger extends Trigger<Job<?, ?>> {
 		}
 	}
 
+	/**
+	 * Schedule a build at a submitted change, without polling; used when the
+	 * change is known to be in the job's view and newer than its last build.
+	 *
+	 * @param job    Jenkins Job
+	 * @param change Submitted change
+	 * @throws IOException push up stack
+	 */
+	public void build(Job<?, ?> job, long change) throws IOException {
+
+		LOGGER.info("P4: building: " + job.getName() + " at change " + change);
+
+		try (StreamTaskListener listener = new StreamTaskListener(getLogFile(job), Charset.defaultCharset())) {
+			listener.getLogger().println("P4: Change " + change + " is in view; building without polling");
+		}
+
+		// keep the job's default parameters
+		List<ParameterValue> values = new ArrayList<>();
+		ParametersDefinitionProperty property = job.getProperty(ParametersDefinitionProperty.class);
+		if (property != null) {
+			for (ParameterDefinition d : property.getParameterDefinitions()) {
+				ParameterValue value = d.getDefaultParameterValue();
+				if (value != null) {
+					values.add(value);
+				}
+			}
+		}
+
+		// pin the change as a Swarm style 'change' parameter (P4_CHANGE)
+		List<ParameterValue> internal = new ArrayList<>();
+		internal.add(new StringParameterValue(ReviewProp.P4_CHANGE.getProp(), String.valueOf(change)));
+
+		SCMTriggerCause cause = new SCMTriggerCause(getLogFile(job));
+		build(job, new CauseAction(cause), new SafeParametersAction(values, internal));
+	}
+
 	/**
 	 * Schedule build
 	 *
@@ -96,16 +141,25 @@ public class P4Trigger extends Trigger<Job<?, ?>> {
 	private void build(final Job<?, ?> job) throws IOException {
 
 		SCMTriggerCause cause = new SCMTriggerCause(getLogFile(job));
+		mixIn(job).scheduleBuild(cause);
+	}
 
-		@SuppressWarnings("rawtypes")
-		ParameterizedJobMixIn pJob = new ParameterizedJobMixIn() {
+	private void build(final Job<?, ?> job, Action... actions) {
+		int quietPeriod = 0;
+		if (job instanceof ParameterizedJobMixIn.ParameterizedJob<?, ?> parameterized) {
+			quietPeriod = parameterized.getQuietPeriod();
+		}
+		mixIn(job).scheduleBuild2(quietPeriod, actions);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static ParameterizedJobMixIn mixIn(final Job<?, ?> job) {
+		return new ParameterizedJobMixIn() {
 			@Override
 			protected Job asJob() {
 				return job;
 			}
 		};
-
-		pJob.scheduleBuild(cause);
 	}
 
 	public File getLogFile(Job<?, ?> job) {
@@ -116,6 +170,11 @@ public class P4Trigger extends Trigger<Job<?, ?>> {
 	}
 
 	private boolean matchServer(Job<?, ?> job, String port) {
+		Boolean indexed = ViewIndex.isOnPort(job.getFullName(), port);
+		if (indexed != null) {
+			return indexed;
+		}
+
 		//Get all the trigger for this Job
 		SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
 
@@ -0,0 +1,94 @@
+package org.jenkinsci.plugins.p4.trigger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the highest submitted change seen by each job's last empty poll.
+ * <p>
+ * If it has not moved since a poll found no changes (and the job's
+ * configuration and last build are the same) nothing can have been submitted
+ * into the job's view, so the next poll can return early.
+ */
+public class PollCounterCache {
+
+	private static final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+	private PollCounterCache() {
+	}
+
+	/**
+	 * Test if the counter is unchanged since the last empty poll; counts a skip if so.
+	 *
+	 * @param port      P4PORT
+	 * @param job       Job full name
+	 * @param signature Job configuration and baseline (view, client, pin, last build)
+	 * @param counter   Current highest submitted change
+	 * @return true if the poll can be skipped
+	 */
+	public static boolean isUnchanged(String port, String job, String signature, long counter) {
+		Entry entry = cache.get(key(port, job));
+		if (entry == null || counter < 0) {
+			return false;
+		}
+		if (entry.counter != counter || !entry.signature.equals(signature)) {
+			return false;
+		}
+		entry.skipped++;
+		return true;
+	}
+
+	/**
+	 * Record the counter read before a poll that found no changes.
+	 *
+	 * @param port      P4PORT
+	 * @param job       Job full name
+	 * @param signature Job configuration and baseline
+	 * @param counter   Highest submitted change read before the poll
+	 */
+	public static void update(String port, String job, String signature, long counter) {
+		if (counter < 0) {
+			return;
+		}
+		String key = key(port, job);
+		Entry last = cache.get(key);
+		Entry entry = new Entry(signature, counter);
+		if (last != null && last.signature.equals(signature)) {
+			entry.skipped = last.skipped;
+		}
+		cache.put(key, entry);
+	}
+
+	public static void invalidate(String port, String job) {
+		cache.remove(key(port, job));
+	}
+
+	/**
+	 * Remove a job for all servers.
+	 *
+	 * @param job Job full name
+	 */
+	public static void forget(String job) {
+		cache.keySet().removeIf(k -> k.endsWith("\n" + job));
+	}
+
+	public static long getSkipCount(String port, String job) {
+		Entry entry = cache.get(key(port, job));
+		return (entry == null) ? 0 : entry.skipped;
+	}
+
+	private static String key(String port, String job) {
+		return port + "\n" + job;
+	}
+
+	private static final class Entry {
+		private final String signature;
+		private final long counter;
+		private volatile long skipped;
+
+		private Entry(String signature, long counter) {
+			this.signature = signature;
+			this.counter = counter;
+		}
+	}
+}
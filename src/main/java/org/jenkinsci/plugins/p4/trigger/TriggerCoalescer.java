@@ -0,0 +1,138 @@
+package org.jenkinsci.plugins.p4.trigger;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.p4.PerforceScm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Debounces trigger events.
+ * <p>
+ * Events with the same key (e.g. P4PORT and job) arriving within the
+ * coalescing window are merged: the action of the highest change runs once,
+ * with that change. Each event restarts the window, but an action is never held longer
+ * than the maximum delay after the first event. Both are set in the global
+ * configuration; a window of 0 runs every event at once.
+ */
+public class TriggerCoalescer {
+
+	private static Logger logger = Logger.getLogger(TriggerCoalescer.class.getName());
+
+	private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+			new NamingThreadFactory(new DaemonThreadFactory(), "P4TriggerCoalescer"));
+
+	private static final Map<String, Pending> pending = new HashMap<>();
+
+	private TriggerCoalescer() {
+	}
+
+	/**
+	 * Run an action for an event, merged with other events for the same key.
+	 *
+	 * @param key    Events with the same key are merged
+	 * @param change Change of the event (0 if none)
+	 * @param action Action to run with the highest change
+	 */
+	public static void offer(String key, long change, LongConsumer action) {
+		long window = getWindow();
+		if (window <= 0) {
+			action.accept(change);
+			return;
+		}
+		long maxDelay = Math.max(window, getMaxDelay());
+		offer(key, change, action, window, maxDelay);
+	}
+
+	/**
+	 * Run an action for an event, merged with other events for the same key.
+	 *
+	 * @param key      Events with the same key are merged
+	 * @param change   Change of the event (0 if none)
+	 * @param action   Action to run with the highest change
+	 * @param window   Coalescing window in milliseconds
+	 * @param maxDelay Maximum delay from the first event in milliseconds
+	 */
+	public static synchronized void offer(String key, long change, LongConsumer action, long window, long maxDelay) {
+		long now = System.currentTimeMillis();
+		Pending p = pending.get(key);
+		if (p == null) {
+			p = new Pending(now);
+			pending.put(key, p);
+		} else {
+			p.future.cancel(false);
+			p.merged++;
+		}
+		// keep the action of the highest change (e.g. its event payload)
+		if (p.action == null || change >= p.change) {
+			p.change = change;
+			p.action = action;
+		}
+
+		// restart the window, up to the max delay from the first event
+		long due = Math.min(now + window, p.first + maxDelay);
+		Pending scheduled = p;
+		p.future = timer.schedule(() -> fire(key, scheduled), Math.max(0, due - now), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return number of keys waiting for their window to close
+	 */
+	public static synchronized int getPending() {
+		return pending.size();
+	}
+
+	private static void fire(String key, Pending p) {
+		synchronized (TriggerCoalescer.class) {
+			if (pending.get(key) != p) {
+				return;
+			}
+			pending.remove(key);
+		}
+		if (p.merged > 0) {
+			logger.info("P4: merged " + (p.merged + 1) + " trigger events for " + key.replace('\n', ' ')
+					+ " (change " + p.change + ")");
+		}
+		try {
+			p.action.accept(p.change);
+		} catch (RuntimeException e) {
+			logger.severe("P4: trigger failed for " + key.replace('\n', ' ') + ": " + e.getMessage());
+		}
+	}
+
+	private static long getWindow() {
+		PerforceScm.DescriptorImpl scm = getDescriptor();
+		return (scm == null) ? 0 : TimeUnit.SECONDS.toMillis(scm.getTriggerWindow());
+	}
+
+	private static long getMaxDelay() {
+		PerforceScm.DescriptorImpl scm = getDescriptor();
+		int seconds = (scm == null) ? PerforceScm.DEFAULT_TRIGGER_MAX_DELAY : scm.getTriggerMaxDelay();
+		return TimeUnit.SECONDS.toMillis(seconds);
+	}
+
+	private static PerforceScm.DescriptorImpl getDescriptor() {
+		Jenkins j = Jenkins.getInstanceOrNull();
+		return (j == null) ? null : j.getDescriptorByType(PerforceScm.DescriptorImpl.class);
+	}
+
+	private static final class Pending {
+		private final long first;
+		private long change = 0;
+		private int merged = 0;
+		private LongConsumer action;
+		private ScheduledFuture<?> future;
+
+		private Pending(long first) {
+			this.first = first;
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package org.jenkinsci.plugins.p4.trigger;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Bounded worker pool for trigger events.
+ * <p>
+ * Each event and each job probe is a task; a job already queued or probing
+ * for a server is not queued again, so a burst of events polls each job once
+ * and never in parallel. An event that arrives while the probe runs makes it
+ * run once more when it finishes. Tasks beyond the queue limit are dropped
+ * (and counted); the next event or scheduled poll picks the change up.
+ * <p>
+ * The pool size and queue limit can be set with the system properties
+ * <code>org.jenkinsci.plugins.p4.trigger.TriggerQueue.threads</code> and
+ * <code>.queue</code>.
+ */
+public class TriggerQueue {
+
+	private static Logger logger = Logger.getLogger(TriggerQueue.class.getName());
+
+	public static final int DEFAULT_THREADS = 4;
+	public static final int DEFAULT_QUEUE = 1000;
+
+	private static final int threads = Integer.getInteger(TriggerQueue.class.getName() + ".threads", DEFAULT_THREADS);
+	private static final int queue = Integer.getInteger(TriggerQueue.class.getName() + ".queue", DEFAULT_QUEUE);
+
+	private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+			60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queue),
+			new NamingThreadFactory(new DaemonThreadFactory(), "P4Trigger"));
+
+	static {
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	// jobs queued or probing, by server; set if an event arrived during the probe
+	private static final ConcurrentHashMap<String, AtomicBoolean> pending = new ConcurrentHashMap<>();
+
+	private static final AtomicLong submitted = new AtomicLong();
+	private static final AtomicLong started = new AtomicLong();
+	private static final AtomicLong completed = new AtomicLong();
+	private static final AtomicLong deduplicated = new AtomicLong();
+	private static final AtomicLong rejected = new AtomicLong();
+	private static final AtomicLong failed = new AtomicLong();
+	private static final AtomicLong lagMillis = new AtomicLong();
+	private static final AtomicLong maxLagMillis = new AtomicLong();
+
+	private TriggerQueue() {
+	}
+
+	/**
+	 * Queue a trigger event (e.g. routing a change to jobs).
+	 *
+	 * @param name Description for logging
+	 * @param task Work to do
+	 * @return true if queued
+	 */
+	public static boolean submit(String name, Task task) {
+		return submit(null, name, task);
+	}
+
+	/**
+	 * Queue a probe of a job, unless the job is already queued or probing for
+	 * the server; a probe already running is run again when it finishes.
+	 *
+	 * @param port P4PORT
+	 * @param job  Job full name
+	 * @param task Work to do
+	 * @return true if queued, false if already queued or the queue is full
+	 */
+	public static boolean submitJob(String port, String job, Task task) {
+		String key = port + "\n" + job;
+		AtomicBoolean again = new AtomicBoolean();
+		AtomicBoolean queued = pending.putIfAbsent(key, again);
+		if (queued != null) {
+			queued.set(true);
+			deduplicated.incrementAndGet();
+			logger.fine("P4: already queued: " + job);
+			return false;
+		}
+		return submit(key, job, task);
+	}
+
+	private static boolean submit(String key, String name, Task task) {
+		long queued = System.currentTimeMillis();
+		submitted.incrementAndGet();
+		try {
+			executor.execute(() -> {
+				long lag = System.currentTimeMillis() - queued;
+				started.incrementAndGet();
+				lagMillis.addAndGet(lag);
+				maxLagMillis.accumulateAndGet(lag, Math::max);
+				try {
+					run(key, name, task);
+				} finally {
+					completed.incrementAndGet();
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			if (key != null) {
+				pending.remove(key);
+			}
+			submitted.decrementAndGet();
+			rejected.incrementAndGet();
+			logger.warning("P4: trigger queue full, dropped: " + name);
+			return false;
+		}
+	}
+
+	// Run the task, then again while events arrived during the run; the key
+	// is only released once a run finishes with no further event.
+	private static void run(String key, String name, Task task) {
+		AtomicBoolean again = (key == null) ? null : pending.get(key);
+		boolean more = true;
+		try {
+			while (more) {
+				if (again != null) {
+					again.set(false);
+				}
+				try {
+					task.run();
+				} catch (Exception e) {
+					failed.incrementAndGet();
+					logger.severe("P4: trigger failed for " + name + ": " + e.getMessage());
+				}
+				more = again != null && pending.computeIfPresent(key, (k, v) -> v.getAndSet(false) ? v : null) != null;
+				if (more) {
+					logger.fine("P4: probing again: " + name);
+				}
+			}
+		} finally {
+			if (more && key != null) {
+				pending.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * @return queue statistics
+	 */
+	public static Stats getStats() {
+		return new Stats();
+	}
+
+	/**
+	 * Trigger work; may throw.
+	 */
+	@FunctionalInterface
+	public interface Task {
+		void run() throws Exception;
+	}
+
+	public static final class Stats {
+		private final int threads = executor.getMaximumPoolSize();
+		private final int active = executor.getActiveCount();
+		private final int queued = executor.getQueue().size();
+		private final long submitted = TriggerQueue.submitted.get();
+		private final long completed = TriggerQueue.completed.get();
+		private final long deduplicated = TriggerQueue.deduplicated.get();
+		private final long rejected = TriggerQueue.rejected.get();
+		private final long failed = TriggerQueue.failed.get();
+		private final long maxLagMillis = TriggerQueue.maxLagMillis.get();
+		private final long averageLagMillis = (started.get() == 0) ? 0 : lagMillis.get() / started.get();
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public int getActive() {
+			return active;
+		}
+
+		public int getQueued() {
+			return queued;
+		}
+
+		public long getSubmitted() {
+			return submitted;
+		}
+
+		public long getCompleted() {
+			return completed;
+		}
+
+		public long getDeduplicated() {
+			return deduplicated;
+		}
+
+		public long getRejected() {
+			return rejected;
+		}
+
+		public long getFailed() {
+			return failed;
+		}
+
+		public long getMaxLagMillis() {
+			return maxLagMillis;
+		}
+
+		public long getAverageLagMillis() {
+			return averageLagMillis;
+		}
+	}
+}
@@ -0,0 +1,337 @@
+package org.jenkinsci.plugins.p4.trigger;
+
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.scm.SCM;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceOwner;
+import jenkins.triggers.SCMTriggerItem;
+import org.jenkinsci.plugins.p4.PerforceScm;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
+import org.jenkinsci.plugins.p4.scm.AbstractP4ScmSource;
+import org.jenkinsci.plugins.p4.scm.BranchesScmSource;
+import org.jenkinsci.plugins.p4.workspace.ManualWorkspaceImpl;
+import org.jenkinsci.plugins.p4.workspace.Workspace;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Index of the Perforce servers and depot views used by each Job and
+ * multibranch project, to find the items a submitted file belongs to.
+ * <p>
+ * Views are taken from Manual workspaces (the depot side of the view) and the
+ * include paths of Branches sources. Items whose view is only known on the
+ * server (Template, Spec and Static workspaces, paths with variables, and
+ * streams, whose imported and parent paths or virtual view are only resolved
+ * by the server) match any path on their server.
+ * <p>
+ * The index is built on first use and kept up to date by
+ * {@link ViewIndexListener}.
+ */
+public class ViewIndex {
+
+	private static Logger logger = Logger.getLogger(ViewIndex.class.getName());
+
+	// indexed item names and their servers
+	private static final Map<String, Set<String>> items = new ConcurrentHashMap<>();
+
+	private static final Map<String, PortIndex> ports = new ConcurrentHashMap<>();
+
+	private static volatile boolean loaded = false;
+
+	private ViewIndex() {
+	}
+
+	/**
+	 * Find the items with a view that includes a depot path.
+	 *
+	 * @param port      P4PORT (as sent by the trigger)
+	 * @param depotPath Depot path of a file
+	 * @return item full names
+	 */
+	public static Set<String> match(String port, String depotPath) {
+		load();
+		Set<String> found = new HashSet<>();
+		for (Map.Entry<String, PortIndex> e : ports.entrySet()) {
+			if (isPort(e.getKey(), port)) {
+				PortIndex index = e.getValue();
+				found.addAll(index.trie.match(depotPath));
+				found.addAll(index.unbounded);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find the items using a server.
+	 *
+	 * @param port P4PORT (as sent by the trigger)
+	 * @return item full names
+	 */
+	public static Set<String> getItems(String port) {
+		load();
+		Set<String> found = new HashSet<>();
+		for (Map.Entry<String, Set<String>> e : items.entrySet()) {
+			for (String p : e.getValue()) {
+				if (isPort(p, port)) {
+					found.add(e.getKey());
+					break;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Test if an indexed item uses a server.
+	 *
+	 * @param name Item full name
+	 * @param port P4PORT (as sent by the trigger)
+	 * @return true or false, or null if the item is not indexed
+	 */
+	public static Boolean isOnPort(String name, String port) {
+		if (!loaded) {
+			return null;
+		}
+		Set<String> p4ports = items.get(name);
+		if (p4ports == null) {
+			return null;
+		}
+		for (String p : p4ports) {
+			if (isPort(p, port)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Test if every view of an indexed item is known (none is only known by
+	 * the server).
+	 *
+	 * @param name Item full name
+	 * @return true if the item is indexed and all its views are in the trie
+	 */
+	public static boolean isViewKnown(String name) {
+		if (!loaded || !items.containsKey(name)) {
+			return false;
+		}
+		for (PortIndex index : ports.values()) {
+			if (index.unbounded.contains(name)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * (Re)index an item from its current configuration.
+	 *
+	 * @param item Job or SCM source owner
+	 */
+	public static synchronized void update(Item item) {
+		if (item == null) {
+			return;
+		}
+		String name = item.getFullName();
+		remove(name);
+
+		Set<String> p4ports = new HashSet<>();
+		if (item instanceof Job<?, ?> job) {
+			SCMTriggerItem trigger = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
+			if (trigger != null) {
+				for (SCM scm : trigger.getSCMs()) {
+					PerforceScm p4scm = PerforceScm.convertToPerforceScm(scm);
+					if (p4scm != null) {
+						String port = getPort(p4scm.getCredential(), item);
+						add(name, port, getView(p4scm.getWorkspace()));
+						p4ports.add(port);
+					}
+				}
+			}
+		}
+		if (item instanceof SCMSourceOwner owner) {
+			for (SCMSource source : owner.getSCMSources()) {
+				if (source instanceof AbstractP4ScmSource p4source) {
+					String port = getPort(p4source.getCredential(), item);
+					add(name, port, getView(p4source));
+					p4ports.add(port);
+				}
+			}
+		}
+
+		if (!p4ports.isEmpty()) {
+			items.put(name, p4ports);
+		}
+	}
+
+	/**
+	 * Remove an item from the index.
+	 *
+	 * @param name Item full name
+	 */
+	public static synchronized void remove(String name) {
+		if (items.remove(name) == null) {
+			return;
+		}
+		for (PortIndex index : ports.values()) {
+			index.trie.remove(name);
+			index.unbounded.remove(name);
+		}
+	}
+
+	/**
+	 * Drop the index; it is rebuilt on next use.
+	 */
+	public static synchronized void clear() {
+		items.clear();
+		ports.clear();
+		loaded = false;
+	}
+
+	private static void load() {
+		if (loaded) {
+			return;
+		}
+		synchronized (ViewIndex.class) {
+			if (loaded) {
+				return;
+			}
+			long start = System.currentTimeMillis();
+			// index all items, not only those visible to the caller
+			try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+				for (Item item : Jenkins.get().allItems(Item.class)) {
+					if (item instanceof Job || item instanceof SCMSourceOwner) {
+						try {
+							update(item);
+						} catch (RuntimeException e) {
+							logger.warning("P4: unable to index " + item.getFullName() + ": " + e.getMessage());
+						}
+					}
+				}
+			}
+			loaded = true;
+			logger.info("P4: indexed " + items.size() + " items in " + (System.currentTimeMillis() - start) + "ms");
+		}
+	}
+
+	private static void add(String name, String port, List<String> view) {
+		PortIndex index = ports.computeIfAbsent(port, k -> new PortIndex());
+		if (view == null) {
+			index.unbounded.add(name);
+		} else {
+			index.trie.add(name, view);
+		}
+	}
+
+	private static String getPort(String credential, Item item) {
+		P4BaseCredentials p4credential = ConnectionHelper.findCredential(credential, item);
+		if (p4credential == null || p4credential.getFullP4port() == null) {
+			return "";
+		}
+		return p4credential.getFullP4port();
+	}
+
+	// Use 'contains' as the trigger may send the port without its protocol
+	private static boolean isPort(String fullPort, String port) {
+		return port != null && fullPort.contains(port);
+	}
+
+	/**
+	 * Depot side of a workspace's view.
+	 *
+	 * @param workspace Workspace
+	 * @return view lines or null if only known by the server
+	 */
+	static List<String> getView(Workspace workspace) {
+		if (workspace instanceof ManualWorkspaceImpl manual && manual.getSpec() != null) {
+			String stream = manual.getSpec().getStreamName();
+			if (stream != null && !stream.isEmpty()) {
+				// imported, parent and virtual stream paths are resolved by the server
+				return null;
+			}
+			return getDepotView(manual.getSpec().getView());
+		}
+		return null;
+	}
+
+	/**
+	 * Include paths of a multibranch source.
+	 *
+	 * @param source SCM source
+	 * @return view lines or null if only known by the server
+	 */
+	static List<String> getView(AbstractP4ScmSource source) {
+		if (!(source instanceof BranchesScmSource)) {
+			return null;
+		}
+		List<String> view = new ArrayList<>();
+		for (String include : source.getIncludePaths()) {
+			include = include.trim();
+			if (include.isEmpty()) {
+				continue;
+			}
+			if (include.contains("${")) {
+				return null;
+			}
+			if (include.endsWith("/...")) {
+				view.add(include);
+			} else if (include.endsWith("/*")) {
+				view.add(include.substring(0, include.length() - 2) + "/...");
+			} else {
+				view.add(include + "/...");
+			}
+		}
+		return view;
+	}
+
+	/**
+	 * Depot side of client view lines (quoted or not).
+	 *
+	 * @param view Client view
+	 * @return view lines or null if the view has variables
+	 */
+	static List<String> getDepotView(String view) {
+		if (view == null) {
+			return null;
+		}
+		List<String> lines = new ArrayList<>();
+		for (String line : view.split("[\\r\\n]+")) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			String depot;
+			if (line.startsWith("\"")) {
+				int end = line.indexOf('"', 1);
+				depot = (end < 0) ? line.substring(1) : line.substring(1, end);
+			} else if (line.length() > 1 && "-+&".indexOf(line.charAt(0)) >= 0 && line.charAt(1) == '"') {
+				int end = line.indexOf('"', 2);
+				depot = line.charAt(0) + ((end < 0) ? line.substring(2) : line.substring(2, end));
+			} else {
+				int end = line.indexOf(' ');
+				depot = (end < 0) ? line : line.substring(0, end);
+			}
+			if (depot.contains("${")) {
+				return null;
+			}
+			lines.add(depot);
+		}
+		return lines;
+	}
+
+	private static final class PortIndex {
+		private final ViewTrie trie = new ViewTrie();
+		private final Set<String> unbounded = ConcurrentHashMap.newKeySet();
+	}
+}
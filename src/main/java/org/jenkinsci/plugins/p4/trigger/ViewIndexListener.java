@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.p4.trigger;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SCMListener;
+import hudson.scm.SCM;
+import hudson.scm.SCMRevisionState;
+import org.jenkinsci.plugins.p4.PerforceScm;
+import org.jenkinsci.plugins.p4.scm.ScanHistory;
+
+import java.io.File;
+
+/**
+ * Keeps the {@link ViewIndex}, the per job polling caches and the scan
+ * history up to date as items are saved, renamed or deleted.
+ */
+@Extension
+public class ViewIndexListener extends ItemListener {
+
+	@Override
+	public void onCreated(Item item) {
+		ViewIndex.update(item);
+	}
+
+	@Override
+	public void onUpdated(Item item) {
+		ViewIndex.update(item);
+		ChangeFeed.forget(item.getFullName());
+		PollCounterCache.forget(item.getFullName());
+		ScanHistory.forget(item.getFullName());
+	}
+
+	@Override
+	public void onDeleted(Item item) {
+		forget(item.getFullName());
+	}
+
+	@Override
+	public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+		forget(oldFullName);
+		ViewIndex.update(item);
+	}
+
+	private static void forget(String name) {
+		ViewIndex.remove(name);
+		ChangeFeed.forget(name);
+		PollCounterCache.forget(name);
+		ScanHistory.forget(name);
+	}
+
+	/**
+	 * Pipeline jobs only know their SCMs once built; reindex after a checkout.
+	 */
+	@Extension
+	public static class CheckoutListener extends SCMListener {
+
+		@Override
+		public void onCheckout(Run<?, ?> build, SCM scm, FilePath workspace, TaskListener listener,
+		                       File changelogFile, SCMRevisionState pollingBaseline) {
+			if (PerforceScm.convertToPerforceScm(scm) != null) {
+				ViewIndex.update(build.getParent());
+			}
+		}
+	}
+}
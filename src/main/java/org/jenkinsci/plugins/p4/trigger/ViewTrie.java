@@ -0,0 +1,240 @@
+package org.jenkinsci.plugins.p4.trigger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Depot path trie of the depot side of workspace views.
+ * <p>
+ * Literal path segments are trie nodes; the remainder of a pattern from its
+ * first wildcard ('...', '*' or '%%n') is held at the node it starts from, so
+ * a lookup walks the path once and only tests the wildcard tails on the way.
+ * As in a client view, the last line that matches decides: a path is in a
+ * view if that line is not an exclusion ('-').
+ */
+public class ViewTrie {
+
+	private static final String ALL = "...";
+
+	private final Node root = new Node();
+	private final Map<String, List<Node>> owners = new HashMap<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private int views = 0;
+
+	/**
+	 * Add a view for an owner; an owner may have more than one view.
+	 *
+	 * @param owner Owner name (e.g. the Job's full name)
+	 * @param lines Depot side of the view lines, in order ('-' to exclude)
+	 */
+	public void add(String owner, List<String> lines) {
+		lock.writeLock().lock();
+		try {
+			int view = views++;
+			List<Node> nodes = owners.computeIfAbsent(owner, k -> new ArrayList<>());
+			for (int order = 0; order < lines.size(); order++) {
+				String line = lines.get(order);
+				if (line == null || line.isEmpty()) {
+					continue;
+				}
+				boolean exclude = line.startsWith("-");
+				String path = (exclude || line.startsWith("+") || line.startsWith("&")) ? line.substring(1) : line;
+				if (!path.startsWith("//")) {
+					continue;
+				}
+				Node node = insert(path.substring(2), new Mapping(owner, view, order, exclude));
+				nodes.add(node);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove all views for an owner.
+	 *
+	 * @param owner Owner name
+	 */
+	public void remove(String owner) {
+		lock.writeLock().lock();
+		try {
+			List<Node> nodes = owners.remove(owner);
+			if (nodes == null) {
+				return;
+			}
+			for (Node node : nodes) {
+				node.exact.removeIf(m -> m.owner.equals(owner));
+				node.tails.removeIf(t -> t.mapping.owner.equals(owner));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Find the owners with a view that includes the depot path.
+	 *
+	 * @param depotPath Depot path of a file e.g. //depot/projA/file.c
+	 * @return owner names
+	 */
+	public Set<String> match(String depotPath) {
+		Set<String> found = new HashSet<>();
+		if (depotPath == null || !depotPath.startsWith("//")) {
+			return found;
+		}
+
+		// last matching line per view
+		Map<Integer, Mapping> last = new HashMap<>();
+
+		lock.readLock().lock();
+		try {
+			Node node = root;
+			int pos = 2;
+			while (node != null) {
+				if (!node.tails.isEmpty()) {
+					String rest = depotPath.substring(pos);
+					for (Tail tail : node.tails) {
+						if (tail.matches(rest)) {
+							decide(last, tail.mapping);
+						}
+					}
+				}
+
+				int end = depotPath.indexOf('/', pos);
+				if (end < 0) {
+					Node leaf = node.children.get(depotPath.substring(pos));
+					if (leaf != null) {
+						for (Mapping m : leaf.exact) {
+							decide(last, m);
+						}
+					}
+					break;
+				}
+				node = node.children.get(depotPath.substring(pos, end));
+				pos = end + 1;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		for (Mapping m : last.values()) {
+			if (!m.exclude) {
+				found.add(m.owner);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return true if no views are held
+	 */
+	public boolean isEmpty() {
+		lock.readLock().lock();
+		try {
+			return owners.isEmpty();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private static void decide(Map<Integer, Mapping> last, Mapping mapping) {
+		Mapping m = last.get(mapping.view);
+		if (m == null || m.order < mapping.order) {
+			last.put(mapping.view, mapping);
+		}
+	}
+
+	private Node insert(String path, Mapping mapping) {
+		Node node = root;
+		String[] segments = path.split("/", -1);
+		for (int i = 0; i < segments.length; i++) {
+			String segment = segments[i];
+			if (isWildcard(segment)) {
+				String rest = String.join("/", Arrays.copyOfRange(segments, i, segments.length));
+				node.tails.add(new Tail(rest, mapping));
+				return node;
+			}
+			node = node.children.computeIfAbsent(segment, k -> new Node());
+		}
+		node.exact.add(mapping);
+		return node;
+	}
+
+	private static boolean isWildcard(String segment) {
+		return segment.contains("...") || segment.contains("*") || segment.contains("%%");
+	}
+
+	static Pattern compile(String pattern) {
+		StringBuilder sb = new StringBuilder();
+		int i = 0;
+		while (i < pattern.length()) {
+			if (pattern.startsWith("...", i)) {
+				sb.append(".*");
+				i += 3;
+			} else if (pattern.charAt(i) == '*') {
+				sb.append("[^/]*");
+				i++;
+			} else if (pattern.startsWith("%%", i) && i + 2 < pattern.length()
+					&& Character.isDigit(pattern.charAt(i + 2))) {
+				sb.append("[^/]*");
+				i += 3;
+			} else {
+				int next = i;
+				while (next < pattern.length() && pattern.charAt(next) != '*'
+						&& !pattern.startsWith("...", next) && !pattern.startsWith("%%", next)) {
+					next++;
+				}
+				if (next == i) {
+					next++;
+				}
+				sb.append(Pattern.quote(pattern.substring(i, next)));
+				i = next;
+			}
+		}
+		return Pattern.compile(sb.toString(), Pattern.DOTALL);
+	}
+
+	private static final class Node {
+		private final Map<String, Node> children = new HashMap<>();
+		private final List<Mapping> exact = new ArrayList<>();
+		private final List<Tail> tails = new ArrayList<>();
+	}
+
+	private static final class Mapping {
+		private final String owner;
+		private final int view;
+		private final int order;
+		private final boolean exclude;
+
+		private Mapping(String owner, int view, int order, boolean exclude) {
+			this.owner = owner;
+			this.view = view;
+			this.order = order;
+			this.exclude = exclude;
+		}
+	}
+
+	private static final class Tail {
+		private final Mapping mapping;
+		private final Pattern pattern;
+
+		private Tail(String rest, Mapping mapping) {
+			this.mapping = mapping;
+			// a trailing '...' matches everything below the node
+			this.pattern = ALL.equals(rest) ? null : compile(rest);
+		}
+
+		private boolean matches(String rest) {
+			return pattern == null || pattern.matcher(rest).matches();
+		}
+	}
+}
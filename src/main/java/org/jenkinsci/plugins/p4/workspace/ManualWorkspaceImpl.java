@@ -21,12 +21,14 @@ import net.sf.json.JSONObject;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
 import org.jenkinsci.plugins.p4.client.ConnectionFactory;
 import org.jenkinsci.plugins.p4.client.ViewMapHelper;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.bind.JavaScriptMethod;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serial;
 import java.io.Serializable;
@@ -132,6 +134,27 @@ public class ManualWorkspaceImpl extends Workspace implements Serializable {
 		return clientView;
 	}
 
+	/**
+	 * Client view lines, expanded as for the client spec.
+	 *
+	 * @return view lines, or null if the view is read from a file
+	 */
+	public List<String> getViewLines() {
+		String clientName = getFullName();
+		String specString = getExpand().format(spec.getView(), true);
+		if (specString.startsWith("@")) {
+			return null;
+		}
+
+		List<String> lines = new ArrayList<>();
+		String origName = getExpand().format(getName(), false);
+		for (String line : specString.split("\n\\s*")) {
+			line = line.replace(origName, clientName);
+			lines.add(adjustViewLine(line, clientName, false));
+		}
+		return lines;
+	}
+
 	// for matching the depot/clients paths in view line.
 	private static final Pattern PAT_DETECT = Pattern.compile("//([^/]*)/");
 
@@ -367,8 +390,8 @@ public class ManualWorkspaceImpl extends Workspace implements Serializable {
 
 	@JavaScriptMethod
 	public JSONObject getSpecJSON(String client) {
-		try {
-			IOptionsServer p4 = ConnectionFactory.getConnection();
+		IOptionsServer p4 = ConnectionFactory.getConnection();
+		try (CommandLimiter.Permit permit = CommandLimiter.ui(p4)) {
 			IClient c = p4.getClient(client);
 
 			StringBuilder sb = new StringBuilder();
@@ -391,7 +414,7 @@ public class ManualWorkspaceImpl extends Workspace implements Serializable {
 			spec.put("view", sb.toString());
 			spec.put("options", option);
 			return spec;
-		} catch (P4JavaException e) {
+		} catch (P4JavaException | IOException | InterruptedException e) {
 			JSONObject option = new JSONObject();
 			option.put("allwrite", false);
 			option.put("clobber", true);
@@ -11,6 +11,7 @@ import hudson.model.AutoCompletionCandidates;
 import hudson.util.FormValidation;
 import org.apache.commons.io.IOUtils;
 import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
 import org.jenkinsci.plugins.p4.client.ConnectionFactory;
 import org.jenkinsci.plugins.p4.client.NavigateHelper;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -134,8 +135,8 @@ public class SpecWorkspaceImpl extends Workspace implements Serializable {
 		}
 
 		public FormValidation doCheckSpecPath(@QueryParameter String value) {
-			try {
-				IOptionsServer p4 = ConnectionFactory.getConnection();
+			IOptionsServer p4 = ConnectionFactory.getConnection();
+			try (CommandLimiter.Permit permit = CommandLimiter.ui(p4)) {
 				List<IFileSpec> file = FileSpecBuilder.makeFileSpecList(value);
 				GetFileContentsOptions printOpts = new GetFileContentsOptions();
 				InputStream ins = p4.getFileContents(file, printOpts);
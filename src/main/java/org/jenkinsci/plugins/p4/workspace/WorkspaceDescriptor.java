@@ -11,6 +11,7 @@ import hudson.model.AutoCompletionCandidates;
 import hudson.model.Descriptor;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
 import org.jenkinsci.plugins.p4.client.ConnectionFactory;
 import org.kohsuke.stapler.QueryParameter;
 
@@ -30,8 +31,8 @@ public abstract class WorkspaceDescriptor extends Descriptor<Workspace> {
 	}
 
 	static public FormValidation checkClientName(String value) {
-		try {
-			IOptionsServer p4 = ConnectionFactory.getConnection();
+		IOptionsServer p4 = ConnectionFactory.getConnection();
+		try (CommandLimiter.Permit permit = CommandLimiter.ui(p4)) {
 			if (p4 == null) {
 				// refresh issue; sometimes not available
 				return FormValidation.ok();
@@ -50,8 +51,8 @@ public abstract class WorkspaceDescriptor extends Descriptor<Workspace> {
 			@QueryParameter String value) {
 
 		AutoCompletionCandidates c = new AutoCompletionCandidates();
-		try {
-			IOptionsServer iserver = ConnectionFactory.getConnection();
+		IOptionsServer iserver = ConnectionFactory.getConnection();
+		try (CommandLimiter.Permit permit = CommandLimiter.ui(iserver)) {
 			if (iserver != null && !value.isEmpty()) {
 				String user = iserver.getUserName();
 				List<IClientSummary> list;
@@ -68,8 +69,8 @@ public abstract class WorkspaceDescriptor extends Descriptor<Workspace> {
 
 	static public ListBoxModel doFillCharsetItems() {
 		ListBoxModel list = new ListBoxModel();
-		try {
-			IOptionsServer p4 = ConnectionFactory.getConnection();
+		IOptionsServer p4 = ConnectionFactory.getConnection();
+		try (CommandLimiter.Permit permit = CommandLimiter.ui(p4)) {
 			for (String set : p4.getKnownCharsets()) {
 				list.add(set);
 			}
@@ -85,8 +86,8 @@ public abstract class WorkspaceDescriptor extends Descriptor<Workspace> {
 			@QueryParameter String value) {
 
 		AutoCompletionCandidates c = new AutoCompletionCandidates();
-		try {
-			IOptionsServer iserver = ConnectionFactory.getConnection();
+		IOptionsServer iserver = ConnectionFactory.getConnection();
+		try (CommandLimiter.Permit permit = CommandLimiter.ui(iserver)) {
 			if (iserver != null && value.length() > 1) {
 				List<String> streamPaths = new ArrayList<>();
 				streamPaths.add(value + "...");
@@ -115,8 +116,8 @@ public abstract class WorkspaceDescriptor extends Descriptor<Workspace> {
 			@QueryParameter String value) {
 
 		AutoCompletionCandidates c = new AutoCompletionCandidates();
-		try {
-			IOptionsServer iserver = ConnectionFactory.getConnection();
+		IOptionsServer iserver = ConnectionFactory.getConnection();
+		try (CommandLimiter.Permit permit = CommandLimiter.ui(iserver)) {
 			if (iserver != null && !value.isEmpty()) {
 				List<IClientSummary> list;
 				GetClientsOptions opts = new GetClientsOptions();
@@ -135,8 +136,8 @@ public abstract class WorkspaceDescriptor extends Descriptor<Workspace> {
 
 	static public FormValidation doCheckStreamName(
 			@QueryParameter final String value) {
-		try {
-			IOptionsServer p4 = ConnectionFactory.getConnection();
+		IOptionsServer p4 = ConnectionFactory.getConnection();
+		try (CommandLimiter.Permit permit = CommandLimiter.ui(p4)) {
 			IStream stream = p4.getStream(value);
 			if (stream != null && stream.getAccessed() != null) {
 				return FormValidation.ok();
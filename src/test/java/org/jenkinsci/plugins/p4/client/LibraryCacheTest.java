@@ -0,0 +1,100 @@
+package org.jenkinsci.plugins.p4.client;
+
+import com.perforce.p4java.core.file.FileSpecBuilder;
+import com.perforce.p4java.core.file.IFileSpec;
+import com.perforce.p4java.option.client.SyncOptions;
+import org.apache.commons.io.FileUtils;
+import org.jenkinsci.plugins.p4.DefaultEnvironment;
+import org.jenkinsci.plugins.p4.SampleServerExtension;
+import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
+import org.jenkinsci.plugins.p4.populate.AutoCleanImpl;
+import org.jenkinsci.plugins.p4.populate.Populate;
+import org.jenkinsci.plugins.p4.workspace.ManualWorkspaceImpl;
+import org.jenkinsci.plugins.p4.workspace.WorkspaceSpec;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WithJenkins
+class LibraryCacheTest extends DefaultEnvironment {
+
+	private static final String P4ROOT = "tmp-LibraryCacheTest-p4root";
+	private static final String LIBRARY = "//depot/Data";
+
+	private static JenkinsRule jenkins;
+
+	@RegisterExtension
+	private final SampleServerExtension p4d = new SampleServerExtension(P4ROOT, R24_1_r15);
+
+	@BeforeAll
+	static void beforeAll(JenkinsRule rule) {
+		jenkins = rule;
+	}
+
+	@BeforeEach
+	void beforeEach() throws Exception {
+		createCredentials("jenkins", "jenkins", p4d.getRshPort(), CREDENTIAL);
+	}
+
+	@Test
+	void testCacheSeededLibraryHasList() throws Exception {
+		File cacheRoot = new File("target/library.cache").getAbsoluteFile();
+		FileUtils.deleteQuietly(cacheRoot);
+		Populate populate = new AutoCleanImpl();
+
+		// the first sync is from the server and fills the cache
+		List<IFileSpec> synced;
+		long change;
+		try (ClientHelper p4 = new ClientHelper(jenkins.getInstance(), CREDENTIAL, null, createLibraryWorkspace("library1.ws"))) {
+			change = p4.getSubmittedHead();
+			p4.syncLibrary(new P4ChangeRef(change), populate, cacheRoot.toString(), LIBRARY, 1);
+			synced = getHaveList(p4);
+		}
+		assertFalse(synced.isEmpty());
+
+		// the second workspace is copied from the cache and the server knows it has the files
+		try (ClientHelper p4 = new ClientHelper(jenkins.getInstance(), CREDENTIAL, null, createLibraryWorkspace("library2.ws"))) {
+			p4.syncLibrary(new P4ChangeRef(change), populate, cacheRoot.toString(), LIBRARY, 1);
+			List<IFileSpec> copied = getHaveList(p4);
+			assertEquals(synced.size(), copied.size());
+			for (int i = 0; i < synced.size(); i++) {
+				assertEquals(synced.get(i).getDepotPathString(), copied.get(i).getDepotPathString());
+				assertEquals(synced.get(i).getEndRevision(), copied.get(i).getEndRevision());
+			}
+
+			// nothing left to transfer at the same change
+			List<IFileSpec> preview = p4.getClient().sync(FileSpecBuilder.makeFileSpecList("//library2.ws/...@" + change), new SyncOptions());
+			assertTrue(preview.stream().noneMatch(f -> f.getDepotPathString() != null));
+		}
+	}
+
+	private ManualWorkspaceImpl createLibraryWorkspace(String client) {
+		String view = LIBRARY + "/... //" + client + "/...";
+		WorkspaceSpec spec = new WorkspaceSpec(false, false, false, false, false, false, null, "LOCAL", view, null, null, null, true);
+		ManualWorkspaceImpl workspace = new ManualWorkspaceImpl("none", false, client, spec, false);
+		workspace.setExpand(new HashMap<>());
+
+		File wsRoot = new File("target/" + client).getAbsoluteFile();
+		FileUtils.deleteQuietly(wsRoot);
+		workspace.setRootPath(wsRoot.toString());
+		return workspace;
+	}
+
+	private List<IFileSpec> getHaveList(ClientHelper p4) throws Exception {
+		String path = "//" + p4.getClient().getName() + "/...";
+		List<IFileSpec> have = p4.getClient().haveList(FileSpecBuilder.makeFileSpecList(path));
+		have.removeIf(f -> f.getDepotPathString() == null);
+		return have;
+	}
+}
@@ -0,0 +1,196 @@
+package org.jenkinsci.plugins.p4.unit.changes;
+
+import com.perforce.p4java.core.IFix;
+import com.perforce.p4java.core.file.FileAction;
+import com.perforce.p4java.core.file.IFileSpec;
+import com.perforce.p4java.impl.generic.core.Fix;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.p4.changes.ChangeStore;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChangeStoreTest {
+
+	@TempDir
+	File root;
+
+	private MockedStatic<Jenkins> jenkinsStatic;
+	private ConnectionHelper p4;
+
+	@BeforeEach
+	void beforeEach() throws Exception {
+		ChangeStore.clear();
+		Jenkins jenkins = mock(Jenkins.class);
+		when(jenkins.getRootDir()).thenReturn(root);
+		jenkinsStatic = mockStatic(Jenkins.class);
+		jenkinsStatic.when(Jenkins::getInstanceOrNull).thenReturn(jenkins);
+
+		p4 = mock(ConnectionHelper.class);
+		when(p4.getPort()).thenReturn("perforce:1666");
+		when(p4.getUser()).thenReturn("jenkins");
+		when(p4.checkVersion(20141)).thenReturn(true);
+		when(p4.describeChanges(anyList(), anyInt())).thenAnswer(i -> {
+			long id = ((List<Long>) i.getArgument(0)).get(0);
+			int max = i.getArgument(1);
+			return List.of(describe(id, (id == 200) ? 3 : 2, max));
+		});
+		IFix fix = new Fix();
+		fix.setJobId("JOB-1");
+		fix.setStatus("closed");
+		when(p4.getJobs(anyInt())).thenReturn(List.of(fix));
+	}
+
+	@AfterEach
+	void afterEach() {
+		jenkinsStatic.close();
+		ChangeStore.clear();
+	}
+
+	@Test
+	void testFetchedOnce() throws Exception {
+		ChangeStore.Metadata first = ChangeStore.get(p4, 100, 10, true);
+		ChangeStore.Metadata second = ChangeStore.get(p4, 100, 10, true);
+
+		assertNotNull(first);
+		assertEquals(first, second);
+		verify(p4, times(1)).describeChanges(anyList(), anyInt());
+		verify(p4, times(1)).getJobs(100);
+
+		assertEquals("alice", first.getUser());
+		assertEquals("alice.ws", first.getClient());
+		assertEquals("change 100\n", first.getDescription());
+		assertEquals(1700000000000L, first.getDate().getTime());
+		assertTrue(first.isSubmitted());
+		assertTrue(first.isComplete());
+
+		List<IFileSpec> files = first.getFiles();
+		assertEquals(2, files.size());
+		assertEquals("//depot/main/file0.txt", files.get(0).getDepotPathString());
+		assertEquals(FileAction.EDIT, files.get(0).getAction());
+		assertEquals(3, files.get(0).getEndRevision());
+
+		assertEquals(100, first.getSummary().getId());
+		assertEquals("JOB-1", first.getFixes().get(0).getJobId());
+	}
+
+	@Test
+	void testReadFromDisk() throws Exception {
+		ChangeStore.get(p4, 100, 10, true);
+		ChangeStore.clear();
+
+		ChangeStore.Metadata stored = ChangeStore.lookup("perforce:1666", "jenkins", 100, 10);
+		assertNotNull(stored);
+		assertEquals("change 100\n", stored.getDescription());
+		assertEquals(List.of("//depot/main/file0.txt", "//depot/main/file1.txt"), stored.getPaths());
+		assertEquals("closed", stored.getFixes().get(0).getStatus());
+		assertEquals(1, ChangeStore.getStats().getDiskHits());
+
+		assertNull(ChangeStore.lookup("other:1666", "jenkins", 100, 10));
+	}
+
+	@Test
+	void testNotSharedAcrossUsers() throws Exception {
+		ChangeStore.get(p4, 100, 10, true);
+		assertNull(ChangeStore.lookup("perforce:1666", "restricted", 100, 10));
+
+		// and not from disk either
+		ChangeStore.clear();
+		assertNull(ChangeStore.lookup("perforce:1666", "restricted", 100, 10));
+		assertNotNull(ChangeStore.lookup("perforce:1666", "jenkins", 100, 10));
+
+		ConnectionHelper other = mock(ConnectionHelper.class);
+		when(other.getPort()).thenReturn("perforce:1666");
+		when(other.getUser()).thenReturn("restricted");
+		when(other.checkVersion(20141)).thenReturn(true);
+		when(other.describeChanges(anyList(), anyInt())).thenReturn(List.of(describe(100, 1, 11)));
+		assertEquals(1, ChangeStore.get(other, 100, 10, false).getPaths().size());
+		verify(other, times(1)).describeChanges(anyList(), anyInt());
+	}
+
+	@Test
+	void testFixesFetchedWhenNeeded() throws Exception {
+		ChangeStore.Metadata metadata = ChangeStore.get(p4, 100, 10, false);
+		assertFalse(metadata.hasFixes());
+		verify(p4, times(0)).getJobs(anyInt());
+
+		metadata = ChangeStore.get(p4, 100, 10, true);
+		assertTrue(metadata.hasFixes());
+		verify(p4, times(1)).describeChanges(anyList(), anyInt());
+	}
+
+	@Test
+	void testFixesReplaced() throws Exception {
+		ChangeStore.Metadata metadata = ChangeStore.get(p4, 100, 10, true);
+
+		// a job fixed after the change was stored
+		IFix later = new Fix();
+		later.setJobId("JOB-2");
+		later.setStatus("open");
+		ChangeStore.put("perforce:1666", "jenkins", metadata.withFixes(List.of(metadata.getFixes().get(0), later)));
+
+		ChangeStore.clear();
+		ChangeStore.Metadata stored = ChangeStore.lookup("perforce:1666", "jenkins", 100, 10);
+		assertTrue(stored.hasFixes());
+		assertEquals(2, stored.getFixes().size());
+		assertEquals("JOB-2", stored.getFixes().get(1).getJobId());
+	}
+
+	@Test
+	void testTruncatedFiles() {
+		Map<String, Object> map = describe(200, 3, 2);
+		ChangeStore.Metadata metadata = ChangeStore.Metadata.fromDescribe(map, 1);
+		ChangeStore.put("perforce:1666", "jenkins", metadata);
+
+		assertFalse(metadata.isComplete());
+		assertNotNull(ChangeStore.lookup("perforce:1666", "jenkins", 200, 2));
+		assertNull(ChangeStore.lookup("perforce:1666", "jenkins", 200, 3));
+	}
+
+	@Test
+	void testPendingNotStored() {
+		Map<String, Object> map = describe(300, 1, 10);
+		map.put("status", "pending");
+		ChangeStore.put("perforce:1666", "jenkins", ChangeStore.Metadata.fromDescribe(map, 10));
+
+		assertNull(ChangeStore.lookup("perforce:1666", "jenkins", 300, 1));
+	}
+
+	private static Map<String, Object> describe(long id, int files, int max) {
+		Map<String, Object> map = new HashMap<>();
+		map.put("change", String.valueOf(id));
+		map.put("user", "alice");
+		map.put("client", "alice.ws");
+		map.put("time", "1700000000");
+		map.put("desc", "change " + id + "\n");
+		map.put("status", "submitted");
+		for (int i = 0; i < Math.min(files, max); i++) {
+			map.put("depotFile" + i, "//depot/main/file" + i + ".txt");
+			map.put("rev" + i, "3");
+			map.put("action" + i, "edit");
+			map.put("type" + i, "text");
+		}
+		return map;
+	}
+}
@@ -0,0 +1,46 @@
+package org.jenkinsci.plugins.p4.unit.client;
+
+import org.jenkinsci.plugins.p4.client.ClientViewMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ClientViewMapperTest {
+
+	@Test
+	void testMapping() {
+		ClientViewMapper mapper = ClientViewMapper.parse(List.of(
+				"//depot/main/... //ws/...",
+				"\"//depot/a b/...\" \"//ws/a b/...\"",
+				"//depot/lib/%%1/*.java //ws/src/*/%%1.java"));
+		assertNotNull(mapper);
+		assertEquals("//depot/main/Jenkinsfile", mapper.toDepot("//ws/Jenkinsfile"));
+		assertEquals("//depot/a b/Jenkinsfile", mapper.toDepot("//ws/a b/Jenkinsfile"));
+		assertEquals("//depot/lib/Bar/Foo.java", mapper.toDepot("//ws/src/Foo/Bar.java"));
+		assertNull(mapper.toDepot("//other/Jenkinsfile"));
+	}
+
+	@Test
+	void testLaterLinesWin() {
+		ClientViewMapper mapper = ClientViewMapper.parse(List.of(
+				"//depot/main/... //ws/...",
+				"-//depot/main/secret/... //ws/secret/...",
+				"//depot/dev/build/... //ws/build/...",
+				"-//depot/main/tmp/... //ws/other/..."));
+		assertNotNull(mapper);
+		assertNull(mapper.toDepot("//ws/secret/Jenkinsfile"));
+		assertEquals("//depot/dev/build/Jenkinsfile", mapper.toDepot("//ws/build/Jenkinsfile"));
+		assertNull(mapper.toDepot("//ws/tmp/Jenkinsfile"));
+	}
+
+	@Test
+	void testUnsupportedViews() {
+		assertNull(ClientViewMapper.parse(List.of("+//depot/main/... //ws/...")));
+		assertNull(ClientViewMapper.parse(List.of("//depot/main/... //ws/*")));
+		assertNull(ClientViewMapper.parse(List.of()));
+	}
+}
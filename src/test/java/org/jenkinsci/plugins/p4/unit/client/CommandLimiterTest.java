@@ -0,0 +1,101 @@
+package org.jenkinsci.plugins.p4.unit.client;
+
+import hudson.AbortException;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
+import org.jenkinsci.plugins.p4.client.CommandLimiter.Permit;
+import org.jenkinsci.plugins.p4.client.CommandLimiter.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandLimiterTest {
+
+	private static final String PORT = "localhost:1666";
+	private static final String POLL = CommandLimiter.class.getName() + ".poll";
+
+	@BeforeEach
+	void setup() {
+		System.setProperty(POLL, "1");
+		CommandLimiter.clear();
+	}
+
+	@AfterEach
+	void cleanup() {
+		System.clearProperty(POLL);
+		CommandLimiter.clear();
+	}
+
+	@Test
+	void testLimitQueuesOtherThreads() throws Exception {
+		try (Permit permit = CommandLimiter.acquire(PORT, Priority.POLL)) {
+			CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+				try {
+					CommandLimiter.acquire(PORT, Priority.POLL, 50).close();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			Exception e = assertThrows(Exception.class, () -> other.get(5, TimeUnit.SECONDS));
+			assertTrue(e.getCause().getCause() instanceof AbortException);
+		}
+
+		CompletableFuture.runAsync(() -> {
+			try {
+				CommandLimiter.acquire(PORT, Priority.POLL, 50).close();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}).get(5, TimeUnit.SECONDS);
+
+		CommandLimiter.Stats stats = CommandLimiter.getStats().get(0);
+		assertEquals(1, stats.getLimit());
+		assertEquals(2, stats.getAdmitted());
+		assertEquals(1, stats.getRejected());
+		assertEquals(0, stats.getActive());
+	}
+
+	@Test
+	void testNestedAcquireIsReentrant() throws Exception {
+		try (Permit outer = CommandLimiter.acquire(PORT, Priority.POLL)) {
+			try (Permit inner = CommandLimiter.acquire(PORT, Priority.POLL, 50)) {
+				assertEquals(1, CommandLimiter.getStats().get(0).getActive());
+			}
+			try (Permit build = CommandLimiter.acquire(PORT, Priority.BUILD, 50)) {
+				assertEquals(1, CommandLimiter.getStats().size());
+			}
+		}
+		assertEquals(0, CommandLimiter.getStats().get(0).getActive());
+	}
+
+	@Test
+	void testUnlimitedClassesAndServers() throws Exception {
+		try (Permit poll = CommandLimiter.acquire(PORT, Priority.POLL);
+		     Permit other = CommandLimiter.acquire("other:1666", Priority.POLL, 50)) {
+			CompletableFuture.runAsync(() -> {
+				try {
+					CommandLimiter.acquire(PORT, Priority.BUILD, 50).close();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}).get(5, TimeUnit.SECONDS);
+		}
+		assertEquals(3, CommandLimiter.getStats().size());
+	}
+
+	@Test
+	void testUnknownServerIsNotQueued() throws Exception {
+		// a missing credential or connection must not share one lane with other callers
+		try (Permit first = CommandLimiter.acquire((String) null, Priority.POLL);
+		     Permit second = CommandLimiter.acquire((String) null, Priority.POLL, 50);
+		     Permit ui = CommandLimiter.ui(null)) {
+			assertTrue(CommandLimiter.getStats().isEmpty());
+		}
+	}
+}
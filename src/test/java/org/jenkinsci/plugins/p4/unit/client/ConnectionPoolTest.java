@@ -0,0 +1,113 @@
+package org.jenkinsci.plugins.p4.unit.client;
+
+import com.perforce.p4java.server.IOptionsServer;
+import org.jenkinsci.plugins.p4.client.ConnectionConfig;
+import org.jenkinsci.plugins.p4.client.ConnectionFactory;
+import org.jenkinsci.plugins.p4.client.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConnectionPoolTest {
+
+	@AfterEach
+	void cleanup() {
+		ConnectionPool.clear();
+	}
+
+	private ConnectionConfig config(String uri, String user) {
+		ConnectionConfig config = mock(ConnectionConfig.class);
+		when(config.getServerUri()).thenReturn(uri);
+		when(config.getUserName()).thenReturn(user);
+		return config;
+	}
+
+	@Test
+	void testReleaseThenBorrowReusesConnection() throws Exception {
+		ConnectionPool.Key key = new ConnectionPool.Key(config("p4java://localhost:1666", "jenkins"), "id");
+		IOptionsServer server = mock(IOptionsServer.class);
+		when(server.isConnected()).thenReturn(true);
+
+		ConnectionPool.release(key, server);
+		assertEquals(1, ConnectionPool.getIdleCount());
+
+		assertSame(server, ConnectionPool.borrow(key));
+		assertEquals(0, ConnectionPool.getIdleCount());
+		verify(server).registerCallback(null);
+		verify(server).registerProgressCallback(null);
+		verify(server).setCurrentClient(null);
+	}
+
+	@Test
+	void testReleaseRestoresCharset() throws Exception {
+		ConnectionPool.Key key = new ConnectionPool.Key(config("p4java://localhost:1666", "jenkins"), "id");
+		IOptionsServer server = mock(IOptionsServer.class);
+		when(server.isConnected()).thenReturn(true);
+		when(server.supportsUnicode()).thenReturn(true);
+		server.setCharsetName("shiftjis");
+
+		// the next lease does not inherit the workspace charset
+		ConnectionPool.release(key, server);
+		verify(server).setCharsetName("utf8");
+		assertSame(server, ConnectionPool.borrow(key));
+	}
+
+	@Test
+	void testBorrowSkipsDisconnected() throws Exception {
+		ConnectionPool.Key key = new ConnectionPool.Key(config("p4java://localhost:1666", "jenkins"), "id");
+		IOptionsServer server = mock(IOptionsServer.class);
+		when(server.isConnected()).thenReturn(true);
+		ConnectionPool.release(key, server);
+
+		when(server.isConnected()).thenReturn(false);
+		assertNull(ConnectionPool.borrow(key));
+		verify(server).disconnect();
+	}
+
+	@Test
+	void testKeysDoNotShare() {
+		ConnectionPool.Key a = new ConnectionPool.Key(config("p4java://localhost:1666", "jenkins"), "id");
+		ConnectionPool.Key b = new ConnectionPool.Key(config("p4java://localhost:1666", "other"), "id");
+		assertNotEquals(a, b);
+
+		IOptionsServer server = mock(IOptionsServer.class);
+		when(server.isConnected()).thenReturn(true);
+		ConnectionPool.release(a, server);
+
+		assertNull(ConnectionPool.borrow(b));
+		assertSame(server, ConnectionPool.borrow(a));
+	}
+
+	@Test
+	void testIdleLimit() throws Exception {
+		ConnectionPool.Key key = new ConnectionPool.Key(config("p4java://localhost:1666", "jenkins"), "id");
+		for (int i = 0; i < ConnectionPool.DEFAULT_MAX_IDLE + 2; i++) {
+			IOptionsServer server = mock(IOptionsServer.class);
+			when(server.isConnected()).thenReturn(true);
+			ConnectionPool.release(key, server);
+		}
+		assertEquals(ConnectionPool.DEFAULT_MAX_IDLE, ConnectionPool.getIdleCount());
+	}
+
+	@Test
+	void testReleasedConnectionNotCurrent() throws Exception {
+		ConnectionConfig config = config("p4java://localhost:1666", "jenkins");
+		IOptionsServer server = mock(IOptionsServer.class);
+		when(server.isConnected()).thenReturn(true);
+		ConnectionPool.release(new ConnectionPool.Key(config, "id"), server);
+
+		assertSame(server, ConnectionFactory.getConnection(config, "id"));
+		assertSame(server, ConnectionFactory.getConnection());
+
+		// an idle connection is not handed to UI requests
+		ConnectionFactory.releaseConnection(config, "id", server);
+		assertNull(ConnectionFactory.getConnection());
+	}
+}
@@ -0,0 +1,72 @@
+package org.jenkinsci.plugins.p4.unit.client;
+
+import org.jenkinsci.plugins.p4.client.ReferenceCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReferenceCacheTest {
+
+	@TempDir
+	Path tmp;
+
+	private Path workspace(String name) throws Exception {
+		Path ws = tmp.resolve(name);
+		Files.createDirectories(ws.resolve("src/main"));
+		Files.writeString(ws.resolve("src/main/a.txt"), "hello", StandardCharsets.UTF_8);
+		Files.writeString(ws.resolve("b.txt"), "world!", StandardCharsets.UTF_8);
+		Files.createDirectories(ws.resolve("empty"));
+		return ws;
+	}
+
+	@Test
+	void testStoreAndSeed() throws Exception {
+		ReferenceCache cache = new ReferenceCache(tmp.resolve("cache").toFile(), 1);
+		assertNull(cache.lookup("key"));
+
+		ReferenceCache.Reference stored = cache.store("key", 42, workspace("ws1"));
+		assertNotNull(stored);
+		assertEquals(11, stored.getSize());
+
+		// a second store of the same view is ignored
+		assertNull(cache.store("key", 43, workspace("ws2")));
+
+		ReferenceCache.Reference ref = cache.lookup("key");
+		assertNotNull(ref);
+		assertEquals(42, ref.getChange());
+
+		Path target = tmp.resolve("seeded");
+		assertEquals(11, cache.seed(ref, target, false));
+		assertEquals("hello", Files.readString(target.resolve("src/main/a.txt"), StandardCharsets.UTF_8));
+		assertEquals("world!", Files.readString(target.resolve("b.txt"), StandardCharsets.UTF_8));
+		assertEquals(true, Files.isDirectory(target.resolve("empty")));
+	}
+
+	@Test
+	void testSeedWithLinks() throws Exception {
+		ReferenceCache cache = new ReferenceCache(tmp.resolve("cache").toFile(), 1);
+		cache.store("key", 42, workspace("ws"));
+
+		Path target = tmp.resolve("linked");
+		assertEquals(11, cache.seed(cache.lookup("key"), target, true));
+		assertEquals("hello", Files.readString(target.resolve("src/main/a.txt"), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testEvictKeepsReferenceInUse() throws Exception {
+		ReferenceCache cache = new ReferenceCache(tmp.resolve("cache").toFile(), 0);
+		cache.store("old", 1, workspace("ws1"));
+		cache.store("new", 2, workspace("ws2"));
+
+		assertEquals(1, cache.evict("new"));
+		assertNull(cache.lookup("old"));
+		assertNotNull(cache.lookup("new"));
+	}
+}
@@ -0,0 +1,111 @@
+package org.jenkinsci.plugins.p4.unit.client;
+
+import com.perforce.p4java.core.file.FileSpecOpStatus;
+import com.perforce.p4java.core.file.IFileSpec;
+import com.perforce.p4java.impl.mapbased.server.Server;
+import hudson.AbortException;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.p4.client.ReconcileStreamingCallback;
+import org.jenkinsci.plugins.p4.client.SyncStreamingCallback;
+import org.jenkinsci.plugins.p4.client.Validate;
+import org.jenkinsci.plugins.p4.console.P4Logging;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class StreamingCallbackTest {
+
+	private Map<String, Object> file(int i) {
+		Map<String, Object> map = new HashMap<>();
+		map.put("depotFile", "//depot/file" + i + ".txt");
+		map.put("clientFile", "/ws/file" + i + ".txt");
+		map.put("rev", "3");
+		map.put("action", "edit");
+		return map;
+	}
+
+	@Test
+	void testSyncFileResultsNeedNoServer() throws Exception {
+		Server server = mock(Server.class);
+		SyncStreamingCallback callback = new SyncStreamingCallback(server, null);
+
+		callback.startResults(1);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(callback.handleResult(file(i), 1));
+		}
+		callback.endResults(1);
+
+		verifyNoInteractions(server);
+		assertFalse(callback.isFail());
+		assertTrue(callback.isDone());
+	}
+
+	@Test
+	void testReconcileLooksUpQuietOncePerCommand() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TaskListener listener = mock(TaskListener.class);
+		when(listener.getLogger()).thenReturn(new PrintStream(out, true, StandardCharsets.UTF_8));
+
+		Server server = mock(Server.class);
+		P4Logging logging = new P4Logging(listener, false);
+		when(server.registerCallback(any())).thenReturn(logging);
+
+		ReconcileStreamingCallback callback = new ReconcileStreamingCallback(server, listener);
+		callback.startResults(1);
+		for (int i = 0; i < 3; i++) {
+			callback.handleResult(file(i), 1);
+		}
+
+		// fetch and reset the logging callback once
+		verify(server, times(2)).registerCallback(any());
+
+		String log = out.toString(StandardCharsets.UTF_8);
+		assertTrue(log.contains("//depot/file0.txt#3 - /ws/file0.txt edit"));
+		assertTrue(log.contains("//depot/file2.txt#3 - /ws/file2.txt edit"));
+	}
+
+	@Test
+	void testCompiledIgnore() throws Exception {
+		Validate validate = new Validate(null);
+		Pattern ignore = Validate.compile("file(s) up-to-date.", "", "No Such File(s)");
+
+		IFileSpec upToDate = mock(IFileSpec.class);
+		when(upToDate.getOpStatus()).thenReturn(FileSpecOpStatus.ERROR);
+		when(upToDate.getStatusMessage()).thenReturn("//ws/... - file(s) up-to-date.");
+		assertTrue(validate.check(upToDate, ignore));
+
+		IFileSpec noSuch = mock(IFileSpec.class);
+		when(noSuch.getOpStatus()).thenReturn(FileSpecOpStatus.ERROR);
+		when(noSuch.getStatusMessage()).thenReturn("//ws/x - no such file(s).");
+		assertTrue(validate.check(noSuch, ignore));
+
+		IFileSpec error = mock(IFileSpec.class);
+		when(error.getOpStatus()).thenReturn(FileSpecOpStatus.ERROR);
+		when(error.getStatusMessage()).thenReturn("Access denied");
+		assertThrows(AbortException.class, () -> validate.check(error, ignore));
+
+		IFileSpec info = mock(IFileSpec.class);
+		when(info.getOpStatus()).thenReturn(FileSpecOpStatus.INFO);
+		when(info.getStatusMessage()).thenReturn("something else");
+		assertFalse(validate.check(info, ignore));
+
+		assertNull(Validate.compile("", ""));
+	}
+}
@@ -0,0 +1,65 @@
+package org.jenkinsci.plugins.p4.unit.client;
+
+import com.perforce.p4java.server.IOptionsServer;
+import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
+import org.jenkinsci.plugins.p4.changes.P4Ref;
+import org.jenkinsci.plugins.p4.client.TempClientHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class TempClientHelperTest {
+
+	private static final List<String> VIEW = List.of("//depot/proj/main/Jenkinsfile", "//depot/proj/main/src/...");
+
+	private TempClientHelper p4;
+	private IOptionsServer server;
+
+	@BeforeEach
+	void beforeEach() throws Exception {
+		// real depot view handling, without a connection
+		p4 = mock(TempClientHelper.class, CALLS_REAL_METHODS);
+		server = mock(IOptionsServer.class);
+		doReturn(server).when(p4).getConnection();
+		doNothing().when(p4).log(anyString());
+	}
+
+	@Test
+	void testDepotViewResolvesHead() throws Exception {
+		doReturn(false).when(p4).isUnicode();
+		assertNull(p4.getDepotView());
+
+		P4Ref to = new P4ChangeRef(42);
+		doReturn(40L).when(p4).getHead(eq(VIEW), isNull(), eq(to));
+		p4.update(VIEW, "utf8");
+
+		assertEquals(VIEW, p4.getDepotView());
+		assertEquals(40L, p4.getClientHead(null, to));
+		verify(p4).getHead(eq(VIEW), isNull(), eq(to));
+		verify(server, never()).setCharsetName(anyString());
+	}
+
+	@Test
+	void testDepotViewSetsCharsetOnUnicodeServer() throws Exception {
+		doReturn(true).when(p4).isUnicode();
+		p4.update(VIEW, "utf8");
+		verify(server).setCharsetName("utf8");
+
+		// no charset, so the connection keeps the last one
+		p4.update(VIEW, null);
+		verify(server).setCharsetName(anyString());
+	}
+}
@@ -0,0 +1,101 @@
+package org.jenkinsci.plugins.p4.unit.client;
+
+import org.jenkinsci.plugins.p4.client.WorkspaceTrash;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkspaceTrashTest {
+
+	@TempDir
+	Path tmp;
+
+	private Path tree(Path root) throws Exception {
+		for (int d = 0; d < 5; d++) {
+			Path dir = root.resolve("dir" + d).resolve("sub");
+			Files.createDirectories(dir);
+			for (int f = 0; f < 20; f++) {
+				Path file = dir.resolve("file" + f + ".txt");
+				Files.writeString(file, "content");
+				file.toFile().setReadOnly();
+			}
+		}
+		return root;
+	}
+
+	private void waitFor(Path path) throws Exception {
+		long until = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+		while (Files.exists(path) && System.currentTimeMillis() < until) {
+			Thread.sleep(20);
+		}
+	}
+
+	@Test
+	void testDeleteTree() throws Exception {
+		Path root = tree(tmp.resolve("ws"));
+		assertTrue(WorkspaceTrash.delete(root));
+		assertFalse(Files.exists(root));
+	}
+
+	@Test
+	void testMoveAside() throws Exception {
+		Path root = tree(tmp.resolve("ws"));
+
+		Path trash = WorkspaceTrash.moveAside(root);
+		assertNotNull(trash);
+		assertFalse(Files.exists(root));
+		assertEquals(tmp.resolve(WorkspaceTrash.TRASH), trash.getParent());
+
+		waitFor(trash);
+		assertFalse(Files.exists(trash));
+	}
+
+	@Test
+	void testMoveAsideMissingRoot() throws Exception {
+		assertNull(WorkspaceTrash.moveAside(tmp.resolve("missing")));
+	}
+
+	@Test
+	void testReclaimLeftovers() throws Exception {
+		Path trash = tmp.resolve(WorkspaceTrash.TRASH);
+		Path left = tree(trash.resolve("ws-leftover"));
+
+		assertEquals(1, WorkspaceTrash.reclaim(trash));
+		waitFor(left);
+		assertFalse(Files.exists(left));
+	}
+
+	@Test
+	void testReclaimUnderWorkspaceRoot() throws Exception {
+		Path job = tree(tmp.resolve("job").resolve(WorkspaceTrash.TRASH).resolve("ws-job"));
+		Path folder = tree(tmp.resolve("folder").resolve("sub").resolve(WorkspaceTrash.TRASH).resolve("ws-folder"));
+		Path deep = tree(tmp.resolve("a").resolve("b").resolve("c").resolve(WorkspaceTrash.TRASH).resolve("ws-deep"));
+
+		// trash is searched for next to workspaces, not in their contents
+		assertEquals(2, WorkspaceTrash.reclaimUnder(tmp, 2));
+		waitFor(job);
+		waitFor(folder);
+		assertFalse(Files.exists(job));
+		assertFalse(Files.exists(folder));
+		assertTrue(Files.exists(deep));
+	}
+
+	@Test
+	void testDeleteAsyncOnce() throws Exception {
+		Path root = tree(tmp.resolve("ws"));
+		Future<Boolean> future = WorkspaceTrash.deleteAsync(root);
+		assertNotNull(future);
+		assertTrue(future.get(10, TimeUnit.SECONDS));
+		assertFalse(Files.exists(root));
+	}
+}
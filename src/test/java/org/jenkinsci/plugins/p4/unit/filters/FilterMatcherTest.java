@@ -0,0 +1,315 @@
+package org.jenkinsci.plugins.p4.unit.filters;
+
+import org.jenkinsci.plugins.p4.filters.Filter;
+import org.jenkinsci.plugins.p4.filters.FilterMatcher;
+import org.jenkinsci.plugins.p4.filters.FilterPathImpl;
+import org.jenkinsci.plugins.p4.filters.FilterPatternListImpl;
+import org.jenkinsci.plugins.p4.filters.FilterUserImpl;
+import org.jenkinsci.plugins.p4.filters.FilterViewMaskImpl;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterMatcherTest {
+
+	private static final Logger LOGGER = Logger.getLogger(FilterMatcherTest.class.getName());
+
+	@Test
+	void testEmpty() {
+		assertTrue(FilterMatcher.compile(null).isEmpty());
+		assertFalse(FilterMatcher.compile(null).isFiltered("bob", List.of("//depot/a")));
+		assertFalse(FilterMatcher.compile(null).isExcludedByPath(List.of("//depot/a")));
+	}
+
+	@Test
+	void testUserAndPath() {
+		List<Filter> filters = List.of(new FilterUserImpl("Build"), new FilterPathImpl("//depot/docs/"),
+				new FilterPathImpl("//depot/notes/"));
+		FilterMatcher matcher = FilterMatcher.compile(filters);
+
+		assertTrue(matcher.isFiltered("build", List.of("//depot/src/a.c")));
+		assertTrue(matcher.isFiltered("bob", List.of("//depot/docs/a.txt", "//depot/notes/b.txt")));
+		assertFalse(matcher.isFiltered("bob", List.of("//depot/docs/a.txt", "//depot/src/a.c")));
+
+		assertTrue(matcher.isExcludedByPath(List.of("//depot/docs/a.txt", "//depot/notes/b.txt")));
+		assertFalse(matcher.isExcludedByPath(List.of("//depot/docs/a.txt", "//depot/src/a.c")));
+	}
+
+	@Test
+	void testViewMaskLastLineWins() {
+		String mask = "//depot/main/\n-//depot/main/docs/\n//depot/main/docs/api/";
+		FilterMatcher matcher = FilterMatcher.compile(List.of(new FilterViewMaskImpl(mask)));
+
+		assertFalse(matcher.isFiltered("bob", List.of("//depot/main/src/a.c")));
+		assertTrue(matcher.isFiltered("bob", List.of("//depot/main/docs/a.txt")));
+		assertFalse(matcher.isFiltered("bob", List.of("//depot/main/docs/api/a.txt")));
+		assertTrue(matcher.isFiltered("bob", List.of("//depot/other/a.c")));
+	}
+
+	@Test
+	void testOrderMatters() {
+		// the mask sees the files left by earlier path filters only
+		List<String> files = List.of("//depot/a/x.c", "//depot/b/y.c");
+		FilterViewMaskImpl mask = new FilterViewMaskImpl("//depot/a/");
+		FilterPathImpl path = new FilterPathImpl("//depot/a/");
+
+		assertFalse(FilterMatcher.compile(List.of(mask, path)).isFiltered("bob", files));
+		assertTrue(FilterMatcher.compile(List.of(path, mask)).isFiltered("bob", files));
+
+		// the first pattern list decides, later filters are ignored
+		FilterPatternListImpl patterns = new FilterPatternListImpl("//depot/a/.*", true);
+		FilterUserImpl user = new FilterUserImpl("bob");
+		assertFalse(FilterMatcher.compile(List.of(patterns, user)).isFiltered("bob", files));
+		assertTrue(FilterMatcher.compile(List.of(user, patterns)).isFiltered("bob", files));
+	}
+
+	@Test
+	void testPatternsJoined() {
+		FilterPatternListImpl patterns = new FilterPatternListImpl("//depot/.*\\.C\n(//depot/(\\w+))/\\2\\.h\n", false);
+		FilterMatcher matcher = FilterMatcher.compile(List.of(patterns));
+
+		assertFalse(matcher.isFiltered("bob", List.of("//depot/src/a.c")));
+		assertFalse(matcher.isFiltered("bob", List.of("//depot/inc/inc.h")));
+		assertTrue(matcher.isFiltered("bob", List.of("//depot/inc/other.h")));
+	}
+
+	@Test
+	void testSerialized() throws Exception {
+		FilterMatcher matcher = FilterMatcher.compile(List.of(new FilterPathImpl("//depot/docs/")));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(matcher);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			FilterMatcher copy = (FilterMatcher) in.readObject();
+			assertTrue(copy.isFiltered("bob", List.of("//depot/docs/a.txt")));
+			assertFalse(copy.isFiltered("bob", List.of("//depot/src/a.c")));
+		}
+	}
+
+	@Test
+	void testSameAsPerChangeFilter() {
+		Random random = new Random(42);
+		String[] dirs = {"//depot/main/", "//depot/main/docs/", "//depot/rel/", "//depot/rel/1.0/", "//depot/ext/"};
+		for (int run = 0; run < 500; run++) {
+			List<Filter> filters = new ArrayList<>();
+			int count = 1 + random.nextInt(4);
+			for (int i = 0; i < count; i++) {
+				String dir = dirs[random.nextInt(dirs.length)];
+				switch (random.nextInt(4)) {
+					case 0 -> filters.add(new FilterUserImpl(random.nextBoolean() ? "bob" : "alice"));
+					case 1 -> filters.add(new FilterPathImpl(dir));
+					case 2 -> filters.add(new FilterViewMaskImpl(dir + "\n-" + dirs[random.nextInt(dirs.length)]));
+					default -> filters.add(new FilterPatternListImpl(dir + ".*\\.c\n" + dir + "x.*", random.nextBoolean()));
+				}
+			}
+			List<String> files = new ArrayList<>();
+			int size = random.nextInt(5);
+			for (int i = 0; i < size; i++) {
+				files.add(dirs[random.nextInt(dirs.length)] + (random.nextBoolean() ? "a.c" : "X.txt"));
+			}
+
+			FilterMatcher matcher = FilterMatcher.compile(filters);
+			assertEquals(filterChange("bob", files, filters), matcher.isFiltered("bob", files), filters + " " + files);
+		}
+	}
+
+	@Test
+	void testQuery() {
+		// user filters and patterns need the files
+		assertNull(FilterMatcher.compile(List.of(new FilterUserImpl("bob"))).getQuery());
+		assertNull(FilterMatcher.compile(List.of(new FilterPathImpl("//depot/docs/"), new FilterUserImpl("bob"))).getQuery());
+		assertNull(FilterMatcher.compile(List.of(new FilterPathImpl("//depot/*/docs/"))).getQuery());
+
+		FilterMatcher.Query paths = FilterMatcher.compile(List.of(new FilterPathImpl("//depot/docs/"))).getQuery();
+		assertEquals(List.of(List.of("//depot/docs/...")), paths.getGroups());
+		assertEquals(Boolean.FALSE, paths.decide(List.of(Set.of(2L)), 1L));
+		assertNull(paths.decide(List.of(Set.of(2L)), 2L));
+
+		String mask = "//depot/main/\n-//depot/main/docs/\n//depot/rel/";
+		FilterMatcher.Query masks = FilterMatcher.compile(List.of(new FilterViewMaskImpl(mask), new FilterUserImpl("bob"))).getQuery();
+		assertEquals(List.of(List.of("//depot/main/...", "//depot/rel/...")), masks.getGroups());
+		assertEquals(Boolean.TRUE, masks.decide(List.of(Set.of(2L)), 1L));
+		assertNull(masks.decide(List.of(Set.of(2L)), 2L));
+	}
+
+	@Test
+	void testQuerySameAsFiles() {
+		Random random = new Random(7);
+		String[] dirs = {"//depot/main/", "//depot/main/docs/", "//depot/rel/", "//depot/rel/1.0/", "//depot/ext/"};
+		for (int run = 0; run < 500; run++) {
+			List<Filter> filters = new ArrayList<>();
+			int count = 1 + random.nextInt(4);
+			for (int i = 0; i < count; i++) {
+				String dir = dirs[random.nextInt(dirs.length)];
+				switch (random.nextInt(5)) {
+					case 0 -> filters.add(new FilterUserImpl("alice"));
+					case 1, 2 -> filters.add(new FilterPathImpl(dir));
+					case 3 -> filters.add(new FilterViewMaskImpl(dir + "\n-" + dirs[random.nextInt(dirs.length)]));
+					default -> filters.add(new FilterPatternListImpl(dir + ".*\\.c", true));
+				}
+			}
+			FilterMatcher.Query query = FilterMatcher.compile(filters).getQuery();
+			if (query == null) {
+				continue;
+			}
+
+			// polled changes have at least one file
+			List<String> files = new ArrayList<>();
+			int size = 1 + random.nextInt(4);
+			for (int i = 0; i < size; i++) {
+				files.add(dirs[random.nextInt(dirs.length)] + (random.nextBoolean() ? "a.c" : "X.txt"));
+			}
+
+			// the server lists change 1 under a group if it has a file there
+			List<Set<Long>> listed = new ArrayList<>();
+			for (List<String> group : query.getGroups()) {
+				Set<Long> set = new HashSet<>();
+				for (String spec : group) {
+					String prefix = spec.substring(0, spec.length() - "...".length());
+					if (files.stream().anyMatch(f -> f.startsWith(prefix))) {
+						set.add(1L);
+					}
+				}
+				listed.add(set);
+			}
+
+			Boolean decided = query.decide(listed, 1L);
+			if (decided != null) {
+				assertEquals(filterChange("bob", files, filters), decided, filters + " " + files);
+			}
+		}
+	}
+
+	@Test
+	void testLargeChange() {
+		List<Filter> filters = getLargeFilters();
+		List<String> files = getLargeChange(1000);
+
+		assertFalse(filterChange("bob", files, filters));
+		assertFalse(FilterMatcher.compile(filters).isFiltered("bob", files));
+	}
+
+	// run with -Dbenchmark=true
+	@Test
+	@Tag("benchmark")
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkLargeChange() {
+		List<Filter> filters = getLargeFilters();
+		List<String> files = getLargeChange(10000);
+
+		long start = System.nanoTime();
+		boolean before = filterChange("bob", files, filters);
+		long legacy = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		FilterMatcher matcher = FilterMatcher.compile(filters);
+		boolean after = matcher.isFiltered("bob", files);
+		long compiled = System.nanoTime() - start;
+
+		assertFalse(before);
+		assertEquals(before, after);
+		LOGGER.info("FilterMatcher 10k files: per change " + legacy / 1000000 + "ms, compiled " + compiled / 1000000 + "ms");
+	}
+
+	private static List<Filter> getLargeFilters() {
+		StringBuilder mask = new StringBuilder();
+		StringBuilder patterns = new StringBuilder();
+		List<Filter> filters = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			filters.add(new FilterPathImpl("//depot/generated/" + i + "/"));
+			mask.append("//depot/module").append(i).append("/\n-//depot/module").append(i).append("/docs/\n");
+			patterns.append("//depot/module").append(i).append("/src/.*\\.java\n");
+		}
+		filters.add(new FilterViewMaskImpl(mask.toString()));
+		filters.add(new FilterPatternListImpl(patterns.toString(), true));
+		return filters;
+	}
+
+	// files outside the patterns, but for the last which a pattern matches
+	private static List<String> getLargeChange(int size) {
+		List<String> files = new ArrayList<>();
+		for (int i = 0; i < size - 1; i++) {
+			files.add("//depot/module" + (i % 50) + "/docs/page" + i + ".html");
+		}
+		files.add("//depot/module49/src/Main.java");
+		return files;
+	}
+
+	// the per change filter used by polling before filters were compiled
+	private static boolean filterChange(String user, List<String> files, List<Filter> scmFilter) {
+		for (Filter f : scmFilter) {
+			if (f instanceof FilterUserImpl) {
+				if (((FilterUserImpl) f).getUser().equalsIgnoreCase(user)) {
+					return true;
+				}
+			}
+			if (f instanceof FilterPathImpl) {
+				List<String> remainder = new ArrayList<>();
+				String path = ((FilterPathImpl) f).getPath();
+				for (String p : files) {
+					if (!p.startsWith(path)) {
+						remainder.add(p);
+					}
+				}
+				files = remainder;
+				if (files.isEmpty()) {
+					return true;
+				}
+			}
+			if (f instanceof FilterViewMaskImpl) {
+				List<String> included = new ArrayList<>();
+				String[] maskPaths = ((FilterViewMaskImpl) f).getViewMask().split("\\R");
+				for (String p : files) {
+					boolean isFileInViewMask = false;
+					for (String maskPath : maskPaths) {
+						maskPath = maskPath.trim();
+						if (p.startsWith(maskPath)) {
+							isFileInViewMask = true;
+						}
+						if (maskPath.startsWith("-")) {
+							if (p.startsWith(maskPath.substring(maskPath.indexOf("-") + 1))) {
+								isFileInViewMask = false;
+							}
+						}
+					}
+					if (isFileInViewMask) {
+						included.add(p);
+					}
+				}
+				if (included.isEmpty()) {
+					return true;
+				}
+			}
+			if (f instanceof FilterPatternListImpl) {
+				List<Pattern> patterns = ((FilterPatternListImpl) f).getPatternList();
+				for (String p : files) {
+					for (Pattern pattern : patterns) {
+						if (pattern.matcher(p).matches()) {
+							return false;
+						}
+					}
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,90 @@
+package org.jenkinsci.plugins.p4.unit.review;
+
+import com.sun.net.httpserver.HttpServer;
+import hudson.model.Run;
+import org.jenkinsci.plugins.p4.review.SwarmUpdateScheduler;
+import org.jenkinsci.plugins.p4.workflow.source.P4SwarmUpdateAction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SwarmUpdateSchedulerTest {
+
+	private HttpServer server;
+	private String callback;
+	private final AtomicInteger posts = new AtomicInteger();
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/update", ex -> {
+			ex.getRequestBody().readAllBytes();
+			posts.incrementAndGet();
+			ex.sendResponseHeaders(200, -1);
+			ex.close();
+		});
+		server.start();
+		callback = "http://localhost:" + server.getAddress().getPort() + "/update";
+	}
+
+	@AfterEach
+	void afterEach() {
+		server.stop(0);
+	}
+
+	@Test
+	void testSendsOnlyChangedMessages() {
+		List<P4SwarmUpdateAction> actions = new ArrayList<>();
+		Run<?, ?> run = mockRun(actions);
+		SwarmUpdateScheduler.register(run, callback, "http://jenkins/job/1/");
+		try {
+			// nothing to send yet
+			assertEquals(0, SwarmUpdateScheduler.update());
+
+			actions.add(new P4SwarmUpdateAction("compiling"));
+			assertEquals(1, SwarmUpdateScheduler.update());
+			assertEquals(0, SwarmUpdateScheduler.update());
+
+			actions.add(new P4SwarmUpdateAction("testing"));
+			assertEquals(1, SwarmUpdateScheduler.update());
+			assertEquals(2, posts.get());
+		} finally {
+			SwarmUpdateScheduler.cancel(run);
+		}
+	}
+
+	@Test
+	void testCancelAndFinishedBuilds() {
+		List<P4SwarmUpdateAction> actions = new ArrayList<>();
+		actions.add(new P4SwarmUpdateAction("running"));
+		Run<?, ?> cancelled = mockRun(actions);
+		Run<?, ?> finished = mockRun(actions);
+		when(finished.isBuilding()).thenReturn(false);
+
+		int size = SwarmUpdateScheduler.getSize();
+		SwarmUpdateScheduler.register(cancelled, callback, "http://jenkins/job/1/");
+		SwarmUpdateScheduler.register(finished, callback, "http://jenkins/job/2/");
+		SwarmUpdateScheduler.cancel(cancelled);
+
+		assertEquals(0, SwarmUpdateScheduler.update());
+		assertEquals(size, SwarmUpdateScheduler.getSize());
+		assertEquals(0, posts.get());
+	}
+
+	private static Run<?, ?> mockRun(List<P4SwarmUpdateAction> actions) {
+		Run<?, ?> run = mock(Run.class);
+		when(run.isBuilding()).thenReturn(true);
+		when(run.getActions(P4SwarmUpdateAction.class)).thenAnswer(i -> new ArrayList<>(actions));
+		return run;
+	}
+}
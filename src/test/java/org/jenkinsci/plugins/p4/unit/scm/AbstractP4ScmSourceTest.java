@@ -0,0 +1,247 @@
+package org.jenkinsci.plugins.p4.unit.scm;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.AbortException;
+import hudson.model.Item;
+import hudson.model.TaskListener;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMHeadObserver;
+import jenkins.scm.api.SCMRevision;
+import jenkins.scm.api.SCMSourceCriteria;
+import org.jenkinsci.plugins.p4.browsers.P4Browser;
+import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
+import org.jenkinsci.plugins.p4.client.CommandLimiter;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+import org.jenkinsci.plugins.p4.client.CredentialsHelper;
+import org.jenkinsci.plugins.p4.client.TempClientHelper;
+import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
+import org.jenkinsci.plugins.p4.scm.AbstractP4ScmSource;
+import org.jenkinsci.plugins.p4.scm.P4Path;
+import org.jenkinsci.plugins.p4.scm.P4SCMHead;
+import org.jenkinsci.plugins.p4.scm.P4SCMRevision;
+import org.jenkinsci.plugins.p4.workspace.Workspace;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedConstruction;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+class AbstractP4ScmSourceTest {
+
+	private static final String CREDENTIAL = "credential-id";
+	private static final String PORT = "scan:1666";
+	private static final String SCAN = CommandLimiter.class.getName() + ".scan";
+
+	private final TaskListener listener = mock(TaskListener.class);
+
+	private MockedStatic<CredentialsHelper> credentialStatic;
+	private MockedConstruction<ConnectionHelper> connections;
+
+	@BeforeEach
+	void beforeEach() {
+		// fewer permits than workers, so a worker waits for another to finish
+		System.setProperty(SCAN, "2");
+		CommandLimiter.clear();
+
+		P4BaseCredentials credential = mock(P4BaseCredentials.class);
+		when(credential.getFullP4port()).thenReturn(PORT);
+		credentialStatic = mockStatic(CredentialsHelper.class);
+		credentialStatic.when(() -> CredentialsHelper.findCredential(eq(CREDENTIAL), (Item) any())).thenReturn(credential);
+		connections = mockConstruction(ConnectionHelper.class);
+	}
+
+	@AfterEach
+	void afterEach() {
+		connections.close();
+		credentialStatic.close();
+		System.clearProperty(SCAN);
+		CommandLimiter.clear();
+	}
+
+	@Test
+	void testAllHeadsObservedWithoutCriteria() throws Exception {
+		ScanSource source = new ScanSource("main", "dev", "rel");
+		source.revisions.put("main", 10L);
+		source.revisions.put("rel", 12L);
+
+		SCMHeadObserver.Collector collector = SCMHeadObserver.collect();
+		source.scan(null, collector);
+
+		// a head with no revision is still observed when all heads match
+		Map<SCMHead, SCMRevision> result = collector.result();
+		assertEquals(3, result.size());
+		assertEquals(10L, ((P4SCMRevision) result.get(source.getHead("main"))).getRef().getChange());
+		assertTrue(result.containsKey(source.getHead("dev")));
+		assertNull(result.get(source.getHead("dev")));
+		assertReleased();
+	}
+
+	@Test
+	void testHeadsWithoutRevisionSkippedWithCriteria() throws Exception {
+		ScanSource source = new ScanSource("main", "dev", "rel");
+		source.revisions.put("main", 10L);
+		source.revisions.put("rel", 12L);
+
+		SCMHeadObserver.Collector collector = SCMHeadObserver.collect();
+		source.scan((probe, listener) -> !probe.name().equals("rel"), collector);
+
+		Map<SCMHead, SCMRevision> result = collector.result();
+		assertEquals(Set.of(source.getHead("main")), result.keySet());
+		assertReleased();
+	}
+
+	@Test
+	void testHeadFailureFailsScan() {
+		ScanSource source = new ScanSource("main", "dev", "rel", "test");
+		source.failing = "dev";
+
+		SCMHeadObserver.Collector collector = SCMHeadObserver.collect();
+		IOException e = assertThrows(IOException.class, () -> source.scan(null, collector));
+		assertTrue(e.getMessage().contains("unable to resolve dev"));
+
+		// heads before the failure are observed, none after it
+		assertEquals(Set.of(source.getHead("main")), collector.result().keySet());
+		assertReleased();
+	}
+
+	@Test
+	void testWorkerFailureFailsScan() {
+		ScanSource source = new ScanSource("main", "dev", "rel");
+		source.noClient = true;
+
+		SCMHeadObserver.Collector collector = SCMHeadObserver.collect();
+		IOException e = assertThrows(IOException.class, () -> source.scan(null, collector));
+		assertTrue(e.getMessage().contains("no client"));
+		assertTrue(collector.result().isEmpty());
+		assertReleased();
+	}
+
+	@Test
+	void testObserverFailureReleasesWorkers() {
+		ScanSource source = new ScanSource("main", "dev", "rel");
+		source.revisions.put("main", 10L);
+
+		SCMHeadObserver observer = new SCMHeadObserver() {
+			@Override
+			public void observe(@NonNull SCMHead head, @NonNull SCMRevision revision) throws IOException {
+				throw new AbortException("aborted");
+			}
+		};
+		assertThrows(IOException.class, () -> source.scan(null, observer));
+		assertReleased();
+	}
+
+	// Wait for the workers to close their permits
+	private static void assertReleased() {
+		long timeout = System.currentTimeMillis() + 5000;
+		CommandLimiter.Stats stats = getScanStats();
+		while (stats.getActive() > 0 || stats.getQueued() > 0) {
+			assertTrue(System.currentTimeMillis() < timeout, "SCAN permits not released");
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			stats = getScanStats();
+		}
+		assertEquals(2, stats.getLimit());
+	}
+
+	private static CommandLimiter.Stats getScanStats() {
+		for (CommandLimiter.Stats stats : CommandLimiter.getStats()) {
+			if (PORT.equals(stats.getPort()) && "SCAN".equals(stats.getPriority())) {
+				return stats;
+			}
+		}
+		throw new AssertionError("no SCAN lane for " + PORT);
+	}
+
+	private class ScanSource extends AbstractP4ScmSource {
+
+		private final List<P4SCMHead> heads = new ArrayList<>();
+		private final Map<String, Long> revisions = new HashMap<>();
+		private String failing = null;
+		private boolean noClient = false;
+
+		private ScanSource(String... names) {
+			super(CREDENTIAL);
+			for (String name : names) {
+				heads.add(new P4SCMHead(name, new P4Path("//depot/" + name)));
+			}
+		}
+
+		private P4SCMHead getHead(String name) {
+			for (P4SCMHead head : heads) {
+				if (head.getName().equals(name)) {
+					return head;
+				}
+			}
+			return null;
+		}
+
+		private void scan(SCMSourceCriteria criteria, SCMHeadObserver observer) throws IOException {
+			retrieve(criteria, observer, null, listener);
+		}
+
+		@Override
+		public P4Browser getBrowser() {
+			return null;
+		}
+
+		@Override
+		public List<P4SCMHead> getHeads(@NonNull TaskListener listener) {
+			return heads;
+		}
+
+		@Override
+		public List<P4SCMHead> getTags(@NonNull TaskListener listener) {
+			return new ArrayList<>();
+		}
+
+		@Override
+		public Workspace getWorkspace(P4Path path) {
+			return null;
+		}
+
+		@Override
+		protected List<String> getDepotView(ConnectionHelper p4, P4Path path) {
+			return List.of(path.getPath() + "/...");
+		}
+
+		@Override
+		protected TempClientHelper getScanClient(TaskListener listener) throws Exception {
+			if (noClient) {
+				throw new AbortException("no client");
+			}
+			return mock(TempClientHelper.class);
+		}
+
+		@Override
+		public P4SCMRevision getRevision(TempClientHelper p4, P4SCMHead head) throws Exception {
+			if (head.getName().equals(failing)) {
+				throw new AbortException("unable to resolve " + head.getName());
+			}
+			Long change = revisions.get(head.getName());
+			return (change == null) ? null : new P4SCMRevision(head, new P4ChangeRef(change));
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package org.jenkinsci.plugins.p4.unit.scm;
+
+import com.perforce.p4java.core.IStream;
+import com.perforce.p4java.core.IStreamSummary;
+import com.perforce.p4java.core.IStreamViewMapping;
+import com.perforce.p4java.impl.generic.core.ViewMap;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+import org.jenkinsci.plugins.p4.scm.BranchesScmSource;
+import org.jenkinsci.plugins.p4.scm.P4Path;
+import org.jenkinsci.plugins.p4.scm.StreamsScmSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DepotViewTest {
+
+	private static final String FORMAT = "jenkins-${NODE_NAME}-${JOB_NAME}";
+
+	@Test
+	void testBranchesDefaultMapping() {
+		Branches source = new Branches("...");
+		assertEquals(List.of("//depot/proj/main/Jenkinsfile", "//depot/proj/main/..."),
+				source.getView("//depot/proj/main"));
+	}
+
+	@Test
+	void testBranchesDepotAndLocalMappings() {
+		Branches source = new Branches("src/...\n//depot/lib/${BRANCH_NAME}/...");
+		assertEquals(List.of("//depot/proj/main/Jenkinsfile", "//depot/lib/main/...", "//depot/proj/main/src/..."),
+				source.getView("//depot/proj/main"));
+	}
+
+	@Test
+	void testBranchesExcludeNeedsClient() {
+		assertNull(new Branches("...\n-docs/...").getView("//depot/proj/main"));
+		assertNull(new Branches("...\n+//depot/overlay/...").getView("//depot/proj/main"));
+	}
+
+	@Test
+	void testBranchesUnresolvedVariableNeedsClient() {
+		assertNull(new Branches("...\n//depot/${LIBRARY}/...").getView("//depot/proj/main"));
+	}
+
+	@Test
+	void testStreamMainline() throws Exception {
+		ConnectionHelper p4 = mock(ConnectionHelper.class);
+		IStream main = stream("//stream/main", IStreamSummary.Type.MAINLINE, "none",
+				IStreamViewMapping.PathType.SHARE, "...");
+		when(p4.getStream("//stream/main")).thenReturn(main);
+
+		assertEquals(List.of("//stream/main/..."), new Streams().getView(p4, "//stream/main"));
+		verify(p4, never()).getStream("none");
+	}
+
+	@Test
+	void testStreamWithSharedParents() throws Exception {
+		ConnectionHelper p4 = mock(ConnectionHelper.class);
+		IStream dev = stream("//stream/dev", IStreamSummary.Type.DEVELOPMENT, "//stream/rel",
+				IStreamViewMapping.PathType.SHARE, "src/...", IStreamViewMapping.PathType.ISOLATE, "build/...");
+		IStream rel = stream("//stream/rel", IStreamSummary.Type.RELEASE, "//stream/main",
+				IStreamViewMapping.PathType.SHARE, "...");
+		IStream main = stream("//stream/main", IStreamSummary.Type.MAINLINE, "none",
+				IStreamViewMapping.PathType.SHARE, "...");
+		when(p4.getStream("//stream/dev")).thenReturn(dev);
+		when(p4.getStream("//stream/rel")).thenReturn(rel);
+		when(p4.getStream("//stream/main")).thenReturn(main);
+
+		assertEquals(List.of("//stream/dev/src/...", "//stream/dev/build/..."), new Streams().getView(p4, "//stream/dev"));
+		verify(p4).getStream("//stream/main");
+	}
+
+	@Test
+	void testStreamWithPartialParentNeedsClient() throws Exception {
+		// a child inherits the parent's paths, so a parent with partial paths changes the view
+		ConnectionHelper p4 = mock(ConnectionHelper.class);
+		IStream dev = stream("//stream/dev", IStreamSummary.Type.DEVELOPMENT, "//stream/main",
+				IStreamViewMapping.PathType.SHARE, "...");
+		IStream main = stream("//stream/main", IStreamSummary.Type.MAINLINE, "none",
+				IStreamViewMapping.PathType.SHARE, "src/...");
+		when(p4.getStream("//stream/dev")).thenReturn(dev);
+		when(p4.getStream("//stream/main")).thenReturn(main);
+
+		assertNull(new Streams().getView(p4, "//stream/dev"));
+	}
+
+	@Test
+	void testStreamWithImportOrVirtualNeedsClient() throws Exception {
+		ConnectionHelper p4 = mock(ConnectionHelper.class);
+		IStream imported = stream("//stream/import", IStreamSummary.Type.MAINLINE, "none",
+				IStreamViewMapping.PathType.SHARE, "...", IStreamViewMapping.PathType.IMPORT, "lib/...");
+		IStream virtual = stream("//stream/virtual", IStreamSummary.Type.VIRTUAL, "//stream/main",
+				IStreamViewMapping.PathType.SHARE, "...");
+		IStream dev = stream("//stream/dev", IStreamSummary.Type.DEVELOPMENT, "//stream/import",
+				IStreamViewMapping.PathType.SHARE, "...");
+		when(p4.getStream("//stream/import")).thenReturn(imported);
+		when(p4.getStream("//stream/virtual")).thenReturn(virtual);
+		when(p4.getStream("//stream/dev")).thenReturn(dev);
+
+		Streams source = new Streams();
+		assertNull(source.getView(p4, "//stream/import"));
+		assertNull(source.getView(p4, "//stream/virtual"));
+		assertNull(source.getView(p4, "//stream/dev"));
+	}
+
+	@Test
+	void testStreamParentLoopEnds() throws Exception {
+		ConnectionHelper p4 = mock(ConnectionHelper.class);
+		IStream a = stream("//stream/a", IStreamSummary.Type.DEVELOPMENT, "//stream/b",
+				IStreamViewMapping.PathType.SHARE, "...");
+		IStream b = stream("//stream/b", IStreamSummary.Type.DEVELOPMENT, "//stream/a",
+				IStreamViewMapping.PathType.SHARE, "...");
+		when(p4.getStream("//stream/a")).thenReturn(a);
+		when(p4.getStream("//stream/b")).thenReturn(b);
+
+		assertEquals(List.of("//stream/a/..."), new Streams().getView(p4, "//stream/a"));
+		verify(p4, times(1)).getStream("//stream/b");
+	}
+
+	// pairs of path type and view path
+	private static IStream stream(String name, IStreamSummary.Type type, String parent, Object... paths) {
+		List<IStreamViewMapping> entries = new ArrayList<>();
+		for (int i = 0; i < paths.length; i += 2) {
+			IStreamViewMapping mapping = mock(IStreamViewMapping.class);
+			when(mapping.getPathType()).thenReturn((IStreamViewMapping.PathType) paths[i]);
+			when(mapping.getViewPath()).thenReturn((String) paths[i + 1]);
+			entries.add(mapping);
+		}
+		ViewMap<?> view = mock(ViewMap.class);
+		doReturn(entries).when(view).getEntryList();
+
+		IStream stream = mock(IStream.class);
+		when(stream.getStream()).thenReturn(name);
+		when(stream.getType()).thenReturn(type);
+		when(stream.getParent()).thenReturn(parent);
+		doReturn(view).when(stream).getStreamView();
+		return stream;
+	}
+
+	private static class Branches extends BranchesScmSource {
+		private Branches(String mappings) {
+			super("id", "//depot/proj/...", null, FORMAT);
+			setMappings(mappings);
+		}
+
+		private List<String> getView(String path) {
+			return getDepotView(null, new P4Path(path));
+		}
+	}
+
+	private static class Streams extends StreamsScmSource {
+		private Streams() {
+			super("id", "//stream/...", null, FORMAT);
+		}
+
+		private List<String> getView(ConnectionHelper p4, String path) throws Exception {
+			return getDepotView(p4, new P4Path(path));
+		}
+	}
+}
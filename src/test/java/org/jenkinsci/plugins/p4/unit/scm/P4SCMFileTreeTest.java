@@ -0,0 +1,49 @@
+package org.jenkinsci.plugins.p4.unit.scm;
+
+import jenkins.scm.api.SCMFile;
+import org.jenkinsci.plugins.p4.scm.P4SCMFileTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class P4SCMFileTreeTest {
+
+	@Test
+	void testChildren() {
+		P4SCMFileTree tree = new P4SCMFileTree("", List.of(
+				new P4SCMFileTree.Leaf("Jenkinsfile", false, 1000L),
+				new P4SCMFileTree.Leaf("vars/build.groovy", false, 2000L),
+				new P4SCMFileTree.Leaf("vars/deploy.groovy", false, 3000L),
+				new P4SCMFileTree.Leaf("resources/org/conf.yml", true, 4000L)));
+
+		SortedMap<String, Boolean> root = tree.getChildren("");
+		assertEquals(List.of("Jenkinsfile", "resources", "vars"), List.copyOf(root.keySet()));
+		assertFalse(root.get("Jenkinsfile"));
+		assertTrue(root.get("vars"));
+		assertEquals(List.of("build.groovy", "deploy.groovy"), List.copyOf(tree.getChildren("vars").keySet()));
+		assertEquals(List.of("conf.yml"), List.copyOf(tree.getChildren("resources/org").keySet()));
+		assertTrue(tree.getChildren("missing").isEmpty());
+	}
+
+	@Test
+	void testTypes() {
+		P4SCMFileTree tree = new P4SCMFileTree("vars", List.of(
+				new P4SCMFileTree.Leaf("vars/build.groovy", false, 2000L),
+				new P4SCMFileTree.Leaf("vars/link", true, 3000L),
+				new P4SCMFileTree.Leaf("other/file", false, 4000L)));
+
+		assertTrue(tree.covers("vars/build.groovy"));
+		assertFalse(tree.covers("variables"));
+		assertEquals(SCMFile.Type.DIRECTORY, tree.getType("vars"));
+		assertEquals(SCMFile.Type.REGULAR_FILE, tree.getType("vars/build.groovy"));
+		assertEquals(SCMFile.Type.LINK, tree.getType("vars/link"));
+		assertEquals(SCMFile.Type.NONEXISTENT, tree.getType("vars/missing"));
+		assertEquals(2000L, tree.getLastModified("vars/build.groovy"));
+		assertEquals(0L, tree.getLastModified("other/file"));
+	}
+}
@@ -0,0 +1,91 @@
+package org.jenkinsci.plugins.p4.unit.scm;
+
+import jenkins.scm.api.SCMFile;
+import org.jenkinsci.plugins.p4.client.TempClientHelper;
+import org.jenkinsci.plugins.p4.scm.P4Path;
+import org.jenkinsci.plugins.p4.scm.P4SCMHead;
+import org.jenkinsci.plugins.p4.scm.P4SCMProbe;
+import org.jenkinsci.plugins.p4.scm.ProbeCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class P4SCMProbeTest {
+
+	private static final P4SCMHead HEAD = new P4SCMHead("main", new P4Path("//depot/proj/main"));
+
+	private TempClientHelper p4;
+
+	@BeforeEach
+	void beforeEach() throws Exception {
+		ProbeCache.clear();
+		p4 = mock(TempClientHelper.class);
+		when(p4.getPort()).thenReturn("probe:1666");
+		when(p4.getUser()).thenReturn("probe");
+		when(p4.hasFile(anyString())).thenReturn(true);
+	}
+
+	@Test
+	void testFileInViewIsCheckedAtChange() throws Exception {
+		when(p4.getDepotView()).thenReturn(List.of("//depot/proj/main/Jenkinsfile", "//depot/proj/main/..."));
+		P4SCMProbe probe = new P4SCMProbe(p4, HEAD, 42);
+
+		assertEquals(SCMFile.Type.REGULAR_FILE, probe.stat("Jenkinsfile").getType());
+		assertEquals(SCMFile.Type.REGULAR_FILE, probe.stat("Jenkinsfile").getType());
+
+		// a submitted change does not change, so the file is checked once
+		verify(p4, times(1)).hasFile("//depot/proj/main/Jenkinsfile@42");
+	}
+
+	@Test
+	void testHeadRevisionIsNotPinned() throws Exception {
+		when(p4.getDepotView()).thenReturn(List.of("//depot/proj/main/..."));
+		P4SCMProbe probe = new P4SCMProbe(p4, HEAD);
+
+		assertEquals(SCMFile.Type.REGULAR_FILE, probe.stat("Jenkinsfile").getType());
+		verify(p4).hasFile("//depot/proj/main/Jenkinsfile");
+	}
+
+	@Test
+	void testFileOutsideViewIsNotChecked() throws Exception {
+		when(p4.getDepotView()).thenReturn(List.of("//depot/proj/main/Jenkinsfile", "//depot/proj/main/src/..."));
+		P4SCMProbe probe = new P4SCMProbe(p4, HEAD, 42);
+
+		assertEquals(SCMFile.Type.NONEXISTENT, probe.stat("docs/Jenkinsfile").getType());
+		assertEquals(SCMFile.Type.NONEXISTENT, probe.stat("build.gradle").getType());
+		verify(p4, never()).hasFile(anyString());
+	}
+
+	@Test
+	void testExcludedFileIsNotChecked() throws Exception {
+		when(p4.getDepotView()).thenReturn(List.of("//depot/proj/main/...",
+				"-//depot/proj/main/src/...", "//depot/proj/main/src/app/..."));
+		P4SCMProbe probe = new P4SCMProbe(p4, HEAD, 42);
+
+		// the last matching line decides
+		assertEquals(SCMFile.Type.NONEXISTENT, probe.stat("src/lib/Jenkinsfile").getType());
+		verify(p4, never()).hasFile(anyString());
+
+		assertEquals(SCMFile.Type.REGULAR_FILE, probe.stat("src/app/Jenkinsfile").getType());
+		verify(p4).hasFile("//depot/proj/main/src/app/Jenkinsfile@42");
+	}
+
+	@Test
+	void testMissingFileInView() throws Exception {
+		when(p4.getDepotView()).thenReturn(List.of("//depot/proj/main/..."));
+		when(p4.hasFile("//depot/proj/main/Jenkinsfile@42")).thenReturn(false);
+		P4SCMProbe probe = new P4SCMProbe(p4, HEAD, 42);
+
+		assertEquals(SCMFile.Type.NONEXISTENT, probe.stat("Jenkinsfile").getType());
+		verify(p4).hasFile("//depot/proj/main/Jenkinsfile@42");
+	}
+}
@@ -0,0 +1,50 @@
+package org.jenkinsci.plugins.p4.unit.scm;
+
+import org.jenkinsci.plugins.p4.scm.ProbeCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProbeCacheTest {
+
+	@Test
+	void testChangeIsLoadedOnce() throws Exception {
+		ProbeCache.clear();
+		AtomicInteger loads = new AtomicInteger();
+		long hits = ProbeCache.getStats().getHits();
+
+		for (int i = 0; i < 3; i++) {
+			boolean found = ProbeCache.get("ssl:perforce:1666", "jenkins", "//depot/main/Jenkinsfile@100", 100, () -> {
+				loads.incrementAndGet();
+				return true;
+			});
+			assertTrue(found);
+		}
+		assertEquals(1, loads.get());
+		assertEquals(hits + 2, ProbeCache.getStats().getHits());
+	}
+
+	@Test
+	void testKeysAreDistinct() throws Exception {
+		ProbeCache.clear();
+		assertTrue(ProbeCache.get("perforce:1666", "jenkins", "//depot/main/Jenkinsfile", 100, () -> true));
+		assertFalse(ProbeCache.get("perforce:1666", "jenkins", "//depot/main/Jenkinsfile", 101, () -> false));
+		assertFalse(ProbeCache.get("perforce:1667", "jenkins", "//depot/main/Jenkinsfile", 100, () -> false));
+		assertEquals(3, ProbeCache.getStats().getEntries());
+	}
+
+	@Test
+	void testUsersAreDistinct() throws Exception {
+		ProbeCache.clear();
+
+		// protections may hide the file from another user
+		assertTrue(ProbeCache.get("perforce:1666", "alice", "//depot/main/Jenkinsfile", 100, () -> true));
+		assertFalse(ProbeCache.get("perforce:1666", "bob", "//depot/main/Jenkinsfile", 100, () -> false));
+		assertTrue(ProbeCache.get("perforce:1666", "alice", "//depot/main/Jenkinsfile", 100, () -> false));
+		assertEquals(2, ProbeCache.getStats().getEntries());
+	}
+}
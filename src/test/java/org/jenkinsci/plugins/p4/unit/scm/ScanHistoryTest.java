@@ -0,0 +1,25 @@
+package org.jenkinsci.plugins.p4.unit.scm;
+
+import org.jenkinsci.plugins.p4.scm.ScanHistory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ScanHistoryTest {
+
+	@Test
+	void testForgetRemovesOnlyTheProjectSources() {
+		ScanHistory.put("folder/project\nsource1", 100, 1);
+		ScanHistory.put("folder/project\nsource2", 200, 2);
+		ScanHistory.put("folder/project2\nsource1", 300, 3);
+
+		assertEquals(200, ScanHistory.get("folder/project\nsource2").getChange());
+
+		ScanHistory.forget("folder/project");
+		assertNull(ScanHistory.get("folder/project\nsource1"));
+		assertNull(ScanHistory.get("folder/project\nsource2"));
+		assertNotNull(ScanHistory.get("folder/project2\nsource1"));
+	}
+}
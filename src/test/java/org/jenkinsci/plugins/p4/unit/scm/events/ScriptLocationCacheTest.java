@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.p4.unit.scm.events;
+
+import org.jenkinsci.plugins.p4.scm.events.ScriptLocationCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScriptLocationCacheTest {
+
+	private static final String PORT = "perforce:1666";
+
+	@Test
+	void testDirectoriesAreRemembered() {
+		ScriptLocationCache.clear();
+		assertNull(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj/main"));
+
+		ScriptLocationCache.put(PORT, "Jenkinsfile", "//depot/proj/main", true);
+		ScriptLocationCache.put(PORT, "Jenkinsfile", "//depot/proj/main/src", false);
+		assertTrue(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj/main"));
+		assertFalse(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj/main/src"));
+		assertNull(ScriptLocationCache.hasScript("perforce:1667", "Jenkinsfile", "//depot/proj/main"));
+		assertNull(ScriptLocationCache.hasScript(PORT, "build/Jenkinsfile", "//depot/proj/main"));
+	}
+
+	@Test
+	void testScriptChangeInvalidates() {
+		ScriptLocationCache.clear();
+		ScriptLocationCache.put(PORT, "Jenkinsfile", "//depot/proj/main", true);
+		ScriptLocationCache.put(PORT, "Jenkinsfile", "//depot/proj/dev", false);
+
+		ScriptLocationCache.invalidate(PORT, "Jenkinsfile",
+				Arrays.asList("//depot/proj/dev/Jenkinsfile", "//depot/proj/main/src/Main.java"));
+		assertNull(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj/dev"));
+		assertTrue(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj/main"));
+	}
+
+	@Test
+	void testTruncatedChangeInvalidatesUnderPath() {
+		ScriptLocationCache.clear();
+		ScriptLocationCache.put(PORT, "Jenkinsfile", "//depot/proj", false);
+		ScriptLocationCache.put(PORT, "Jenkinsfile", "//depot/proj/main", true);
+		ScriptLocationCache.put(PORT, "Jenkinsfile", "//depot/proj/main/src", false);
+		ScriptLocationCache.put(PORT, "Jenkinsfile", "//depot/proj/mainline", false);
+		ScriptLocationCache.put("perforce:1667", "Jenkinsfile", "//depot/proj/main/src", false);
+
+		ScriptLocationCache.invalidateUnder(PORT, "Jenkinsfile", "//depot/proj/main");
+		assertNull(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj/main"));
+		assertNull(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj/main/src"));
+		assertFalse(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj"));
+		assertFalse(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj/mainline"));
+		assertFalse(ScriptLocationCache.hasScript("perforce:1667", "Jenkinsfile", "//depot/proj/main/src"));
+
+		// with no common directory known, all of the server's entries go
+		ScriptLocationCache.invalidateUnder(PORT, "Jenkinsfile", "//");
+		assertNull(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj"));
+		assertNull(ScriptLocationCache.hasScript(PORT, "Jenkinsfile", "//depot/proj/mainline"));
+		assertFalse(ScriptLocationCache.hasScript("perforce:1667", "Jenkinsfile", "//depot/proj/main/src"));
+	}
+
+	@Test
+	void testChangeResults() {
+		ScriptLocationCache.clear();
+		assertNull(ScriptLocationCache.getChange(PORT, "100", "Jenkinsfile"));
+
+		ScriptLocationCache.putChange(PORT, "100", "Jenkinsfile", "//depot/proj", "main");
+		ScriptLocationCache.putChange(PORT, "101", "Jenkinsfile", null, null);
+		assertArrayEquals(new String[]{"//depot/proj", "main"}, ScriptLocationCache.getChange(PORT, "100", "Jenkinsfile"));
+		assertEquals(0, ScriptLocationCache.getChange(PORT, "101", "Jenkinsfile").length);
+	}
+}
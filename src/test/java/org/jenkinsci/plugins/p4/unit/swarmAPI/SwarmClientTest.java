@@ -0,0 +1,134 @@
+package org.jenkinsci.plugins.p4.unit.swarmAPI;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+import org.jenkinsci.plugins.p4.swarmAPI.SwarmClient;
+import org.jenkinsci.plugins.p4.swarmAPI.SwarmHelper;
+import org.jenkinsci.plugins.p4.swarmAPI.SwarmReviewsAPI;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SwarmClientTest {
+
+	private HttpServer server;
+	private String base;
+
+	private final AtomicInteger versions = new AtomicInteger();
+	private final AtomicInteger projects = new AtomicInteger();
+	private final AtomicInteger notModified = new AtomicInteger();
+	private final AtomicInteger pages = new AtomicInteger();
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		SwarmClient.clear();
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/api/version", ex -> {
+			versions.incrementAndGet();
+			reply(ex, 200, "{\"apiVersions\":[9,10,11]}");
+		});
+		server.createContext("/api/v11/projects", ex -> {
+			if ("\"p1\"".equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+				notModified.incrementAndGet();
+				reply(ex, 304, null);
+				return;
+			}
+			projects.incrementAndGet();
+			ex.getResponseHeaders().add("ETag", "\"p1\"");
+			reply(ex, 200, "{\"data\":{\"projects\":[]}}");
+		});
+		server.createContext("/api/v11/reviews", ex -> {
+			pages.incrementAndGet();
+			String query = ex.getRequestURI().getQuery();
+			int first = (query != null && query.contains("after=100")) ? 101 : 1;
+			int count = (first == 1) ? SwarmHelper.PAGE_SIZE : 5;
+			StringBuilder sb = new StringBuilder("{\"data\":{\"reviews\":[");
+			for (int i = 0; i < count; i++) {
+				sb.append((i > 0) ? "," : "").append("{\"id\":").append(first + i).append(",\"changes\":[1],\"author\":\"bob\"}");
+			}
+			sb.append("],\"lastSeen\":").append(first + count - 1).append("}}");
+			reply(ex, 200, sb.toString());
+		});
+		server.start();
+		base = "http://localhost:" + server.getAddress().getPort();
+	}
+
+	@AfterEach
+	void afterEach() {
+		server.stop(0);
+		SwarmClient.clear();
+	}
+
+	@Test
+	void testVersionIsCached() throws Exception {
+		assertEquals(List.of("9", "10", "11"), SwarmClient.getApiVersions(base, "bob", "ticket"));
+		assertEquals(List.of("9", "10", "11"), SwarmClient.getApiVersions(base, "bob", "ticket"));
+		assertEquals(1, versions.get());
+	}
+
+	@Test
+	void testConditionalRequest() throws Exception {
+		String url = base + "/api/v11/projects";
+		SwarmClient.get(url, new HashMap<>(), "bob", "ticket", 0);
+		SwarmClient.get(url, new HashMap<>(), "bob", "ticket", 0);
+		assertEquals(1, projects.get());
+		assertEquals(1, notModified.get());
+
+		// fresh responses are not requested again
+		SwarmClient.get(url, new HashMap<>(), "bob", "ticket", 60000);
+		assertEquals(1, projects.get());
+		assertEquals(2, notModified.get());
+		SwarmClient.get(url, new HashMap<>(), "bob", "ticket", 60000);
+		assertEquals(2, notModified.get());
+	}
+
+	@Test
+	void testActiveReviewsArePaged() throws Exception {
+		ConnectionHelper p4 = mock(ConnectionHelper.class);
+		when(p4.getSwarm()).thenReturn(base);
+		when(p4.getUser()).thenReturn("bob");
+		when(p4.getTicket()).thenReturn("ticket");
+
+		SwarmHelper swarm = new SwarmHelper(p4, "11");
+		List<SwarmReviewsAPI.Reviews> reviews = swarm.getActiveReviews("proj");
+		assertEquals(SwarmHelper.PAGE_SIZE + 5, reviews.size());
+		assertEquals(105L, reviews.get(reviews.size() - 1).getId());
+		assertEquals(2, pages.get());
+	}
+
+	@Test
+	void testFetchAllKeepsOrder() throws Exception {
+		List<Integer> values = SwarmClient.fetchAll(List.of(3, 1, 2), item -> {
+			Thread.sleep(item * 10L);
+			return item * 2;
+		});
+		assertEquals(List.of(6, 2, 4), values);
+	}
+
+	private static void reply(HttpExchange ex, int status, String body) throws IOException {
+		if (body == null) {
+			ex.sendResponseHeaders(status, -1);
+			ex.close();
+			return;
+		}
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		ex.getResponseHeaders().add("Content-Type", "application/json");
+		ex.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = ex.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
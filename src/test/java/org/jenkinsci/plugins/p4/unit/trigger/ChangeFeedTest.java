@@ -0,0 +1,129 @@
+package org.jenkinsci.plugins.p4.unit.trigger;
+
+import com.perforce.p4java.client.IClient;
+import com.perforce.p4java.impl.generic.client.ClientView;
+import com.perforce.p4java.impl.generic.client.ClientViewMapping;
+import com.perforce.p4java.server.IOptionsServer;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
+import org.jenkinsci.plugins.p4.trigger.ChangeFeed;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedConstruction;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChangeFeedTest {
+
+	private final TaskListener listener = mock(TaskListener.class);
+
+	private static ChangeFeed getFeed(String id) {
+		P4BaseCredentials credential = mock(P4BaseCredentials.class);
+		when(credential.getFullP4port()).thenReturn("localhost:1666");
+		when(credential.getId()).thenReturn(id);
+		return ChangeFeed.get(credential);
+	}
+
+	@Test
+	void testRefreshWindowSharesResult() throws Exception {
+		ChangeFeed feed = getFeed("window");
+		try (MockedConstruction<ConnectionHelper> mocked = mockConstruction(ConnectionHelper.class,
+				(p4, context) -> when(p4.getSubmittedHead()).thenReturn(100L))) {
+			feed.refresh(listener, 0);
+			assertEquals(1, mocked.constructed().size());
+			assertEquals(100, feed.getHead());
+
+			// within the window the server is not asked again
+			feed.refresh(listener, 60000);
+			assertEquals(1, mocked.constructed().size());
+		}
+	}
+
+	@Test
+	void testUnchangedHeadReturnsEarly() throws Exception {
+		ChangeFeed feed = getFeed("early");
+		AtomicLong latest = new AtomicLong(100);
+		try (MockedConstruction<ConnectionHelper> mocked = mockConstruction(ConnectionHelper.class,
+				(p4, context) -> {
+					when(p4.getSubmittedHead()).thenAnswer(i -> latest.get());
+					when(p4.getSubmittedChanges(anyLong(), anyLong(), anyInt())).thenReturn(new ArrayList<>());
+				})) {
+			feed.refresh(listener, 0);
+			assertEquals(100, feed.getHead());
+
+			feed.refresh(listener, 0);
+			ConnectionHelper unchanged = mocked.constructed().get(1);
+			verify(unchanged, never()).getSubmittedChanges(anyLong(), anyLong(), anyInt());
+			assertEquals(100, feed.getHead());
+
+			latest.set(105);
+			feed.refresh(listener, 0);
+			ConnectionHelper moved = mocked.constructed().get(2);
+			verify(moved).getSubmittedChanges(eq(101L), eq(105L), anyInt());
+			assertEquals(105, feed.getHead());
+		}
+	}
+
+	@Test
+	void testHeadIsHighestSubmittedChange() throws Exception {
+		ChangeFeed feed = getFeed("submitted");
+		AtomicLong latest = new AtomicLong(100);
+		try (MockedConstruction<ConnectionHelper> mocked = mockConstruction(ConnectionHelper.class,
+				(p4, context) -> {
+					// pending change 101 holds the counter until it is submitted
+					when(p4.getCounter("change")).thenReturn("101");
+					when(p4.getSubmittedHead()).thenAnswer(i -> latest.get());
+					when(p4.getSubmittedChanges(anyLong(), anyLong(), anyInt())).thenReturn(new ArrayList<>());
+				})) {
+			feed.refresh(listener, 0);
+			assertEquals(100, feed.getHead());
+
+			// submitting 101 does not move the counter, but moves the head
+			latest.set(101);
+			feed.refresh(listener, 0);
+			assertEquals(101, feed.getHead());
+			for (ConnectionHelper p4 : mocked.constructed()) {
+				verify(p4, never()).getCounter(anyString());
+			}
+		}
+	}
+
+	@Test
+	void testChangedViewIsPolled() throws Exception {
+		ChangeFeed feed = getFeed("view");
+		ClientView view = new ClientView();
+		view.addEntry(new ClientViewMapping(0, "//depot/main/...", "//ws/..."));
+		IClient client = mock(IClient.class);
+		when(client.getClientView()).thenReturn(view);
+		IOptionsServer server = mock(IOptionsServer.class);
+		when(server.getClient("ws")).thenReturn(client);
+		try (MockedConstruction<ConnectionHelper> mocked = mockConstruction(ConnectionHelper.class,
+				(p4, context) -> when(p4.getConnection()).thenReturn(server))) {
+			feed.register("job", "ws", "//depot/main/...", 100, new ArrayList<>(), TaskListener.NULL);
+			assertEquals(1, feed.getJobCount());
+
+			assertTrue(feed.check("job", "ws", "//depot/main/...", 100, TaskListener.NULL).isEmpty());
+
+			// the registered view no longer applies
+			assertNull(feed.check("job", "ws", "//depot/dev/...", 100, TaskListener.NULL));
+			assertNull(feed.check("job", "other", "//depot/main/...", 100, TaskListener.NULL));
+		}
+
+		ChangeFeed.forget("job");
+		assertEquals(0, feed.getJobCount());
+	}
+}
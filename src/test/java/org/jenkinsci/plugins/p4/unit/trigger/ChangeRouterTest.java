@@ -0,0 +1,224 @@
+package org.jenkinsci.plugins.p4.unit.trigger;
+
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+import org.jenkinsci.plugins.p4.PerforceScm;
+import org.jenkinsci.plugins.p4.changes.ChangeStore;
+import org.jenkinsci.plugins.p4.changes.P4ChangeRef;
+import org.jenkinsci.plugins.p4.client.ConnectionHelper;
+import org.jenkinsci.plugins.p4.client.CredentialsHelper;
+import org.jenkinsci.plugins.p4.credentials.P4BaseCredentials;
+import org.jenkinsci.plugins.p4.filters.Filter;
+import org.jenkinsci.plugins.p4.filters.FilterUserImpl;
+import org.jenkinsci.plugins.p4.populate.Populate;
+import org.jenkinsci.plugins.p4.tagging.TagAction;
+import org.jenkinsci.plugins.p4.trigger.ChangeRouter;
+import org.jenkinsci.plugins.p4.trigger.ViewIndex;
+import org.jenkinsci.plugins.p4.workspace.ManualWorkspaceImpl;
+import org.jenkinsci.plugins.p4.workspace.StreamWorkspaceImpl;
+import org.jenkinsci.plugins.p4.workspace.Workspace;
+import org.jenkinsci.plugins.p4.workspace.WorkspaceSpec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedConstruction;
+import org.mockito.MockedStatic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class ChangeRouterTest {
+
+	private static final String PORT = "localhost:1666";
+	private static final long CHANGE = 42;
+
+	// files of the change each user can see
+	private final Map<String, List<String>> visible = new HashMap<>();
+	private final List<Job<?, ?>> jobs = new ArrayList<>();
+
+	private MockedStatic<Jenkins> jenkinsStatic;
+	private MockedStatic<CredentialsHelper> credentialStatic;
+	private MockedStatic<ChangeStore> storeStatic;
+	private MockedConstruction<ConnectionHelper> connections;
+
+	@BeforeEach
+	void beforeEach() {
+		ViewIndex.clear();
+
+		Jenkins jenkins = mock(Jenkins.class);
+		doReturn(jobs).when(jenkins).allItems(Item.class);
+		jenkinsStatic = mockStatic(Jenkins.class);
+		jenkinsStatic.when(Jenkins::get).thenReturn(jenkins);
+		jenkinsStatic.when(Jenkins::getInstanceOrNull).thenReturn(jenkins);
+
+		credentialStatic = mockStatic(CredentialsHelper.class);
+		for (String user : List.of("alice", "bob")) {
+			P4BaseCredentials credential = mock(P4BaseCredentials.class);
+			when(credential.getFullP4port()).thenReturn(PORT);
+			when(credential.getUsername()).thenReturn(user);
+			credentialStatic.when(() -> CredentialsHelper.findCredential(eq(user), any(Item.class))).thenReturn(credential);
+		}
+
+		// describe the change as the connection's user
+		Map<ConnectionHelper, String> users = new HashMap<>();
+		connections = mockConstruction(ConnectionHelper.class,
+				(p4, context) -> users.put(p4, ((P4BaseCredentials) context.arguments().get(0)).getUsername()));
+		storeStatic = mockStatic(ChangeStore.class);
+		storeStatic.when(() -> ChangeStore.get(any(ConnectionHelper.class), anyLong(), anyInt(), anyBoolean())).thenAnswer(i -> {
+			ChangeStore.Metadata metadata = mock(ChangeStore.Metadata.class);
+			when(metadata.getPaths()).thenReturn(visible.get(users.get((ConnectionHelper) i.getArgument(0))));
+			return metadata;
+		});
+
+		visible.put("alice", List.of("//depot/main/src/a.c"));
+		visible.put("bob", List.of("//depot/main/src/a.c"));
+	}
+
+	@AfterEach
+	void afterEach() {
+		connections.close();
+		storeStatic.close();
+		credentialStatic.close();
+		jenkinsStatic.close();
+		ViewIndex.clear();
+	}
+
+	@Test
+	void testInViewIsBuilt() {
+		Job<?, ?> job = addJob("main", "alice", manual("//depot/main/... //ws/..."), null, "");
+
+		ChangeRouter router = ChangeRouter.route(PORT, CHANGE, jobs);
+		assertEquals(List.of(job), router.getBuild());
+		assertTrue(router.getPoll().isEmpty());
+	}
+
+	@Test
+	void testOutOfViewIsSkipped() {
+		addJob("other", "alice", manual("//depot/other/... //ws/..."), null, "");
+		addJob("excluded", "alice", manual("//depot/main/... //ws/...\n-//depot/main/src/... //ws/src/..."), null, "");
+
+		ChangeRouter router = ChangeRouter.route(PORT, CHANGE, jobs);
+		assertTrue(router.getBuild().isEmpty());
+		assertTrue(router.getPoll().isEmpty());
+	}
+
+	@Test
+	void testFilteredIsPolled() {
+		List<Filter> filter = List.of(new FilterUserImpl("build"));
+		Job<?, ?> job = addJob("filtered", "alice", manual("//depot/main/... //ws/..."), filter, "");
+
+		ChangeRouter router = ChangeRouter.route(PORT, CHANGE, jobs);
+		assertTrue(router.getBuild().isEmpty());
+		assertEquals(List.of(job), router.getPoll());
+	}
+
+	@Test
+	void testPinnedIsPolled() {
+		Job<?, ?> label = addJob("label", "alice", manual("//depot/main/... //ws/..."), null, "release-1.0");
+		Job<?, ?> change = addJob("change", "alice", manual("//depot/main/... //ws/..."), null, "40");
+
+		ChangeRouter router = ChangeRouter.route(PORT, CHANGE, jobs);
+		assertTrue(router.getBuild().isEmpty());
+		assertEquals(List.of(label, change), router.getPoll());
+	}
+
+	@Test
+	void testStreamIsPolled() {
+		// the change is only in a path the streams import
+		visible.put("alice", List.of("//depot/lib/x.c"));
+		WorkspaceSpec spec = mock(WorkspaceSpec.class);
+		when(spec.getStreamName()).thenReturn("//stream/main");
+		ManualWorkspaceImpl manual = mock(ManualWorkspaceImpl.class);
+		when(manual.getSpec()).thenReturn(spec);
+		StreamWorkspaceImpl stream = mock(StreamWorkspaceImpl.class);
+		when(stream.getStreamName()).thenReturn("//stream/virtual");
+
+		Job<?, ?> manualJob = addJob("manual-stream", "alice", manual, null, "");
+		Job<?, ?> streamJob = addJob("stream", "alice", stream, null, "");
+
+		ChangeRouter router = ChangeRouter.route(PORT, CHANGE, jobs);
+		assertTrue(router.getBuild().isEmpty());
+		assertEquals(List.of(manualJob, streamJob), router.getPoll());
+	}
+
+	@Test
+	void testAlreadyBuiltIsPolled() {
+		Job<?, ?> built = addJob("built", "alice", manual("//depot/main/... //ws/..."), null, "");
+		Job<?, ?> same = addJob("same", "alice", manual("//depot/main/... //ws/..."), null, "");
+		Job<?, ?> older = addJob("older", "alice", manual("//depot/main/... //ws/..."), null, "");
+		setLastChange(built, 50);
+		setLastChange(same, CHANGE);
+		setLastChange(older, 40);
+
+		// a late trigger must not sync the workspace back to an older change
+		ChangeRouter router = ChangeRouter.route(PORT, CHANGE, jobs);
+		assertEquals(List.of(older), router.getBuild());
+		assertEquals(List.of(built, same), router.getPoll());
+	}
+
+	@Test
+	void testDescribedForEachUser() {
+		// bob cannot see the change's file under main
+		visible.put("bob", List.of("//depot/rel/b.c"));
+		Job<?, ?> alice = addJob("alice-main", "alice", manual("//depot/main/... //ws/..."), null, "");
+		addJob("bob-main", "bob", manual("//depot/main/... //ws/..."), null, "");
+		Job<?, ?> bob = addJob("bob-rel", "bob", manual("//depot/rel/... //ws/..."), null, "");
+		addJob("alice-rel", "alice", manual("//depot/rel/... //ws/..."), null, "");
+
+		ChangeRouter router = ChangeRouter.route(PORT, CHANGE, jobs);
+		assertEquals(List.of(alice, bob), router.getBuild());
+		assertTrue(router.getPoll().isEmpty());
+		assertEquals(2, connections.constructed().size());
+	}
+
+	private static void setLastChange(Job<?, ?> job, long change) {
+		TagAction tag = mock(TagAction.class);
+		when(tag.getRefChanges()).thenReturn(List.of(new P4ChangeRef(change)));
+		Run<?, ?> run = mock(Run.class);
+		doReturn(List.of(tag)).when(run).getActions(TagAction.class);
+		doReturn(run).when(job).getLastBuild();
+	}
+
+	private static Workspace manual(String view) {
+		WorkspaceSpec spec = mock(WorkspaceSpec.class);
+		when(spec.getView()).thenReturn(view);
+		ManualWorkspaceImpl workspace = mock(ManualWorkspaceImpl.class);
+		when(workspace.getSpec()).thenReturn(spec);
+		return workspace;
+	}
+
+	private Job<?, ?> addJob(String name, String credential, Workspace workspace, List<Filter> filter, String pin) {
+		Populate populate = mock(Populate.class);
+		when(populate.getPin()).thenReturn(pin);
+		PerforceScm scm = mock(PerforceScm.class);
+		when(scm.getCredential()).thenReturn(credential);
+		when(scm.getWorkspace()).thenReturn(workspace);
+		when(scm.getFilter()).thenReturn(filter);
+		when(scm.getPopulate()).thenReturn(populate);
+
+		Job<?, ?> job = mock(Job.class, withSettings().extraInterfaces(SCMTriggerItem.class));
+		when(job.getFullName()).thenReturn(name);
+		doReturn(List.of(scm)).when((SCMTriggerItem) job).getSCMs();
+		jobs.add(job);
+		return job;
+	}
+}
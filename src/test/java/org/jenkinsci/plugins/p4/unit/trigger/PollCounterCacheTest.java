@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.p4.unit.trigger;
+
+import org.jenkinsci.plugins.p4.trigger.PollCounterCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PollCounterCacheTest {
+
+	private static final String PORT = "localhost:1666";
+	private static final String JOB = "folder/job";
+
+	@AfterEach
+	void cleanup() {
+		PollCounterCache.forget(JOB);
+	}
+
+	@Test
+	void testUnchangedCounterSkips() {
+		assertFalse(PollCounterCache.isUnchanged(PORT, JOB, "sig", 10));
+
+		PollCounterCache.update(PORT, JOB, "sig", 10);
+		assertTrue(PollCounterCache.isUnchanged(PORT, JOB, "sig", 10));
+		assertTrue(PollCounterCache.isUnchanged(PORT, JOB, "sig", 10));
+		assertEquals(2, PollCounterCache.getSkipCount(PORT, JOB));
+	}
+
+	@Test
+	void testCounterOrSignatureChangePolls() {
+		PollCounterCache.update(PORT, JOB, "sig", 10);
+		assertFalse(PollCounterCache.isUnchanged(PORT, JOB, "sig", 11));
+		assertFalse(PollCounterCache.isUnchanged(PORT, JOB, "other", 10));
+		assertFalse(PollCounterCache.isUnchanged("other:1666", JOB, "sig", 10));
+	}
+
+	@Test
+	void testInvalidateAndForget() {
+		PollCounterCache.update(PORT, JOB, "sig", 10);
+		PollCounterCache.invalidate(PORT, JOB);
+		assertFalse(PollCounterCache.isUnchanged(PORT, JOB, "sig", 10));
+
+		PollCounterCache.update(PORT, JOB, "sig", 10);
+		PollCounterCache.forget(JOB);
+		assertFalse(PollCounterCache.isUnchanged(PORT, JOB, "sig", 10));
+	}
+
+	@Test
+	void testUnknownCounterIsIgnored() {
+		PollCounterCache.update(PORT, JOB, "sig", -1);
+		assertFalse(PollCounterCache.isUnchanged(PORT, JOB, "sig", -1));
+	}
+}
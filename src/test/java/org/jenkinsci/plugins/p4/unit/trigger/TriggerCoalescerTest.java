@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.p4.unit.trigger;
+
+import org.jenkinsci.plugins.p4.trigger.TriggerCoalescer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TriggerCoalescerTest {
+
+	@Test
+	void testEventsInWindowAreMerged() throws Exception {
+		List<Long> fired = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(1);
+		for (long change : new long[]{101, 103, 102}) {
+			TriggerCoalescer.offer("merge", change, c -> {
+				fired.add(c);
+				done.countDown();
+			}, 200, 5000);
+		}
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		Thread.sleep(300);
+		assertEquals(List.of(103L), fired);
+	}
+
+	@Test
+	void testKeysAreNotMerged() throws Exception {
+		List<String> fired = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(2);
+		TriggerCoalescer.offer("jobA", 1, c -> {
+			fired.add("jobA");
+			done.countDown();
+		}, 100, 5000);
+		TriggerCoalescer.offer("jobB", 1, c -> {
+			fired.add("jobB");
+			done.countDown();
+		}, 100, 5000);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(2, fired.size());
+	}
+
+	@Test
+	void testMaxDelayBoundsWindow() throws Exception {
+		List<Long> fired = new CopyOnWriteArrayList<>();
+		long start = System.currentTimeMillis();
+		// keep restarting a long window; the max delay still fires the action
+		for (long change = 1; change <= 10 && fired.isEmpty(); change++) {
+			TriggerCoalescer.offer("steady", change, fired::add, 1000, 300);
+			Thread.sleep(100);
+		}
+		long waited = System.currentTimeMillis() - start;
+		assertTrue(!fired.isEmpty() && waited < 1000, "fired after " + waited + "ms");
+	}
+}
@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.p4.unit.trigger;
+
+import org.jenkinsci.plugins.p4.trigger.TriggerQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TriggerQueueTest {
+
+	@Test
+	void testQueuedJobIsNotQueuedAgain() throws Exception {
+		int threads = TriggerQueue.getStats().getThreads();
+		CountDownLatch busy = new CountDownLatch(threads);
+		CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < threads; i++) {
+			assertTrue(TriggerQueue.submit("blocker", () -> {
+				busy.countDown();
+				release.await();
+			}));
+		}
+		assertTrue(busy.await(5, TimeUnit.SECONDS));
+
+		long deduplicated = TriggerQueue.getStats().getDeduplicated();
+		AtomicInteger polls = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(1);
+		assertTrue(TriggerQueue.submitJob("localhost:1666", "job", () -> {
+			polls.incrementAndGet();
+			done.countDown();
+		}));
+		assertFalse(TriggerQueue.submitJob("localhost:1666", "job", polls::incrementAndGet));
+		assertTrue(TriggerQueue.getStats().getQueued() >= 1);
+
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(1, polls.get());
+		assertEquals(deduplicated + 1, TriggerQueue.getStats().getDeduplicated());
+	}
+
+	@Test
+	void testEventDuringProbeRunsOnceMore() throws Exception {
+		AtomicInteger polls = new AtomicInteger();
+		AtomicInteger active = new AtomicInteger();
+		AtomicInteger maxActive = new AtomicInteger();
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(2);
+		TriggerQueue.Task probe = () -> {
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			polls.incrementAndGet();
+			running.countDown();
+			release.await();
+			active.decrementAndGet();
+			done.countDown();
+		};
+		assertTrue(TriggerQueue.submitJob("localhost:1666", "running", probe));
+		assertTrue(running.await(5, TimeUnit.SECONDS));
+
+		// events while the probe runs are not run in parallel, but once more after it
+		assertFalse(TriggerQueue.submitJob("localhost:1666", "running", probe));
+		assertFalse(TriggerQueue.submitJob("localhost:1666", "running", probe));
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(2, polls.get());
+		assertEquals(1, maxActive.get());
+
+		// the job is released once the last run finishes
+		CountDownLatch next = new CountDownLatch(1);
+		long timeout = System.currentTimeMillis() + 5000;
+		while (!TriggerQueue.submitJob("localhost:1666", "running", next::countDown)) {
+			assertTrue(System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+		assertTrue(next.await(5, TimeUnit.SECONDS));
+		assertEquals(2, polls.get());
+	}
+}
@@ -0,0 +1,73 @@
+package org.jenkinsci.plugins.p4.unit.trigger;
+
+import org.jenkinsci.plugins.p4.trigger.ViewTrie;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ViewTrieTest {
+
+	@Test
+	void testMatchWildcards() {
+		ViewTrie trie = new ViewTrie();
+		trie.add("projA", List.of("//depot/projA/..."));
+		trie.add("projB", List.of("//depot/projB/*.c", "//depot/projB/src/.../*.h"));
+		trie.add("file", List.of("//depot/projA/build.xml"));
+
+		assertEquals(Set.of("projA"), trie.match("//depot/projA/src/main.c"));
+		assertEquals(Set.of("projA", "file"), trie.match("//depot/projA/build.xml"));
+		assertEquals(Set.of("projB"), trie.match("//depot/projB/main.c"));
+		assertTrue(trie.match("//depot/projB/src/main.c").isEmpty());
+		assertEquals(Set.of("projB"), trie.match("//depot/projB/src/a/b/main.h"));
+		assertTrue(trie.match("//depot/projC/main.c").isEmpty());
+		assertTrue(trie.match("//other/projA/main.c").isEmpty());
+	}
+
+	@Test
+	void testLastLineDecides() {
+		ViewTrie trie = new ViewTrie();
+		trie.add("job", List.of("//depot/...", "-//depot/docs/...", "+//depot/docs/api/..."));
+
+		assertEquals(Set.of("job"), trie.match("//depot/src/main.c"));
+		assertTrue(trie.match("//depot/docs/index.html").isEmpty());
+		assertEquals(Set.of("job"), trie.match("//depot/docs/api/index.html"));
+	}
+
+	@Test
+	void testViewsAreSeparate() {
+		ViewTrie trie = new ViewTrie();
+		trie.add("job", List.of("//depot/...", "-//depot/docs/..."));
+		trie.add("job", List.of("//depot/docs/..."));
+
+		assertEquals(Set.of("job"), trie.match("//depot/docs/index.html"));
+	}
+
+	@Test
+	void testRemove() {
+		ViewTrie trie = new ViewTrie();
+		trie.add("jobA", List.of("//depot/..."));
+		trie.add("jobB", List.of("//depot/projB/..."));
+		trie.remove("jobA");
+
+		assertTrue(trie.match("//depot/projA/main.c").isEmpty());
+		assertEquals(Set.of("jobB"), trie.match("//depot/projB/main.c"));
+
+		trie.remove("jobB");
+		assertTrue(trie.isEmpty());
+	}
+
+	@Test
+	void testPartialSegmentWildcards() {
+		ViewTrie trie = new ViewTrie();
+		trie.add("job", List.of("//depot/proj.../%%1.java", "//depot/lib-*/..."));
+
+		assertEquals(Set.of("job"), trie.match("//depot/projA/src/Main.java"));
+		assertTrue(trie.match("//depot/projA/src/Main.c").isEmpty());
+		assertEquals(Set.of("job"), trie.match("//depot/lib-core/a/b.c"));
+		assertTrue(trie.match("//depot/lib/a.c").isEmpty());
+	}
+}